@@ -22,6 +22,9 @@
 package org.nuxeo.common.xmap;
 
 import java.io.Serializable;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
@@ -45,6 +48,9 @@ public class XAnnotatedObject {
 
     final Constructor<?> ctor;
 
+    // the constructor as a method handle, null for abstract classes
+    final MethodHandle ctorHandle;
+
     final Path path;
 
     final List<XAnnotatedMember> members;
@@ -57,6 +63,7 @@ public class XAnnotatedObject {
             this.klass = klass;
             this.ctor = this.klass.getDeclaredConstructor();
             ctor.setAccessible(true);
+            ctorHandle = newConstructorHandle(ctor);
             path = new Path(xob.value());
             members = new ArrayList<XAnnotatedMember>();
             String[] order = xob.order();
@@ -70,6 +77,15 @@ public class XAnnotatedObject {
         }
     }
 
+    protected static MethodHandle newConstructorHandle(Constructor<?> ctor) {
+        try {
+            return MethodHandles.lookup().unreflectConstructor(ctor).asType(MethodType.methodType(Object.class));
+        } catch (IllegalAccessException e) {
+            // abstract class, fails on instantiation
+            return null;
+        }
+    }
+
     public void addMember(XAnnotatedMember member) {
         members.add(member);
     }
@@ -81,7 +97,13 @@ public class XAnnotatedObject {
     public Object newInstance(Context ctx, Element element) {
         Object ob;
         try {
-            ob = ctor.newInstance();
+            if (ctorHandle != null) {
+                ob = (Object) ctorHandle.invokeExact();
+            } else {
+                ob = ctor.newInstance();
+            }
+        } catch (RuntimeException e) {
+            throw e;
         } catch (InstantiationException e) {
             throw new IllegalArgumentException(e);
         } catch (IllegalAccessException e) {
@@ -91,6 +113,8 @@ public class XAnnotatedObject {
                 throw (RuntimeException) e.getCause();
             }
             throw new IllegalArgumentException(e);
+        } catch (Throwable t) {
+            throw new IllegalArgumentException(t);
         }
         ctx.push(ob);
 
@@ -21,18 +21,51 @@
 
 package org.nuxeo.common.xmap;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 
 /**
+ * Accessor of an annotated field.
+ * <p>
+ * The field is accessed through method handles resolved once, falling back to reflection if the field cannot be
+ * written through a method handle.
+ *
  * @author <a href="mailto:bs@nuxeo.com">Bogdan Stefanescu</a>
  */
 public class XFieldAccessor implements XAccessor {
 
+    protected static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    protected static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
     private final Field field;
 
+    private final MethodHandle setter;
+
+    private final MethodHandle getter;
+
+    // the field type, boxed if primitive
+    private final Class<?> valueType;
+
     public XFieldAccessor(Field field) {
         this.field = field;
         this.field.setAccessible(true);
+        valueType = MethodType.methodType(field.getType()).wrap().returnType();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        MethodHandle set;
+        MethodHandle get;
+        try {
+            set = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+            get = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            // final field
+            set = null;
+            get = null;
+        }
+        setter = set;
+        getter = get;
     }
 
     public Class getType() {
@@ -40,18 +73,55 @@ public class XFieldAccessor implements XAccessor {
     }
 
     public void setValue(Object instance, Object value) {
+        if (setter == null) {
+            try {
+                field.set(instance, value);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+            return;
+        }
+        checkValue(field.getType(), valueType, value);
         try {
-            field.set(instance, value);
-        } catch (IllegalAccessException e) {
-            throw new IllegalArgumentException(e);
+            setter.invokeExact(instance, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException(t);
         }
     }
 
     public Object getValue(Object instance) {
+        if (getter == null) {
+            try {
+                return field.get(instance);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
         try {
-            return field.get(instance);
-        } catch (IllegalAccessException e) {
-            throw new IllegalArgumentException(e);
+            return (Object) getter.invokeExact(instance);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException(t);
+        }
+    }
+
+    /**
+     * Checks that the value can be assigned to the given type, failing like reflection does instead of the
+     * {@link ClassCastException} or {@link NullPointerException} of a method handle.
+     *
+     * @since 10.1
+     */
+    protected static void checkValue(Class<?> type, Class<?> valueType, Object value) {
+        if (value == null) {
+            if (type.isPrimitive()) {
+                throw new IllegalArgumentException("Cannot set null to a " + type.getName());
+            }
+        } else if (!valueType.isInstance(value)) {
+            throw new IllegalArgumentException(
+                    "Cannot set a " + value.getClass().getName() + " to a " + type.getName());
         }
     }
 
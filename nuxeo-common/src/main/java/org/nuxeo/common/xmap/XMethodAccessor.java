@@ -21,16 +21,28 @@
 
 package org.nuxeo.common.xmap;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 
 /**
+ * Accessor of an annotated setter method.
+ * <p>
+ * The setter is invoked through a method handle resolved once.
+ *
  * @author <a href="mailto:bs@nuxeo.com">Bogdan Stefanescu</a>
  */
 public class XMethodAccessor implements XAccessor {
 
     private final Method setter;
 
+    private final MethodHandle setterHandle;
+
+    // the parameter type, boxed if primitive
+    private final Class<?> valueType;
+
     private final Class klass;
 
     Method getter;
@@ -38,6 +50,12 @@ public class XMethodAccessor implements XAccessor {
     public XMethodAccessor(Method method, Class klass) {
         setter = method;
         setter.setAccessible(true);
+        try {
+            setterHandle = MethodHandles.lookup().unreflect(setter).asType(XFieldAccessor.SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+        valueType = MethodType.methodType(getType()).wrap().returnType();
         //
         this.klass = klass;
     }
@@ -47,15 +65,13 @@ public class XMethodAccessor implements XAccessor {
     }
 
     public void setValue(Object instance, Object value) {
+        XFieldAccessor.checkValue(getType(), valueType, value);
         try {
-            setter.invoke(instance, value);
-        } catch (IllegalAccessException e) {
-            throw new IllegalArgumentException(e);
-        } catch (InvocationTargetException e) {
-            if (e.getCause() instanceof RuntimeException) {
-                throw (RuntimeException) e.getCause();
-            }
-            throw new IllegalArgumentException(e);
+            setterHandle.invokeExact(instance, value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalArgumentException(t);
         }
     }
 
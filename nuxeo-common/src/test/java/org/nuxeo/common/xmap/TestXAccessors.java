@@ -0,0 +1,104 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.common.xmap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestXAccessors {
+
+    @SuppressWarnings("unused")
+    private static class Bean {
+
+        private int count;
+
+        private final String name = "default";
+
+        private String label;
+
+        private void setLabel(String label) {
+            if ("bad".equals(label)) {
+                throw new IllegalStateException("bad label");
+            }
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    @Test
+    public void testFieldAccessor() throws Exception {
+        Bean bean = new Bean();
+        XFieldAccessor accessor = new XFieldAccessor(Bean.class.getDeclaredField("count"));
+        accessor.setValue(bean, Integer.valueOf(3));
+        assertEquals(3, bean.count);
+        assertEquals(Integer.valueOf(3), accessor.getValue(bean));
+        try {
+            accessor.setValue(bean, "foo");
+            fail();
+        } catch (IllegalArgumentException e) {
+            // like reflection
+        }
+        try {
+            accessor.setValue(bean, null);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // like reflection
+        }
+    }
+
+    @Test
+    public void testFinalFieldAccessor() throws Exception {
+        Bean bean = new Bean();
+        XFieldAccessor accessor = new XFieldAccessor(Bean.class.getDeclaredField("name"));
+        accessor.setValue(bean, "foo");
+        assertEquals("foo", accessor.getValue(bean));
+    }
+
+    @Test
+    public void testMethodAccessor() throws Exception {
+        Bean bean = new Bean();
+        XMethodAccessor accessor = new XMethodAccessor(Bean.class.getDeclaredMethod("setLabel", String.class),
+                Bean.class);
+        accessor.setValue(bean, "foo");
+        assertEquals("foo", bean.label);
+        assertEquals("foo", accessor.getValue(bean));
+        try {
+            accessor.setValue(bean, "bad");
+            fail();
+        } catch (IllegalStateException e) {
+            // the setter exception is not wrapped
+            assertEquals("bad label", e.getMessage());
+        }
+        try {
+            accessor.setValue(bean, Integer.valueOf(1));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // like reflection
+        }
+    }
+
+}
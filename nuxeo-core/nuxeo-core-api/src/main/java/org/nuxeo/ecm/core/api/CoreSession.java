@@ -23,6 +23,7 @@ import java.io.Serializable;
 import java.security.Principal;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
@@ -210,6 +211,22 @@ public interface CoreSession {
     Collection<String> filterGrantedPermissions(Principal principal, DocumentRef docRef,
             Collection<String> permissions);
 
+    /**
+     * Filters the supplied permissions based on whether they are granted to a given principal, for each of the referred
+     * documents.
+     *
+     * @return the granted permissions for each document, in the order of the given references
+     * @since 10.1
+     */
+    default Map<DocumentRef, Collection<String>> filterGrantedPermissions(Principal principal,
+            List<DocumentRef> docRefs, Collection<String> permissions) {
+        Map<DocumentRef, Collection<String>> result = new LinkedHashMap<>();
+        for (DocumentRef docRef : docRefs) {
+            result.put(docRef, filterGrantedPermissions(principal, docRef, permissions));
+        }
+        return result;
+    }
+
     /**
      * Gets the root document of this repository.
      *
@@ -0,0 +1,156 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.api.impl;
+
+import java.io.Closeable;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelIterator;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.api.IterableQueryResult;
+
+/**
+ * Iterator over the documents matching a query, loaded lazily batch by batch.
+ * <p>
+ * Only the ids of the matching documents are iterated through a cursor, the documents themselves are loaded by batches
+ * of the given size, so the memory used doesn't depend on the number of results. The iterator must be closed if it is
+ * not iterated to its end.
+ *
+ * @since 10.1
+ */
+public class DocumentModelQueryIterator implements DocumentModelIterator, Closeable {
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    protected static final Pattern SELECT_ALL = Pattern.compile("^\\s*SELECT\\s+\\*\\s+FROM\\s",
+            Pattern.CASE_INSENSITIVE);
+
+    protected static final String ID = "ecm:uuid";
+
+    protected final CoreSession session;
+
+    protected final String query;
+
+    protected final Object[] params;
+
+    protected final int batchSize;
+
+    protected IterableQueryResult result;
+
+    protected Iterator<Map<String, Serializable>> ids;
+
+    protected Iterator<DocumentModel> batch;
+
+    protected boolean done;
+
+    /**
+     * @param session the session
+     * @param query a NXQL document query, {@code SELECT * FROM ...}
+     * @param batchSize the number of documents loaded at once
+     * @param params optional query parameters
+     */
+    public DocumentModelQueryIterator(CoreSession session, String query, int batchSize, Object... params) {
+        Matcher m = SELECT_ALL.matcher(query);
+        if (!m.find()) {
+            throw new IllegalArgumentException("Not a document query: " + query);
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+        }
+        this.session = session;
+        this.query = "SELECT " + ID + " FROM " + query.substring(m.end());
+        this.params = params;
+        this.batchSize = batchSize;
+    }
+
+    public DocumentModelQueryIterator(CoreSession session, String query) {
+        this(session, query, DEFAULT_BATCH_SIZE);
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (batch == null || !batch.hasNext()) {
+            if (done) {
+                return false;
+            }
+            batch = fetchBatch().iterator();
+        }
+        return true;
+    }
+
+    protected List<DocumentModel> fetchBatch() {
+        if (result == null) {
+            result = session.queryAndFetch(query, "NXQL", params);
+            ids = result.iterator();
+        }
+        List<DocumentRef> refs = new ArrayList<>(batchSize);
+        while (refs.size() < batchSize && ids.hasNext()) {
+            refs.add(new IdRef((String) ids.next().get(ID)));
+        }
+        if (!ids.hasNext()) {
+            // release the cursor as soon as possible
+            close();
+        }
+        if (refs.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return session.getDocuments(refs.toArray(new DocumentRef[refs.size()]));
+    }
+
+    @Override
+    public DocumentModel next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return batch.next();
+    }
+
+    @Override
+    public long size() {
+        return UNKNOWN_SIZE;
+    }
+
+    @Override
+    public Iterator<DocumentModel> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        done = true;
+        batch = null;
+        if (result != null) {
+            result.close();
+            result = null;
+            ids = null;
+        }
+    }
+
+}
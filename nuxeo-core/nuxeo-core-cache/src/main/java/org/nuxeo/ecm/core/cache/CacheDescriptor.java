@@ -56,6 +56,20 @@ public class CacheDescriptor {
     /** @since 9.3 */
     public static final String OPTION_CONCURRENCY_LEVEL = "concurrencyLevel";
 
+    /**
+     * Maximum memory in bytes used by a cache bounded by weight.
+     *
+     * @since 10.1
+     */
+    public static final String OPTION_MAX_BYTES = "maxBytes";
+
+    /**
+     * Size in bytes of the blocks used to store the values of an off-heap cache.
+     *
+     * @since 10.1
+     */
+    public static final String OPTION_BLOCK_SIZE = "blockSize";
+
     @XNode("@name")
     public String name;
 
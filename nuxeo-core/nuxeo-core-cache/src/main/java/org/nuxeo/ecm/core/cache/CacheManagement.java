@@ -70,4 +70,24 @@ public interface CacheManagement extends Cache {
      */
     void invalidateLocalAll();
 
+    /**
+     * Returns the memory used by this cache in bytes, or {@code -1} if unknown.
+     *
+     * @return the memory used in bytes, or {@code -1}
+     * @since 10.1
+     */
+    default long getSizeInBytes() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of entries evicted from this cache to respect its bounds, or {@code -1} if unknown.
+     *
+     * @return the number of evictions, or {@code -1}
+     * @since 10.1
+     */
+    default long getEvictionCount() {
+        return -1;
+    }
+
 }
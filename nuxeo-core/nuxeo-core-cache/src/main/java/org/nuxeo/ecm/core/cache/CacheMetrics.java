@@ -44,6 +44,12 @@ public class CacheMetrics extends CacheWrapper {
 
     protected Gauge<Long> size;
 
+    /** @since 10.1 */
+    protected Gauge<Long> sizeInBytes;
+
+    /** @since 10.1 */
+    protected Gauge<Long> evictions;
+
     protected final String READ_HIT_NAME = nameOf("read-hit-counter");
 
     protected final String READ_HIT_RATIO_NAME = nameOf("read-hit-ratio");
@@ -58,6 +64,12 @@ public class CacheMetrics extends CacheWrapper {
 
     protected final String SIZE_NAME = nameOf("size");
 
+    /** @since 10.1 */
+    protected final String SIZE_IN_BYTES_NAME = nameOf("size-in-bytes");
+
+    /** @since 10.1 */
+    protected final String EVICTION_NAME = nameOf("eviction-counter");
+
     protected String nameOf(String name) {
         return MetricRegistry.name("nuxeo", "cache", getName(), name);
     }
@@ -89,6 +101,11 @@ public class CacheMetrics extends CacheWrapper {
                 return Long.valueOf(getSize());
             }
         });
+        // only for caches bounded by weight
+        if (getSizeInBytes() >= 0) {
+            registry.register(SIZE_IN_BYTES_NAME, sizeInBytes = () -> Long.valueOf(getSizeInBytes()));
+            registry.register(EVICTION_NAME, evictions = () -> Long.valueOf(getEvictionCount()));
+        }
     }
 
     @Override
@@ -100,6 +117,8 @@ public class CacheMetrics extends CacheWrapper {
         registry.remove(WRITE_NAME);
         registry.remove(INVALIDATE_ALL_NAME);
         registry.remove(SIZE_NAME);
+        registry.remove(SIZE_IN_BYTES_NAME);
+        registry.remove(EVICTION_NAME);
     }
 
     @Override
@@ -95,6 +95,16 @@ public class CacheWrapper implements CacheManagement {
         return cache.getSize();
     }
 
+    @Override
+    public long getSizeInBytes() {
+        return cache.getSizeInBytes();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return cache.getEvictionCount();
+    }
+
     @Override
     public String toString() {
         return getClass().getSimpleName() + "(" + cache + ")";
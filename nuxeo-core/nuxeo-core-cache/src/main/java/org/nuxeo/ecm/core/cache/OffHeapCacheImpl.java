@@ -0,0 +1,420 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_BLOCK_SIZE;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_CONCURRENCY_LEVEL;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_MAX_BYTES;
+import static org.nuxeo.ecm.core.cache.CacheDescriptor.OPTION_MAX_SIZE;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.SerializationException;
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+
+/**
+ * Cache implementation storing the serialized values outside of the Java heap, to keep large caches from increasing
+ * the garbage collection pauses.
+ * <p>
+ * The cache is split into segments, each one owning a direct {@link ByteBuffer} arena divided into fixed-size blocks.
+ * A value is stored in as many blocks as needed, only the keys and the block indexes are kept on the heap. When a
+ * segment has not enough free blocks, the least recently used entries are evicted. The arenas are freed when the
+ * cache is stopped.
+ * <p>
+ * Options:
+ * <ul>
+ * <li>{@value CacheDescriptor#OPTION_MAX_BYTES}: the off-heap memory used by the cache, in bytes</li>
+ * <li>{@value CacheDescriptor#OPTION_BLOCK_SIZE}: the size of a block, in bytes</li>
+ * <li>{@value CacheDescriptor#OPTION_CONCURRENCY_LEVEL}: the number of segments</li>
+ * <li>{@value CacheDescriptor#OPTION_MAX_SIZE}: the maximum number of entries (optional)</li>
+ * </ul>
+ *
+ * @since 10.1
+ */
+public class OffHeapCacheImpl extends AbstractCache {
+
+    private static final Log log = LogFactory.getLog(OffHeapCacheImpl.class);
+
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    protected final Segment[] segments;
+
+    protected final long ttlMillis;
+
+    protected final AtomicLong evictions = new AtomicLong();
+
+    public OffHeapCacheImpl(CacheDescriptor desc) {
+        super(desc);
+        Map<String, String> options = desc.options;
+        long maxBytes = getLongOption(options, OPTION_MAX_BYTES, DEFAULT_MAX_BYTES);
+        int blockSize = (int) getLongOption(options, OPTION_BLOCK_SIZE, DEFAULT_BLOCK_SIZE);
+        int nbSegments = (int) getLongOption(options, OPTION_CONCURRENCY_LEVEL, DEFAULT_SEGMENTS);
+        long maxSize = getLongOption(options, OPTION_MAX_SIZE, -1);
+        if (maxBytes <= 0 || blockSize <= 0 || nbSegments <= 0) {
+            throw new NuxeoException("Invalid options for cache: " + name + ": " + options);
+        }
+        long blocksPerSegment = maxBytes / nbSegments / blockSize;
+        if (blocksPerSegment * blockSize > Integer.MAX_VALUE) {
+            throw new NuxeoException("Segment too large for cache: " + name + ", increase the option: "
+                    + OPTION_CONCURRENCY_LEVEL);
+        }
+        int maxEntriesPerSegment = maxSize < 0 ? Integer.MAX_VALUE : (int) ((maxSize + nbSegments - 1) / nbSegments);
+        segments = new Segment[nbSegments];
+        for (int i = 0; i < nbSegments; i++) {
+            segments[i] = new Segment((int) blocksPerSegment, blockSize, maxEntriesPerSegment);
+        }
+        ttlMillis = TimeUnit.MINUTES.toMillis(desc.getTTL());
+    }
+
+    protected static long getLongOption(Map<String, String> options, String option, long defaultValue) {
+        String value = options.get(option);
+        return value == null ? defaultValue : Long.parseLong(value);
+    }
+
+    protected Segment getSegment(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & Integer.MAX_VALUE) % segments.length];
+    }
+
+    @Override
+    public Serializable get(String key) {
+        if (key == null) {
+            return null;
+        }
+        byte[] bytes = getSegment(key).get(key, System.currentTimeMillis());
+        if (bytes == null) {
+            return null;
+        }
+        try {
+            return SerializationUtils.deserialize(bytes);
+        } catch (SerializationException e) {
+            log.error(String.format("Cannot deserialize value for key '%s' in the cache '%s'", key, name), e);
+            return null;
+        }
+    }
+
+    @Override
+    public Set<String> keySet() {
+        Set<String> keys = new HashSet<>();
+        long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            segment.collectKeys(keys, now);
+        }
+        return keys;
+    }
+
+    @Override
+    public void invalidate(String key) {
+        invalidateLocal(key);
+    }
+
+    @Override
+    public void invalidateLocal(String key) {
+        if (key != null) {
+            getSegment(key).remove(key);
+        } else {
+            log.warn(String.format("Can't invalidate a null key for the cache '%s'!", name));
+        }
+    }
+
+    @Override
+    public void invalidateAll() {
+        invalidateLocalAll();
+    }
+
+    @Override
+    public void invalidateLocalAll() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    @Override
+    public void put(String key, Serializable value) {
+        putLocal(key, value);
+    }
+
+    @Override
+    public void putLocal(String key, Serializable value) {
+        if (key == null || value == null) {
+            log.warn(String.format("Can't put a null key nor a null value in the cache '%s'!", name));
+            return;
+        }
+        byte[] bytes = SerializationUtils.serialize(value);
+        Segment segment = getSegment(key);
+        if (!segment.put(key, bytes, System.currentTimeMillis() + ttlMillis)) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Value too large (%d bytes) for key '%s' in the cache '%s'", bytes.length, key,
+                        name));
+            }
+        }
+    }
+
+    @Override
+    public boolean hasEntry(String key) {
+        return key != null && getSegment(key).contains(key, System.currentTimeMillis());
+    }
+
+    @Override
+    public long getSize() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getSizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.usedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public void stop() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * Frees the native memory of a direct buffer right away instead of waiting for the buffer to be garbage collected,
+     * the buffer must not be used afterwards.
+     * <p>
+     * The JDK cleaner is reached through reflection: {@code sun.misc.Unsafe.invokeCleaner} since Java 9,
+     * {@code DirectBuffer.cleaner} before.
+     */
+    protected static void free(ByteBuffer buffer) {
+        if (!buffer.isDirect()) {
+            return;
+        }
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException e) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    Method clean = cleaner.getClass().getMethod("clean");
+                    clean.setAccessible(true);
+                    clean.invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.warn("Cannot free off-heap memory, it will be freed by the garbage collector", e);
+        }
+    }
+
+    protected static class Entry {
+
+        protected final int[] blocks;
+
+        protected final int length;
+
+        protected final long expiration;
+
+        protected Entry(int[] blocks, int length, long expiration) {
+            this.blocks = blocks;
+            this.length = length;
+            this.expiration = expiration;
+        }
+    }
+
+    /**
+     * A part of the cache with its own arena and LRU order, all accesses are synchronized on the segment.
+     */
+    protected class Segment {
+
+        protected final ByteBuffer arena;
+
+        protected final int blockSize;
+
+        protected final int maxEntries;
+
+        protected final int[] freeBlocks;
+
+        protected int freeCount;
+
+        /** Set once the arena has been freed. */
+        protected boolean closed;
+
+        protected final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected Segment(int nbBlocks, int blockSize, int maxEntries) {
+            this.blockSize = blockSize;
+            this.maxEntries = maxEntries;
+            arena = ByteBuffer.allocateDirect(nbBlocks * blockSize);
+            freeBlocks = new int[nbBlocks];
+            for (int i = 0; i < nbBlocks; i++) {
+                freeBlocks[i] = nbBlocks - 1 - i;
+            }
+            freeCount = nbBlocks;
+        }
+
+        protected synchronized byte[] get(String key, long now) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiration <= now) {
+                removeEntry(key);
+                return null;
+            }
+            byte[] bytes = new byte[entry.length];
+            ByteBuffer buf = arena.duplicate();
+            int offset = 0;
+            for (int block : entry.blocks) {
+                int len = Math.min(blockSize, entry.length - offset);
+                buf.limit(block * blockSize + len).position(block * blockSize);
+                buf.get(bytes, offset, len);
+                offset += len;
+            }
+            return bytes;
+        }
+
+        protected synchronized boolean contains(String key, long now) {
+            Entry entry = entries.get(key);
+            return entry != null && entry.expiration > now;
+        }
+
+        /**
+         * @return {@code false} if the value is too large to fit in the segment
+         */
+        protected synchronized boolean put(String key, byte[] bytes, long expiration) {
+            if (closed) {
+                return false;
+            }
+            removeEntry(key);
+            int needed = (bytes.length + blockSize - 1) / blockSize;
+            if (needed > freeBlocks.length || maxEntries == 0) {
+                return false;
+            }
+            Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+            while ((freeCount < needed || entries.size() >= maxEntries) && it.hasNext()) {
+                Entry eldest = it.next().getValue();
+                it.remove();
+                release(eldest);
+                evictions.incrementAndGet();
+            }
+            int[] blocks = new int[needed];
+            ByteBuffer buf = arena.duplicate();
+            int offset = 0;
+            for (int i = 0; i < needed; i++) {
+                int block = freeBlocks[--freeCount];
+                blocks[i] = block;
+                int len = Math.min(blockSize, bytes.length - offset);
+                buf.limit(block * blockSize + len).position(block * blockSize);
+                buf.put(bytes, offset, len);
+                offset += len;
+            }
+            entries.put(key, new Entry(blocks, bytes.length, expiration));
+            return true;
+        }
+
+        protected synchronized void remove(String key) {
+            removeEntry(key);
+        }
+
+        protected void removeEntry(String key) {
+            Entry entry = entries.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+        }
+
+        protected void release(Entry entry) {
+            for (int block : entry.blocks) {
+                freeBlocks[freeCount++] = block;
+            }
+        }
+
+        protected synchronized void collectKeys(Set<String> keys, long now) {
+            for (Map.Entry<String, Entry> en : entries.entrySet()) {
+                if (en.getValue().expiration > now) {
+                    keys.add(en.getKey());
+                }
+            }
+        }
+
+        protected synchronized void clear() {
+            entries.clear();
+            freeCount = freeBlocks.length;
+            for (int i = 0; i < freeCount; i++) {
+                freeBlocks[i] = freeCount - 1 - i;
+            }
+        }
+
+        /**
+         * Clears the segment and frees its arena, nothing is stored in the segment afterwards.
+         */
+        protected synchronized void close() {
+            if (closed) {
+                return;
+            }
+            clear();
+            closed = true;
+            free(arena);
+        }
+
+        protected synchronized int size() {
+            return entries.size();
+        }
+
+        protected synchronized long usedBytes() {
+            return (long) (freeBlocks.length - freeCount) * blockSize;
+        }
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.test.runner.SimpleFeature;
+
+import com.google.inject.Binder;
+
+/**
+ * @since 10.1
+ */
+@Features(CacheFeature.class)
+@LocalDeploy("org.nuxeo.ecm.core.cache:offheap-cache-config.xml")
+public class OffHeapCacheFeature extends SimpleFeature {
+
+    public static final String MAXBYTES_TEST_CACHE_NAME = "maxbytes-test-cache";
+
+    @Override
+    public void configure(FeaturesRunner runner, Binder binder) {
+        runner.getFeature(CacheFeature.class).bindCache(binder, MAXBYTES_TEST_CACHE_NAME);
+    }
+
+}
@@ -0,0 +1,123 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ CacheFeature.class, OffHeapCacheFeature.class })
+public class TestOffHeapCacheService {
+
+    @Inject
+    @Named(CacheFeature.DEFAULT_TEST_CACHE_NAME)
+    Cache defaultCache;
+
+    @Inject
+    @Named(OffHeapCacheFeature.MAXBYTES_TEST_CACHE_NAME)
+    Cache maxBytesCache;
+
+    @Test
+    public void getOffHeapCache() {
+        OffHeapCacheImpl offHeapCache = CacheFeature.unwrapImpl(OffHeapCacheImpl.class, defaultCache);
+        assertNotNull(offHeapCache);
+    }
+
+    @Test
+    public void complexValue() {
+        HashMap<String, Object> value = new HashMap<>();
+        value.put("foo", "bar");
+        value.put("long", StringUtils.repeat('x', 10000));
+        defaultCache.put("complex", value);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cached = (Map<String, Object>) defaultCache.get("complex");
+        assertEquals(value, cached);
+    }
+
+    @Test
+    public void maxBytesExceeded() {
+        OffHeapCacheImpl impl = CacheFeature.unwrapImpl(OffHeapCacheImpl.class, maxBytesCache);
+        // each value uses 8 blocks of 128 bytes, the cache holds 32 blocks
+        String big = StringUtils.repeat('x', 900);
+        for (int i = 0; i < 6; i++) {
+            maxBytesCache.put("key" + i, big + i);
+        }
+        assertEquals(4, impl.getSize());
+        assertEquals(4096, impl.getSizeInBytes());
+        assertEquals(2, impl.getEvictionCount());
+        // least recently used entries are evicted first
+        assertNull(maxBytesCache.get("key0"));
+        assertNull(maxBytesCache.get("key1"));
+        assertEquals(big + 5, maxBytesCache.get("key5"));
+
+        // recently read entries are kept
+        assertNotNull(maxBytesCache.get("key2"));
+        maxBytesCache.put("key6", big + 6);
+        assertNotNull(maxBytesCache.get("key2"));
+        assertNull(maxBytesCache.get("key3"));
+
+        // too large values are not cached
+        maxBytesCache.put("huge", StringUtils.repeat('x', 5000));
+        assertNull(maxBytesCache.get("huge"));
+
+        maxBytesCache.invalidateAll();
+        assertEquals(0, impl.getSize());
+        assertEquals(0, impl.getSizeInBytes());
+        assertTrue(maxBytesCache.keySet().isEmpty());
+    }
+
+    @Test
+    public void stopFreesArenas() {
+        CacheDescriptor desc = new CacheDescriptor();
+        desc.name = "stopped";
+        desc.options.put(CacheDescriptor.OPTION_MAX_BYTES, "4096");
+        desc.options.put(CacheDescriptor.OPTION_CONCURRENCY_LEVEL, "2");
+        OffHeapCacheImpl cache = new OffHeapCacheImpl(desc);
+        cache.put("key", "value");
+        assertEquals("value", cache.get("key"));
+        cache.stop();
+        for (OffHeapCacheImpl.Segment segment : cache.segments) {
+            assertTrue(segment.closed);
+        }
+        // nothing is stored once the arenas are freed
+        assertNull(cache.get("key"));
+        cache.put("key", "value");
+        assertFalse(cache.hasEntry("key"));
+        assertEquals(0, cache.getSize());
+    }
+
+}
@@ -22,33 +22,65 @@ package org.nuxeo.ecm.core.convert.cache;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.nuxeo.common.utils.Path;
+import org.nuxeo.ecm.core.api.Blob;
 import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.convert.api.ConversionException;
 import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.convert.service.ConversionServiceImpl;
+import org.nuxeo.ecm.core.transientstore.api.TransientStore;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
 
 /**
  * Manager for the cache system of the {@link ConversionService}.
+ * <p>
+ * Since 10.1 the entries are kept in a concurrent map, updates of a given key being serialized by a lock stripe.
+ * Concurrent conversions of the same key are run once, see {@link #convertOnce}. The results can also be shared by the
+ * cluster through a {@link TransientStore}.
  *
  * @author tiry
  */
 public class ConversionCacheHolder {
 
-    protected static final Map<String, ConversionCacheEntry> cache = new HashMap<>();
+    protected static final ConcurrentMap<String, ConversionCacheEntry> cache = new ConcurrentHashMap<>();
+
+    /** @since 10.1 */
+    protected static final int LOCK_STRIPES = 64;
+
+    /** @since 10.1 */
+    protected static final Object[] locks = new Object[LOCK_STRIPES];
 
-    protected static final ReentrantReadWriteLock cacheLock = new ReentrantReadWriteLock();
+    static {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    /** @since 10.1 */
+    protected static final ConcurrentMap<String, CompletableFuture<Void>> inFlight = new ConcurrentHashMap<>();
+
+    /** @since 10.1 */
+    protected static final String SHARED_KEY_PREFIX = "convert:";
 
     private static final Log log = LogFactory.getLog(ConversionCacheHolder.class);
 
@@ -58,6 +90,26 @@ public class ConversionCacheHolder {
 
     public static final AtomicLong CACHE_HITS = new AtomicLong();
 
+    protected static final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected static final Counter hitCount = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "hits"));
+
+    protected static final Counter missCount = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "misses"));
+
+    protected static final Counter sharedHitCount = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "shared-hits"));
+
+    protected static final Counter waitCount = registry.counter(
+            MetricRegistry.name("nuxeo", "conversion", "cache", "waits"));
+
+    static {
+        String name = MetricRegistry.name("nuxeo", "conversion", "cache", "in-flight");
+        registry.remove(name);
+        registry.register(name, (Gauge<Integer>) inFlight::size);
+    }
+
     // Utility class.
     private ConversionCacheHolder() {
     }
@@ -67,7 +119,20 @@ public class ConversionCacheHolder {
     }
 
     public static int getNbCacheEntries() {
-        return cache.keySet().size();
+        return cache.size();
+    }
+
+    /**
+     * Gets the number of conversions in progress.
+     *
+     * @since 10.1
+     */
+    public static int getNbInFlight() {
+        return inFlight.size();
+    }
+
+    protected static Object getLock(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % LOCK_STRIPES];
     }
 
     protected static List<String> getSubPathFromKey(String key) {
@@ -108,11 +173,8 @@ public class ConversionCacheHolder {
 
     public static void addToCache(String key, BlobHolder result) {
         Objects.requireNonNull(key);
-        cacheLock.writeLock().lock();
-        try {
+        synchronized (getLock(key)) {
             doAddToCache(key, result);
-        } finally {
-            cacheLock.writeLock().unlock();
         }
     }
 
@@ -132,30 +194,20 @@ public class ConversionCacheHolder {
     }
 
     public static void removeFromCache(String key) {
-        cacheLock.writeLock().lock();
-        try {
+        synchronized (getLock(key)) {
             doRemoveFromCache(key);
-        } finally {
-            cacheLock.writeLock().unlock();
         }
-
     }
 
     protected static void doRemoveFromCache(String key) {
-        if (cache.containsKey(key)) {
-            ConversionCacheEntry cce = cache.get(key);
+        ConversionCacheEntry cce = cache.remove(key);
+        if (cce != null) {
             cce.remove();
-            cache.remove(key);
         }
     }
 
     public static ConversionCacheEntry getCacheEntry(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetCacheEntry(key);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return doGetCacheEntry(key);
     }
 
     protected static ConversionCacheEntry doGetCacheEntry(String key) {
@@ -163,45 +215,142 @@ public class ConversionCacheHolder {
     }
 
     public static BlobHolder getFromCache(String key) {
-        cacheLock.readLock().lock();
-        try {
-            return doGetFromCache(key);
-        } finally {
-            cacheLock.readLock().unlock();
-        }
+        return doGetFromCache(key);
+    }
+
+    /**
+     * Gets a conversion result from the cache without counting a hit or a miss, for a lookup already counted, like the
+     * one repeated after waiting for a conversion run by another caller.
+     *
+     * @since 10.1
+     */
+    public static BlobHolder peekFromCache(String key) {
+        return doGetFromCache(key, false);
     }
 
     protected static BlobHolder doGetFromCache(String key) {
+        return doGetFromCache(key, true);
+    }
+
+    /**
+     * @since 10.1
+     */
+    protected static BlobHolder doGetFromCache(String key, boolean count) {
         ConversionCacheEntry cacheEntry = cache.get(key);
         if (cacheEntry != null) {
-            if (CACHE_HITS.incrementAndGet() < 0) {
-                // skip all negative values
-                CACHE_HITS.addAndGet(Long.MIN_VALUE); // back to 0
+            BlobHolder result;
+            try {
+                result = cacheEntry.restore();
+            } catch (RuntimeException e) {
+                // entry garbage collected while reading it
+                log.debug("Cannot restore cache entry: " + key, e);
+                result = null;
+            }
+            if (result != null) {
+                if (count) {
+                    if (CACHE_HITS.incrementAndGet() < 0) {
+                        // skip all negative values
+                        CACHE_HITS.addAndGet(Long.MIN_VALUE); // back to 0
+                    }
+                    hitCount.inc();
+                }
+                return result;
             }
-            return cacheEntry.restore();
+        }
+        if (count) {
+            missCount.inc();
         }
         return null;
     }
 
-    public static Set<String> getCacheKeys() {
-        cacheLock.readLock().lock();
+    /**
+     * Gets a conversion result stored in a transient store shared by the cluster.
+     *
+     * @return the result, or {@code null} if not found
+     * @since 10.1
+     */
+    public static BlobHolder getFromSharedCache(TransientStore store, String key) {
+        String sharedKey = getSharedKey(key);
+        if (!store.exists(sharedKey) || !store.isCompleted(sharedKey)) {
+            return null;
+        }
+        List<Blob> blobs = store.getBlobs(sharedKey);
+        if (blobs == null || blobs.isEmpty()) {
+            return null;
+        }
+        sharedHitCount.inc();
+        return new SimpleCachableBlobHolder(blobs);
+    }
+
+    /**
+     * Stores a conversion result in a transient store shared by the cluster.
+     *
+     * @since 10.1
+     */
+    public static void addToSharedCache(TransientStore store, String key, BlobHolder result) {
+        List<Blob> blobs = result.getBlobs();
+        if (blobs == null || blobs.isEmpty()) {
+            return;
+        }
+        String sharedKey = getSharedKey(key);
+        store.putBlobs(sharedKey, blobs);
+        store.setCompleted(sharedKey, true);
+    }
+
+    protected static String getSharedKey(String key) {
+        // keys contain the conversion parameters, keep them short
+        return SHARED_KEY_PREFIX + DigestUtils.md5Hex(key);
+    }
+
+    /**
+     * Runs a conversion, unless the same one is already in progress in which case its end is awaited instead.
+     * <p>
+     * The result of a conversion is only returned to the caller who ran it, the others get it from the cache: they
+     * have to run the conversion themselves if it was not cachable.
+     *
+     * @param key the cache key of the conversion
+     * @param conversion the conversion, expected to add its result to the cache
+     * @return the result of the conversion, or {@code null} if it was run by another caller
+     * @since 10.1
+     */
+    public static BlobHolder convertOnce(String key, Supplier<BlobHolder> conversion) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        CompletableFuture<Void> running = inFlight.putIfAbsent(key, future);
+        if (running != null) {
+            waitCount.inc();
+            try {
+                running.join();
+            } catch (CompletionException e) {
+                throw new ConversionException("Conversion failed: " + key, e.getCause());
+            }
+            return null;
+        }
         try {
-            return new HashSet<>(cache.keySet());
+            if (cache.containsKey(key)) {
+                // completed just before we registered ours
+                future.complete(null);
+                return null;
+            }
+            BlobHolder result = conversion.get();
+            future.complete(null);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
         } finally {
-            cacheLock.readLock().unlock();
+            inFlight.remove(key, future);
         }
     }
 
+    public static Set<String> getCacheKeys() {
+        return new HashSet<>(cache.keySet());
+    }
+
     /**
      * @since 6.0
      */
     public static void deleteCache() {
-        cacheLock.writeLock().lock();
-        try {
-            cache.clear();
-            new File(ConversionServiceImpl.getCacheBasePath()).delete();
-        } finally {
-            cacheLock.writeLock().unlock();
-        }
+        cache.clear();
+        new File(ConversionServiceImpl.getCacheBasePath()).delete();
     }
 }
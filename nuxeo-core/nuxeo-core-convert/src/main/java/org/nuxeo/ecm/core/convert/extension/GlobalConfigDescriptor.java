@@ -100,6 +100,19 @@ public class GlobalConfigDescriptor implements Serializable {
         return diskCacheSize == null ? DEFAULT_DISK_CACHE_IN_KB : diskCacheSize.intValue();
     }
 
+    /**
+     * The transient store in which the conversion results are shared by the cluster, none if {@code null}.
+     *
+     * @since 10.1
+     */
+    @XNode("sharedCacheStore")
+    protected String sharedCacheStore;
+
+    /** @since 10.1 */
+    public String getSharedCacheStore() {
+        return sharedCacheStore;
+    }
+
     public void update(GlobalConfigDescriptor other) {
         if (other.enableCache != null) {
             enableCache = other.enableCache;
@@ -113,6 +126,9 @@ public class GlobalConfigDescriptor implements Serializable {
         if (other.cachingDirectory != null) {
             cachingDirectory = other.cachingDirectory;
         }
+        if (other.sharedCacheStore != null) {
+            sharedCacheStore = other.sharedCacheStore;
+        }
     }
 
 }
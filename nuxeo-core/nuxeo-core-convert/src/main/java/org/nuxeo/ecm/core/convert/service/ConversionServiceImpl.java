@@ -59,6 +59,8 @@ import org.nuxeo.ecm.core.convert.extension.ConverterDescriptor;
 import org.nuxeo.ecm.core.convert.extension.ExternalConverter;
 import org.nuxeo.ecm.core.convert.extension.GlobalConfigDescriptor;
 import org.nuxeo.ecm.core.io.download.DownloadService;
+import org.nuxeo.ecm.core.transientstore.api.TransientStore;
+import org.nuxeo.ecm.core.transientstore.api.TransientStoreService;
 import org.nuxeo.ecm.core.transientstore.work.TransientStoreWork;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkManager;
@@ -314,28 +316,74 @@ public class ConversionServiceImpl extends DefaultComponent implements Conversio
 
         String cacheKey = CacheKeyGenerator.computeKey(converterName, blobHolder, parameters);
 
-        BlobHolder result = ConversionCacheHolder.getFromCache(cacheKey);
+        BlobHolder result = getFromCache(cacheKey, true);
 
+        if (result == null && config.isCacheEnabled()) {
+            // concurrent calls for the same key wait for the first one and read its result from the cache
+            Map<String, Serializable> params = parameters;
+            result = ConversionCacheHolder.convertOnce(cacheKey, () -> convertAndCache(desc, cacheKey, blobHolder,
+                    params));
+            if (result == null) {
+                // converted by another caller, the miss has already been counted
+                result = getFromCache(cacheKey, false);
+            }
+        }
         if (result == null) {
             Converter converter = desc.getConverterInstance();
             result = converter.convert(blobHolder, parameters);
+        }
+
+        if (result != null) {
+            updateResultBlobMimeType(result, desc);
+            updateResultBlobFileName(blobHolder, result);
+        }
+
+        return result;
+    }
 
-            if (config.isCacheEnabled()) {
-                ConversionCacheHolder.addToCache(cacheKey, result);
+    /**
+     * Gets a result from the local cache, or from the shared one if configured.
+     *
+     * @param count whether to count the lookup in the cache hits and misses
+     * @since 10.1
+     */
+    protected BlobHolder getFromCache(String cacheKey, boolean count) {
+        BlobHolder result = count ? ConversionCacheHolder.getFromCache(cacheKey)
+                : ConversionCacheHolder.peekFromCache(cacheKey);
+        if (result == null && config.isCacheEnabled()) {
+            TransientStore store = getSharedCacheStore();
+            if (store != null) {
+                result = ConversionCacheHolder.getFromSharedCache(store, cacheKey);
             }
-        } else {
+        }
+        if (result != null) {
             // we need to reset the filename if result came from cache because it's just a hash
             result.getBlob().setFilename(null);
         }
+        return result;
+    }
 
+    /**
+     * @since 10.1
+     */
+    protected BlobHolder convertAndCache(ConverterDescriptor desc, String cacheKey, BlobHolder blobHolder,
+            Map<String, Serializable> parameters) {
+        BlobHolder result = desc.getConverterInstance().convert(blobHolder, parameters);
         if (result != null) {
-            updateResultBlobMimeType(result, desc);
-            updateResultBlobFileName(blobHolder, result);
+            TransientStore store = getSharedCacheStore();
+            if (store != null) {
+                ConversionCacheHolder.addToSharedCache(store, cacheKey, result);
+            }
+            ConversionCacheHolder.addToCache(cacheKey, result);
         }
-
         return result;
     }
 
+    protected TransientStore getSharedCacheStore() {
+        String name = config.getSharedCacheStore();
+        return name == null ? null : Framework.getService(TransientStoreService.class).getStore(name);
+    }
+
     protected void updateResultBlobMimeType(BlobHolder resultBh, ConverterDescriptor desc) {
         Blob mainBlob = resultBh.getBlob();
         if (mainBlob == null) {
@@ -0,0 +1,154 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.convert.tests;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.Blobs;
+import org.nuxeo.ecm.core.api.blobholder.BlobHolder;
+import org.nuxeo.ecm.core.api.blobholder.SimpleBlobHolder;
+import org.nuxeo.ecm.core.convert.api.ConversionException;
+import org.nuxeo.ecm.core.convert.cache.ConversionCacheHolder;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * @since 10.1
+ */
+public class TestConvertOnce {
+
+    @Test
+    public void testConcurrentConversionsRunOnce() throws Exception {
+        int threads = 5;
+        AtomicInteger conversions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BlobHolder converted = new SimpleBlobHolder(Blobs.createBlob("converted"));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<BlobHolder>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> ConversionCacheHolder.convertOnce("once", () -> {
+                    conversions.incrementAndGet();
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return converted;
+                })));
+            }
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            // wait for the other calls to be blocked on the running conversion
+            Thread.sleep(500);
+            assertEquals(1, ConversionCacheHolder.getNbInFlight());
+            release.countDown();
+            int results = 0;
+            for (Future<BlobHolder> future : futures) {
+                BlobHolder result = future.get(10, TimeUnit.SECONDS);
+                if (result != null) {
+                    assertSame(converted, result);
+                    results++;
+                }
+            }
+            // the caller running the conversion gets its result, the others read it from the cache
+            assertEquals(1, results);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, conversions.get());
+        assertEquals(0, ConversionCacheHolder.getNbInFlight());
+    }
+
+    @Test
+    public void testFailureIsShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            try {
+                ConversionCacheHolder.convertOnce("failing", () -> {
+                    started.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    throw new ConversionException("boom");
+                });
+            } catch (ConversionException e) {
+                // expected
+            }
+        });
+        thread.start();
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            release.countDown();
+        });
+        releaser.start();
+        try {
+            ConversionCacheHolder.convertOnce("failing", () -> {
+                throw new AssertionError("should wait for the running conversion");
+            });
+            fail("should have failed");
+        } catch (ConversionException e) {
+            assertNotNull(e.getCause());
+            assertEquals("boom", e.getCause().getMessage());
+        }
+        thread.join();
+        releaser.join();
+        assertEquals(0, ConversionCacheHolder.getNbInFlight());
+    }
+
+    @Test
+    public void testPeekIsNotCounted() {
+        Counter misses = SharedMetricRegistries.getOrCreate(MetricsService.class.getName())
+                                               .counter(MetricRegistry.name("nuxeo", "conversion", "cache", "misses"));
+        long count = misses.getCount();
+        assertNull(ConversionCacheHolder.getFromCache("absent"));
+        assertEquals(count + 1, misses.getCount());
+        // lookup repeated after waiting for a conversion run by another caller
+        assertNull(ConversionCacheHolder.peekFromCache("absent"));
+        assertEquals(count + 1, misses.getCount());
+    }
+
+}
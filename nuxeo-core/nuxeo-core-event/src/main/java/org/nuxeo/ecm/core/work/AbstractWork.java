@@ -21,6 +21,9 @@ package org.nuxeo.ecm.core.work;
 import static org.nuxeo.ecm.core.api.event.CoreEventConstants.REPOSITORY_NAME;
 import static org.nuxeo.ecm.core.work.api.Work.Progress.PROGRESS_INDETERMINATE;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -155,6 +158,76 @@ public abstract class AbstractWork implements Work {
         callerThread = SequenceTracer.getThreadName();
     }
 
+    /**
+     * Writes the fields of this base class, for use by {@link org.nuxeo.ecm.core.work.api.CompactWork}
+     * implementations.
+     *
+     * @since 10.1
+     */
+    protected void writeWorkFields(DataOutput out) throws IOException {
+        WorkSerializer.writeString(out, id);
+        WorkSerializer.writeString(out, state == null ? null : state.name());
+        if (progress == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            out.writeFloat(progress.getPercent());
+            out.writeLong(progress.getCurrent());
+            out.writeLong(progress.getTotal());
+        }
+        WorkSerializer.writeString(out, repositoryName);
+        WorkSerializer.writeString(out, docId);
+        WorkSerializer.writeStringList(out, docIds);
+        out.writeBoolean(isTree);
+        WorkSerializer.writeString(out, originatingUsername);
+        WorkSerializer.writeString(out, status);
+        out.writeLong(schedulingTime);
+        out.writeLong(startTime);
+        out.writeLong(completionTime);
+        if (schedulePath == null) {
+            out.writeBoolean(false);
+        } else {
+            out.writeBoolean(true);
+            WorkSerializer.writeString(out, schedulePath.getParentPath());
+            WorkSerializer.writeString(out, schedulePath.getName());
+        }
+        WorkSerializer.writeString(out, callerThread);
+    }
+
+    /**
+     * Reads the fields of this base class written by {@link #writeWorkFields}.
+     *
+     * @since 10.1
+     */
+    protected void readWorkFields(DataInput in) throws IOException {
+        id = WorkSerializer.readString(in);
+        String stateName = WorkSerializer.readString(in);
+        state = stateName == null ? null : State.valueOf(stateName);
+        if (in.readBoolean()) {
+            float percent = in.readFloat();
+            long current = in.readLong();
+            long total = in.readLong();
+            progress = current == Progress.CURRENT_INDETERMINATE ? new Progress(percent) : new Progress(current, total);
+        } else {
+            progress = null;
+        }
+        repositoryName = WorkSerializer.readString(in);
+        docId = WorkSerializer.readString(in);
+        docIds = WorkSerializer.readStringList(in);
+        isTree = in.readBoolean();
+        originatingUsername = WorkSerializer.readString(in);
+        status = WorkSerializer.readString(in);
+        schedulingTime = in.readLong();
+        startTime = in.readLong();
+        completionTime = in.readLong();
+        if (in.readBoolean()) {
+            schedulePath = new WorkSchedulePath(WorkSerializer.readString(in), WorkSerializer.readString(in));
+        } else {
+            schedulePath = null;
+        }
+        callerThread = WorkSerializer.readString(in);
+    }
+
     public AbstractWork(String id) {
         this.id = id;
         progress = PROGRESS_INDETERMINATE;
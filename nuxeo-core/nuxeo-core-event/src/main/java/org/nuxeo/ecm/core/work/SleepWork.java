@@ -18,12 +18,17 @@
  */
 package org.nuxeo.ecm.core.work;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.nuxeo.ecm.core.work.api.CompactWork;
+
 /**
  * Simple work that just sleeps, mostly used for tests.
  */
-public class SleepWork extends AbstractWork {
+public class SleepWork extends AbstractWork implements CompactWork {
 
     private static final long serialVersionUID = 1L;
 
@@ -71,6 +76,35 @@ public class SleepWork extends AbstractWork {
         init(durationMillis, category, debug);
     }
 
+    /**
+     * Constructor used by {@link WorkSerializer}.
+     *
+     * @since 10.1
+     */
+    protected SleepWork() {
+        super(null);
+    }
+
+    @Override
+    public void writeFields(DataOutput out) throws IOException {
+        writeWorkFields(out);
+        out.writeLong(durationMillis);
+        WorkSerializer.writeString(out, category);
+        out.writeInt(count.get());
+        WorkSerializer.writeString(out, partitionKey);
+        out.writeBoolean(idempotent);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        readWorkFields(in);
+        durationMillis = in.readLong();
+        category = WorkSerializer.readString(in);
+        count.set(in.readInt());
+        partitionKey = WorkSerializer.readString(in);
+        idempotent = in.readBoolean();
+    }
+
     private void init(long durationMillis, String category, boolean debug) {
         this.durationMillis = durationMillis;
         this.category = category;
@@ -55,6 +55,7 @@ import org.nuxeo.lib.stream.log.LogAppender;
 import org.nuxeo.lib.stream.log.LogLag;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
 import org.nuxeo.runtime.metrics.NuxeoMetricSet;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentManager;
@@ -82,6 +83,26 @@ public class StreamWorkManager extends WorkManagerImpl {
 
     public static final int DEFAULT_CONCURRENCY = 4;
 
+    /**
+     * Enables the coalescing of pending works with the same id, see {@link WorkCoalescer}.
+     *
+     * @since 10.1
+     */
+    public static final String WORK_COALESCING_PROP = "nuxeo.stream.work.coalescing.enabled";
+
+    /**
+     * TTL in seconds of a pending work id used for coalescing.
+     *
+     * @since 10.1
+     */
+    public static final String WORK_COALESCING_TTL_PROP = "nuxeo.stream.work.coalescing.ttl";
+
+    /** @since 10.1 */
+    public static final String DEFAULT_WORK_COALESCING_TTL = "86400";
+
+    /** @since 10.1 */
+    public static final String WORK_COALESCING_KV_STORE = "work";
+
     protected Topology topology;
 
     protected Settings settings;
@@ -92,6 +113,9 @@ public class StreamWorkManager extends WorkManagerImpl {
 
     protected final Set<String> streamIds = new HashSet<>();
 
+    /** @since 10.1 */
+    protected WorkCoalescer coalescer;
+
     protected int getOverProvisioningFactor() {
         // Enable over provisioning only if the log can be distributed
         if (getLogManager().supportSubscribe()) {
@@ -113,7 +137,11 @@ public class StreamWorkManager extends WorkManagerImpl {
             return;
         }
         if (CANCEL_SCHEDULED.equals(scheduling)) {
-            log.warn("Canceling a work is not supported by this impl, skipping work: " + work);
+            if (coalescer == null) {
+                log.warn("Canceling a work is not supported by this impl without coalescing, skipping work: " + work);
+            } else if (!coalescer.cancel(queueId, work.getId()) && log.isDebugEnabled()) {
+                log.debug("No pending work to cancel: " + work.getId());
+            }
             return;
         }
         if (afterCommit && scheduleAfterCommit(work, scheduling)) {
@@ -126,9 +154,24 @@ public class StreamWorkManager extends WorkManagerImpl {
                     getStreamForCategory(work.getCategory())));
             return;
         }
+        if (coalescer != null && !coalescer.schedule(queueId, work)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Coalesced with pending work: " + work.getId());
+            }
+            return;
+        }
         String key = work.getPartitionKey();
-        appender.append(key, new Record(key, WorkComputation.serialize(work),
-                Watermark.ofTimestamp(System.currentTimeMillis()).getValue(), null));
+        boolean appended = false;
+        try {
+            appender.append(key, new Record(key, WorkComputation.serialize(work),
+                    Watermark.ofTimestamp(System.currentTimeMillis()).getValue(), null));
+            appended = true;
+        } finally {
+            if (!appended && coalescer != null) {
+                // the work is not in the stream, don't coalesce the next schedules with it
+                coalescer.unschedule(queueId, work);
+            }
+        }
     }
 
     protected String getStreamForCategory(String category) {
@@ -161,6 +204,7 @@ public class StreamWorkManager extends WorkManagerImpl {
             }
             supplantWorkManagerImpl();
             workQueueConfig.index();
+            initCoalescer();
             initTopology();
             this.logManager = getLogManager();
             this.streamProcessor = new LogStreamProcessor(logManager);
@@ -246,11 +290,28 @@ public class StreamWorkManager extends WorkManagerImpl {
         workQueueConfig.getQueueIds().forEach(id -> log.info("Registering : " + id));
     }
 
+    /**
+     * @since 10.1
+     */
+    protected void initCoalescer() {
+        if (!Boolean.parseBoolean(Framework.getProperty(WORK_COALESCING_PROP, "false"))) {
+            return;
+        }
+        KeyValueService kvService = Framework.getService(KeyValueService.class);
+        if (kvService == null) {
+            log.warn("Work coalescing disabled, no KeyValueService available");
+            return;
+        }
+        long ttl = Long.parseLong(Framework.getProperty(WORK_COALESCING_TTL_PROP, DEFAULT_WORK_COALESCING_TTL));
+        coalescer = new WorkCoalescer(kvService.getKeyValueStore(WORK_COALESCING_KV_STORE), ttl);
+        log.info("Work coalescing enabled");
+    }
+
     protected void initTopology() {
         // create a single topology with one root per work pool
         Topology.Builder builder = Topology.builder();
         workQueueConfig.getQueueIds().stream().filter(item -> workQueueConfig.get(item).isProcessingEnabled()).forEach(
-                item -> builder.addComputation(() -> new WorkComputation(item),
+                item -> builder.addComputation(() -> new WorkComputation(item, coalescer),
                         Collections.singletonList("i1:" + item)));
         this.topology = builder.build();
         this.settings = new Settings(DEFAULT_CONCURRENCY, getPartitions(DEFAULT_CONCURRENCY));
@@ -388,7 +449,8 @@ public class StreamWorkManager extends WorkManagerImpl {
             // give an approximation that can be higher that actual one because of the over provisioning
             running = min(lag.lag(), settings.getPartitions(queueId));
         }
-        return new WorkQueueMetrics(queueId, lag.lag(), running, lag.lower(), 0);
+        long canceled = coalescer == null ? 0 : coalescer.getCanceledCount(queueId);
+        return new WorkQueueMetrics(queueId, lag.lag(), running, lag.lower(), canceled);
     }
 
     @Override
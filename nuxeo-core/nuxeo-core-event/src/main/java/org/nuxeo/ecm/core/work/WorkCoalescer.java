@@ -0,0 +1,194 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.runtime.kv.KeyValueStore;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * Tracks the pending works of a {@link StreamWorkManager} in a {@link KeyValueStore}, so that a work scheduled while
+ * another work with the same id is still waiting in the stream is coalesced with it instead of being appended again.
+ * <p>
+ * Only idempotent works are coalesced: running the pending work once produces the same result as running each
+ * duplicate. Using a shared key/value store makes the coalescing effective across the cluster.
+ * <p>
+ * Pending works, idempotent or not, can also be canceled: the records stay in the stream but are skipped by the
+ * consumer. For each work id the store holds the number of pending records and the number of those to skip.
+ *
+ * @since 10.1
+ */
+public class WorkCoalescer {
+
+    public static final String KEY_PREFIX = "work:";
+
+    protected final KeyValueStore kvStore;
+
+    protected final long ttl;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    /**
+     * @param kvStore the store holding the pending work ids
+     * @param ttl the TTL in seconds of a pending work id, after which a duplicate is appended again
+     */
+    public WorkCoalescer(KeyValueStore kvStore, long ttl) {
+        this.kvStore = kvStore;
+        this.ttl = ttl;
+    }
+
+    protected String getKey(String workId) {
+        return KEY_PREFIX + workId;
+    }
+
+    /**
+     * Encodes the number of pending and canceled records of a work id, {@code null} when nothing is pending.
+     */
+    protected static String encode(long pending, long canceled) {
+        return pending <= 0 ? null : pending + ":" + canceled;
+    }
+
+    protected static long getPending(String state) {
+        return state == null ? 0 : Long.parseLong(state.substring(0, state.indexOf(':')));
+    }
+
+    protected static long getCanceled(String state) {
+        return state == null ? 0 : Long.parseLong(state.substring(state.indexOf(':') + 1));
+    }
+
+    protected boolean compareAndSet(String key, String expected, String value) {
+        if (value == null) {
+            return kvStore.compareAndSet(key, expected, null);
+        }
+        return kvStore.compareAndSet(key, expected, value, ttl);
+    }
+
+    /**
+     * Marks the work as pending.
+     * <p>
+     * If the work must be appended and the append fails, {@link #unschedule} must be called so that the work is not
+     * considered pending until the TTL expires.
+     *
+     * @return {@code true} if the work must be appended to the stream, or {@code false} if it has been coalesced with
+     *         an already pending work
+     */
+    public boolean schedule(String queueId, Work work) {
+        String key = getKey(work.getId());
+        for (;;) {
+            String state = kvStore.getString(key);
+            long pending = getPending(state);
+            long canceled = getCanceled(state);
+            if (!work.isIdempotent() || pending == 0) {
+                if (compareAndSet(key, state, encode(pending + 1, canceled))) {
+                    return true;
+                }
+            } else if (canceled == 0) {
+                if (compareAndSet(key, state, state)) {
+                    registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "coalesced")).inc();
+                    return false;
+                }
+            } else if (compareAndSet(key, state, encode(pending, canceled - 1))) {
+                // a canceled record is still in the stream, revive it
+                registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "coalesced")).inc();
+                return false;
+            }
+            // state changed concurrently, retry
+        }
+    }
+
+    /**
+     * Reverts a {@link #schedule} that returned {@code true}, when the work could not be appended to the stream.
+     */
+    public void unschedule(String queueId, Work work) {
+        String key = getKey(work.getId());
+        for (;;) {
+            String state = kvStore.getString(key);
+            if (state == null) {
+                return;
+            }
+            long pending = getPending(state) - 1;
+            if (compareAndSet(key, state, encode(pending, Math.min(getCanceled(state), pending)))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Cancels the pending records of a work.
+     *
+     * @return {@code true} if the work was pending and is now canceled
+     */
+    public boolean cancel(String queueId, String workId) {
+        String key = getKey(workId);
+        for (;;) {
+            String state = kvStore.getString(key);
+            long pending = getPending(state);
+            long canceled = getCanceled(state);
+            if (pending == canceled) {
+                // nothing pending or already canceled
+                return false;
+            }
+            if (compareAndSet(key, state, encode(pending, pending))) {
+                registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "canceled")).inc(pending - canceled);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Called by the consumer before running a work, the record is no longer pending so a new schedule of the same
+     * idempotent work is appended again.
+     *
+     * @return {@code true} if the work must be run, or {@code false} if it has been canceled
+     */
+    public boolean acquire(String queueId, Work work) {
+        String key = getKey(work.getId());
+        for (;;) {
+            String state = kvStore.getString(key);
+            if (state == null) {
+                // not scheduled through the coalescer or expired
+                return true;
+            }
+            long pending = getPending(state);
+            long canceled = getCanceled(state);
+            if (compareAndSet(key, state, encode(pending - 1, Math.max(canceled - 1, 0)))) {
+                return canceled == 0;
+            }
+            // canceled or revived concurrently, retry
+        }
+    }
+
+    /**
+     * Gets the number of works coalesced for a queue.
+     */
+    public long getCoalescedCount(String queueId) {
+        return registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "coalesced")).getCount();
+    }
+
+    /**
+     * Gets the number of works canceled for a queue.
+     */
+    public long getCanceledCount(String queueId) {
+        return registry.counter(MetricRegistry.name("nuxeo", "works", queueId, "canceled")).getCount();
+    }
+
+}
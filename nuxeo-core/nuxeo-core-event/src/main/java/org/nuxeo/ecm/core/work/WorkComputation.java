@@ -18,13 +18,6 @@
  */
 package org.nuxeo.ecm.core.work;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.collections.buffer.CircularFifoBuffer;
@@ -54,8 +47,19 @@ public class WorkComputation extends AbstractComputation {
 
     protected final Timer workTimer;
 
+    protected final WorkCoalescer coalescer;
+
     public WorkComputation(String name) {
+        this(name, null);
+    }
+
+    /**
+     * @param coalescer the coalescer tracking pending works, or {@code null} if coalescing is disabled
+     * @since 10.1
+     */
+    public WorkComputation(String name, WorkCoalescer coalescer) {
         super(name, 1, 0);
+        this.coalescer = coalescer;
         MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
         workTimer = registry.timer(MetricRegistry.name("nuxeo", "works", name, "total"));
     }
@@ -63,6 +67,13 @@ public class WorkComputation extends AbstractComputation {
     @Override
     public void processRecord(ComputationContext context, String inputStreamName, Record record) {
         Work work = deserialize(record.data);
+        if (coalescer != null && !coalescer.acquire(metadata.name(), work)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Canceled work id: " + work.getId() + " skipping");
+            }
+            context.askForCheckpoint();
+            return;
+        }
         try {
             if (work.isIdempotent() && workIds.contains(work.getId())) {
                 log.warn("Duplicate work id: " + work.getId() + " skipping");
@@ -81,43 +92,17 @@ public class WorkComputation extends AbstractComputation {
         }
     }
 
+    /**
+     * @see WorkSerializer#deserialize(byte[])
+     */
     public static Work deserialize(byte[] data) {
-        // TODO: switch to commons-lang3 SerializationUtils
-        ByteArrayInputStream bis = new ByteArrayInputStream(data);
-        ObjectInput in = null;
-        try {
-            in = new ObjectInputStream(bis);
-            return (Work) in.readObject();
-        } catch (IOException | ClassNotFoundException e) {
-            throw new RuntimeException(e);
-        } finally {
-            try {
-                if (in != null) {
-                    in.close();
-                }
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-        }
+        return WorkSerializer.deserialize(data);
     }
 
+    /**
+     * @see WorkSerializer#serialize(Work)
+     */
     public static byte[] serialize(Work work) {
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput out;
-        try {
-            out = new ObjectOutputStream(bos);
-            out.writeObject(work);
-            out.flush();
-            return bos.toByteArray();
-        } catch (IOException e) {
-            System.out.println("Error " + e.getMessage());
-            throw new RuntimeException(e);
-        } finally {
-            try {
-                bos.close();
-            } catch (IOException ex) {
-                // ignore close exception
-            }
-        }
+        return WorkSerializer.serialize(work);
     }
 }
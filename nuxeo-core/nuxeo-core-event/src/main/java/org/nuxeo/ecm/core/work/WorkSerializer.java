@@ -0,0 +1,298 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.work.api.CompactWork;
+import org.nuxeo.ecm.core.work.api.Work;
+
+/**
+ * Serializes {@link Work} instances to bytes.
+ * <p>
+ * Works implementing {@link CompactWork} are written in a compact binary format: a magic byte, a format version, a
+ * type tag identifying the class, then the fields written by the work itself. Classes can be registered with a
+ * numeric tag using {@link #registerTag}, otherwise the class name is written. The tag of a class must be the same on
+ * all the nodes sharing a stream.
+ * <p>
+ * Implementing {@link CompactWork} is the opt-in to the compact format, it is inherited by subclasses. The concrete
+ * class must also have a no-arg constructor, other works fall back to Java serialization. Deserialization detects the
+ * format from the first byte, so records written by previous versions can still be read.
+ *
+ * @since 10.1
+ */
+public class WorkSerializer {
+
+    /** First byte of a compact record, distinct from the first byte of a Java serialization stream (0xAC). */
+    protected static final byte MAGIC = (byte) 0x4E;
+
+    protected static final byte VERSION = 1;
+
+    /** Tag used when the class name follows. */
+    protected static final int NO_TAG = 0;
+
+    protected static final Map<Integer, Class<? extends CompactWork>> TAG_TO_CLASS = new ConcurrentHashMap<>();
+
+    protected static final Map<Class<? extends CompactWork>, Integer> CLASS_TO_TAG = new ConcurrentHashMap<>();
+
+    protected static final Map<String, Constructor<? extends CompactWork>> CONSTRUCTORS = new ConcurrentHashMap<>();
+
+    protected static final Map<Class<?>, Boolean> COMPACT_CLASSES = new ConcurrentHashMap<>();
+
+    static {
+        registerTag(1, SleepWork.class);
+    }
+
+    private WorkSerializer() {
+        // utility class
+    }
+
+    /**
+     * Registers a numeric tag for a compact work class, this avoids writing the class name in each record.
+     *
+     * @throws IllegalArgumentException if the tag is already used by another class
+     */
+    public static void registerTag(int tag, Class<? extends CompactWork> klass) {
+        if (tag <= NO_TAG) {
+            throw new IllegalArgumentException("Invalid tag: " + tag + " for " + klass.getName());
+        }
+        Class<? extends CompactWork> old = TAG_TO_CLASS.putIfAbsent(tag, klass);
+        if (old != null && old != klass) {
+            throw new IllegalArgumentException(
+                    "Tag: " + tag + " for " + klass.getName() + " already used by " + old.getName());
+        }
+        CLASS_TO_TAG.put(klass, tag);
+    }
+
+    public static byte[] serialize(Work work) {
+        if (isCompact(work)) {
+            return serializeCompact((CompactWork) work);
+        }
+        return serializeJava(work);
+    }
+
+    /**
+     * Checks if a work can be written in the compact format: it must implement {@link CompactWork} and its concrete
+     * class must have a no-arg constructor.
+     */
+    public static boolean isCompact(Work work) {
+        return work instanceof CompactWork
+                && COMPACT_CLASSES.computeIfAbsent(work.getClass(), WorkSerializer::hasNoArgConstructor).booleanValue();
+    }
+
+    protected static Boolean hasNoArgConstructor(Class<?> klass) {
+        try {
+            klass.getDeclaredConstructor();
+            return Boolean.TRUE;
+        } catch (NoSuchMethodException e) {
+            return Boolean.FALSE;
+        }
+    }
+
+    public static Work deserialize(byte[] data) {
+        if (data.length > 0 && data[0] == MAGIC) {
+            return deserializeCompact(data);
+        }
+        return deserializeJava(data);
+    }
+
+    protected static byte[] serializeCompact(CompactWork work) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bos)) {
+            out.writeByte(MAGIC);
+            out.writeByte(VERSION);
+            Integer tag = CLASS_TO_TAG.get(work.getClass());
+            if (tag == null) {
+                writeVarInt(out, NO_TAG);
+                writeString(out, work.getClass().getName());
+            } else {
+                writeVarInt(out, tag.intValue());
+            }
+            work.writeFields(out);
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot serialize work: " + work.getId(), e);
+        }
+    }
+
+    protected static Work deserializeCompact(byte[] data) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            in.readByte(); // magic
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new NuxeoException("Unsupported work format version: " + version);
+            }
+            int tag = readVarInt(in);
+            CompactWork work;
+            if (tag == NO_TAG) {
+                work = newInstance(readString(in));
+            } else {
+                Class<? extends CompactWork> klass = TAG_TO_CLASS.get(tag);
+                if (klass == null) {
+                    throw new NuxeoException("Unknown work tag: " + tag);
+                }
+                work = newInstance(klass.getName());
+            }
+            work.readFields(in);
+            return work;
+        } catch (IOException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected static CompactWork newInstance(String className) {
+        Constructor<? extends CompactWork> constructor = CONSTRUCTORS.computeIfAbsent(className,
+                WorkSerializer::getConstructor);
+        try {
+            return constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new NuxeoException("Cannot instantiate work: " + className, e);
+        }
+    }
+
+    protected static Constructor<? extends CompactWork> getConstructor(String className) {
+        try {
+            ClassLoader cl = Thread.currentThread().getContextClassLoader();
+            if (cl == null) {
+                cl = WorkSerializer.class.getClassLoader();
+            }
+            Class<? extends CompactWork> klass = Class.forName(className, true, cl).asSubclass(CompactWork.class);
+            Constructor<? extends CompactWork> constructor = klass.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | ClassCastException e) {
+            throw new NuxeoException("Invalid compact work class: " + className, e);
+        }
+    }
+
+    protected static Work deserializeJava(byte[] data) {
+        try (ObjectInput in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+            return (Work) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new NuxeoException(e);
+        }
+    }
+
+    protected static byte[] serializeJava(Work work) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutput out = new ObjectOutputStream(bos)) {
+            out.writeObject(work);
+            out.flush();
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new NuxeoException("Cannot serialize work: " + work.getId(), e);
+        }
+    }
+
+    // ----- helpers for CompactWork implementations -----
+
+    /**
+     * Writes a positive int using 1 to 5 bytes.
+     */
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift > 28) {
+                throw new IOException("Malformed varint");
+            }
+            b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * Writes a possibly {@code null} string of any length.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length + 1);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readVarInt(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Writes a possibly {@code null} list of strings.
+     */
+    public static void writeStringList(DataOutput out, List<String> values) throws IOException {
+        if (values == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, values.size() + 1);
+        for (String value : values) {
+            writeString(out, value);
+        }
+    }
+
+    public static List<String> readStringList(DataInput in) throws IOException {
+        int size = readVarInt(in);
+        if (size == 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(size - 1);
+        for (int i = 0; i < size - 1; i++) {
+            values.add(readString(in));
+        }
+        return values;
+    }
+
+}
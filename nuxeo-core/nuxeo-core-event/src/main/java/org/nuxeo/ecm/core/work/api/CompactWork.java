@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work.api;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * A {@link Work} that knows how to write its fields in a compact binary form, avoiding the overhead of Java
+ * serialization when works are stored in a stream.
+ * <p>
+ * The implementing class must have a no-arg constructor (it may be non public), it is used to create the instance
+ * before calling {@link #readFields}. Fields must be read in the same order they were written. Subclasses inherit the
+ * compact format: a subclass adding fields of its own must override both methods to write and read them after the
+ * parent ones.
+ * <p>
+ * Subclasses of {@link org.nuxeo.ecm.core.work.AbstractWork} should call
+ * {@link org.nuxeo.ecm.core.work.AbstractWork#writeWorkFields} and
+ * {@link org.nuxeo.ecm.core.work.AbstractWork#readWorkFields} first to handle the base fields.
+ *
+ * @see org.nuxeo.ecm.core.work.WorkSerializer
+ * @since 10.1
+ */
+public interface CompactWork extends Work {
+
+    /**
+     * Writes the work fields.
+     */
+    void writeFields(DataOutput out) throws IOException;
+
+    /**
+     * Reads the work fields, in the same order as they were written by {@link #writeFields}.
+     */
+    void readFields(DataInput in) throws IOException;
+
+}
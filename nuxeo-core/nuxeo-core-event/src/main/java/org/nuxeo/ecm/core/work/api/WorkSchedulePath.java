@@ -99,6 +99,24 @@ public class WorkSchedulePath implements Serializable {
         scheduleStackTrace = null;
     }
 
+    /**
+     * Recreates a path from its serialized parts, the schedule stack trace is not available.
+     *
+     * @since 10.1
+     */
+    public WorkSchedulePath(String parentPath, String name) {
+        this.parentPath = parentPath;
+        this.name = name;
+        scheduleStackTrace = null;
+    }
+
+    /**
+     * @since 10.1
+     */
+    public String getName() {
+        return name;
+    }
+
     public boolean isRoot() {
         return parentPath.isEmpty();
     }
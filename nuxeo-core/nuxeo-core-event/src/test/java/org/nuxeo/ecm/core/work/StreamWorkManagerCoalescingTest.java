@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.core.work.api.WorkManager.Scheduling;
+import org.nuxeo.runtime.RuntimeServiceEvent;
+import org.nuxeo.runtime.RuntimeServiceListener;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Deploy;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+import org.nuxeo.runtime.test.runner.SimpleFeature;
+
+/**
+ * Coalescing and cancellation of works with the stream impl.
+ *
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ RuntimeFeature.class, StreamWorkManagerCoalescingTest.CoalescingFeature.class })
+@Deploy({ "org.nuxeo.runtime.kv", "org.nuxeo.runtime.stream", "org.nuxeo.ecm.core.event",
+        "org.nuxeo.ecm.core.event.test:test-workmanager-config.xml" })
+@LocalDeploy("org.nuxeo.ecm.core.event:test-stream-workmanager-service.xml")
+public class StreamWorkManagerCoalescingTest {
+
+    protected static final String QUEUE = "SleepWork";
+
+    /** Enables coalescing before the work manager starts. */
+    public static class CoalescingFeature extends SimpleFeature {
+
+        @Override
+        public void start(FeaturesRunner runner) throws Exception {
+            Framework.addListener(new RuntimeServiceListener() {
+
+                @Override
+                public void handleEvent(RuntimeServiceEvent event) {
+                    if (event.id != RuntimeServiceEvent.RUNTIME_ABOUT_TO_START) {
+                        return;
+                    }
+                    Framework.removeListener(this);
+                    Framework.getProperties().put(StreamWorkManager.WORK_COALESCING_PROP, "true");
+                }
+            });
+        }
+    }
+
+    @Inject
+    protected WorkManager service;
+
+    protected WorkCoalescer getCoalescer() {
+        WorkCoalescer coalescer = ((StreamWorkManager) service).coalescer;
+        assertNotNull(coalescer);
+        return coalescer;
+    }
+
+    @Test
+    public void testCoalesceAndCancel() throws Exception {
+        WorkCoalescer coalescer = getCoalescer();
+        long coalesced = coalescer.getCoalescedCount(QUEUE);
+        long canceled = coalescer.getCanceledCount(QUEUE);
+        long completed = service.getMetrics(QUEUE).completed.longValue();
+
+        // sleep works share the same partition key, they are run one after the other
+        SleepWork blocker = new SleepWork(1000, false);
+        service.schedule(blocker);
+
+        SleepWork work = new SleepWork(10, false);
+        service.schedule(work);
+        service.schedule(work);
+        service.schedule(work);
+        assertEquals(coalesced + 2, coalescer.getCoalescedCount(QUEUE));
+
+        SleepWork idempotent = new SleepWork(10_000, false);
+        service.schedule(idempotent);
+        service.schedule(new SleepWork(10_000, false, idempotent.getId()), Scheduling.CANCEL_SCHEDULED);
+
+        SleepWork nonIdempotent = new SleepWork(10_000, false);
+        nonIdempotent.setIdempotent(false);
+        service.schedule(nonIdempotent);
+        service.schedule(nonIdempotent);
+        service.schedule(new SleepWork(10_000, false, nonIdempotent.getId()), Scheduling.CANCEL_SCHEDULED);
+        assertEquals(canceled + 3, coalescer.getCanceledCount(QUEUE));
+
+        // canceled works are skipped, we don't have to wait for them
+        assertTrue(service.awaitCompletion(5, TimeUnit.SECONDS));
+        // coalesced works are not in the stream, canceled ones are completed without running
+        assertEquals(completed + 5, service.getMetrics(QUEUE).completed.longValue());
+        assertEquals(canceled + 3, service.getMetrics(QUEUE).canceled.longValue());
+
+        // the work is no longer pending, it is scheduled again
+        service.schedule(work);
+        assertTrue(service.awaitCompletion(5, TimeUnit.SECONDS));
+        assertEquals(coalesced + 2, coalescer.getCoalescedCount(QUEUE));
+        assertEquals(completed + 6, service.getMetrics(QUEUE).completed.longValue());
+    }
+
+}
@@ -161,7 +161,7 @@ public class StreamWorkManagerTest extends WorkManagerTest {
     @Ignore
     @Test
     public void testWorkManagerCancelScheduling() throws Exception {
-        // Canceling is not supported, but we can not assume on duration with random id
+        // Canceling requires coalescing, see StreamWorkManagerCoalescingTest, and the running metrics are estimations
         super.testWorkManagerCancelScheduling();
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.runtime.kv.MemKeyValueStore;
+
+/**
+ * @since 10.1
+ */
+public class TestWorkCoalescer {
+
+    protected static final String QUEUE = "coalescerQueue";
+
+    protected WorkCoalescer coalescer;
+
+    @Before
+    public void setUp() {
+        coalescer = new WorkCoalescer(new MemKeyValueStore(), 0);
+    }
+
+    @Test
+    public void testCoalescePendingWork() {
+        long coalesced = coalescer.getCoalescedCount(QUEUE);
+        SleepWork work = new SleepWork(1, false);
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertFalse(coalescer.schedule(QUEUE, work));
+        assertFalse(coalescer.schedule(QUEUE, work));
+        assertEquals(coalesced + 2, coalescer.getCoalescedCount(QUEUE));
+
+        // once running the work is no longer pending
+        assertTrue(coalescer.acquire(QUEUE, work));
+        assertTrue(coalescer.schedule(QUEUE, work));
+    }
+
+    @Test
+    public void testNonIdempotentWorkIsNotCoalesced() {
+        SleepWork work = new SleepWork(1, false);
+        work.setIdempotent(false);
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.acquire(QUEUE, work));
+    }
+
+    @Test
+    public void testCancel() {
+        long canceled = coalescer.getCanceledCount(QUEUE);
+        SleepWork work = new SleepWork(1, false);
+        // not pending
+        assertFalse(coalescer.cancel(QUEUE, work.getId()));
+
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.cancel(QUEUE, work.getId()));
+        assertFalse(coalescer.cancel(QUEUE, work.getId()));
+        assertEquals(canceled + 1, coalescer.getCanceledCount(QUEUE));
+        assertFalse(coalescer.acquire(QUEUE, work));
+
+        // scheduling again a canceled work revives the record already in the stream
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.cancel(QUEUE, work.getId()));
+        assertFalse(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.acquire(QUEUE, work));
+    }
+
+    @Test
+    public void testCancelNonIdempotentWork() {
+        long canceled = coalescer.getCanceledCount(QUEUE);
+        SleepWork work = new SleepWork(1, false);
+        work.setIdempotent(false);
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertTrue(coalescer.schedule(QUEUE, work));
+        // both pending records are canceled
+        assertTrue(coalescer.cancel(QUEUE, work.getId()));
+        assertEquals(canceled + 2, coalescer.getCanceledCount(QUEUE));
+        // a record scheduled after the cancel is run
+        assertTrue(coalescer.schedule(QUEUE, work));
+        assertFalse(coalescer.acquire(QUEUE, work));
+        assertFalse(coalescer.acquire(QUEUE, work));
+        assertTrue(coalescer.acquire(QUEUE, work));
+        assertFalse(coalescer.cancel(QUEUE, work.getId()));
+    }
+
+    @Test
+    public void testUnschedule() {
+        SleepWork work = new SleepWork(1, false);
+        assertTrue(coalescer.schedule(QUEUE, work));
+        // the append failed, the work is not pending
+        coalescer.unschedule(QUEUE, work);
+        assertFalse(coalescer.cancel(QUEUE, work.getId()));
+        assertTrue(coalescer.schedule(QUEUE, work));
+    }
+
+}
@@ -0,0 +1,201 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.work;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.ecm.core.work.api.WorkSchedulePath;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+/**
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestWorkSerializer {
+    private static final Log log = LogFactory.getLog(TestWorkSerializer.class);
+
+    protected static final int LOOPS = 20_000;
+
+    /**
+     * Subclass inheriting the compact format, without fields of its own.
+     */
+    protected static class OtherSleepWork extends SleepWork {
+        private static final long serialVersionUID = 1L;
+
+        public OtherSleepWork(long durationMillis) {
+            super(durationMillis, false, "otherWorkId");
+        }
+
+        protected OtherSleepWork() {
+            super();
+        }
+    }
+
+    /**
+     * Subclass inheriting the compact format, without no-arg constructor.
+     */
+    protected static class FailingSleepWork extends SleepWork {
+        private static final long serialVersionUID = 1L;
+
+        protected String message;
+
+        public FailingSleepWork(long durationMillis, String message) {
+            super(durationMillis, false, "failingWorkId");
+            this.message = message;
+        }
+    }
+
+    /**
+     * Subclass writing its own fields in the compact format.
+     */
+    protected static class CompactFailingSleepWork extends FailingSleepWork {
+        private static final long serialVersionUID = 1L;
+
+        public CompactFailingSleepWork(long durationMillis, String message) {
+            super(durationMillis, message);
+        }
+
+        protected CompactFailingSleepWork() {
+            super(0, null);
+        }
+
+        @Override
+        public void writeFields(DataOutput out) throws IOException {
+            super.writeFields(out);
+            WorkSerializer.writeString(out, message);
+        }
+
+        @Override
+        public void readFields(DataInput in) throws IOException {
+            super.readFields(in);
+            message = WorkSerializer.readString(in);
+        }
+    }
+
+    protected SleepWork newWork() {
+        SleepWork work = new SleepWork(1234, "myCategory", false, "myWorkId");
+        work.setDocuments("default", Arrays.asList("docId1", "docId2"));
+        work.setOriginatingUsername("bob");
+        work.setStatus("some status");
+        WorkSchedulePath.newInstance(work);
+        return work;
+    }
+
+    @Test
+    public void testCompactRoundTrip() {
+        SleepWork work = newWork();
+        byte[] data = WorkSerializer.serialize(work);
+        SleepWork copy = (SleepWork) WorkSerializer.deserialize(data);
+        assertEquals(work.getId(), copy.getId());
+        assertEquals(work.getCategory(), copy.getCategory());
+        assertEquals(work.getPartitionKey(), copy.getPartitionKey());
+        assertEquals(work.isIdempotent(), copy.isIdempotent());
+        assertEquals(work.getTitle(), copy.getTitle());
+        assertEquals(work.getDocuments(), copy.getDocuments());
+        assertEquals(work.getOriginatingUsername(), copy.getOriginatingUsername());
+        assertEquals(work.getStatus(), copy.getStatus());
+        assertEquals(work.getSchedulingTime(), copy.getSchedulingTime());
+        assertEquals(work.getProgress().toString(), copy.getProgress().toString());
+        assertEquals(work.getSchedulePath().getPath(), copy.getSchedulePath().getPath());
+    }
+
+    @Test
+    public void testSubclassInheritingCompactFormat() {
+        OtherSleepWork work = new OtherSleepWork(1234);
+        assertTrue(WorkSerializer.isCompact(work));
+        byte[] data = WorkSerializer.serialize(work);
+        assertEquals(WorkSerializer.MAGIC, data[0]);
+        OtherSleepWork copy = (OtherSleepWork) WorkSerializer.deserialize(data);
+        assertEquals(work.getId(), copy.getId());
+        assertEquals(work.getTitle(), copy.getTitle());
+    }
+
+    @Test
+    public void testSubclassWithoutNoArgConstructor() {
+        FailingSleepWork work = new FailingSleepWork(1234, "some message");
+        assertFalse(WorkSerializer.isCompact(work));
+        byte[] data = WorkSerializer.serialize(work);
+        assertNotEquals(WorkSerializer.MAGIC, data[0]);
+        FailingSleepWork copy = (FailingSleepWork) WorkSerializer.deserialize(data);
+        assertEquals(work.getId(), copy.getId());
+        assertEquals(work.getTitle(), copy.getTitle());
+        assertEquals("some message", copy.message);
+    }
+
+    @Test
+    public void testSubclassWithCompactFields() {
+        CompactFailingSleepWork work = new CompactFailingSleepWork(1234, "some message");
+        assertTrue(WorkSerializer.isCompact(work));
+        byte[] data = WorkSerializer.serialize(work);
+        assertEquals(WorkSerializer.MAGIC, data[0]);
+        CompactFailingSleepWork copy = (CompactFailingSleepWork) WorkSerializer.deserialize(data);
+        assertEquals(work.getId(), copy.getId());
+        assertEquals(work.getTitle(), copy.getTitle());
+        assertEquals("some message", copy.message);
+    }
+
+    @Test
+    public void testReadJavaSerialization() {
+        // records written before the compact format must still be readable
+        SleepWork work = newWork();
+        byte[] data = WorkSerializer.serializeJava(work);
+        Work copy = WorkSerializer.deserialize(data);
+        assertEquals(work.getId(), copy.getId());
+        assertEquals(work.getTitle(), copy.getTitle());
+    }
+
+    @Test
+    public void testCompactSizeAndThroughput() {
+        SleepWork work = newWork();
+        byte[] compact = WorkSerializer.serialize(work);
+        byte[] java = WorkSerializer.serializeJava(work);
+        log.info(String.format("record size, compact: %d bytes, java: %d bytes", compact.length, java.length));
+        assertTrue(compact.length * 2 < java.length);
+
+        long start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            WorkSerializer.deserialize(WorkSerializer.serialize(work));
+        }
+        double compactElapsed = (System.nanoTime() - start) / 1e9;
+        start = System.nanoTime();
+        for (int i = 0; i < LOOPS; i++) {
+            WorkSerializer.deserialize(WorkSerializer.serializeJava(work));
+        }
+        double javaElapsed = (System.nanoTime() - start) / 1e9;
+        log.info(String.format("round trip throughput, compact: %.2f works/s, java: %.2f works/s",
+                LOOPS / compactElapsed, LOOPS / javaElapsed));
+    }
+
+}
@@ -120,6 +120,10 @@ public abstract class DefaultListJsonWriter<EntityType> extends AbstractJsonWrit
         jg.writeStringField(ENTITY_FIELD_NAME, entityType);
         writePaginationInfos(list, jg);
         Writer<EntityType> documentWriter = registry.getWriter(ctx, elClazz, elGenericType, APPLICATION_JSON_TYPE);
+        if (documentWriter instanceof ExtensibleEntityJsonWriter) {
+            // let the enrichers work on the whole list
+            ((ExtensibleEntityJsonWriter<EntityType>) documentWriter).prefetch(list);
+        }
         jg.writeArrayFieldStart("entries");
         for (EntityType entity : list) {
             documentWriter.write(entity, elClazz, elClazz, APPLICATION_JSON_TYPE, new OutputStreamWithJsonWriter(jg));
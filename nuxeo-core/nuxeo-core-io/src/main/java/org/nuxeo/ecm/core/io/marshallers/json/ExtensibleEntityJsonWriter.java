@@ -32,6 +32,7 @@ import java.util.List;
 import java.util.Set;
 
 import org.apache.commons.lang3.reflect.TypeUtils;
+import org.nuxeo.ecm.core.io.marshallers.json.enrichers.BatchedJsonEnricher;
 import org.nuxeo.ecm.core.io.marshallers.json.enrichers.Enriched;
 import org.nuxeo.ecm.core.io.registry.MarshallerRegistry;
 import org.nuxeo.ecm.core.io.registry.Writer;
@@ -112,6 +113,40 @@ public abstract class ExtensibleEntityJsonWriter<EntityType> extends AbstractJso
         jg.writeEndObject();
     }
 
+    /**
+     * Gives all the entities of a list to the activated enrichers implementing {@link BatchedJsonEnricher}, before the
+     * entities are written one by one.
+     *
+     * @param entities The entities of the list.
+     * @since 10.1
+     */
+    public void prefetch(List<EntityType> entities) throws IOException {
+        if (entities.isEmpty()) {
+            return;
+        }
+        try {
+            // same depth as the entities to be written
+            WrappedContext wrappedCtx = ctx.wrap().controlDepth();
+            for (String enricherName : ctx.getEnrichers(entityType)) {
+                try (Closeable resource = wrappedCtx.with(ENTITY_ENRICHER_NAME, enricherName).open()) {
+                    @SuppressWarnings("rawtypes")
+                    Collection<Writer<Enriched>> writers = registry.getAllWriters(ctx, Enriched.class,
+                            this.genericType, APPLICATION_JSON_TYPE);
+                    for (@SuppressWarnings("rawtypes")
+                    Writer<Enriched> writer : writers) {
+                        if (writer instanceof BatchedJsonEnricher) {
+                            @SuppressWarnings("unchecked")
+                            BatchedJsonEnricher<EntityType> enricher = (BatchedJsonEnricher<EntityType>) writer;
+                            enricher.prefetch(entities);
+                        }
+                    }
+                }
+            }
+        } catch (MaxDepthReachedException e) {
+            // do nothing, enrichers won't be called
+        }
+    }
+
     /**
      * Implement this method to write the entity body.
      *
@@ -0,0 +1,105 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.nuxeo.ecm.core.io.marshallers.json.document;
+
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static org.nuxeo.ecm.core.io.marshallers.json.document.DocumentModelListJsonWriter.ENTITY_DOCUMENT_LIST;
+import static org.nuxeo.ecm.core.io.registry.MarshallingConstants.ENTITY_FIELD_NAME;
+import static org.nuxeo.ecm.core.io.registry.reflect.Instantiations.SINGLETON;
+import static org.nuxeo.ecm.core.io.registry.reflect.Priorities.REFERENCE;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelIterator;
+import org.nuxeo.ecm.core.io.marshallers.json.AbstractJsonWriter;
+import org.nuxeo.ecm.core.io.marshallers.json.ExtensibleEntityJsonWriter;
+import org.nuxeo.ecm.core.io.marshallers.json.OutputStreamWithJsonWriter;
+import org.nuxeo.ecm.core.io.marshallers.json.enrichers.AbstractJsonEnricher;
+import org.nuxeo.ecm.core.io.registry.Writer;
+import org.nuxeo.ecm.core.io.registry.context.RenderingContext;
+import org.nuxeo.ecm.core.io.registry.reflect.Setup;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Streams a {@link DocumentModelIterator} as a list of documents, in the format of the
+ * {@link DocumentModelListJsonWriter} without the pagination information.
+ * <p>
+ * The documents are written and flushed batch by batch, so that only a batch is held in memory whatever the number of
+ * documents. The iterator is closed once written if it is {@link Closeable}.
+ * </p>
+ *
+ * @since 10.1
+ */
+@Setup(mode = SINGLETON, priority = REFERENCE)
+public class DocumentModelIteratorJsonWriter extends AbstractJsonWriter<DocumentModelIterator> {
+
+    public static final int BATCH_SIZE = 100;
+
+    @Override
+    public void write(DocumentModelIterator docs, JsonGenerator jg) throws IOException {
+        try {
+            jg.writeStartObject();
+            ctx.setParameterValues(RenderingContext.RESPONSE_HEADER_ENTITY_TYPE_KEY, ENTITY_DOCUMENT_LIST);
+            jg.writeStringField(ENTITY_FIELD_NAME, ENTITY_DOCUMENT_LIST);
+            Writer<DocumentModel> documentWriter = registry.getWriter(ctx, DocumentModel.class,
+                    APPLICATION_JSON_TYPE);
+            jg.writeArrayFieldStart("entries");
+            List<DocumentModel> batch = new ArrayList<>(BATCH_SIZE);
+            while (docs.hasNext()) {
+                batch.add(docs.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    writeBatch(documentWriter, batch, jg);
+                }
+            }
+            writeBatch(documentWriter, batch, jg);
+            jg.writeEndArray();
+            jg.writeEndObject();
+        } finally {
+            if (docs instanceof Closeable) {
+                ((Closeable) docs).close();
+            }
+        }
+    }
+
+    protected void writeBatch(Writer<DocumentModel> documentWriter, List<DocumentModel> batch, JsonGenerator jg)
+            throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
+        if (documentWriter instanceof ExtensibleEntityJsonWriter) {
+            ((ExtensibleEntityJsonWriter<DocumentModel>) documentWriter).prefetch(batch);
+        }
+        for (DocumentModel doc : batch) {
+            documentWriter.write(doc, DocumentModel.class, DocumentModel.class, APPLICATION_JSON_TYPE,
+                    new OutputStreamWithJsonWriter(jg));
+        }
+        batch.clear();
+        // don't keep the data prefetched for the batch
+        for (String enricherName : ctx.getEnrichers(DocumentModelJsonWriter.ENTITY_TYPE)) {
+            ctx.setParameterValues(AbstractJsonEnricher.PREFETCHED_PREFIX + enricherName);
+        }
+        // let the written documents go to the client
+        jg.flush();
+    }
+
+}
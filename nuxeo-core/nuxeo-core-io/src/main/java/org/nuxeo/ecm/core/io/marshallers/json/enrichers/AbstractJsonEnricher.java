@@ -21,6 +21,8 @@ package org.nuxeo.ecm.core.io.marshallers.json.enrichers;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.ws.rs.core.MediaType;
 
@@ -39,6 +41,13 @@ public abstract class AbstractJsonEnricher<EntityType> extends AbstractJsonWrite
 
     public static final String ENTITY_ENRICHER_NAME = "_EntityEnricherName";
 
+    /**
+     * Prefix of the context parameters holding the data prefetched by the enrichers.
+     *
+     * @since 10.1
+     */
+    public static final String PREFETCHED_PREFIX = "_Prefetched_";
+
     private final String name;
 
     public AbstractJsonEnricher(String name) {
@@ -65,4 +74,34 @@ public abstract class AbstractJsonEnricher<EntityType> extends AbstractJsonWrite
      */
     public abstract void write(JsonGenerator jg, EntityType enriched) throws IOException;
 
+    /**
+     * Keeps data computed by {@link BatchedJsonEnricher#prefetch} in the rendering context.
+     *
+     * @param key The key of the entity, usually its id.
+     * @param value The data to keep.
+     * @since 10.1
+     */
+    protected void putPrefetched(String key, Object value) {
+        String name = PREFETCHED_PREFIX + this.name;
+        Map<String, Object> prefetched = ctx.getParameter(name);
+        if (prefetched == null) {
+            prefetched = new HashMap<>();
+            ctx.setParameterValues(name, prefetched);
+        }
+        prefetched.put(key, value);
+    }
+
+    /**
+     * Gets data computed by {@link BatchedJsonEnricher#prefetch}.
+     *
+     * @param key The key of the entity, usually its id.
+     * @return The data, or {@code null} if it was not prefetched.
+     * @since 10.1
+     */
+    @SuppressWarnings("unchecked")
+    protected <T> T getPrefetched(String key) {
+        Map<String, Object> prefetched = ctx.getParameter(PREFETCHED_PREFIX + this.name);
+        return prefetched == null ? null : (T) prefetched.get(key);
+    }
+
 }
@@ -0,0 +1,49 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.nuxeo.ecm.core.io.marshallers.json.enrichers;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.nuxeo.ecm.core.io.marshallers.json.DefaultListJsonWriter;
+import org.nuxeo.ecm.core.io.marshallers.json.ExtensibleEntityJsonWriter;
+
+/**
+ * An enricher able to compute its data for a whole list of entities at once.
+ * <p>
+ * When a list is written by the {@link DefaultListJsonWriter}, the activated enrichers implementing this interface get
+ * all the entities of the list through {@link #prefetch} before the entities are written one by one. The enricher
+ * keeps the prefetched data with {@link AbstractJsonEnricher#putPrefetched} and gets it back when writing each entity
+ * with {@link AbstractJsonEnricher#getPrefetched}, computing it as usual if absent: entities written outside of a list
+ * are not prefetched.
+ * </p>
+ *
+ * @param <EntityType> The Java type whose the generated JSON will be enriched.
+ * @see ExtensibleEntityJsonWriter#prefetch(List)
+ * @since 10.1
+ */
+public interface BatchedJsonEnricher<EntityType> {
+
+    /**
+     * Computes the data of the enricher for the given entities.
+     *
+     * @param entities The entities about to be written.
+     */
+    void prefetch(List<EntityType> entities) throws IOException;
+
+}
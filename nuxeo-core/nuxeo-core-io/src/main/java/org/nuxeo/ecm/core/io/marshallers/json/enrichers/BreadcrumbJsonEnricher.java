@@ -23,9 +23,19 @@ import static org.nuxeo.ecm.core.io.registry.reflect.Instantiations.SINGLETON;
 import static org.nuxeo.ecm.core.io.registry.reflect.Priorities.REFERENCE;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentNotFoundException;
+import org.nuxeo.ecm.core.api.DocumentRef;
+import org.nuxeo.ecm.core.api.PathRef;
 import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
 import org.nuxeo.ecm.core.io.marshallers.json.document.DocumentModelListJsonWriter;
 import org.nuxeo.ecm.core.io.registry.context.RenderingContext.SessionWrapper;
@@ -60,7 +70,8 @@ import com.fasterxml.jackson.core.JsonGenerator;
  * @since 7.2
  */
 @Setup(mode = SINGLETON, priority = REFERENCE)
-public class BreadcrumbJsonEnricher extends AbstractJsonEnricher<DocumentModel> {
+public class BreadcrumbJsonEnricher extends AbstractJsonEnricher<DocumentModel>
+        implements BatchedJsonEnricher<DocumentModel> {
 
     public static final String NAME = "breadcrumb";
 
@@ -68,11 +79,75 @@ public class BreadcrumbJsonEnricher extends AbstractJsonEnricher<DocumentModel>
         super(NAME);
     }
 
+    /**
+     * Computes the breadcrumbs from the document paths, reading all the ancestors of the documents at once.
+     *
+     * @since 10.1
+     */
+    @Override
+    public void prefetch(List<DocumentModel> documents) throws IOException {
+        try (SessionWrapper wrapper = ctx.getSession(documents.get(0))) {
+            CoreSession session = wrapper.getSession();
+            String repositoryName = session.getRepositoryName();
+            List<DocumentModel> eligible = new ArrayList<>(documents.size());
+            Set<String> ancestorPaths = new LinkedHashSet<>();
+            for (DocumentModel document : documents) {
+                String path = document.getPathAsString();
+                if (path == null || !repositoryName.equals(document.getRepositoryName())) {
+                    // computed when written
+                    continue;
+                }
+                eligible.add(document);
+                // stop at the ancestors already collected for a previous document
+                String parentPath = getParentPath(path);
+                while (parentPath != null && ancestorPaths.add(parentPath)) {
+                    parentPath = getParentPath(parentPath);
+                }
+            }
+            // the ancestors which can't be read are skipped
+            Map<String, DocumentModel> ancestors = new HashMap<>();
+            if (!ancestorPaths.isEmpty()) {
+                DocumentRef[] refs = ancestorPaths.stream().map(PathRef::new).toArray(DocumentRef[]::new);
+                try {
+                    for (DocumentModel ancestor : session.getDocuments(refs)) {
+                        ancestors.put(ancestor.getPathAsString(), ancestor);
+                    }
+                } catch (DocumentNotFoundException e) {
+                    // concurrently removed, computed when written
+                    return;
+                }
+            }
+            for (DocumentModel document : eligible) {
+                // same as CoreSession#getParentDocuments: up to the first ancestor that can't be read
+                List<DocumentModel> parentDocuments = new ArrayList<>();
+                parentDocuments.add(document);
+                String parentPath = getParentPath(document.getPathAsString());
+                DocumentModel parent;
+                while (parentPath != null && (parent = ancestors.get(parentPath)) != null) {
+                    parentDocuments.add(parent);
+                    parentPath = getParentPath(parentPath);
+                }
+                Collections.reverse(parentDocuments);
+                putPrefetched(document.getId(), parentDocuments);
+            }
+        }
+    }
+
+    /**
+     * Returns the parent path, or {@code null} for the root and its children.
+     */
+    protected static String getParentPath(String path) {
+        int i = path.lastIndexOf('/');
+        return i <= 0 ? null : path.substring(0, i);
+    }
+
     @Override
     public void write(JsonGenerator jg, DocumentModel document) throws IOException {
-        List<DocumentModel> parentDocuments = null;
-        try (SessionWrapper wrapper = ctx.getSession(document)) {
-            parentDocuments = wrapper.getSession().getParentDocuments(document.getRef());
+        List<DocumentModel> parentDocuments = getPrefetched(document.getId());
+        if (parentDocuments == null) {
+            try (SessionWrapper wrapper = ctx.getSession(document)) {
+                parentDocuments = wrapper.getSession().getParentDocuments(document.getRef());
+            }
         }
         DocumentModelListImpl documentList = new DocumentModelListImpl(parentDocuments);
         jg.writeFieldName(NAME);
@@ -40,6 +40,15 @@ public class DBSFulltextExtractorWork extends FulltextExtractorWork {
         super(repositoryName, docId, true);
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected DBSFulltextExtractorWork() {
+        super();
+    }
+
     @Override
     public void initFulltextConfigurationAndParser() {
         RepositoryService repositoryService = Framework.getService(RepositoryService.class);
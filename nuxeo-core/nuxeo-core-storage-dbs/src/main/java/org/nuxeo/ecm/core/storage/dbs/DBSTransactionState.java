@@ -752,6 +752,7 @@ public class DBSTransactionState {
         if (!statesToCreate.isEmpty()) {
             repository.createStates(statesToCreate);
         }
+        List<StateUpdate> stateUpdates = new ArrayList<>();
         for (DBSDocumentState docState : transientStates.values()) {
             String id = docState.getId();
             if (transientCreated.contains(id)) {
@@ -780,10 +781,13 @@ public class DBSTransactionState {
                 } else {
                     changeTokenUpdater = null;
                 }
-                repository.updateState(id, diff, changeTokenUpdater);
+                stateUpdates.add(new StateUpdate(id, diff, changeTokenUpdater));
             }
             docState.setNotDirty();
         }
+        if (!stateUpdates.isEmpty()) {
+            repository.updateStates(stateUpdates);
+        }
         transientCreated.clear();
         userChangeIds.clear();
         scheduleWork(works);
@@ -833,6 +837,31 @@ public class DBSTransactionState {
         }
     }
 
+    /**
+     * An update to make to a document: the diff to apply and how to update its change token.
+     *
+     * @since 10.1
+     */
+    public static class StateUpdate {
+
+        public final String id;
+
+        public final StateDiff diff;
+
+        public final ChangeTokenUpdater changeTokenUpdater;
+
+        /**
+         * @param id the document id
+         * @param diff the diff to apply
+         * @param changeTokenUpdater how to get and update the change token (may be {@code null})
+         */
+        public StateUpdate(String id, StateDiff diff, ChangeTokenUpdater changeTokenUpdater) {
+            this.id = id;
+            this.diff = diff;
+            this.changeTokenUpdater = changeTokenUpdater;
+        }
+    }
+
     protected void applyUndoLog() {
         Set<String> deletes = new HashSet<>();
         for (Entry<String, State> es : undoLog.entrySet()) {
@@ -42,6 +42,7 @@ import org.junit.Before;
 import org.junit.Test;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
 
 public class TestDBSCachingRepository {
 
@@ -131,6 +132,28 @@ public class TestDBSCachingRepository {
         verify(subRepository, times(2)).readState(eq(id));
     }
 
+    @Test
+    public void testUpdateStates() {
+        String id1 = "ID1";
+        String id2 = "ID2";
+
+        // First add the states in cache
+        repository.readStates(Arrays.asList(id1, id2));
+        repository.readStates(Arrays.asList(id1, id2));
+        verify(subRepository, times(1)).readStates(eq(Arrays.asList(id1, id2)));
+
+        // Second update these states in one call
+        List<StateUpdate> updates = Arrays.asList(new StateUpdate(id1, mock(StateDiff.class), null),
+                new StateUpdate(id2, mock(StateDiff.class), null));
+        repository.updateStates(updates);
+        verify(subRepository, times(1)).updateStates(eq(updates));
+        verify(subRepository, never()).updateState(any(), any(), any());
+
+        // Check states are no longer in cache
+        repository.readStates(Arrays.asList(id1, id2));
+        verify(subRepository, times(2)).readStates(eq(Arrays.asList(id1, id2)));
+    }
+
     @Test
     public void testDeleteStates() {
         String id = "ID";
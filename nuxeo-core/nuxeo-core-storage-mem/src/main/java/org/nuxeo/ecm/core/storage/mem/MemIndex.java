@@ -0,0 +1,253 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.nuxeo.ecm.core.storage.State;
+
+/**
+ * Secondary index for the {@link MemRepository}, mapping the values of a top-level key to the ids of the documents
+ * having that value.
+ * <p>
+ * Only scalar {@link String}, {@link Long} and {@link Boolean} values are indexed. For arrays (like
+ * {@code ecm:ancestorIds}) each element is indexed separately.
+ * <p>
+ * A hash index only supports equality lookups, a sorted index also supports range lookups.
+ *
+ * @since 10.1
+ */
+public class MemIndex {
+
+    /**
+     * Orders values first by class then by natural order, so that values of different classes can coexist in a sorted
+     * index.
+     */
+    protected static final Comparator<Object> VALUE_COMPARATOR = (a, b) -> {
+        if (a.getClass() != b.getClass()) {
+            return a.getClass().getName().compareTo(b.getClass().getName());
+        }
+        @SuppressWarnings("unchecked")
+        Comparable<Object> ca = (Comparable<Object>) a;
+        return ca.compareTo(b);
+    };
+
+    protected final String key;
+
+    protected final boolean sorted;
+
+    protected final ConcurrentMap<Object, Set<String>> map;
+
+    /** Number of distinct indexed values of each class. */
+    protected final ConcurrentMap<Class<?>, LongAdder> classCounts = new ConcurrentHashMap<>();
+
+    public MemIndex(String key, boolean sorted) {
+        this.key = key;
+        this.sorted = sorted;
+        map = sorted ? new ConcurrentSkipListMap<>(VALUE_COMPARATOR) : new ConcurrentHashMap<>();
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    /**
+     * Returns the indexable values of the state for this index key.
+     */
+    public Set<Object> getValues(State state) {
+        Serializable value = state.get(key);
+        if (value == null) {
+            return Collections.emptySet();
+        }
+        if (value instanceof Object[]) {
+            Set<Object> values = new HashSet<>();
+            for (Object v : (Object[]) value) {
+                if (isIndexable(v)) {
+                    values.add(v);
+                }
+            }
+            return values;
+        }
+        if (value instanceof List) {
+            Set<Object> values = new HashSet<>();
+            for (Object v : (List<?>) value) {
+                if (isIndexable(v)) {
+                    values.add(v);
+                }
+            }
+            return values;
+        }
+        return isIndexable(value) ? Collections.singleton(value) : Collections.emptySet();
+    }
+
+    protected static boolean isIndexable(Object value) {
+        return value instanceof String || value instanceof Long || value instanceof Boolean;
+    }
+
+    public void add(String id, State state) {
+        add(id, getValues(state));
+    }
+
+    public void remove(String id, State state) {
+        remove(id, getValues(state));
+    }
+
+    /**
+     * Updates the index for a document whose values changed from {@code oldValues} to the current values of the state.
+     */
+    public void update(String id, Set<Object> oldValues, State state) {
+        Set<Object> newValues = getValues(state);
+        if (oldValues.equals(newValues)) {
+            return;
+        }
+        Set<Object> removed = new HashSet<>(oldValues);
+        removed.removeAll(newValues);
+        Set<Object> added = new HashSet<>(newValues);
+        added.removeAll(oldValues);
+        remove(id, removed);
+        add(id, added);
+    }
+
+    protected void add(String id, Collection<Object> values) {
+        for (Object value : values) {
+            map.compute(value, (k, ids) -> {
+                if (ids == null) {
+                    ids = ConcurrentHashMap.newKeySet();
+                    getClassCount(k.getClass()).increment();
+                }
+                ids.add(id);
+                return ids;
+            });
+        }
+    }
+
+    protected void remove(String id, Collection<Object> values) {
+        for (Object value : values) {
+            map.computeIfPresent(value, (k, ids) -> {
+                ids.remove(id);
+                if (ids.isEmpty()) {
+                    getClassCount(k.getClass()).decrement();
+                    return null;
+                }
+                return ids;
+            });
+        }
+    }
+
+    protected LongAdder getClassCount(Class<?> klass) {
+        return classCounts.computeIfAbsent(klass, k -> new LongAdder());
+    }
+
+    public void clear() {
+        map.clear();
+        classCounts.clear();
+    }
+
+    /**
+     * Checks whether some documents have a value of the given class for this index key.
+     */
+    public boolean hasValuesOfClass(Class<?> klass) {
+        LongAdder count = classCounts.get(klass);
+        return count != null && count.sum() > 0;
+    }
+
+    /**
+     * Finds the ids of the documents having one of the given values.
+     */
+    public Set<String> getIds(Collection<Object> values) {
+        if (values.size() == 1) {
+            Set<String> ids = map.get(values.iterator().next());
+            return ids == null ? Collections.emptySet() : ids;
+        }
+        Set<String> ids = new HashSet<>();
+        for (Object value : values) {
+            Set<String> set = map.get(value);
+            if (set != null) {
+                ids.addAll(set);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Finds the ids of the documents having a value in the given range. Only available for sorted indexes.
+     *
+     * @param from the lower bound, or {@code null} for none
+     * @param fromInclusive whether the lower bound is inclusive
+     * @param to the upper bound, or {@code null} for none
+     * @param toInclusive whether the upper bound is inclusive
+     */
+    public Set<String> getIds(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+        if (!sorted) {
+            throw new UnsupportedOperationException("Range lookup on hash index: " + key);
+        }
+        // restrict to values of the same class as the bounds
+        Class<?> klass = from == null ? to.getClass() : from.getClass();
+        if (from == null) {
+            from = lowestOfClass(klass);
+            fromInclusive = true;
+        }
+        NavigableMap<Object, Set<String>> sub = ((NavigableMap<Object, Set<String>>) map).tailMap(from,
+                fromInclusive);
+        if (to != null) {
+            sub = sub.headMap(to, toInclusive);
+        }
+        Set<String> ids = new HashSet<>();
+        for (Map.Entry<Object, Set<String>> en : sub.entrySet()) {
+            if (en.getKey().getClass() != klass) {
+                break;
+            }
+            ids.addAll(en.getValue());
+        }
+        return ids;
+    }
+
+    protected static Object lowestOfClass(Class<?> klass) {
+        if (klass == String.class) {
+            return "";
+        } else if (klass == Long.class) {
+            return Long.valueOf(Long.MIN_VALUE);
+        } else if (klass == Boolean.class) {
+            return Boolean.FALSE;
+        }
+        throw new IllegalArgumentException("Unindexable class: " + klass.getName());
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + key + (sorted ? ",sorted" : "") + ")";
+    }
+
+}
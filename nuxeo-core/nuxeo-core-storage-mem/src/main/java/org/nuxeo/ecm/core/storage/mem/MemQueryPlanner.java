@@ -0,0 +1,223 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.nuxeo.ecm.core.query.QueryParseException;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.query.sql.model.BooleanLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Literal;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.storage.dbs.DBSSession;
+
+/**
+ * Query planner for the {@link MemRepository}.
+ * <p>
+ * Looks at the toplevel AND clauses of an expression to find the ones that can be resolved through a {@link MemIndex},
+ * and returns the smallest set of candidate document ids. The full expression must still be evaluated on each
+ * candidate, as the planner only narrows down the documents to check.
+ * <p>
+ * String, integer and boolean literals are resolved, other literals (dates, doubles) need a full scan.
+ *
+ * @since 10.1
+ */
+public class MemQueryPlanner {
+
+    protected final Map<String, MemIndex> indexes;
+
+    /**
+     * @param indexes the available indexes, keyed by internal key
+     */
+    public MemQueryPlanner(Map<String, MemIndex> indexes) {
+        this.indexes = indexes;
+    }
+
+    /**
+     * Finds the candidate document ids for the given expression.
+     *
+     * @return the candidate ids, or {@code null} if no index can be used and a full scan is needed
+     */
+    public Set<String> getCandidateIds(Expression expression) {
+        if (expression == null || indexes.isEmpty()) {
+            return null;
+        }
+        List<Operand> clauses = new ArrayList<>();
+        collectAndClauses(expression, clauses);
+        Set<String> best = null;
+        for (Operand clause : clauses) {
+            if (!(clause instanceof Expression)) {
+                continue;
+            }
+            Set<String> ids = getIds((Expression) clause);
+            if (ids != null && (best == null || ids.size() < best.size())) {
+                best = ids;
+                if (best.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    protected void collectAndClauses(Operand operand, List<Operand> clauses) {
+        if (operand instanceof MultiExpression && ((MultiExpression) operand).operator == Operator.AND) {
+            for (Operand op : ((MultiExpression) operand).values) {
+                collectAndClauses(op, clauses);
+            }
+        } else if (operand instanceof Expression && ((Expression) operand).operator == Operator.AND) {
+            collectAndClauses(((Expression) operand).lvalue, clauses);
+            collectAndClauses(((Expression) operand).rvalue, clauses);
+        } else {
+            clauses.add(operand);
+        }
+    }
+
+    /**
+     * Resolves a single clause through an index, or returns {@code null} if this is not possible.
+     */
+    protected Set<String> getIds(Expression expr) {
+        if (!(expr.lvalue instanceof Reference)) {
+            return null;
+        }
+        Reference ref = (Reference) expr.lvalue;
+        if (ref.cast != null) {
+            return null;
+        }
+        MemIndex index = getIndex(ref.name);
+        if (index == null) {
+            return null;
+        }
+        Operator op = expr.operator;
+        Operand rvalue = expr.rvalue;
+        if (op == Operator.EQ) {
+            Object value = getIndexValue(index, rvalue, false);
+            return value == null ? null : index.getIds(Collections.singleton(value));
+        } else if (op == Operator.IN) {
+            if (!(rvalue instanceof LiteralList)) {
+                return null;
+            }
+            List<Object> values = new ArrayList<>();
+            for (Literal literal : (LiteralList) rvalue) {
+                Object value = getIndexValue(index, literal, false);
+                if (value == null) {
+                    return null;
+                }
+                values.add(value);
+            }
+            return index.getIds(values);
+        } else if (!index.isSorted()) {
+            return null;
+        } else if (op == Operator.BETWEEN) {
+            if (!(rvalue instanceof LiteralList) || ((LiteralList) rvalue).size() != 2) {
+                return null;
+            }
+            LiteralList list = (LiteralList) rvalue;
+            Object from = getIndexValue(index, list.get(0), true);
+            Object to = getIndexValue(index, list.get(1), true);
+            if (from == null || to == null || from.getClass() != to.getClass()) {
+                return null;
+            }
+            return index.getIds(from, true, to, true);
+        } else {
+            Object value = getIndexValue(index, rvalue, true);
+            if (value == null) {
+                return null;
+            }
+            if (op == Operator.LT) {
+                return index.getIds(null, false, value, false);
+            } else if (op == Operator.LTEQ) {
+                return index.getIds(null, false, value, true);
+            } else if (op == Operator.GT) {
+                return index.getIds(value, false, null, false);
+            } else if (op == Operator.GTEQ) {
+                return index.getIds(value, true, null, false);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Converts a literal to the value stored in the index for the documents it matches, or returns {@code null} if the
+     * clause cannot be resolved through the index.
+     * <p>
+     * Integer literals are also compared to booleans, which the evaluator sees as 0 or 1. As a false boolean may be
+     * stored as {@code null}, which is not indexed, only a test for 1 is resolved on a boolean key, and integer ranges
+     * are only resolved on keys holding longs.
+     *
+     * @param range whether the value is used as a bound of a range lookup
+     */
+    protected Object getIndexValue(MemIndex index, Operand operand, boolean range) {
+        if (operand instanceof StringLiteral) {
+            return ((StringLiteral) operand).value;
+        } else if (operand instanceof BooleanLiteral) {
+            return range ? null : Boolean.valueOf(((BooleanLiteral) operand).value);
+        } else if (operand instanceof IntegerLiteral) {
+            long value = ((IntegerLiteral) operand).value;
+            boolean hasLongs = index.hasValuesOfClass(Long.class);
+            boolean hasBooleans = index.hasValuesOfClass(Boolean.class);
+            if (hasLongs && !hasBooleans) {
+                return Long.valueOf(value);
+            } else if (hasBooleans && !hasLongs) {
+                return !range && value == 1 ? Boolean.TRUE : null;
+            } else if (!hasLongs && !range && value != 0) {
+                // no number indexed, and a null boolean only matches 0
+                return Long.valueOf(value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Finds the index to use for a NXQL property name.
+     */
+    protected MemIndex getIndex(String name) {
+        if (name.contains("/")) {
+            // complex properties and wildcards are not indexed
+            return null;
+        }
+        if (NXQL.ECM_MIXINTYPE.equals(name)) {
+            // mixins are also computed from the document type, cannot be resolved from the instance mixins alone
+            return null;
+        }
+        String key;
+        if (name.startsWith(NXQL.ECM_PREFIX)) {
+            try {
+                key = DBSSession.convToInternal(name);
+            } catch (QueryParseException | UnsupportedOperationException e) {
+                return null;
+            }
+        } else {
+            key = name;
+        }
+        return indexes.get(key);
+    }
+
+}
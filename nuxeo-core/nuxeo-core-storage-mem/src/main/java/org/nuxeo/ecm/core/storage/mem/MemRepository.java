@@ -27,6 +27,7 @@ import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_CREATED;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_LOCK_OWNER;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
 import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PRIMARY_TYPE;
 
 import java.io.Serializable;
 import java.lang.reflect.Array;
@@ -35,10 +36,15 @@ import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
@@ -61,6 +67,7 @@ import org.nuxeo.ecm.core.api.model.Delta;
 import org.nuxeo.ecm.core.blob.DocumentBlobManager;
 import org.nuxeo.ecm.core.model.LockManager;
 import org.nuxeo.ecm.core.model.Repository;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
 import org.nuxeo.ecm.core.query.sql.model.OrderByClause;
 import org.nuxeo.ecm.core.storage.State;
 import org.nuxeo.ecm.core.storage.State.ListDiff;
@@ -71,6 +78,8 @@ import org.nuxeo.ecm.core.storage.dbs.DBSExpressionEvaluator;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryBase;
 import org.nuxeo.ecm.core.storage.dbs.DBSSession.OrderByComparator;
 import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
+import org.nuxeo.ecm.core.storage.mem.MemRepositoryDescriptor.MemIndexDescriptor;
 import org.nuxeo.runtime.api.Framework;
 
 /**
@@ -80,6 +89,9 @@ import org.nuxeo.runtime.api.Framework;
  * <p>
  * A document object is a JSON-like document stored as a Map recursively containing the data, see {@link DBSDocument}
  * for the description of the document.
+ * <p>
+ * Secondary indexes ({@link MemIndex}) are maintained on configurable keys so that queries and child lookups don't
+ * have to scan all the documents, see {@link MemQueryPlanner}.
  *
  * @since 5.9.4
  */
@@ -97,11 +109,52 @@ public class MemRepository extends DBSRepositoryBase {
      */
     protected Map<String, State> states;
 
+    /**
+     * The secondary indexes, keyed by internal key.
+     *
+     * @since 10.1
+     */
+    protected Map<String, MemIndex> indexes;
+
+    /** @since 10.1 */
+    protected MemQueryPlanner planner;
+
     public MemRepository(ConnectionManager cm, MemRepositoryDescriptor descriptor) {
         super(cm, descriptor.name, descriptor);
+        initIndexes(descriptor);
         initRepository();
     }
 
+    /**
+     * The keys indexed when no explicit index configuration is provided.
+     *
+     * @since 10.1
+     */
+    protected static List<MemIndexDescriptor> getDefaultIndexes() {
+        return Arrays.asList( //
+                new MemIndexDescriptor(KEY_PARENT_ID, MemIndexDescriptor.TYPE_HASH), //
+                new MemIndexDescriptor(KEY_PRIMARY_TYPE, MemIndexDescriptor.TYPE_HASH), //
+                new MemIndexDescriptor(KEY_ANCESTOR_IDS, MemIndexDescriptor.TYPE_HASH));
+    }
+
+    /** @since 10.1 */
+    protected void initIndexes(MemRepositoryDescriptor descriptor) {
+        indexes = new LinkedHashMap<>();
+        if (descriptor.isIndexesEnabled()) {
+            List<MemIndexDescriptor> descriptors = descriptor.indexes.isEmpty() ? getDefaultIndexes()
+                    : descriptor.indexes;
+            for (MemIndexDescriptor desc : descriptors) {
+                if (desc.enabled) {
+                    indexes.put(desc.key, new MemIndex(desc.key, desc.isSorted()));
+                }
+            }
+        }
+        planner = new MemQueryPlanner(indexes);
+        if (log.isDebugEnabled()) {
+            log.debug("Mem: INDEXES " + indexes.values());
+        }
+    }
+
     @Override
     public List<IdType> getAllowedIdTypes() {
         return Collections.singletonList(IdType.varchar);
@@ -111,6 +164,7 @@ public class MemRepository extends DBSRepositoryBase {
     public void shutdown() {
         super.shutdown();
         states = null;
+        indexes.values().forEach(MemIndex::clear);
     }
 
     protected void initRepository() {
@@ -177,6 +231,9 @@ public class MemRepository extends DBSRepositoryBase {
         state = StateHelper.deepCopy(state, true); // thread-safe
         StateHelper.resetDeltas(state);
         states.put(id, state);
+        for (MemIndex index : indexes.values()) {
+            index.add(id, state);
+        }
     }
 
     @Override
@@ -189,6 +246,7 @@ public class MemRepository extends DBSRepositoryBase {
             throw new ConcurrentUpdateException("Missing: " + id);
         }
         synchronized (state) {
+            Map<MemIndex, Set<Object>> oldIndexedValues = getIndexedValues(state);
             // synchronization needed for atomic change token
             if (changeTokenUpdater != null) {
                 for (Entry<String, Serializable> en : changeTokenUpdater.getConditions().entrySet()) {
@@ -201,25 +259,133 @@ public class MemRepository extends DBSRepositoryBase {
                 }
             }
             applyDiff(state, diff);
+            updateIndexes(id, oldIndexedValues, state);
         }
     }
 
+    @Override
+    public void updateStates(List<StateUpdate> updates) {
+        // check first that all the documents exist and have the expected change token, so that an update known to
+        // fail doesn't leave the previous ones applied; a concurrent update of the same documents between the check and
+        // the updates can still make one fail after the previous ones, as there is no rollback
+        Set<String> checked = new HashSet<>();
+        for (StateUpdate update : updates) {
+            State state = states.get(update.id);
+            if (state == null) {
+                throw new ConcurrentUpdateException("Missing: " + update.id);
+            }
+            if (update.changeTokenUpdater != null && checked.add(update.id)) {
+                // the next updates of a document expect the change token written by the previous ones
+                synchronized (state) {
+                    for (Entry<String, Serializable> en : update.changeTokenUpdater.getConditions().entrySet()) {
+                        if (!Objects.equals(state.get(en.getKey()), en.getValue())) {
+                            throw new ConcurrentUpdateException(update.id);
+                        }
+                    }
+                }
+            }
+        }
+        // the states are updated in place, no round-trip to save
+        for (StateUpdate update : updates) {
+            updateState(update.id, update.diff, update.changeTokenUpdater);
+        }
+    }
+
+    /**
+     * Gets the current values of the state for all the indexes, to be passed later to
+     * {@link #updateIndexes(String, Map, State)} after the state has been modified.
+     *
+     * @since 10.1
+     */
+    protected Map<MemIndex, Set<Object>> getIndexedValues(State state) {
+        Map<MemIndex, Set<Object>> values = new HashMap<>();
+        for (MemIndex index : indexes.values()) {
+            values.put(index, index.getValues(state));
+        }
+        return values;
+    }
+
+    /** @since 10.1 */
+    protected void updateIndexes(String id, Map<MemIndex, Set<Object>> oldIndexedValues, State state) {
+        for (Entry<MemIndex, Set<Object>> en : oldIndexedValues.entrySet()) {
+            en.getKey().update(id, en.getValue(), state);
+        }
+    }
+
+    /**
+     * Gets the states whose key has the given value, using an index if available.
+     *
+     * @return the candidate states, which must still be checked for the actual value
+     * @since 10.1
+     */
+    protected Collection<State> getCandidateStates(String key, Object value) {
+        Collection<State> candidates = getIndexedStates(key, value);
+        return candidates == null ? states.values() : candidates;
+    }
+
+    /**
+     * Gets the states whose key has the given value, or {@code null} if there is no index for the key.
+     *
+     * @since 10.1
+     */
+    protected Collection<State> getIndexedStates(String key, Object value) {
+        MemIndex index = indexes.get(key);
+        if (index == null || !(value instanceof String)) {
+            return null;
+        }
+        return getStates(index.getIds(Collections.singleton(value)));
+    }
+
+    /**
+     * Gets the states that may match the expression, using an index if available.
+     *
+     * @since 10.1
+     */
+    protected Collection<State> getCandidateStates(Expression expression) {
+        Set<String> ids = planner.getCandidateIds(expression);
+        if (ids == null) {
+            if (log.isTraceEnabled()) {
+                log.trace("Mem:    full scan");
+            }
+            return states.values();
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Mem:    index candidates: " + ids.size());
+        }
+        return getStates(ids);
+    }
+
+    protected List<State> getStates(Set<String> ids) {
+        List<State> list = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            State state = states.get(id);
+            if (state != null) { // concurrently removed
+                list.add(state);
+            }
+        }
+        return list;
+    }
+
     @Override
     public void deleteStates(Set<String> ids) {
         if (log.isTraceEnabled()) {
             log.trace("Mem: REMOVE " + ids);
         }
         for (String id : ids) {
-            if (states.remove(id) == null) {
+            State state = states.remove(id);
+            if (state == null) {
                 log.debug("Missing on remove: " + id);
+                continue;
+            }
+            for (MemIndex index : indexes.values()) {
+                index.remove(id, state);
             }
         }
     }
 
     @Override
     public State readChildState(String parentId, String name, Set<String> ignored) {
-        // TODO optimize by maintaining a parent/child index
-        for (State state : states.values()) {
+        for (State state : getCandidateStates(KEY_PARENT_ID, parentId)) {
             if (ignored.contains(state.get(KEY_ID))) {
                 continue;
             }
@@ -245,7 +411,7 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getCandidateStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -266,8 +432,12 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key1 + " = " + value1 + " AND " + key2 + " = " + value2);
         }
+        Collection<State> candidates = getIndexedStates(key1, value1);
+        if (candidates == null) {
+            candidates = getCandidateStates(key2, value2);
+        }
         List<State> list = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : candidates) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -293,9 +463,8 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + KEY_ANCESTOR_IDS + " = " + rootId);
         }
-        Stream<State> stream = states.values() //
-                                     .stream()
-                                     .filter(state -> hasAncestor(state, rootId));
+        Stream<State> stream = getCandidateStates(KEY_ANCESTOR_IDS, rootId).stream()
+                                                                           .filter(state -> hasAncestor(state, rootId));
         if (limit != 0) {
             stream = stream.limit(limit);
         }
@@ -312,7 +481,7 @@ public class MemRepository extends DBSRepositoryBase {
         if (log.isTraceEnabled()) {
             log.trace("Mem: QUERY " + key + " = " + value);
         }
-        for (State state : states.values()) {
+        for (State state : getCandidateStates(key, value)) {
             String id = (String) state.get(KEY_ID);
             if (ignored.contains(id)) {
                 continue;
@@ -337,24 +506,50 @@ public class MemRepository extends DBSRepositoryBase {
             log.trace("Mem: QUERY " + evaluator + " OFFSET " + offset + " LIMIT " + limit);
         }
         evaluator.parse();
+        // ORDER BY
+        // orderByClause may be null and different from evaluator.getOrderByClause() in case we want to post-filter
+        Comparator<Map<String, Serializable>> comparator = orderByClause == null ? null
+                : new OrderByComparator(orderByClause);
+        // with ORDER BY + LIMIT only keep the top offset+limit projections in a bounded heap
+        long keep = (long) offset + limit;
+        boolean topK = comparator != null && limit != 0 && keep < Integer.MAX_VALUE;
+        // without ORDER BY nor count we can stop as soon as we have enough projections
+        boolean stopEarly = comparator == null && limit != 0 && countUpTo == 0;
+        PriorityQueue<Map<String, Serializable>> heap = topK
+                ? new PriorityQueue<>((int) Math.min(keep + 1, 1024), comparator.reversed())
+                : null;
         List<Map<String, Serializable>> projections = new ArrayList<>();
-        for (State state : states.values()) {
+        int count = 0;
+        for (State state : getCandidateStates(evaluator.getExpression())) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 if (distinctDocuments) {
-                    projections.add(matches.get(0));
+                    matches = matches.subList(0, 1);
+                }
+                count += matches.size();
+                if (topK) {
+                    for (Map<String, Serializable> match : matches) {
+                        heap.offer(match);
+                        if (heap.size() > keep) {
+                            heap.poll(); // remove the largest
+                        }
+                    }
                 } else {
                     projections.addAll(matches);
+                    if (stopEarly && projections.size() >= keep) {
+                        break;
+                    }
                 }
             }
         }
-        // ORDER BY
-        // orderByClause may be null and different from evaluator.getOrderByClause() in case we want to post-filter
-        if (orderByClause != null) {
-            Collections.sort(projections, new OrderByComparator(orderByClause));
+        if (topK) {
+            projections.addAll(heap);
+        }
+        if (comparator != null) {
+            Collections.sort(projections, comparator);
         }
         // LIMIT / OFFSET
-        int totalSize = projections.size();
+        int totalSize = count;
         if (countUpTo == -1) {
             // count full size
         } else if (countUpTo == 0) {
@@ -389,7 +584,7 @@ public class MemRepository extends DBSRepositoryBase {
         }
         evaluator.parse();
         List<String> ids = new ArrayList<>();
-        for (State state : states.values()) {
+        for (State state : getCandidateStates(evaluator.getExpression())) {
             List<Map<String, Serializable>> matches = evaluator.matches(state);
             if (!matches.isEmpty()) {
                 String id = matches.get(0).get(ECM_UUID).toString();
@@ -539,8 +734,10 @@ public class MemRepository extends DBSRepositoryBase {
             Calendar created = (Calendar) state.get(KEY_LOCK_CREATED);
             return new Lock(owner, created);
         }
+        Map<MemIndex, Set<Object>> oldIndexedValues = getIndexedValues(state);
         state.put(KEY_LOCK_OWNER, lock.getOwner());
         state.put(KEY_LOCK_CREATED, lock.getCreated());
+        updateIndexes(id, oldIndexedValues, state);
         return null;
     }
 
@@ -563,8 +760,10 @@ public class MemRepository extends DBSRepositoryBase {
             return new Lock(oldOwner, oldCreated, true);
         }
         // remove lock
+        Map<MemIndex, Set<Object>> oldIndexedValues = getIndexedValues(state);
         state.put(KEY_LOCK_OWNER, null);
         state.put(KEY_LOCK_CREATED, null);
+        updateIndexes(id, oldIndexedValues, state);
         // return old lock
         return new Lock(oldOwner, oldCreated);
     }
@@ -18,6 +18,11 @@
  */
 package org.nuxeo.ecm.core.storage.mem;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.nuxeo.common.xmap.annotation.XNode;
+import org.nuxeo.common.xmap.annotation.XNodeList;
 import org.nuxeo.common.xmap.annotation.XObject;
 import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 
@@ -29,16 +34,82 @@ import org.nuxeo.ecm.core.storage.dbs.DBSRepositoryDescriptor;
 @XObject(value = "repository")
 public class MemRepositoryDescriptor extends DBSRepositoryDescriptor {
 
+    /**
+     * Secondary index on a document key.
+     *
+     * @since 10.1
+     */
+    @XObject(value = "index")
+    public static class MemIndexDescriptor {
+
+        public static final String TYPE_HASH = "hash";
+
+        public static final String TYPE_SORTED = "sorted";
+
+        /** The internal key, for instance {@code ecm:parentId}. */
+        @XNode("")
+        public String key;
+
+        /** Either {@value #TYPE_HASH} (equality lookups) or {@value #TYPE_SORTED} (also range lookups). */
+        @XNode("@type")
+        public String type = TYPE_HASH;
+
+        @XNode("@enabled")
+        public boolean enabled = true;
+
+        public MemIndexDescriptor() {
+        }
+
+        public MemIndexDescriptor(String key, String type) {
+            this.key = key;
+            this.type = type;
+        }
+
+        public boolean isSorted() {
+            return TYPE_SORTED.equals(type);
+        }
+    }
+
+    /** @since 10.1 */
+    @XNode("indexes@enabled")
+    private Boolean indexesEnabled;
+
+    /** @since 10.1 */
+    @XNodeList(value = "indexes/index", type = ArrayList.class, componentType = MemIndexDescriptor.class)
+    public List<MemIndexDescriptor> indexes = new ArrayList<>();
+
     public MemRepositoryDescriptor() {
     }
 
+    /**
+     * Secondary indexes are enabled by default.
+     *
+     * @since 10.1
+     */
+    public boolean isIndexesEnabled() {
+        return !Boolean.FALSE.equals(indexesEnabled);
+    }
+
     @Override
     public MemRepositoryDescriptor clone() {
-        return (MemRepositoryDescriptor) super.clone();
+        MemRepositoryDescriptor clone = (MemRepositoryDescriptor) super.clone();
+        clone.indexes = new ArrayList<>(indexes);
+        return clone;
     }
 
-    public void merge(MemRepositoryDescriptor other) {
+    @Override
+    public void merge(DBSRepositoryDescriptor other) {
         super.merge(other);
+        if (other instanceof MemRepositoryDescriptor) {
+            MemRepositoryDescriptor memOther = (MemRepositoryDescriptor) other;
+            if (memOther.indexesEnabled != null) {
+                indexesEnabled = memOther.indexesEnabled;
+            }
+            for (MemIndexDescriptor index : memOther.indexes) {
+                indexes.removeIf(i -> i.key.equals(index.key));
+                indexes.add(index);
+            }
+        }
     }
 
 }
@@ -0,0 +1,208 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.mem;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ANCESTOR_IDS;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_IS_PROXY;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_NAME;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PARENT_ID;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_PRIMARY_TYPE;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.sql.model.BooleanLiteral;
+import org.nuxeo.ecm.core.query.sql.model.DoubleLiteral;
+import org.nuxeo.ecm.core.query.sql.model.Expression;
+import org.nuxeo.ecm.core.query.sql.model.IntegerLiteral;
+import org.nuxeo.ecm.core.query.sql.model.LiteralList;
+import org.nuxeo.ecm.core.query.sql.model.MultiExpression;
+import org.nuxeo.ecm.core.query.sql.model.Operand;
+import org.nuxeo.ecm.core.query.sql.model.Operator;
+import org.nuxeo.ecm.core.query.sql.model.Reference;
+import org.nuxeo.ecm.core.query.sql.model.StringLiteral;
+import org.nuxeo.ecm.core.storage.State;
+
+public class TestMemQueryPlanner {
+
+    protected static final String KEY_COUNT = "my:count";
+
+    protected Map<String, MemIndex> indexes;
+
+    protected MemQueryPlanner planner;
+
+    @Before
+    public void setUp() {
+        indexes = new HashMap<>();
+        indexes.put(KEY_PARENT_ID, new MemIndex(KEY_PARENT_ID, false));
+        indexes.put(KEY_PRIMARY_TYPE, new MemIndex(KEY_PRIMARY_TYPE, false));
+        indexes.put(KEY_ANCESTOR_IDS, new MemIndex(KEY_ANCESTOR_IDS, false));
+        indexes.put(KEY_NAME, new MemIndex(KEY_NAME, true));
+        indexes.put(KEY_IS_PROXY, new MemIndex(KEY_IS_PROXY, false));
+        indexes.put(KEY_COUNT, new MemIndex(KEY_COUNT, true));
+        planner = new MemQueryPlanner(indexes);
+        add(state("root", null, "Root", "", new Object[0]));
+        add(state("folder", "root", "Folder", "folder", new Object[] { "root" }));
+        State doc1 = state("doc1", "folder", "File", "doc1", new Object[] { "root", "folder" });
+        doc1.put(KEY_COUNT, Long.valueOf(1));
+        add(doc1);
+        State doc2 = state("doc2", "folder", "Note", "doc2", new Object[] { "root", "folder" });
+        doc2.put(KEY_COUNT, Long.valueOf(2));
+        add(doc2);
+        State doc3 = state("doc3", "root", "File", "doc3", new Object[] { "root" });
+        doc3.put(KEY_IS_PROXY, Boolean.TRUE);
+        doc3.put(KEY_COUNT, Long.valueOf(3));
+        add(doc3);
+    }
+
+    protected static State state(String id, String parentId, String type, String name, Object[] ancestorIds) {
+        State state = new State();
+        state.put(KEY_ID, id);
+        state.put(KEY_PARENT_ID, parentId);
+        state.put(KEY_PRIMARY_TYPE, type);
+        state.put(KEY_NAME, name);
+        state.put(KEY_ANCESTOR_IDS, ancestorIds.length == 0 ? null : ancestorIds);
+        return state;
+    }
+
+    protected void add(State state) {
+        for (MemIndex index : indexes.values()) {
+            index.add((String) state.get(KEY_ID), state);
+        }
+    }
+
+    protected static Expression eq(String name, String value) {
+        return new Expression(new Reference(name), Operator.EQ, new StringLiteral(value));
+    }
+
+    protected static Expression and(Operand... operands) {
+        return new MultiExpression(Operator.AND, Arrays.asList(operands));
+    }
+
+    protected static Set<String> set(String... values) {
+        return new HashSet<>(Arrays.asList(values));
+    }
+
+    @Test
+    public void testEquality() {
+        assertEquals(set("doc1", "doc2"), planner.getCandidateIds(eq("ecm:parentId", "folder")));
+        assertEquals(set("doc1", "doc3"), planner.getCandidateIds(eq("ecm:primaryType", "File")));
+        assertEquals(set(), planner.getCandidateIds(eq("ecm:parentId", "nosuchid")));
+    }
+
+    @Test
+    public void testAncestorId() {
+        assertEquals(set("doc1", "doc2"), planner.getCandidateIds(eq("ecm:ancestorId", "folder")));
+        assertEquals(set("folder", "doc1", "doc2", "doc3"), planner.getCandidateIds(eq("ecm:ancestorId", "root")));
+    }
+
+    @Test
+    public void testIn() {
+        LiteralList list = new LiteralList();
+        list.add(new StringLiteral("Note"));
+        list.add(new StringLiteral("Folder"));
+        Expression expr = new Expression(new Reference("ecm:primaryType"), Operator.IN, list);
+        assertEquals(set("folder", "doc2"), planner.getCandidateIds(expr));
+    }
+
+    @Test
+    public void testAndPicksMostSelective() {
+        Expression expr = and(eq("ecm:ancestorId", "root"), eq("ecm:primaryType", "Note"), eq("dc:title", "foo"));
+        assertEquals(set("doc2"), planner.getCandidateIds(expr));
+    }
+
+    @Test
+    public void testRange() {
+        Expression expr = new Expression(new Reference("ecm:name"), Operator.GTEQ, new StringLiteral("doc2"));
+        assertEquals(set("doc2", "doc3", "folder"), planner.getCandidateIds(expr));
+        expr = new Expression(new Reference("ecm:name"), Operator.LT, new StringLiteral("doc2"));
+        assertEquals(set("root", "doc1"), planner.getCandidateIds(expr));
+    }
+
+    @Test
+    public void testInteger() {
+        Expression expr = new Expression(new Reference(KEY_COUNT), Operator.EQ, new IntegerLiteral(2));
+        assertEquals(set("doc2"), planner.getCandidateIds(expr));
+        expr = new Expression(new Reference(KEY_COUNT), Operator.GT, new IntegerLiteral(1));
+        assertEquals(set("doc2", "doc3"), planner.getCandidateIds(expr));
+        LiteralList list = new LiteralList();
+        list.add(new IntegerLiteral(1));
+        list.add(new IntegerLiteral(3));
+        expr = new Expression(new Reference(KEY_COUNT), Operator.BETWEEN, list);
+        assertEquals(set("doc1", "doc2", "doc3"), planner.getCandidateIds(expr));
+        expr = new Expression(new Reference(KEY_COUNT), Operator.IN, list);
+        assertEquals(set("doc1", "doc3"), planner.getCandidateIds(expr));
+    }
+
+    @Test
+    public void testBoolean() {
+        // booleans are evaluated as 0 / 1
+        Expression expr = new Expression(new Reference("ecm:isProxy"), Operator.EQ, new IntegerLiteral(1));
+        assertEquals(set("doc3"), planner.getCandidateIds(expr));
+        expr = new Expression(new Reference("ecm:isProxy"), Operator.EQ, new BooleanLiteral(true));
+        assertEquals(set("doc3"), planner.getCandidateIds(expr));
+        // false is also stored as null, which is not indexed
+        expr = new Expression(new Reference("ecm:isProxy"), Operator.EQ, new IntegerLiteral(0));
+        assertNull(planner.getCandidateIds(expr));
+        // no range on booleans
+        expr = new Expression(new Reference("ecm:isProxy"), Operator.GT, new IntegerLiteral(0));
+        assertNull(planner.getCandidateIds(expr));
+    }
+
+    @Test
+    public void testFullScan() {
+        // not indexed
+        assertNull(planner.getCandidateIds(eq("dc:title", "foo")));
+        // OR cannot use a single index
+        Expression or = new Expression(eq("ecm:parentId", "folder"), Operator.OR, eq("ecm:parentId", "root"));
+        assertNull(planner.getCandidateIds(or));
+        // range on hash index
+        assertNull(planner.getCandidateIds(
+                new Expression(new Reference("ecm:parentId"), Operator.GT, new StringLiteral("a"))));
+        // unsupported literal
+        assertNull(planner.getCandidateIds(
+                new Expression(new Reference(KEY_COUNT), Operator.GT, new DoubleLiteral(1.5))));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        State state = state("doc4", "folder", "File", "doc4", new Object[] { "root", "folder" });
+        add(state);
+        assertEquals(set("doc1", "doc2", "doc4"), planner.getCandidateIds(eq("ecm:parentId", "folder")));
+        // move
+        MemIndex index = indexes.get(KEY_PARENT_ID);
+        Set<Object> oldValues = index.getValues(state);
+        state.put(KEY_PARENT_ID, "root");
+        index.update("doc4", oldValues, state);
+        assertEquals(set("doc1", "doc2"), planner.getCandidateIds(eq("ecm:parentId", "folder")));
+        assertEquals(set("folder", "doc3", "doc4"), planner.getCandidateIds(eq("ecm:parentId", "root")));
+        // remove
+        index.remove("doc4", state);
+        assertEquals(set("folder", "doc3"), planner.getCandidateIds(eq("ecm:parentId", "root")));
+    }
+
+}
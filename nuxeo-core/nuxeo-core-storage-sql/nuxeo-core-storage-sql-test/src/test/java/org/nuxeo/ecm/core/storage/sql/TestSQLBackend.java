@@ -91,10 +91,15 @@ import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCConnection;
 import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCMapperConnector;
 import org.nuxeo.ecm.core.storage.sql.jdbc.dialect.Dialect;
 import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.test.runner.ConditionalIgnoreRule;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 import org.nuxeo.runtime.transaction.TransactionRuntimeException;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
 public class TestSQLBackend extends SQLBackendTestCase {
 
     private static final Log log = LogFactory.getLog(TestSQLBackend.class);
@@ -277,6 +282,53 @@ public class TestSQLBackend extends SQLBackendTestCase {
         session.save(); // important for the test
     }
 
+    @Test
+    public void testChildrenPrefetch() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        for (int i = 0; i < 3; i++) {
+            session.addChildNode(root, "doc" + i, null, "TestDoc", false);
+        }
+        session.save();
+        session.close();
+
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Histogram savedRoundTrips = registry.histogram(MetricRegistry.name("nuxeo", "repositories",
+                ((RepositoryImpl) repository).getName(), "prefetch", "estimated-saved-round-trips"));
+        long count = savedRoundTrips.getCount();
+
+        // from another session
+        session = repository.getConnection();
+        root = session.getRootNode();
+        List<Node> children = session.getChildren(root, null, false);
+        assertEquals(3, children.size());
+        // prefetched fragments read together for all the children
+        for (Node child : children) {
+            assertNotNull(child.fragments.get("testschema"));
+        }
+        assertEquals(count + 1, savedRoundTrips.getCount());
+        session.close();
+    }
+
+    @Test
+    public void testEstimateSavedRoundTrips() throws Exception {
+        List<RowId> bulkRowIds = new ArrayList<>();
+        // a single document: nothing saved
+        bulkRowIds.add(new RowId("testschema", "id0"));
+        bulkRowIds.add(new RowId("acls", "id0"));
+        assertEquals(0, SessionImpl.estimateSavedRoundTrips(1, bulkRowIds));
+        for (int i = 1; i < 3; i++) {
+            bulkRowIds.add(new RowId("testschema", "id" + i));
+            bulkRowIds.add(new RowId("acls", "id" + i));
+        }
+        // 3 hierarchy reads + 6 fragment reads, instead of 1 + 2
+        assertEquals(6, SessionImpl.estimateSavedRoundTrips(3, bulkRowIds));
+        // a third table for one of the documents
+        bulkRowIds.add(new RowId("misc", "id0"));
+        // 3 + 7, instead of 1 + 3
+        assertEquals(6, SessionImpl.estimateSavedRoundTrips(3, bulkRowIds));
+    }
+
     @Test
     public void testRecursiveRemoval() throws Exception {
         int depth = DatabaseHelper.DATABASE.getRecursiveRemovalDepthLimit();
@@ -0,0 +1,192 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.Serializable;
+
+import javax.transaction.xa.XAResource;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCConnection;
+import org.nuxeo.ecm.core.storage.sql.jdbc.JDBCMapperConnector;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Tests the repository with a {@link BoundedCachingMapper}, whose row cache is shared by all the sessions.
+ *
+ * @since 10.1
+ */
+public class TestSQLBackendBoundedCache extends SQLBackendTestCase {
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name, long clusteringDelay) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name, clusteringDelay);
+        descriptor.cachingMapperClass = BoundedCachingMapper.class;
+        descriptor.cachingMapperProperties.put(BoundedCachingRowMapper.MAX_BYTES_PROPERTY, "10MB");
+        return descriptor;
+    }
+
+    protected static JDBCConnection getJDBCConnection(Session session) {
+        JDBCConnection jdbc = (JDBCConnection) JDBCMapperConnector.unwrap(
+                ((BoundedCachingMapper) ((SessionImpl) session).getMapper()).mapper);
+        jdbc.countExecutes = true;
+        jdbc.executeCount = 0;
+        return jdbc;
+    }
+
+    /**
+     * Gets the title of a node read again from the mapper, the persistence context of the session being cleared.
+     */
+    protected static String getTitle(Session session, Serializable id) {
+        // keeps the rows of the transaction held by the mapper
+        ((SessionImpl) session).getContext().clearLocalCaches();
+        return session.getNodeById(id).getSimpleProperty("tst:title").getString();
+    }
+
+    protected Serializable createNode(String title) {
+        Session session = repository.getConnection();
+        Node node = session.addChildNode(session.getRootNode(), "foo", null, "TestDoc", false);
+        node.setSimpleProperty("tst:title", title);
+        session.save();
+        session.close();
+        return node.getId();
+    }
+
+    @Test
+    public void testRowsSharedBetweenSessions() throws Exception {
+        Serializable id = createNode("old");
+
+        Session session1 = repository.getConnection();
+        assertEquals("old", getTitle(session1, id));
+
+        // another session reads the committed rows from the shared cache
+        Session session2 = repository.getConnection();
+        ((SessionImpl) session2).getContext().clearLocalCaches();
+        JDBCConnection jdbc = getJDBCConnection(session2);
+        assertEquals("old", session2.getNodeById(id).getSimpleProperty("tst:title").getString());
+        assertEquals(0, jdbc.executeCount);
+
+        session1.close();
+        session2.close();
+    }
+
+    @Test
+    public void testOverlayAndCommitInvalidation() throws Exception {
+        assumeTrue(DatabaseHelper.DATABASE.supportsXA());
+        Serializable id = createNode("old");
+
+        Session session1 = repository.getConnection();
+        Session session2 = repository.getConnection();
+        assertEquals("old", getTitle(session2, id));
+        XAResource xaresource = ((SessionImpl) session1).getXAResource();
+
+        TransactionHelper.startTransaction();
+        try {
+            TransactionHelper.lookupTransactionManager().getTransaction().enlistResource(xaresource);
+            session1.getNodeById(id).setSimpleProperty("tst:title", "new");
+            session1.save();
+            // the session reads its own write from its overlay
+            assertEquals("new", getTitle(session1, id));
+            // other sessions don't see the uncommitted write in the shared cache
+            assertEquals("old", getTitle(session2, id));
+        } finally {
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+
+        // the commit invalidated the shared cache
+        session2.save(); // process invalidations
+        assertEquals("new", getTitle(session2, id));
+        // and the new value is shared again
+        Session session3 = repository.getConnection();
+        JDBCConnection jdbc = getJDBCConnection(session3);
+        assertEquals("new", session3.getNodeById(id).getSimpleProperty("tst:title").getString());
+        assertEquals(0, jdbc.executeCount);
+
+        session1.close();
+        session2.close();
+        session3.close();
+    }
+
+    @Test
+    public void testRollback() throws Exception {
+        assumeTrue(DatabaseHelper.DATABASE.supportsXA());
+        Serializable id = createNode("old");
+
+        Session session1 = repository.getConnection();
+        Session session2 = repository.getConnection();
+        assertEquals("old", getTitle(session2, id));
+        XAResource xaresource = ((SessionImpl) session1).getXAResource();
+
+        TransactionHelper.startTransaction();
+        try {
+            TransactionHelper.lookupTransactionManager().getTransaction().enlistResource(xaresource);
+            session1.getNodeById(id).setSimpleProperty("tst:title", "new");
+            session1.save();
+            assertEquals("new", getTitle(session1, id));
+            TransactionHelper.setTransactionRollbackOnly();
+        } finally {
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+
+        // the overlay is dropped, the shared cache still holds the committed value
+        BoundedCachingMapper mapper = (BoundedCachingMapper) ((SessionImpl) session1).getMapper();
+        assertTrue(mapper.overlay.isEmpty());
+        assertEquals("old", getTitle(session1, id));
+        assertEquals("old", getTitle(session2, id));
+
+        session1.close();
+        session2.close();
+    }
+
+    @Test
+    public void testRemoveNotShared() throws Exception {
+        assumeTrue(DatabaseHelper.DATABASE.supportsXA());
+        Serializable id = createNode("old");
+
+        Session session1 = repository.getConnection();
+        Session session2 = repository.getConnection();
+        assertEquals("old", getTitle(session2, id));
+        XAResource xaresource = ((SessionImpl) session1).getXAResource();
+
+        TransactionHelper.startTransaction();
+        try {
+            TransactionHelper.lookupTransactionManager().getTransaction().enlistResource(xaresource);
+            session1.removeNode(session1.getNodeById(id));
+            session1.save();
+            ((SessionImpl) session1).getContext().clearLocalCaches();
+            assertNull(session1.getNodeById(id));
+            assertEquals("old", getTitle(session2, id));
+        } finally {
+            TransactionHelper.commitOrRollbackTransaction();
+        }
+
+        session2.save(); // process invalidations
+        ((SessionImpl) session2).getContext().clearLocalCaches();
+        assertNull(session2.getNodeById(id));
+
+        session1.close();
+        session2.close();
+    }
+
+}
@@ -0,0 +1,126 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.Serializable;
+import java.util.Collections;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.nuxeo.ecm.core.query.QueryFilter;
+import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Tests the incremental update of read acls, synchronous up to a threshold and then left to an
+ * {@link UpdateReadAclsWork}.
+ *
+ * @since 10.1
+ */
+public class TestSQLBackendIncrementalReadAcls extends SQLBackendTestCase {
+
+    protected static final int THRESHOLD = 5;
+
+    /**
+     * Only run for databases that support incremental read acls.
+     */
+    @BeforeClass
+    public static void assumeIncrementalReadAclsSupported() {
+        assumeTrue(DatabaseHelper.DATABASE instanceof DatabasePostgreSQL);
+    }
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        Framework.getProperties().put(SessionImpl.READ_ACL_ASYNC_THRESHOLD_PROPERTY, String.valueOf(THRESHOLD));
+    }
+
+    @Override
+    public void tearDown() throws Exception {
+        Framework.getProperties().remove(SessionImpl.READ_ACL_ASYNC_THRESHOLD_PROPERTY);
+        super.tearDown();
+    }
+
+    @Override
+    protected RepositoryDescriptor newDescriptor(String name, long clusteringDelay) {
+        RepositoryDescriptor descriptor = super.newDescriptor(name, clusteringDelay);
+        descriptor.setAclOptimizationsIncremental(true);
+        return descriptor;
+    }
+
+    protected Node createFolder(Session session, Node parent, String name, int children) {
+        Node folder = session.addChildNode(parent, name, null, "TestDoc", false);
+        for (int i = 0; i < children; i++) {
+            session.addChildNode(folder, "doc" + i, null, "TestDoc", false);
+        }
+        session.save();
+        session.updateReadAcls();
+        return folder;
+    }
+
+    protected void grantRead(Session session, Node node, String user) {
+        node.getCollectionProperty(Model.ACL_PROP).setValue(
+                new ACLRow[] { new ACLRow(0, "test", true, "Read", user, null) });
+        session.save();
+        session.updateReadAcls();
+    }
+
+    protected int countReadableChildren(Session session, Node folder, String user) {
+        QueryFilter qf = new QueryFilter(null, new String[] { user }, new String[] { "Read" }, null,
+                Collections.<SQLQuery.Transformer> emptyList(), 0, 0);
+        String query = String.format("SELECT * FROM TestDoc WHERE ecm:parentId = '%s'", folder.getId());
+        return session.query(query, qf, false).size();
+    }
+
+    @Test
+    public void testLargeSubtreeUpdatedAsynchronously() throws Exception {
+        Session session = repository.getConnection();
+        Node root = session.getRootNode();
+        Node folder1 = createFolder(session, root, "folder1", 4 * THRESHOLD);
+        Node folder2 = createFolder(session, root, "folder2", THRESHOLD - 2);
+        assertEquals(0, countReadableChildren(session, folder1, "bob"));
+
+        // the folder and the first children are updated at save time, the rest is pending
+        grantRead(session, folder1, "bob");
+        assertEquals(THRESHOLD - 1, countReadableChildren(session, folder1, "bob"));
+
+        // a later save only updates the documents it queued, under the threshold
+        grantRead(session, folder2, "bob");
+        assertEquals(THRESHOLD - 2, countReadableChildren(session, folder2, "bob"));
+        assertEquals(THRESHOLD - 1, countReadableChildren(session, folder1, "bob"));
+
+        // what the work does
+        RepositoryManagement repoMgmt = Framework.getService(SQLRepositoryService.class)
+                                                 .getRepository(repository.getName());
+        int count = 0;
+        int n;
+        while ((n = repoMgmt.updatePendingReadAcls(UpdateReadAclsWork.BATCH_SIZE)) > 0) {
+            count += n;
+        }
+        assertEquals(3 * THRESHOLD + 1, count);
+        assertEquals(4 * THRESHOLD, countReadableChildren(session, folder1, "bob"));
+        assertEquals(THRESHOLD - 2, countReadableChildren(session, folder2, "bob"));
+        session.close();
+    }
+
+}
@@ -0,0 +1,550 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.transaction.xa.XAException;
+import javax.transaction.xa.Xid;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.utils.SizeUtils;
+import org.nuxeo.ecm.core.storage.sql.ACLRow.ACLRowPositionComparator;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * A {@link RowMapper} that uses a {@link RowCache} bounded in memory and shared by all the sessions of the repository.
+ * <p>
+ * The shared cache only holds committed {@link Row}s. The rows written by a session are kept in a per-session overlay
+ * until the transaction is committed, at which point they are invalidated in the shared cache and in other sessions.
+ * <p>
+ * The maximum size of the shared cache is configured by the {@value #MAX_BYTES_PROPERTY} property of the caching
+ * mapper, for instance {@code 256MB}.
+ *
+ * @since 10.1
+ */
+public class BoundedCachingRowMapper implements RowMapper {
+
+    private static final Log log = LogFactory.getLog(BoundedCachingRowMapper.class);
+
+    private static final String ABSENT = "__ABSENT__\0\0\0";
+
+    public static final String MAX_BYTES_PROPERTY = "maxBytes";
+
+    public static final String DEFAULT_MAX_BYTES = "128MB";
+
+    /** The shared caches, by repository. */
+    protected static final Map<String, RowCache> CACHES = new HashMap<>();
+
+    /** The number of mappers using each shared cache. */
+    protected static final Map<String, Integer> CACHE_USERS = new HashMap<>();
+
+    protected String repositoryName;
+
+    /**
+     * The cache shared with the other sessions, holding only committed rows.
+     */
+    protected RowCache cache;
+
+    /**
+     * The rows written by this session and not yet committed. The values are either {@link Row} for fragments present
+     * in the database, or a row with tableName {@link #ABSENT} to denote a deleted fragment.
+     */
+    protected final Map<RowId, Row> overlay = new HashMap<>();
+
+    /**
+     * The rows changed by this session in the database and whose value is unknown, that must not be read from or put
+     * in the shared cache until committed.
+     */
+    protected final Set<RowId> dirty = new HashSet<>();
+
+    private Model model;
+
+    /**
+     * The {@link RowMapper} to which operations that cannot be processed from the cache are delegated.
+     */
+    private RowMapper rowMapper;
+
+    /**
+     * The local invalidations due to writes through this mapper that should be propagated to other sessions at
+     * post-commit time.
+     */
+    private final Invalidations localInvalidations;
+
+    /**
+     * The queue of cache invalidations received from other session, to process at pre-transaction time.
+     */
+    // public for unit tests
+    public final InvalidationsQueue cacheQueue;
+
+    /**
+     * The propagator of invalidations to other mappers.
+     */
+    private InvalidationsPropagator cachePropagator;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected Timer cacheGetTimer;
+
+    // sor means system of record (database access)
+    protected Counter sorRows;
+
+    protected Timer sorGetTimer;
+
+    public BoundedCachingRowMapper() {
+        localInvalidations = new Invalidations();
+        cacheQueue = new InvalidationsQueue("mapper-" + this);
+    }
+
+    public void initialize(String repositoryName, Model model, RowMapper rowMapper,
+            InvalidationsPropagator cachePropagator, Map<String, String> properties) {
+        this.repositoryName = repositoryName;
+        this.model = model;
+        this.rowMapper = rowMapper;
+        this.cachePropagator = cachePropagator;
+        cachePropagator.addQueue(cacheQueue);
+        String maxBytes = properties.getOrDefault(MAX_BYTES_PROPERTY, DEFAULT_MAX_BYTES);
+        cache = acquireCache(repositoryName, SizeUtils.parseSizeInBytes(maxBytes));
+        setMetrics(repositoryName);
+    }
+
+    protected void setMetrics(String repositoryName) {
+        cacheGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches",
+                "bounded", "get"));
+        sorRows = registry.counter(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded",
+                "sor", "rows"));
+        sorGetTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded",
+                "sor", "get"));
+    }
+
+    /**
+     * Gets the shared cache of a repository, creating it for its first user.
+     */
+    protected static synchronized RowCache acquireCache(String repositoryName, long maxBytes) {
+        RowCache cache = CACHES.get(repositoryName);
+        if (cache == null) {
+            log.info("Creating VCS row cache for repository: " + repositoryName + " with max size: " + maxBytes);
+            cache = new RowCache(repositoryName, maxBytes);
+            CACHES.put(repositoryName, cache);
+        } else if (cache.getMaxBytes() != maxBytes) {
+            log.warn("Ignoring max size: " + maxBytes + " for repository: " + repositoryName
+                    + ", row cache already created with max size: " + cache.getMaxBytes());
+        }
+        CACHE_USERS.merge(repositoryName, Integer.valueOf(1), Integer::sum);
+        return cache;
+    }
+
+    /**
+     * Releases the shared cache of a repository, dropping it when it has no users anymore.
+     */
+    protected static synchronized void releaseCache(String repositoryName) {
+        if (CACHE_USERS.merge(repositoryName, Integer.valueOf(-1), Integer::sum).intValue() == 0) {
+            CACHE_USERS.remove(repositoryName);
+            CACHES.remove(repositoryName);
+        }
+    }
+
+    public void close() {
+        clearCache();
+        cachePropagator.removeQueue(cacheQueue);
+        releaseCache(repositoryName);
+    }
+
+    @Override
+    public Serializable generateNewId() {
+        return rowMapper.generateNewId();
+    }
+
+    /*
+     * ----- Cache -----
+     */
+
+    protected static boolean isAbsent(Row row) {
+        return row.tableName == ABSENT; // == is ok
+    }
+
+    protected static Row absentRow() {
+        return new Row(ABSENT, (Serializable) null);
+    }
+
+    /**
+     * Copies a row before caching it.
+     */
+    protected Row cacheCopy(Row row) {
+        row = row.clone();
+        // for ACL collections, make sure the order is correct
+        // (without the cache, the query to get a list of collection does an
+        // ORDER BY pos, so users of the cache must get the same behavior)
+        if (row.isCollection() && row.values.length > 0 && row.values[0] instanceof ACLRow) {
+            row.values = sortACLRows((ACLRow[]) row.values);
+        }
+        return row;
+    }
+
+    protected ACLRow[] sortACLRows(ACLRow[] acls) {
+        List<ACLRow> list = new ArrayList<ACLRow>(Arrays.asList(acls));
+        Collections.sort(list, ACLRowPositionComparator.INSTANCE);
+        ACLRow[] res = new ACLRow[acls.length];
+        return list.toArray(res);
+    }
+
+    /**
+     * Caches a row written by this session.
+     */
+    protected void overlayPut(Row row) {
+        RowId rowId = new RowId(row);
+        dirty.remove(rowId);
+        overlay.put(rowId, cacheCopy(row));
+    }
+
+    /**
+     * Caches a row deleted by this session.
+     */
+    protected void overlayPutAbsent(RowId rowId) {
+        rowId = new RowId(rowId);
+        dirty.remove(rowId);
+        overlay.put(rowId, absentRow());
+    }
+
+    /**
+     * Marks a row as changed by this session without knowing its new value.
+     */
+    protected void overlayRemove(RowId rowId) {
+        rowId = new RowId(rowId);
+        overlay.remove(rowId);
+        dirty.add(rowId);
+    }
+
+    /**
+     * Caches a row read from the database, or its absence if the row is {@code null}.
+     *
+     * @param stamp the stamp taken from the shared cache before reading the database
+     */
+    protected void cachePutRead(RowId rowId, Row row, long stamp) {
+        rowId = new RowId(rowId);
+        row = row == null ? absentRow() : cacheCopy(row);
+        if (dirty.remove(rowId)) {
+            // changed by this session, the value is not yet committed
+            overlay.put(rowId, row);
+        } else {
+            cache.put(rowId, row, stamp);
+        }
+    }
+
+    protected Row cacheGet(RowId rowId) {
+        final Timer.Context context = cacheGetTimer.time();
+        try {
+            Row row = overlay.get(rowId);
+            if (row == null && !dirty.contains(rowId)) {
+                row = cache.get(rowId);
+            }
+            if (row != null && !isAbsent(row)) {
+                row = row.clone();
+            }
+            return row;
+        } finally {
+            context.stop();
+        }
+    }
+
+    /**
+     * Removes from the shared cache the rows changed by others or by this session.
+     */
+    protected void invalidateSharedCache(Invalidations invalidations) {
+        if (invalidations.all) {
+            cache.invalidateAll();
+        }
+        if (invalidations.modified != null) {
+            for (RowId rowId : invalidations.modified) {
+                cache.invalidate(rowId);
+            }
+        }
+        if (invalidations.deleted != null) {
+            for (RowId rowId : invalidations.deleted) {
+                cache.invalidate(rowId);
+            }
+        }
+    }
+
+    /*
+     * ----- Invalidations / Cache Management -----
+     */
+
+    @Override
+    public Invalidations receiveInvalidations() {
+        // invalidations from the underlying mapper (cluster)
+        // already propagated to our invalidations queue
+        Invalidations remoteInvalidations = rowMapper.receiveInvalidations();
+        if (remoteInvalidations != null) {
+            invalidateSharedCache(remoteInvalidations);
+        }
+
+        // invalidations from other local sessions,
+        // the shared cache has already been invalidated by them
+        Invalidations invalidations = cacheQueue.getInvalidations();
+        return invalidations.isEmpty() ? null : invalidations;
+    }
+
+    // propagate invalidations
+    @Override
+    public void sendInvalidations(Invalidations invalidations) {
+        // add local invalidations
+        if (!localInvalidations.isEmpty()) {
+            if (invalidations == null) {
+                invalidations = new Invalidations();
+            }
+            invalidations.add(localInvalidations);
+            localInvalidations.clear();
+        }
+        // our writes are committed, read them again from the shared cache
+        overlay.clear();
+        dirty.clear();
+
+        if (invalidations != null && !invalidations.isEmpty()) {
+            invalidateSharedCache(invalidations);
+
+            // send to underlying mapper
+            rowMapper.sendInvalidations(invalidations);
+
+            // queue to other local mappers' caches
+            cachePropagator.propagateInvalidations(invalidations, cacheQueue);
+        }
+    }
+
+    /**
+     * Clears the rows of this session. The shared cache only holds committed rows and is kept up to date by
+     * invalidations, so it is not cleared.
+     */
+    @Override
+    public void clearCache() {
+        overlay.clear();
+        dirty.clear();
+        localInvalidations.clear();
+        rowMapper.clearCache();
+    }
+
+    @Override
+    public long getCacheSize() {
+        // the shared cache is reported by its size and bytes gauges
+        return overlay.size();
+    }
+
+    @Override
+    public void rollback(Xid xid) throws XAException {
+        try {
+            rowMapper.rollback(xid);
+        } finally {
+            clearCache();
+        }
+    }
+
+    /*
+     * ----- Batch -----
+     */
+
+    /*
+     * Use those from the cache if available, read from the mapper for the rest.
+     */
+    @Override
+    public List<? extends RowId> read(Collection<RowId> rowIds, boolean cacheOnly) {
+        List<RowId> res = new ArrayList<RowId>(rowIds.size());
+        // find which are in cache, and which not
+        Map<RowId, Long> todo = new HashMap<>();
+        for (RowId rowId : rowIds) {
+            Row row = cacheGet(rowId);
+            if (row == null) {
+                if (cacheOnly) {
+                    res.add(new RowId(rowId));
+                } else {
+                    todo.put(rowId, Long.valueOf(cache.getStamp(rowId)));
+                }
+            } else if (isAbsent(row)) {
+                res.add(new RowId(rowId));
+            } else {
+                res.add(row);
+            }
+        }
+        if (!todo.isEmpty()) {
+            final Timer.Context context = sorGetTimer.time();
+            try {
+                // ask missing ones to underlying row mapper
+                List<? extends RowId> fetched = rowMapper.read(todo.keySet(), cacheOnly);
+                // add them to the cache
+                for (RowId rowId : fetched) {
+                    long stamp = todo.get(rowId).longValue();
+                    cachePutRead(rowId, rowId instanceof Row ? (Row) rowId : null, stamp);
+                }
+                // merge results
+                res.addAll(fetched);
+                sorRows.inc(fetched.size());
+            } finally {
+                context.stop();
+            }
+        }
+        return res;
+    }
+
+    /*
+     * Save in the overlay then pass all the writes to the mapper.
+     */
+    @Override
+    public void write(RowBatch batch) {
+        for (Row row : batch.creates) {
+            overlayPut(row);
+            // we need to send modified invalidations for created
+            // fragments because other session's ABSENT fragments have
+            // to be invalidated
+            localInvalidations.addModified(new RowId(row));
+        }
+        for (RowUpdate rowu : batch.updates) {
+            overlayPut(rowu.row);
+            localInvalidations.addModified(new RowId(rowu.row));
+        }
+        for (RowId rowId : batch.deletes) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            overlayPutAbsent(rowId);
+            localInvalidations.addDeleted(rowId);
+        }
+        for (RowId rowId : batch.deletesDependent) {
+            if (rowId instanceof Row) {
+                throw new AssertionError();
+            }
+            overlayPutAbsent(rowId);
+            localInvalidations.addDeleted(rowId);
+        }
+
+        // propagate to underlying mapper
+        rowMapper.write(batch);
+    }
+
+    /*
+     * ----- Read -----
+     */
+
+    @Override
+    public Row readSimpleRow(RowId rowId) {
+        Row row = cacheGet(rowId);
+        if (row == null) {
+            long stamp = cache.getStamp(rowId);
+            row = rowMapper.readSimpleRow(rowId);
+            cachePutRead(rowId, row, stamp);
+            return row;
+        } else if (isAbsent(row)) {
+            return null;
+        } else {
+            return row;
+        }
+    }
+
+    @Override
+    public Map<String, String> getBinaryFulltext(RowId rowId) {
+        return rowMapper.getBinaryFulltext(rowId);
+    }
+
+    @Override
+    public Serializable[] readCollectionRowArray(RowId rowId) {
+        Row row = cacheGet(rowId);
+        if (row == null) {
+            long stamp = cache.getStamp(rowId);
+            Serializable[] array = rowMapper.readCollectionRowArray(rowId);
+            assert array != null;
+            row = new Row(rowId.tableName, rowId.id, array);
+            cachePutRead(rowId, row, stamp);
+            return row.values;
+        } else if (isAbsent(row)) {
+            return null;
+        } else {
+            return row.values;
+        }
+    }
+
+    @Override
+    public List<Row> readSelectionRows(SelectionType selType, Serializable selId, Serializable filter,
+            Serializable criterion, boolean limitToOne) {
+        // the ids are not known in advance, so the rows are not cached in the shared cache: an invalidation could be
+        // processed between the read and the put. They are cached by the persistence context of the session anyway
+        return rowMapper.readSelectionRows(selType, selId, filter, criterion, limitToOne);
+    }
+
+    @Override
+    public Set<Serializable> readSelectionsIds(SelectionType selType, List<Serializable> values) {
+        return rowMapper.readSelectionsIds(selType, values);
+    }
+
+    /*
+     * ----- Copy -----
+     */
+
+    @Override
+    public CopyResult copy(IdWithTypes source, Serializable destParentId, String destName, Row overwriteRow) {
+        CopyResult result = rowMapper.copy(source, destParentId, destName, overwriteRow);
+        Invalidations invalidations = result.invalidations;
+        if (invalidations.modified != null) {
+            for (RowId rowId : invalidations.modified) {
+                overlayRemove(rowId);
+                localInvalidations.addModified(new RowId(rowId));
+            }
+        }
+        if (invalidations.deleted != null) {
+            for (RowId rowId : invalidations.deleted) {
+                overlayRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<NodeInfo> getDescendantsInfo(Serializable rootId) {
+        return rowMapper.getDescendantsInfo(rootId);
+    }
+
+    @Override
+    public void remove(Serializable rootId, List<NodeInfo> nodeInfos) {
+        rowMapper.remove(rootId, nodeInfos);
+        for (NodeInfo info : nodeInfos) {
+            for (String fragmentName : model.getTypeFragments(new IdWithTypes(info.id, info.primaryType, null))) {
+                RowId rowId = new RowId(fragmentName, info.id);
+                overlayRemove(rowId);
+                localInvalidations.addDeleted(rowId);
+            }
+        }
+        // we only put as absent the root fragment, to avoid polluting the overlay
+        // with lots of absent info. the rest is read again from the database
+        overlayPutAbsent(new RowId(Model.HIER_TABLE_NAME, rootId));
+    }
+
+}
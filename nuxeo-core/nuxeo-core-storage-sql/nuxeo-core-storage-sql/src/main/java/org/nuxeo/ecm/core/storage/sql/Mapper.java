@@ -206,6 +206,19 @@ public interface Mapper extends RowMapper, XAResource {
 
     void rebuildReadAcls();
 
+    /**
+     * Updates the read acls of a batch of the documents left pending by an incremental {@link #updateReadAcls}.
+     * <p>
+     * Documents locked by a concurrent update are skipped.
+     *
+     * @param max the maximum number of documents to process
+     * @param currentSave {@code true} to only process the documents queued by the last {@link #updateReadAcls} of
+     *            this mapper's transaction, {@code false} to process any pending document
+     * @return the number of documents processed, 0 when no documents are pending anymore
+     * @since 10.1
+     */
+    int updatePendingReadAcls(int max, boolean currentSave);
+
     /*
      * ----- Clustering -----
      */
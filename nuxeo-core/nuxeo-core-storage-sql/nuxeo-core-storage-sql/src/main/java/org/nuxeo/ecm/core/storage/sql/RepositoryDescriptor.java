@@ -401,6 +401,25 @@ public class RepositoryDescriptor {
         return readAclMaxSize == null ? DEFAULT_READ_ACL_MAX_SIZE : readAclMaxSize.intValue();
     }
 
+    /** @since 10.1 */
+    @XNode("aclOptimizations@incremental")
+    private Boolean aclOptimizationsIncremental;
+
+    /**
+     * Whether read acls are updated incrementally, subtree by subtree and in batches, asynchronously for large
+     * subtrees.
+     *
+     * @since 10.1
+     */
+    public boolean getAclOptimizationsIncremental() {
+        return defaultFalse(aclOptimizationsIncremental);
+    }
+
+    /** @since 10.1 */
+    protected void setAclOptimizationsIncremental(boolean incremental) {
+        aclOptimizationsIncremental = Boolean.valueOf(incremental);
+    }
+
     @XNode("usersSeparator@key")
     public String usersSeparatorKey;
 
@@ -453,6 +472,7 @@ public class RepositoryDescriptor {
         pathOptimizationsVersion = other.pathOptimizationsVersion;
         aclOptimizationsEnabled = other.aclOptimizationsEnabled;
         readAclMaxSize = other.readAclMaxSize;
+        aclOptimizationsIncremental = other.aclOptimizationsIncremental;
         usersSeparatorKey = other.usersSeparatorKey;
         changeTokenEnabled = other.changeTokenEnabled;
     }
@@ -554,6 +574,9 @@ public class RepositoryDescriptor {
         if (other.readAclMaxSize != null) {
             readAclMaxSize = other.readAclMaxSize;
         }
+        if (other.aclOptimizationsIncremental != null) {
+            aclOptimizationsIncremental = other.aclOptimizationsIncremental;
+        }
         if (other.usersSeparatorKey != null) {
             usersSeparatorKey = other.usersSeparatorKey;
         }
@@ -532,6 +532,23 @@ public class RepositoryImpl implements Repository {
         }
     }
 
+    @Override
+    public int updatePendingReadAcls(int max) {
+        if (!repositoryDescriptor.getAclOptimizationsIncremental()) {
+            return 0;
+        }
+        try {
+            SessionImpl conn = getConnection();
+            try {
+                return conn.updatePendingReadAcls(max);
+            } finally {
+                conn.close();
+            }
+        } catch (ResourceException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /*
      * ----- -----
      */
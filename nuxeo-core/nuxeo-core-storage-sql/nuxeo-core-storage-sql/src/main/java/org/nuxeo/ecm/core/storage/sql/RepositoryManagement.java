@@ -83,4 +83,13 @@ public interface RepositoryManagement {
      */
     int cleanupDeletedDocuments(int max, Calendar beforeTime);
 
+    /**
+     * Updates the read acls of a batch of the documents left pending by an incremental read acls update.
+     *
+     * @param max the maximum number of documents to process
+     * @return the number of documents processed, 0 when no documents are pending anymore
+     * @since 10.1
+     */
+    int updatePendingReadAcls(int max);
+
 }
@@ -0,0 +1,476 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.Serializable;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * A cache of {@link Row}s bounded by an estimation of the memory they use, shared by all the sessions of a repository.
+ * <p>
+ * The eviction policy is a simplified W-TinyLFU: new rows enter a small LRU window, and a row evicted from the window
+ * is only admitted in the main LRU space if it has been accessed more frequently than the row it would evict from it.
+ * Access frequencies are estimated by a count-min sketch of 4-bit counters, periodically halved so that the cache
+ * adapts to changes in the workload. This protects the cache against scans of rows that are read only once.
+ * <p>
+ * To avoid caching a row read from the database before a concurrent commit whose invalidation has already been
+ * processed, callers get a stamp before reading the database and pass it when putting the row in the cache. The put is
+ * ignored if a row with a similar hash was invalidated in between.
+ * <p>
+ * The cache is split in segments by hash of row id, each with its own lock, share of the maximum size, frequency
+ * sketch and stamps, so that concurrent sessions mostly access different segments. The rows are stored as is, callers
+ * must clone them if needed.
+ *
+ * @since 10.1
+ */
+public class RowCache {
+
+    /** Fraction of the maximum size used for the admission window. */
+    protected static final double WINDOW_RATIO = 0.01;
+
+    /** Typical size of a row, used to size the frequency sketch. */
+    protected static final int TYPICAL_ROW_BYTES = 512;
+
+    /** Maximum number of segments. */
+    protected static final int MAX_SEGMENTS = 64;
+
+    /** Minimum size of a segment, so that small caches are not split. */
+    protected static final long MIN_SEGMENT_BYTES = 1024 * TYPICAL_ROW_BYTES;
+
+    protected static final int STAMPS = 256;
+
+    protected static class Entry {
+
+        protected final Row row;
+
+        protected final int weight;
+
+        protected Entry(Row row, int weight) {
+            this.row = row;
+            this.weight = weight;
+        }
+    }
+
+    protected final long maxBytes;
+
+    protected final Segment[] segments;
+
+    /** Number of bits of the hash used to select a segment. */
+    protected final int segmentBits;
+
+    protected final Counter hits;
+
+    protected final Counter misses;
+
+    protected final Counter evictions;
+
+    /**
+     * Creates a cache and registers its metrics.
+     *
+     * @param repositoryName the repository name
+     * @param maxBytes the maximum estimated size of the rows held in the cache, in bytes
+     */
+    public RowCache(String repositoryName, long maxBytes) {
+        this(repositoryName, maxBytes, defaultSegments(maxBytes));
+    }
+
+    /**
+     * Creates a cache with the given number of segments and registers its metrics.
+     *
+     * @param repositoryName the repository name
+     * @param maxBytes the maximum estimated size of the rows held in the cache, in bytes
+     * @param segments the number of segments, a power of two
+     */
+    public RowCache(String repositoryName, long maxBytes, int segments) {
+        if (segments < 1 || Integer.bitCount(segments) != 1) {
+            throw new IllegalArgumentException("Number of segments must be a power of two: " + segments);
+        }
+        this.maxBytes = maxBytes;
+        segmentBits = Integer.numberOfTrailingZeros(segments);
+        this.segments = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new Segment(maxBytes / segments);
+        }
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String prefix = MetricRegistry.name("nuxeo", "repositories", repositoryName, "caches", "bounded");
+        hits = registry.counter(MetricRegistry.name(prefix, "hits"));
+        misses = registry.counter(MetricRegistry.name(prefix, "misses"));
+        evictions = registry.counter(MetricRegistry.name(prefix, "evictions"));
+        // gauges refer to this instance, replace those of a previous cache
+        registerGauge(registry, MetricRegistry.name(prefix, "size"), (Gauge<Integer>) this::size);
+        registerGauge(registry, MetricRegistry.name(prefix, "bytes"), (Gauge<Long>) this::getBytes);
+        registerGauge(registry, MetricRegistry.name(prefix, "hit-ratio"), new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                long h = hits.getCount();
+                return Ratio.of(h, h + misses.getCount());
+            }
+        });
+    }
+
+    /**
+     * Gets the number of segments for a maximum size: as many as the available processors allow, but not so many that
+     * a segment would be too small to hold a useful window and main space.
+     */
+    protected static int defaultSegments(long maxBytes) {
+        int segments = Integer.highestOneBit(Math.min(MAX_SEGMENTS, 4 * Runtime.getRuntime().availableProcessors()));
+        while (segments > 1 && maxBytes / segments < MIN_SEGMENT_BYTES) {
+            segments >>= 1;
+        }
+        return segments;
+    }
+
+    protected static void registerGauge(MetricRegistry registry, String name, Gauge<?> gauge) {
+        registry.remove(name);
+        registry.register(name, gauge);
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Gets the estimated size of the cached rows, in bytes.
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.getBytes();
+        }
+        return bytes;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    protected static int hash(RowId rowId) {
+        int h = rowId.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    protected Segment segment(int hash) {
+        // high bits of a multiplicative hash, the low bits select the stamp
+        return segmentBits == 0 ? segments[0] : segments[(hash * 0x9E3779B9) >>> (32 - segmentBits)];
+    }
+
+    protected static int stampIndex(int hash) {
+        return hash & (STAMPS - 1);
+    }
+
+    /**
+     * Gets a row from the cache, and records the access.
+     *
+     * @return the cached row, or {@code null} if absent from the cache
+     */
+    public Row get(RowId rowId) {
+        int hash = hash(rowId);
+        Row row = segment(hash).get(rowId);
+        if (row == null) {
+            misses.inc();
+        } else {
+            hits.inc();
+        }
+        return row;
+    }
+
+    /**
+     * Gets the stamp to pass to {@link #put} for a row read from the database after this call.
+     */
+    public long getStamp(RowId rowId) {
+        int hash = hash(rowId);
+        return segment(hash).getStamp(stampIndex(hash));
+    }
+
+    /**
+     * Puts a row in the cache, unless it has been invalidated since the stamp was taken.
+     *
+     * @param rowId the row id
+     * @param row the row
+     * @param stamp the stamp returned by {@link #getStamp} before the row was read
+     */
+    public void put(RowId rowId, Row row, long stamp) {
+        int hash = hash(rowId);
+        int weight = estimateBytes(row);
+        segment(hash).put(rowId, row, weight, stampIndex(hash), stamp);
+    }
+
+    /**
+     * Removes a row from the cache, and prevents its caching by concurrent readers.
+     */
+    public void invalidate(RowId rowId) {
+        int hash = hash(rowId);
+        segment(hash).invalidate(rowId, stampIndex(hash));
+    }
+
+    /**
+     * Removes all the rows from the cache, and prevents their caching by concurrent readers.
+     */
+    public void invalidateAll() {
+        for (Segment segment : segments) {
+            segment.invalidateAll();
+        }
+    }
+
+    /**
+     * A segment of the cache, with its own window, main space, frequency sketch and stamps. All methods are
+     * synchronized.
+     */
+    protected class Segment {
+
+        protected final long windowMaxBytes;
+
+        protected final long mainMaxBytes;
+
+        protected final LinkedHashMap<RowId, Entry> window = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected final LinkedHashMap<RowId, Entry> main = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected long windowBytes;
+
+        protected long mainBytes;
+
+        protected final FrequencySketch sketch;
+
+        /** Invalidation counters, by hash of row id. */
+        protected final long[] stamps = new long[STAMPS];
+
+        protected Segment(long maxBytes) {
+            windowMaxBytes = Math.max(1, (long) (maxBytes * WINDOW_RATIO));
+            mainMaxBytes = maxBytes - windowMaxBytes;
+            sketch = new FrequencySketch(maxBytes / TYPICAL_ROW_BYTES);
+        }
+
+        protected synchronized long getBytes() {
+            return windowBytes + mainBytes;
+        }
+
+        protected synchronized int size() {
+            return window.size() + main.size();
+        }
+
+        protected synchronized Row get(RowId rowId) {
+            sketch.increment(rowId);
+            Entry entry = window.get(rowId);
+            if (entry == null) {
+                entry = main.get(rowId);
+            }
+            return entry == null ? null : entry.row;
+        }
+
+        protected synchronized long getStamp(int stampIndex) {
+            return stamps[stampIndex];
+        }
+
+        protected synchronized void put(RowId rowId, Row row, int weight, int stampIndex, long stamp) {
+            if (stamps[stampIndex] != stamp) {
+                return;
+            }
+            removeEntry(rowId);
+            if (weight > mainMaxBytes) {
+                return;
+            }
+            window.put(rowId, new Entry(row, weight));
+            windowBytes += weight;
+            for (Iterator<Map.Entry<RowId, Entry>> it = window.entrySet().iterator(); windowBytes > windowMaxBytes
+                    && it.hasNext();) {
+                Map.Entry<RowId, Entry> candidate = it.next();
+                it.remove();
+                windowBytes -= candidate.getValue().weight;
+                admit(candidate.getKey(), candidate.getValue());
+            }
+        }
+
+        /**
+         * Moves a row evicted from the window to the main space, if it is more frequently accessed than the rows it
+         * would evict from there.
+         */
+        protected void admit(RowId rowId, Entry entry) {
+            if (mainBytes + entry.weight > mainMaxBytes) {
+                RowId victim = main.keySet().iterator().next();
+                if (sketch.frequency(rowId) <= sketch.frequency(victim)) {
+                    evictions.inc();
+                    return;
+                }
+                for (Iterator<Entry> it = main.values().iterator(); mainBytes + entry.weight > mainMaxBytes
+                        && it.hasNext();) {
+                    mainBytes -= it.next().weight;
+                    it.remove();
+                    evictions.inc();
+                }
+            }
+            main.put(rowId, entry);
+            mainBytes += entry.weight;
+        }
+
+        protected void removeEntry(RowId rowId) {
+            Entry entry = window.remove(rowId);
+            if (entry != null) {
+                windowBytes -= entry.weight;
+            }
+            entry = main.remove(rowId);
+            if (entry != null) {
+                mainBytes -= entry.weight;
+            }
+        }
+
+        protected synchronized void invalidate(RowId rowId, int stampIndex) {
+            stamps[stampIndex]++;
+            removeEntry(rowId);
+        }
+
+        protected synchronized void invalidateAll() {
+            for (int i = 0; i < STAMPS; i++) {
+                stamps[i]++;
+            }
+            window.clear();
+            main.clear();
+            windowBytes = 0;
+            mainBytes = 0;
+        }
+    }
+
+    /**
+     * Estimates the memory used by a cached row, including its cache entry.
+     */
+    public static int estimateBytes(Row row) {
+        int bytes = 128 + estimateBytes(row.id);
+        if (row.keys != null) {
+            // keys are shared with the model, only count the array
+            bytes += 16 + 8 * row.keys.length;
+        }
+        if (row.values != null) {
+            bytes += estimateBytes(row.values);
+        }
+        return bytes;
+    }
+
+    protected static int estimateBytes(Serializable value) {
+        if (value == null) {
+            return 0;
+        } else if (value instanceof String) {
+            return 40 + 2 * ((String) value).length();
+        } else if (value instanceof Calendar) {
+            return 450;
+        } else if (value instanceof ACLRow) {
+            ACLRow acl = (ACLRow) value;
+            return 64 + estimateBytes(acl.name) + estimateBytes(acl.permission) + estimateBytes(acl.user)
+                    + estimateBytes(acl.group) + estimateBytes(acl.creator) + estimateBytes(acl.begin)
+                    + estimateBytes(acl.end) + estimateBytes(acl.status);
+        } else if (value instanceof Object[]) {
+            Object[] array = (Object[]) value;
+            int bytes = 16 + 8 * array.length;
+            for (Object v : array) {
+                if (v instanceof Serializable) {
+                    bytes += estimateBytes((Serializable) v);
+                }
+            }
+            return bytes;
+        } else if (value instanceof byte[]) {
+            return 16 + ((byte[]) value).length;
+        } else {
+            // numbers, booleans, and other small values
+            return 24;
+        }
+    }
+
+    /**
+     * Count-min sketch of 4-bit counters estimating the access frequency of rows.
+     */
+    protected static class FrequencySketch {
+
+        protected static final int DEPTH = 4;
+
+        protected static final int MAX_COUNT = 15;
+
+        protected static final int[] SEEDS = { 0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F };
+
+        protected final byte[][] table;
+
+        protected final int mask;
+
+        /** Number of increments after which all counters are halved. */
+        protected final int sampleSize;
+
+        protected int additions;
+
+        protected FrequencySketch(long expectedEntries) {
+            int width = Integer.highestOneBit((int) Math.min(Math.max(expectedEntries, 1024), 1 << 20) - 1) << 1;
+            table = new byte[DEPTH][width];
+            mask = width - 1;
+            sampleSize = 10 * width;
+        }
+
+        protected int index(Object key, int i) {
+            int h = key.hashCode() * SEEDS[i];
+            return (h ^ (h >>> 17)) & mask;
+        }
+
+        protected void increment(Object key) {
+            boolean added = false;
+            for (int i = 0; i < DEPTH; i++) {
+                int index = index(key, i);
+                if (table[i][index] < MAX_COUNT) {
+                    table[i][index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        protected int frequency(Object key) {
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                frequency = Math.min(frequency, table[i][index(key, i)]);
+            }
+            return frequency;
+        }
+
+        protected void reset() {
+            for (byte[] row : table) {
+                for (int j = 0; j < row.length; j++) {
+                    row[j] >>= 1;
+                }
+            }
+            additions /= 2;
+        }
+    }
+
+}
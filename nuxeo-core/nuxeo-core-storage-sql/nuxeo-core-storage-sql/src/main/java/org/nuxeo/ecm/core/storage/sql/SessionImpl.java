@@ -75,6 +75,7 @@ import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.transaction.TransactionHelper;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
 import com.codahale.metrics.Timer;
@@ -99,6 +100,17 @@ public class SessionImpl implements Session, XAResource {
     private static final boolean COMPAT_REPOSITORY_NAME = Boolean.parseBoolean(
             Framework.getProperty(COMPAT_REPOSITORY_NAME_KEY, "true"));
 
+    /**
+     * Property for the maximum number of documents whose read acls are updated synchronously at save time when read
+     * acls are updated incrementally. The rest are updated asynchronously by an {@link UpdateReadAclsWork}.
+     *
+     * @since 10.1
+     */
+    public static final String READ_ACL_ASYNC_THRESHOLD_PROPERTY = "nuxeo.core.readacl.async.threshold";
+
+    /** @since 10.1 */
+    public static final String READ_ACL_ASYNC_THRESHOLD_DEFAULT = "500";
+
     protected final RepositoryImpl repository;
 
     private final Mapper mapper;
@@ -135,6 +147,13 @@ public class SessionImpl implements Session, XAResource {
 
     private final Timer aclrUpdateTimer;
 
+    /**
+     * Estimated number of database round-trips saved by reading the fragments of several documents at once.
+     *
+     * @since 10.1
+     */
+    private final Histogram prefetchEstimatedSavedRoundTrips;
+
     private static final java.lang.String LOG_MIN_DURATION_KEY = "org.nuxeo.vcs.query.log_min_duration_ms";
 
     private static final long LOG_MIN_DURATION_NS = Long.parseLong(Framework.getProperty(LOG_MIN_DURATION_KEY, "-1"))
@@ -158,6 +177,8 @@ public class SessionImpl implements Session, XAResource {
         queryTimer = registry.timer(MetricRegistry.name("nuxeo", "repositories", repository.getName(), "queries"));
         aclrUpdateTimer = registry.timer(
                 MetricRegistry.name("nuxeo", "repositories", repository.getName(), "aclr-updates"));
+        prefetchEstimatedSavedRoundTrips = registry.histogram(MetricRegistry.name("nuxeo", "repositories",
+                repository.getName(), "prefetch", "estimated-saved-round-trips"));
 
         computeRootNode();
     }
@@ -698,6 +719,9 @@ public class SessionImpl implements Session, XAResource {
             }
 
             // we have everything to be prefetched
+            if (ids.size() > 1) {
+                prefetchEstimatedSavedRoundTrips.update(estimateSavedRoundTrips(ids.size(), bulkRowIds));
+            }
 
             // fetch all the prefetches in bulk
             List<Fragment> fragments = context.getMulti(bulkRowIds, true);
@@ -723,6 +747,27 @@ public class SessionImpl implements Session, XAResource {
         return nodes;
     }
 
+    /**
+     * Estimates how many database round-trips are saved by reading the fragments of several documents at once instead
+     * of one document at a time, assuming that the mapper issues one query per table.
+     * <p>
+     * This is an upper bound: the fragments already in the session or in the mapper cache are not read from the
+     * database either way, and are not taken into account.
+     *
+     * @param documents the number of documents
+     * @param bulkRowIds the prefetched fragments of all the documents
+     * @since 10.1
+     */
+    protected static int estimateSavedRoundTrips(int documents, List<RowId> bulkRowIds) {
+        Set<String> tableNames = new HashSet<>();
+        for (RowId rowId : bulkRowIds) {
+            tableNames.add(rowId.tableName);
+        }
+        // one document at a time: a hierarchy read, then one read for each of its prefetched fragments
+        // all at once: a hierarchy read, then one read for each table
+        return documents + bulkRowIds.size() - (1 + tableNames.size());
+    }
+
     /**
      * Finds prefetched fragments for a hierarchy fragment, takes note of the ones that are proxies.
      */
@@ -1063,12 +1108,18 @@ public class SessionImpl implements Session, XAResource {
     public List<Node> getChildren(Node parent, String name, boolean complexProp) {
         checkLive();
         List<SimpleFragment> fragments = context.getChildren(parent.getId(), name, complexProp);
-        List<Node> nodes = new ArrayList<>(fragments.size());
+        List<Serializable> ids = new ArrayList<>(fragments.size());
         for (SimpleFragment fragment : fragments) {
-            Node node = getNodeById(fragment.getId());
+            ids.add(fragment.getId());
+        }
+        // prefetch the fragments of all the children together, with one read per table
+        List<Node> nodes = new ArrayList<>(fragments.size());
+        List<Node> children = getNodesByIds(ids, true);
+        for (int i = 0; i < ids.size(); i++) {
+            Node node = children.get(i);
             if (node == null) {
                 // cannot happen
-                log.error("Child node cannot be created: " + fragment.getId());
+                log.error("Child node cannot be created: " + ids.get(i));
                 continue;
             }
             nodes.add(node);
@@ -1364,11 +1415,32 @@ public class SessionImpl implements Session, XAResource {
         try {
             mapper.updateReadAcls();
             readAclsChanged = false;
+            if (repository.getRepositoryDescriptor().getAclOptimizationsIncremental()) {
+                processPendingReadAcls();
+            }
         } finally {
             timerContext.stop();
         }
     }
 
+    /**
+     * Updates the read acls of the documents queued by this save synchronously up to a threshold, and schedules the
+     * update of the rest.
+     */
+    protected void processPendingReadAcls() {
+        int threshold = Integer.parseInt(
+                Framework.getProperty(READ_ACL_ASYNC_THRESHOLD_PROPERTY, READ_ACL_ASYNC_THRESHOLD_DEFAULT));
+        int count = 1;
+        for (int done = 0; count > 0 && done < threshold; done += count) {
+            // documents left by other saves are processed by their own work
+            count = mapper.updatePendingReadAcls(threshold - done, true);
+        }
+        if (count > 0) {
+            // large subtree, continue after commit
+            scheduleWork(Collections.singletonList(new UpdateReadAclsWork(repository.getName())));
+        }
+    }
+
     @Override
     public void rebuildReadAcls() {
         mapper.rebuildReadAcls();
@@ -1431,6 +1503,14 @@ public class SessionImpl implements Session, XAResource {
         mapper.markReferencedBinaries();
     }
 
+    /**
+     * @since 10.1
+     */
+    public int updatePendingReadAcls(int max) {
+        checkLive();
+        return mapper.updatePendingReadAcls(max, false);
+    }
+
     public int cleanupDeletedDocuments(int max, Calendar beforeTime) {
         checkLive();
         if (!repository.getRepositoryDescriptor().getSoftDeleteEnabled()) {
@@ -131,6 +131,11 @@ public class SoftRefCachingMapper extends SoftRefCachingRowMapper implements Cac
         mapper.rebuildReadAcls();
     }
 
+    @Override
+    public int updatePendingReadAcls(int max, boolean currentSave) {
+        return mapper.updatePendingReadAcls(max, currentSave);
+    }
+
     @Override
     public int getClusterNodeIdType() {
         return mapper.getClusterNodeIdType();
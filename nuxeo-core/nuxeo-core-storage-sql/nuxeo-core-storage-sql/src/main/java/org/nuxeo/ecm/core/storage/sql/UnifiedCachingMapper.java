@@ -132,6 +132,11 @@ public class UnifiedCachingMapper extends UnifiedCachingRowMapper implements Cac
         mapper.rebuildReadAcls();
     }
 
+    @Override
+    public int updatePendingReadAcls(int max, boolean currentSave) {
+        return mapper.updatePendingReadAcls(max, currentSave);
+    }
+
     @Override
     public int getClusterNodeIdType() {
         return mapper.getClusterNodeIdType();
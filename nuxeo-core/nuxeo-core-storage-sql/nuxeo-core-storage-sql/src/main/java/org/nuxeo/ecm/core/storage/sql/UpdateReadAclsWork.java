@@ -0,0 +1,85 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.storage.sql.coremodel.SQLRepositoryService;
+import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.runtime.api.Framework;
+
+/**
+ * Work updating by batches the read acls left pending by an incremental read acls update.
+ * <p>
+ * The pending documents are stored in the database, so a suspended or interrupted work loses nothing: the next update
+ * continues where it stopped. Until then the pending documents keep their previous read acls.
+ *
+ * @since 10.1
+ */
+public class UpdateReadAclsWork extends AbstractWork {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Log log = LogFactory.getLog(UpdateReadAclsWork.class);
+
+    public static final String CATEGORY = "updateReadAcls";
+
+    public static final int BATCH_SIZE = 500;
+
+    public UpdateReadAclsWork(String repositoryName) {
+        super(repositoryName + ":updateReadAcls");
+        this.repositoryName = repositoryName;
+    }
+
+    @Override
+    public String getCategory() {
+        return CATEGORY;
+    }
+
+    @Override
+    public String getTitle() {
+        return "Update Read ACLs";
+    }
+
+    @Override
+    public void work() {
+        RepositoryManagement repository = Framework.getService(SQLRepositoryService.class)
+                                                   .getRepository(repositoryName);
+        setStatus("Updating read acls");
+        long done = 0;
+        int count;
+        while ((count = repository.updatePendingReadAcls(BATCH_SIZE)) > 0) {
+            done += count;
+            setProgress(new Progress(done, 0));
+            setStatus("Updated read acls of " + done + " documents");
+            commitOrRollbackTransaction();
+            if (isSuspending()) {
+                // the remaining documents are still pending in the database
+                suspended();
+                return;
+            }
+            startTransaction();
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Updated read acls of " + done + " documents in repository: " + repositoryName);
+        }
+        setStatus(null);
+    }
+
+}
@@ -0,0 +1,313 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.pubsub.AbstractPubSubBroker;
+import org.nuxeo.runtime.pubsub.SerializableMessage;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * PubSub implementation of the VCS {@link ClusterInvalidator} that coalesces the invalidations sent to other nodes.
+ * <p>
+ * The invalidations of all the transactions saved during a time window are merged and sent as a single compressed
+ * message. A message that would hold more than a maximum number of rows is replaced by an "invalidate all" marker. The
+ * window and the maximum are configured through the {@value #WINDOW_PROP} and {@value #MAX_ROWS_PROP} framework
+ * properties.
+ * <p>
+ * The size of the sent messages and the lag of the messages received from each other node are available as metrics.
+ * The lag includes the coalescing window, and assumes that the clocks of the nodes are synchronized.
+ *
+ * @since 10.1
+ */
+public class VCSCoalescingPubSubInvalidator extends AbstractPubSubBroker<VCSCoalescingPubSubInvalidator.Message>
+        implements ClusterInvalidator {
+
+    private static final Log log = LogFactory.getLog(VCSCoalescingPubSubInvalidator.class);
+
+    public static final String WINDOW_PROP = "org.nuxeo.vcs.invalidations.coalescing.window_ms";
+
+    public static final String MAX_ROWS_PROP = "org.nuxeo.vcs.invalidations.coalescing.max_rows";
+
+    public static final long DEFAULT_WINDOW = 200;
+
+    public static final int DEFAULT_MAX_ROWS = 5000;
+
+    /** Seconds to wait on close for a flush in progress. */
+    protected static final long CLOSE_TIMEOUT = 10;
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected String repositoryName;
+
+    protected String nodeId;
+
+    protected long window;
+
+    protected int maxRows;
+
+    protected ScheduledExecutorService flusher;
+
+    /** Invalidations waiting to be sent to other nodes. */
+    protected Invalidations pendingInvalidations;
+
+    /** Time at which the first pending invalidations were added, or 0 if none are pending. */
+    protected long pendingSince;
+
+    /** Invalidations received from other nodes. */
+    protected volatile Invalidations bufferedInvalidations;
+
+    protected Histogram sentSize;
+
+    protected Histogram sentRows;
+
+    protected Counter degraded;
+
+    /**
+     * A message holding the invalidations sent by a node.
+     */
+    public static class Message implements SerializableMessage {
+
+        private static final long serialVersionUID = 1L;
+
+        public final String nodeId;
+
+        /** Time at which the oldest invalidations were saved. */
+        public final long timestamp;
+
+        public final Invalidations invalidations;
+
+        /** The compressed size, once serialized. */
+        protected transient int size;
+
+        public Message(String nodeId, long timestamp, Invalidations invalidations) {
+            this.nodeId = nodeId;
+            this.timestamp = timestamp;
+            this.invalidations = invalidations;
+        }
+
+        @Override
+        public void serialize(OutputStream out) throws IOException {
+            ByteArrayOutputStream baout = new ByteArrayOutputStream();
+            try (DataOutputStream dout = new DataOutputStream(baout)) {
+                dout.writeUTF(nodeId);
+                dout.writeLong(timestamp);
+                try (ObjectOutputStream oout = new ObjectOutputStream(new GZIPOutputStream(dout))) {
+                    oout.writeObject(invalidations);
+                }
+            }
+            size = baout.size();
+            baout.writeTo(out);
+        }
+
+        public static Message deserialize(InputStream in) throws IOException {
+            DataInputStream din = new DataInputStream(in);
+            String nodeId = din.readUTF();
+            long timestamp = din.readLong();
+            try (ObjectInputStream oin = new ObjectInputStream(new GZIPInputStream(din))) {
+                return new Message(nodeId, timestamp, (Invalidations) oin.readObject());
+            } catch (ClassNotFoundException | ClassCastException e) {
+                throw new IOException(e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return getClass().getSimpleName() + "(" + nodeId + "," + timestamp + "," + invalidations + ")";
+        }
+    }
+
+    @Override
+    public void initialize(String nodeId, RepositoryImpl repository) {
+        long window = Long.parseLong(Framework.getProperty(WINDOW_PROP, String.valueOf(DEFAULT_WINDOW)));
+        int maxRows = Integer.parseInt(Framework.getProperty(MAX_ROWS_PROP, String.valueOf(DEFAULT_MAX_ROWS)));
+        initialize(repository.getName(), nodeId, window, maxRows);
+    }
+
+    /**
+     * Initializes the invalidator.
+     *
+     * @param repositoryName the repository name
+     * @param nodeId the cluster node id
+     * @param window the coalescing window, in milliseconds, or 0 to send the invalidations immediately
+     * @param maxRows the maximum number of rows sent in a message before sending "invalidate all" instead
+     */
+    protected void initialize(String repositoryName, String nodeId, long window, int maxRows) {
+        this.repositoryName = repositoryName;
+        this.nodeId = nodeId;
+        this.window = window;
+        this.maxRows = maxRows;
+        pendingInvalidations = new Invalidations();
+        bufferedInvalidations = new Invalidations();
+        sentSize = registry.histogram(getMetricName("sent-size"));
+        sentRows = registry.histogram(getMetricName("sent-rows"));
+        degraded = registry.counter(getMetricName("degraded"));
+        if (window > 0) {
+            ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread thread = new Thread(r, "Nuxeo-VCS-Invalidations-" + repositoryName);
+                thread.setDaemon(true);
+                return thread;
+            });
+            // on close the pending invalidations are flushed by the closing thread
+            executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            flusher = executor;
+        }
+        // not the topic of VCSPubSubInvalidator, the messages are incompatible
+        initialize("vcs-coalescing:" + repositoryName, nodeId);
+    }
+
+    protected String getMetricName(String... names) {
+        return MetricRegistry.name(MetricRegistry.name("nuxeo", "repositories", repositoryName, "invalidations"),
+                names);
+    }
+
+    @Override
+    public void close() {
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                // let a flush in progress finish sending its message
+                if (!flusher.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS)) {
+                    log.warn("Timed out waiting for the invalidations flusher of repository: " + repositoryName);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            flusher = null;
+        }
+        // don't lose the invalidations still in the window
+        flush();
+        super.close();
+        // not null to avoid crashing subscriber thread still in flight
+        bufferedInvalidations = new Invalidations();
+    }
+
+    @Override
+    public void sendInvalidations(Invalidations invalidations) {
+        boolean schedule;
+        synchronized (this) {
+            pendingInvalidations.add(invalidations);
+            schedule = pendingSince == 0;
+            if (schedule) {
+                pendingSince = System.currentTimeMillis();
+            }
+        }
+        if (flusher == null) {
+            flush();
+        } else if (schedule) {
+            flusher.schedule(this::flush, window, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends the pending invalidations to other nodes.
+     */
+    protected void flush() {
+        Invalidations invalidations;
+        long timestamp;
+        synchronized (this) {
+            invalidations = pendingInvalidations;
+            timestamp = pendingSince;
+            pendingInvalidations = new Invalidations();
+            pendingSince = 0;
+        }
+        if (invalidations.isEmpty()) {
+            return;
+        }
+        int rows = getRows(invalidations);
+        if (rows > maxRows) {
+            if (log.isDebugEnabled()) {
+                log.debug("Sending invalidate all instead of " + rows + " rows");
+            }
+            invalidations = new Invalidations(true);
+            degraded.inc();
+        }
+        Message message = new Message(nodeId, timestamp, invalidations);
+        try {
+            sendMessage(message);
+        } catch (RuntimeException e) {
+            // don't kill the flusher thread
+            log.error("Failed to send invalidations", e);
+            return;
+        }
+        sentRows.update(rows);
+        sentSize.update(message.size);
+    }
+
+    protected static int getRows(Invalidations invalidations) {
+        int rows = 0;
+        if (invalidations.modified != null) {
+            rows += invalidations.modified.size();
+        }
+        if (invalidations.deleted != null) {
+            rows += invalidations.deleted.size();
+        }
+        return rows;
+    }
+
+    @Override
+    public Message deserialize(InputStream in) throws IOException {
+        return Message.deserialize(in);
+    }
+
+    @Override
+    public void receivedMessage(Message message) {
+        long lag = System.currentTimeMillis() - message.timestamp;
+        registry.histogram(getMetricName("lag", message.nodeId)).update(Math.max(lag, 0));
+        synchronized (this) {
+            bufferedInvalidations.add(message.invalidations);
+        }
+    }
+
+    @Override
+    public Invalidations receiveInvalidations() {
+        Invalidations newInvalidations = new Invalidations();
+        Invalidations invalidations;
+        synchronized (this) {
+            invalidations = bufferedInvalidations;
+            bufferedInvalidations = newInvalidations;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Received invalidations: " + invalidations);
+        }
+        return invalidations;
+    }
+
+}
@@ -42,6 +42,15 @@ public class SQLFulltextExtractorWork extends FulltextExtractorWork {
         super(repositoryName, docId, true);
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected SQLFulltextExtractorWork() {
+        super();
+    }
+
     private static final Log log = LogFactory.getLog(SQLFulltextExtractorWork.class);
 
     @Override
@@ -1216,6 +1216,33 @@ public class JDBCMapper extends JDBCRowMapper implements Mapper {
         log.debug("rebuildReadAcls: done.");
     }
 
+    @Override
+    public int updatePendingReadAcls(int max, boolean currentSave) {
+        String sql = dialect.getUpdateReadAclsBatchSql();
+        if (!dialect.supportsReadAcl() || sql == null) {
+            return 0;
+        }
+        if (logger.isLogEnabled()) {
+            logger.logSQL(sql, Arrays.<Serializable> asList(Integer.valueOf(max), Boolean.valueOf(currentSave)));
+        }
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            ps.setInt(1, max);
+            ps.setBoolean(2, currentSave);
+            try (ResultSet rs = ps.executeQuery()) {
+                countExecute();
+                if (!rs.next()) {
+                    throw new NuxeoException("Cannot get result");
+                }
+                int count = rs.getInt(1);
+                logger.logCount(count);
+                return count;
+            }
+        } catch (SQLException e) {
+            checkConcurrentUpdate(e);
+            throw new NuxeoException("Failed to update pending read acls", e);
+        }
+    }
+
     /*
      * ----- Locking -----
      */
@@ -190,6 +190,11 @@ public abstract class Dialect {
 
     protected final int readAclMaxSize;
 
+    /**
+     * @since 10.1
+     */
+    protected boolean readAclsIncremental;
+
     /**
      * Creates a {@code Dialect} by connecting to the datasource to check what database is used.
      */
@@ -271,6 +276,7 @@ public abstract class Dialect {
             fulltextSearchDisabled = fulltextDescriptor.getFulltextSearchDisabled();
             aclOptimizationsEnabled = repositoryDescriptor.getAclOptimizationsEnabled();
             readAclMaxSize = repositoryDescriptor.getReadAclMaxSize();
+            readAclsIncremental = repositoryDescriptor.getAclOptimizationsIncremental();
             clusteringEnabled = repositoryDescriptor.getClusteringEnabled();
             softDeleteEnabled = repositoryDescriptor.getSoftDeleteEnabled();
             proxiesEnabled = repositoryDescriptor.getProxiesEnabled();
@@ -1081,6 +1087,20 @@ public abstract class Dialect {
         return null;
     }
 
+    /**
+     * Gets the statement to update the read acls of a batch of the documents left pending by an incremental
+     * {@link #getUpdateReadAclsSql}, or {@code null} if read acls are not updated incrementally.
+     * <p>
+     * The statement has two parameters (the maximum number of documents to process, and whether to only process the
+     * documents queued by the current save) and returns the number of documents processed, 0 when no documents are
+     * pending anymore. Documents locked by a concurrent batch are skipped.
+     *
+     * @since 10.1
+     */
+    public String getUpdateReadAclsBatchSql() {
+        return null;
+    }
+
     /**
      * Gets the statement to rebuild the wall read acls
      */
@@ -141,6 +141,11 @@ public class DialectPostgreSQL extends Dialect {
         } else {
             unloggedKeyword = "";
         }
+        if (readAclsIncremental && (major < 9 || (major == 9 && minor < 5))) {
+            // SKIP LOCKED is needed to process the pending read acls concurrently
+            log.warn("Incremental read acls need PostgreSQL 9.5 or later, using full updates instead");
+            readAclsIncremental = false;
+        }
         usersSeparator = repositoryDescriptor == null ? null
                 : repositoryDescriptor.usersSeparatorKey == null ? DEFAULT_USERS_SEPARATOR
                         : repositoryDescriptor.usersSeparatorKey;
@@ -812,9 +817,20 @@ public class DialectPostgreSQL extends Dialect {
 
     @Override
     public String getUpdateReadAclsSql() {
+        if (readAclsIncremental) {
+            return "SELECT nx_update_read_acls_incremental();";
+        }
         return "SELECT nx_update_read_acls();";
     }
 
+    @Override
+    public String getUpdateReadAclsBatchSql() {
+        if (readAclsIncremental) {
+            return "SELECT nx_update_read_acls_batch(?, ?);";
+        }
+        return null;
+    }
+
     @Override
     public String getRebuildReadAclsSql() {
         return "SELECT nx_rebuild_read_acls();";
@@ -1112,6 +1128,7 @@ public class DialectPostgreSQL extends Dialect {
             properties.put("idSequenceName", idSequenceName);
         }
         properties.put("aclOptimizationsEnabled", Boolean.valueOf(aclOptimizationsEnabled));
+        properties.put("readAclsIncremental", Boolean.valueOf(readAclsIncremental));
         properties.put("pathOptimizationsEnabled", Boolean.valueOf(pathOptimizationsEnabled));
         properties.put("fulltextAnalyzer", fulltextAnalyzer);
         properties.put("fulltextEnabled", Boolean.valueOf(!fulltextDisabled));
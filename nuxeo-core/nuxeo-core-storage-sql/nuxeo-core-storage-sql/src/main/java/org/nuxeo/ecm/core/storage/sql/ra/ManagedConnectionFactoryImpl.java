@@ -224,6 +224,14 @@ public class ManagedConnectionFactoryImpl implements ManagedConnectionFactory, R
         return repository.cleanupDeletedDocuments(max, beforeTime);
     }
 
+    @Override
+    public int updatePendingReadAcls(int max) {
+        if (repository == null) {
+            return 0;
+        }
+        return repository.updatePendingReadAcls(max);
+    }
+
     /*
      * ----- -----
      */
@@ -147,8 +147,11 @@ public class TestRepositoryDescriptor {
     @Test
     public void testMerge() throws Exception {
         RepositoryDescriptor desc2 = (RepositoryDescriptor) xmap.load(getResource("test-repository-descriptor2.xml"));
+        assertFalse(desc.getAclOptimizationsIncremental());
         desc.merge(desc2);
         assertFalse(desc.getClusteringEnabled());
+        assertTrue(desc.getAclOptimizationsEnabled());
+        assertTrue(desc.getAclOptimizationsIncremental());
         assertEquals(Arrays.asList("file1", "file2", "file3"), desc.sqlInitFiles);
         assertTrue(desc.getPathOptimizationsEnabled());
         assertEquals(2, desc.getPathOptimizationsVersion());
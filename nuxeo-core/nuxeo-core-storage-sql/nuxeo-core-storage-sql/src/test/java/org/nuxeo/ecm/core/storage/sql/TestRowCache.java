@@ -0,0 +1,182 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestRowCache {
+
+    protected static Row newRow(String id) {
+        Row row = new Row("hierarchy", id);
+        row.put("name", "doc-" + id);
+        return row;
+    }
+
+    protected static void put(RowCache cache, Row row) {
+        cache.put(row, row, cache.getStamp(row));
+    }
+
+    @Test
+    public void testGetPut() throws Exception {
+        RowCache cache = new RowCache("testrepo", 1024 * 1024);
+        Row row = newRow("a");
+        assertNull(cache.get(row));
+        put(cache, row);
+        assertSame(row, cache.get(new RowId("hierarchy", "a")));
+        assertEquals(1, cache.size());
+        assertEquals(RowCache.estimateBytes(row), cache.getBytes());
+
+        cache.invalidate(row);
+        assertNull(cache.get(row));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        int rowBytes = RowCache.estimateBytes(newRow("0"));
+        RowCache cache = new RowCache("testrepo", 100 * rowBytes);
+        for (int i = 0; i < 1000; i++) {
+            put(cache, newRow(String.valueOf(i)));
+        }
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertTrue(String.valueOf(cache.size()), cache.size() > 50);
+    }
+
+    @Test
+    public void testFrequentRowsSurviveScan() throws Exception {
+        int rowBytes = RowCache.estimateBytes(newRow("0"));
+        RowCache cache = new RowCache("testrepo", 100 * rowBytes);
+        // frequently accessed rows
+        for (int n = 0; n < 5; n++) {
+            for (int i = 0; i < 50; i++) {
+                Row row = newRow("hot" + i);
+                if (cache.get(row) == null) {
+                    put(cache, row);
+                }
+            }
+        }
+        // scan of rows read once
+        for (int i = 0; i < 1000; i++) {
+            Row row = newRow("cold" + i);
+            cache.get(row);
+            put(cache, row);
+        }
+        int hot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.get(newRow("hot" + i)) != null) {
+                hot++;
+            }
+        }
+        assertTrue(String.valueOf(hot), hot > 40);
+    }
+
+    @Test
+    public void testStaleReadNotCached() throws Exception {
+        RowCache cache = new RowCache("testrepo", 1024 * 1024);
+        Row row = newRow("a");
+        long stamp = cache.getStamp(row);
+        // concurrent commit processed between the database read and the put
+        cache.invalidate(row);
+        cache.put(row, row, stamp);
+        assertNull(cache.get(row));
+
+        stamp = cache.getStamp(row);
+        cache.invalidateAll();
+        cache.put(row, row, stamp);
+        assertNull(cache.get(row));
+
+        put(cache, row);
+        assertNotNull(cache.get(row));
+    }
+
+    @Test
+    public void testSegments() throws Exception {
+        int rowBytes = RowCache.estimateBytes(newRow("0"));
+        RowCache cache = new RowCache("testrepo", 800 * rowBytes, 8);
+        assertEquals(8, cache.getSegmentCount());
+        Row row = newRow("a");
+        put(cache, row);
+        assertSame(row, cache.get(new RowId("hierarchy", "a")));
+        cache.invalidate(row);
+        assertNull(cache.get(row));
+
+        for (int i = 0; i < 2000; i++) {
+            put(cache, newRow(String.valueOf(i)));
+        }
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        assertTrue(String.valueOf(cache.size()), cache.size() > 400);
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        int rowBytes = RowCache.estimateBytes(newRow("0"));
+        RowCache cache = new RowCache("testrepo", 500 * rowBytes, 4);
+        int nThreads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(nThreads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < nThreads; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10000; i++) {
+                        Row row = newRow(String.valueOf((i * 31 + seed) % 1000));
+                        if (cache.get(row) == null) {
+                            put(cache, row);
+                        }
+                        if (i % 100 == seed) {
+                            cache.invalidate(row);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(cache.getBytes() <= cache.getMaxBytes());
+        int size = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (cache.get(newRow(String.valueOf(i))) != null) {
+                size++;
+            }
+        }
+        assertEquals(cache.size(), size);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core.storage.sql;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestVCSCoalescingPubSubInvalidator {
+
+    /**
+     * Invalidator that doesn't go through the PubSubService but delivers its messages to other invalidators.
+     */
+    protected static class TestInvalidator extends VCSCoalescingPubSubInvalidator {
+
+        protected final List<Message> sent = new ArrayList<>();
+
+        protected final List<TestInvalidator> others = new ArrayList<>();
+
+        @Override
+        public void initialize(String topic, String discriminator) {
+            this.topic = topic;
+        }
+
+        @Override
+        public void sendMessage(Message message) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                message.serialize(out);
+                sent.add(message);
+                for (TestInvalidator other : others) {
+                    other.receivedMessage(other.deserialize(new ByteArrayInputStream(out.toByteArray())));
+                }
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    protected static TestInvalidator newInvalidator(String nodeId, long window, int maxRows) {
+        TestInvalidator invalidator = new TestInvalidator();
+        invalidator.initialize("testrepo", nodeId, window, maxRows);
+        return invalidator;
+    }
+
+    protected static Invalidations newInvalidations(String... ids) {
+        Invalidations invalidations = new Invalidations();
+        for (String id : ids) {
+            invalidations.addModified(new RowId("hierarchy", id));
+        }
+        return invalidations;
+    }
+
+    @Test
+    public void testSendImmediately() throws Exception {
+        TestInvalidator node1 = newInvalidator("1", 0, 100);
+        TestInvalidator node2 = newInvalidator("2", 0, 100);
+        node1.others.add(node2);
+        long lags = node2.registry.histogram(node2.getMetricName("lag", "1")).getCount();
+
+        node1.sendInvalidations(newInvalidations("a"));
+        node1.sendInvalidations(newInvalidations("b"));
+        assertEquals(2, node1.sent.size());
+
+        Invalidations received = node2.receiveInvalidations();
+        assertFalse(received.all);
+        assertEquals(new HashSet<>(Arrays.asList(new RowId("hierarchy", "a"), new RowId("hierarchy", "b"))),
+                received.modified);
+        assertTrue(node2.receiveInvalidations().isEmpty());
+        assertEquals(lags + 2, node2.registry.histogram(node2.getMetricName("lag", "1")).getCount());
+    }
+
+    @Test
+    public void testCoalesce() throws Exception {
+        TestInvalidator node1 = newInvalidator("1", 100_000, 100);
+        TestInvalidator node2 = newInvalidator("2", 0, 100);
+        node1.others.add(node2);
+        try {
+            node1.sendInvalidations(newInvalidations("a", "b"));
+            node1.sendInvalidations(newInvalidations("b", "c"));
+            // still in the window
+            assertTrue(node1.sent.isEmpty());
+            assertTrue(node2.receiveInvalidations().isEmpty());
+
+            node1.flush();
+            assertEquals(1, node1.sent.size());
+            Invalidations received = node2.receiveInvalidations();
+            assertEquals(3, received.modified.size());
+            assertNull(received.deleted);
+        } finally {
+            node1.flusher.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDegradeToAll() throws Exception {
+        TestInvalidator node1 = newInvalidator("1", 0, 2);
+        TestInvalidator node2 = newInvalidator("2", 0, 2);
+        node1.others.add(node2);
+        long degraded = node1.degraded.getCount();
+
+        node1.sendInvalidations(newInvalidations("a", "b", "c"));
+        Invalidations received = node2.receiveInvalidations();
+        assertTrue(received.all);
+        assertNull(received.modified);
+        assertEquals(degraded + 1, node1.degraded.getCount());
+    }
+
+}
@@ -19,6 +19,8 @@
  */
 package org.nuxeo.ecm.core.storage;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
@@ -39,6 +41,7 @@ import org.nuxeo.ecm.core.convert.api.ConversionService;
 import org.nuxeo.ecm.core.storage.FulltextUpdaterWork.IndexAndText;
 import org.nuxeo.ecm.core.utils.BlobsExtractor;
 import org.nuxeo.ecm.core.work.AbstractWork;
+import org.nuxeo.ecm.core.work.api.CompactWork;
 import org.nuxeo.ecm.core.work.api.Work;
 import org.nuxeo.ecm.core.work.api.WorkManager;
 import org.nuxeo.runtime.api.Framework;
@@ -53,7 +56,7 @@ import org.nuxeo.runtime.api.Framework;
  *
  * @since 5.7
  */
-public abstract class FulltextExtractorWork extends AbstractWork {
+public abstract class FulltextExtractorWork extends AbstractWork implements CompactWork {
 
     private static final long serialVersionUID = 1L;
 
@@ -65,7 +68,7 @@ public abstract class FulltextExtractorWork extends AbstractWork {
 
     protected static final String TITLE = "fulltextExtractor";
 
-    protected final boolean excludeProxies;
+    protected boolean excludeProxies;
 
     protected transient FulltextConfiguration fulltextConfiguration;
 
@@ -76,6 +79,27 @@ public abstract class FulltextExtractorWork extends AbstractWork {
         this.excludeProxies = excludeProxies;
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected FulltextExtractorWork() {
+        super(null);
+    }
+
+    @Override
+    public void writeFields(DataOutput out) throws IOException {
+        writeWorkFields(out);
+        out.writeBoolean(excludeProxies);
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        readWorkFields(in);
+        excludeProxies = in.readBoolean();
+    }
+
     @Override
     public String getCategory() {
         return CATEGORY;
@@ -0,0 +1,165 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static org.nuxeo.ecm.core.storage.dbs.DBSDocument.KEY_CHANGE_TOKEN;
+
+import java.util.Arrays;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.repository.RepositoryService;
+import org.nuxeo.ecm.core.storage.State;
+import org.nuxeo.ecm.core.storage.State.StateDiff;
+import org.nuxeo.ecm.core.storage.dbs.DBSDocumentState;
+import org.nuxeo.ecm.core.storage.dbs.DBSRepository;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.ChangeTokenUpdater;
+import org.nuxeo.ecm.core.storage.dbs.DBSTransactionState.StateUpdate;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * Tests the batched updates of a DBS repository, a single bulk write for MongoDB.
+ *
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestDBSRepositoryUpdateStates {
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    protected DBSRepository repository;
+
+    @Before
+    public void setUp() {
+        assumeTrue(coreFeature.getStorageConfiguration().isDBS());
+        RepositoryService repositoryService = Framework.getService(RepositoryService.class);
+        repository = (DBSRepository) repositoryService.getRepository(session.getRepositoryName());
+    }
+
+    protected String createDocument(String name) {
+        DocumentModel doc = session.createDocument(session.createDocumentModel("/", name, "File"));
+        session.save();
+        return doc.getId();
+    }
+
+    protected static StateUpdate update(String id, String key, String value, ChangeTokenUpdater changeTokenUpdater) {
+        StateDiff diff = new StateDiff();
+        diff.put(key, value);
+        return new StateUpdate(id, diff, changeTokenUpdater);
+    }
+
+    /**
+     * Gets a change token updater expecting the given change token.
+     */
+    protected static ChangeTokenUpdater changeTokenUpdater(Long token) {
+        State state = new State();
+        state.put(KEY_CHANGE_TOKEN, token);
+        DBSDocumentState docState = new DBSDocumentState(state);
+        docState.markDirty();
+        return new ChangeTokenUpdater(docState);
+    }
+
+    protected Object get(String id, String key) {
+        return repository.readState(id).get(key);
+    }
+
+    @Test
+    public void testUpdatesOfDifferentDocuments() {
+        String id1 = createDocument("doc1");
+        String id2 = createDocument("doc2");
+        // unordered write
+        repository.updateStates(Arrays.asList(update(id1, "dc:title", "title1", null),
+                update(id2, "dc:title", "title2", null)));
+        assertEquals("title1", get(id1, "dc:title"));
+        assertEquals("title2", get(id2, "dc:title"));
+    }
+
+    @Test
+    public void testUpdatesOfSameDocumentAreOrdered() {
+        String id1 = createDocument("doc1");
+        String id2 = createDocument("doc2");
+        // ordered write, the last update wins
+        repository.updateStates(Arrays.asList(update(id1, "dc:title", "first", null),
+                update(id1, "dc:description", "desc", null), update(id2, "dc:title", "title2", null),
+                update(id1, "dc:title", "second", null)));
+        assertEquals("second", get(id1, "dc:title"));
+        assertEquals("desc", get(id1, "dc:description"));
+        assertEquals("title2", get(id2, "dc:title"));
+    }
+
+    @Test
+    public void testChangeTokenMismatch() {
+        String id1 = createDocument("doc1");
+        String id2 = createDocument("doc2");
+        try {
+            repository.updateStates(Arrays.asList(update(id1, "dc:title", "title1", null),
+                    update(id2, "dc:title", "title2", changeTokenUpdater(Long.valueOf(-1)))));
+            fail("should have thrown ConcurrentUpdateException");
+        } catch (ConcurrentUpdateException e) {
+            // expected
+        }
+        assertNull(get(id2, "dc:title"));
+        if (coreFeature.getStorageConfiguration().isDBSMem()) {
+            // the tokens are checked before updating
+            assertNull(get(id1, "dc:title"));
+        }
+    }
+
+    @Test
+    public void testChangeTokenMatch() {
+        String id = createDocument("doc");
+        Long token = (Long) get(id, KEY_CHANGE_TOKEN);
+        repository.updateStates(Arrays.asList(update(id, "dc:title", "first", changeTokenUpdater(token))));
+        assertEquals("first", get(id, "dc:title"));
+    }
+
+    @Test
+    public void testMissingDocument() {
+        String id = createDocument("doc");
+        try {
+            repository.updateStates(Arrays.asList(update(id, "dc:title", "title", null),
+                    update("no-such-id", "dc:title", "title", null)));
+            fail("should have thrown ConcurrentUpdateException");
+        } catch (ConcurrentUpdateException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.PartialList;
+import org.nuxeo.ecm.core.query.sql.NXQL;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.ecm.core.test.annotations.Granularity;
+import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+
+/**
+ * Tests ORDER BY with LIMIT / OFFSET on the memory repository, which only keeps the top projections in a bounded heap.
+ *
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(CoreFeature.class)
+@RepositoryConfig(cleanup = Granularity.METHOD)
+public class TestMemRepositoryOrderByLimit {
+
+    protected static final int COUNT = 10;
+
+    @Inject
+    protected CoreFeature coreFeature;
+
+    @Inject
+    protected CoreSession session;
+
+    /**
+     * Creates doc0 to doc9, two documents sharing each title, created in an order different from the title order.
+     */
+    @Before
+    public void setUp() {
+        assumeTrue(coreFeature.getStorageConfiguration().isDBSMem());
+        for (int i = COUNT - 1; i >= 0; i--) {
+            DocumentModel doc = session.createDocumentModel("/", "doc" + i, "File");
+            doc.setPropertyValue("dc:title", "title" + i / 2);
+            doc.setPropertyValue("dc:subjects", (Serializable) Arrays.asList("a", "b"));
+            session.createDocument(doc);
+        }
+        session.save();
+    }
+
+    protected PartialList<Map<String, Serializable>> query(String nxql, boolean distinctDocuments, long limit,
+            long offset, long countUpTo) {
+        return session.queryProjection(nxql, NXQL.NXQL, distinctDocuments, limit, offset, countUpTo);
+    }
+
+    protected static List<Serializable> values(List<Map<String, Serializable>> projections, String key) {
+        List<Serializable> values = new ArrayList<>();
+        for (Map<String, Serializable> projection : projections) {
+            values.add(projection.get(key));
+        }
+        return values;
+    }
+
+    @Test
+    public void testLimitOffset() {
+        String nxql = "SELECT ecm:name, dc:title FROM File ORDER BY dc:title DESC, ecm:name";
+        PartialList<Map<String, Serializable>> res = query(nxql, false, 3, 0, -1);
+        assertEquals(Arrays.asList("doc8", "doc9", "doc6"), values(res, NXQL.ECM_NAME));
+        assertEquals(COUNT, res.totalSize());
+        res = query(nxql, false, 3, 2, -1);
+        assertEquals(Arrays.asList("doc6", "doc7", "doc4"), values(res, NXQL.ECM_NAME));
+        res = query(nxql, false, 5, 8, -1);
+        assertEquals(Arrays.asList("doc0", "doc1"), values(res, NXQL.ECM_NAME));
+        res = query(nxql, false, 5, 20, -1);
+        assertEquals(0, res.size());
+        assertEquals(COUNT, res.totalSize());
+        // same as a full sort
+        List<Serializable> all = values(query(nxql, false, 0, 0, -1), NXQL.ECM_NAME);
+        for (int offset = 0; offset < COUNT; offset++) {
+            assertEquals(all.subList(offset, Math.min(offset + 4, COUNT)),
+                    values(query(nxql, false, 4, offset, -1), NXQL.ECM_NAME));
+        }
+    }
+
+    @Test
+    public void testTies() {
+        // the limit falls between two documents having the same title
+        String nxql = "SELECT ecm:name, dc:title FROM File ORDER BY dc:title";
+        PartialList<Map<String, Serializable>> res = query(nxql, false, 3, 0, -1);
+        assertEquals(Arrays.asList("title0", "title0", "title1"), values(res, "dc:title"));
+        String name = (String) res.get(2).get(NXQL.ECM_NAME);
+        assertTrue(name.equals("doc2") || name.equals("doc3"));
+        res = query(nxql, false, 2, 3, -1);
+        assertEquals(Arrays.asList("title1", "title2"), values(res, "dc:title"));
+    }
+
+    @Test
+    public void testCountUpTo() {
+        String nxql = "SELECT ecm:name, dc:title FROM File ORDER BY dc:title, ecm:name";
+        PartialList<Map<String, Serializable>> res = query(nxql, false, 2, 1, 0);
+        assertEquals(Arrays.asList("doc1", "doc2"), values(res, NXQL.ECM_NAME));
+        assertEquals(-1, res.totalSize()); // not counted
+        res = query(nxql, false, 2, 1, 5);
+        assertEquals(Arrays.asList("doc1", "doc2"), values(res, NXQL.ECM_NAME));
+        assertEquals(-2, res.totalSize()); // truncated
+        res = query(nxql, false, 2, 1, 20);
+        assertEquals(COUNT, res.totalSize());
+    }
+
+    @Test
+    public void testDistinctDocuments() {
+        // one projection per subject
+        String nxql = "SELECT ecm:name, dc:subjects/* FROM File ORDER BY ecm:name";
+        PartialList<Map<String, Serializable>> res = query(nxql, false, 4, 1, -1);
+        assertEquals(Arrays.asList("doc0", "doc1", "doc1", "doc2"), values(res, NXQL.ECM_NAME));
+        assertEquals(2 * COUNT, res.totalSize());
+        // one projection per document
+        res = query(nxql, true, 4, 1, -1);
+        assertEquals(Arrays.asList("doc1", "doc2", "doc3", "doc4"), values(res, NXQL.ECM_NAME));
+        assertEquals(COUNT, res.totalSize());
+    }
+
+}
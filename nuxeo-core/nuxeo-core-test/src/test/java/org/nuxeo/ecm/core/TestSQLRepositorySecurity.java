@@ -43,6 +43,7 @@ import static org.nuxeo.ecm.core.api.security.SecurityConstants.WRITE_SECURITY;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
@@ -916,6 +917,79 @@ public class TestSQLRepositorySecurity {
         assertEquals(nbDocs, numberOfReadableDocuments(secondUser));
     }
 
+    @Test
+    public void testPermissionCacheInvalidation() {
+        DocumentModel folder1 = session.createDocumentModel("/", "folder1", "Folder");
+        folder1 = session.createDocument(folder1);
+        DocumentModel folder2 = session.createDocumentModel("/", "folder2", "Folder");
+        folder2 = session.createDocument(folder2);
+        DocumentModel doc = session.createDocumentModel("/folder1", "doc", "File");
+        doc = session.createDocument(doc);
+        session.save();
+
+        try (CloseableCoreSession joeSession = openSessionAs("joe")) {
+            // twice, the second check is cached
+            assertFalse(joeSession.hasPermission(doc.getRef(), READ));
+            assertFalse(joeSession.hasPermission(doc.getRef(), READ));
+
+            // set ACL on folder1 in the same transaction
+            ACP acp = new ACPImpl();
+            acp.addACE(ACL.LOCAL_ACL, new ACE("joe", READ, true));
+            session.setACP(folder1.getRef(), acp, true);
+            assertTrue(joeSession.hasPermission(doc.getRef(), READ));
+
+            // move doc under folder2, the inherited ACL changes
+            session.move(doc.getRef(), folder2.getRef(), null);
+            assertFalse(joeSession.hasPermission(doc.getRef(), READ));
+        }
+    }
+
+    @Test
+    public void testPermissionCacheWithLock() {
+        DocumentModel doc = session.createDocumentModel("/", "doc", "File");
+        doc = session.createDocument(doc);
+        ACP acp = new ACPImpl();
+        acp.addACE(ACL.LOCAL_ACL, new ACE("joe", WRITE, true));
+        doc.setACP(acp, true);
+        session.save();
+
+        try (CloseableCoreSession joeSession = openSessionAs("joe")) {
+            assertTrue(joeSession.hasPermission(doc.getRef(), WRITE));
+            // the lock policy denies WRITE, the previous decision must not be reused
+            session.setLock(doc.getRef());
+            assertFalse(joeSession.hasPermission(doc.getRef(), WRITE));
+            session.removeLock(doc.getRef());
+            assertTrue(joeSession.hasPermission(doc.getRef(), WRITE));
+        }
+    }
+
+    @Test
+    public void testFilterGrantedPermissionsOnDocuments() {
+        DocumentModel folder1 = session.createDocumentModel("/", "folder1", "Folder");
+        folder1 = session.createDocument(folder1);
+        DocumentModel folder2 = session.createDocumentModel("/", "folder2", "Folder");
+        folder2 = session.createDocument(folder2);
+        ACP acp = new ACPImpl();
+        acp.addACE(ACL.LOCAL_ACL, new ACE("joe", READ, true));
+        folder1.setACP(acp, true);
+        session.save();
+
+        List<String> permissions = Arrays.asList(READ, WRITE);
+        List<DocumentRef> refs = Arrays.asList(folder1.getRef(), folder2.getRef());
+        try (CloseableCoreSession joeSession = openSessionAs("joe")) {
+            Map<DocumentRef, Collection<String>> granted = joeSession.filterGrantedPermissions(
+                    joeSession.getPrincipal(), refs, permissions);
+            assertEquals(refs, new ArrayList<>(granted.keySet()));
+            assertEquals(Arrays.asList(READ), new ArrayList<>(granted.get(folder1.getRef())));
+            assertTrue(granted.get(folder2.getRef()).isEmpty());
+            // same result as the single document check
+            for (DocumentRef ref : refs) {
+                assertEquals(new ArrayList<>(joeSession.filterGrantedPermissions(joeSession.getPrincipal(), ref,
+                        permissions)), new ArrayList<>(granted.get(ref)));
+            }
+        }
+    }
+
     protected int numberOfReadableDocuments(String username) {
         try (CloseableCoreSession userSession = openSessionAs(username)) {
             String nxql = "SELECT ecm:uuid FROM Document";
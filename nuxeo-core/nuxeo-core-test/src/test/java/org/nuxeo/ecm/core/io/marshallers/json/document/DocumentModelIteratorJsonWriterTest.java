@@ -0,0 +1,86 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.nuxeo.ecm.core.io.marshallers.json.document;
+
+import static org.junit.Assert.assertFalse;
+import static org.nuxeo.ecm.core.io.marshallers.json.document.DocumentModelIteratorJsonWriter.BATCH_SIZE;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelIterator;
+import org.nuxeo.ecm.core.api.impl.DocumentModelQueryIterator;
+import org.nuxeo.ecm.core.io.marshallers.json.AbstractJsonWriterTest;
+import org.nuxeo.ecm.core.io.marshallers.json.JsonAssert;
+import org.nuxeo.ecm.core.io.marshallers.json.enrichers.HasFolderishChildJsonEnricher;
+import org.nuxeo.ecm.core.io.registry.context.RenderingContext.CtxBuilder;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+
+/**
+ * @since 10.1
+ */
+@LocalDeploy("org.nuxeo.ecm.core.io:OSGI-INF/doc-type-contrib.xml")
+public class DocumentModelIteratorJsonWriterTest
+        extends AbstractJsonWriterTest.Local<DocumentModelIteratorJsonWriter, DocumentModelIterator> {
+
+    public DocumentModelIteratorJsonWriterTest() {
+        super(DocumentModelIteratorJsonWriter.class, DocumentModelIterator.class);
+    }
+
+    @Inject
+    private CoreSession session;
+
+    protected void createDocuments(int count) {
+        for (int i = 0; i < count; i++) {
+            DocumentModel doc = session.createDocumentModel("/", String.format("myDoc%03d", i), "RefDoc");
+            session.createDocument(doc);
+        }
+        session.save();
+    }
+
+    @Test
+    public void testStreamedDocuments() throws Exception {
+        // more than a batch
+        int count = BATCH_SIZE * 2 + 10;
+        createDocuments(count);
+        DocumentModelQueryIterator it = new DocumentModelQueryIterator(session,
+                "SELECT * FROM RefDoc ORDER BY ecm:name", 30);
+        JsonAssert json = jsonAssert(it, CtxBuilder.enrichDoc(HasFolderishChildJsonEnricher.NAME).get());
+        json.isObject();
+        json.properties(2);
+        json.has("entity-type").isEquals("documents");
+        json = json.has("entries").length(count);
+        for (int i = 0; i < count; i++) {
+            JsonAssert entry = json.has(i);
+            entry.has("title").isEquals(String.format("myDoc%03d", i));
+            entry.has("contextParameters").has(HasFolderishChildJsonEnricher.NAME).isEquals(false);
+        }
+        // closed once written
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        JsonAssert json = jsonAssert(new DocumentModelQueryIterator(session, "SELECT * FROM RefDoc"));
+        json.has("entity-type").isEquals("documents");
+        json.has("entries").length(0);
+    }
+
+}
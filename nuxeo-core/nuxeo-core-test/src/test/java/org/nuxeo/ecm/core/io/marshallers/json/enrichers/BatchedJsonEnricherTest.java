@@ -0,0 +1,130 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.nuxeo.ecm.core.io.marshallers.json.enrichers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.inject.Inject;
+
+import org.apache.commons.lang3.reflect.TypeUtils;
+import org.junit.Test;
+import org.nuxeo.ecm.core.api.CoreSession;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.io.marshallers.json.AbstractJsonWriterTest;
+import org.nuxeo.ecm.core.io.marshallers.json.JsonAssert;
+import org.nuxeo.ecm.core.io.marshallers.json.document.DocumentModelListJsonWriter;
+import org.nuxeo.ecm.core.io.registry.context.RenderingContext.CtxBuilder;
+import org.nuxeo.ecm.core.test.CoreFeature;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Checks the enrichers prefetching their data give the same result for a whole list.
+ *
+ * @since 10.1
+ */
+@LocalDeploy("org.nuxeo.ecm.core.io:OSGI-INF/doc-type-contrib.xml")
+public class BatchedJsonEnricherTest
+        extends AbstractJsonWriterTest.Local<DocumentModelListJsonWriter, List<DocumentModel>> {
+
+    public BatchedJsonEnricherTest() {
+        super(DocumentModelListJsonWriter.class, List.class, TypeUtils.parameterize(List.class, DocumentModel.class));
+    }
+
+    @Inject
+    private CoreSession session;
+
+    @Inject
+    private CoreFeature coreFeature;
+
+    protected List<DocumentModel> createDocuments() {
+        DocumentModel folder1 = session.createDocument(session.createDocumentModel("/", "folder1", "MyFolder"));
+        DocumentModel folder2 = session.createDocument(session.createDocumentModel("/", "folder2", "MyFolder"));
+        DocumentModel sub = session.createDocument(session.createDocumentModel("/folder1", "sub", "MyFolder"));
+        DocumentModel doc = session.createDocument(session.createDocumentModel("/folder1/sub", "doc", "CSDoc"));
+        TransactionHelper.commitOrRollbackTransaction();
+        TransactionHelper.startTransaction();
+        return Arrays.asList(folder1, folder2, sub, doc);
+    }
+
+    @Test
+    public void testHasFolderishChild() throws Exception {
+        List<DocumentModel> documents = createDocuments();
+        // VCS counts the queries
+        Timer queries = SharedMetricRegistries.getOrCreate(MetricsService.class.getName()).timer(
+                MetricRegistry.name("nuxeo", "repositories", session.getRepositoryName(), "queries"));
+        long count = queries.getCount();
+        JsonAssert json = jsonAssert(documents, CtxBuilder.enrichDoc(HasFolderishChildJsonEnricher.NAME).get());
+        if (coreFeature.getStorageConfiguration().isVCS()) {
+            // a single query for the 3 folders
+            assertEquals(1, queries.getCount() - count);
+        }
+        json = json.has("entries").length(4);
+        boolean[] expected = { true, false, false, false };
+        for (int i = 0; i < expected.length; i++) {
+            JsonAssert entry = json.has(i).has("contextParameters").isObject();
+            entry.properties(1);
+            entry.has(HasFolderishChildJsonEnricher.NAME).isBool().isEquals(expected[i]);
+        }
+    }
+
+    @Test
+    public void testBreadcrumb() throws Exception {
+        List<DocumentModel> documents = createDocuments();
+        JsonAssert json = jsonAssert(documents, CtxBuilder.enrichDoc(BreadcrumbJsonEnricher.NAME).get());
+        json = json.has("entries").length(4);
+        String[][] expected = { { "folder1" }, { "folder2" }, { "folder1", "sub" }, { "folder1", "sub", "doc" } };
+        for (int i = 0; i < expected.length; i++) {
+            JsonAssert breadcrumb = json.has(i).has("contextParameters").has(BreadcrumbJsonEnricher.NAME).isObject();
+            breadcrumb.has("entity-type").isEquals("documents");
+            JsonAssert entries = breadcrumb.has("entries").length(expected[i].length);
+            for (int j = 0; j < expected[i].length; j++) {
+                entries.has(j).has("title").isEquals(expected[i][j]);
+            }
+        }
+    }
+
+    @Test
+    public void testPermissions() throws Exception {
+        List<DocumentModel> documents = createDocuments();
+        JsonAssert json = jsonAssert(documents, CtxBuilder.enrichDoc(BasePermissionsJsonEnricher.NAME).get());
+        json = json.has("entries").length(4);
+        for (int i = 0; i < 4; i++) {
+            JsonAssert permissions = json.has(i)
+                                         .has("contextParameters")
+                                         .has(BasePermissionsJsonEnricher.NAME)
+                                         .isArray();
+            Set<String> granted = new HashSet<>();
+            permissions.getNode().forEach(node -> granted.add(node.asText()));
+            // the administrator has all the base permissions, whatever the user visible ones of the type
+            assertTrue(granted.toString(), granted.containsAll(Arrays.asList("Read", "Write", "Everything",
+                    "AddChildren", "ReadChildren", "RemoveChildren")));
+        }
+    }
+
+}
@@ -50,6 +50,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -314,6 +315,22 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         return getSecurityService().filterGrantedPermissions(doc, principal, permissions);
     }
 
+    @Override
+    public Map<DocumentRef, Collection<String>> filterGrantedPermissions(Principal principal,
+            List<DocumentRef> docRefs, Collection<String> permissions) {
+        List<Document> docs = new ArrayList<>(docRefs.size());
+        for (DocumentRef docRef : docRefs) {
+            docs.add(resolveReference(docRef));
+        }
+        Map<Document, Collection<String>> granted = getSecurityService().filterGrantedPermissions(docs, principal,
+                permissions);
+        Map<DocumentRef, Collection<String>> result = new LinkedHashMap<>();
+        for (int i = 0; i < docs.size(); i++) {
+            result.put(docRefs.get(i), granted.get(docs.get(i)));
+        }
+        return result;
+    }
+
     protected final boolean hasPermission(Document doc, String permission) {
         // TODO: optimize this - usually ACP is already available when calling
         // this method.
@@ -537,6 +554,8 @@ public abstract class AbstractSession implements CoreSession, Serializable {
         String comment = srcDoc.getRepositoryName() + ':' + srcDoc.getParent().getUUID();
 
         Document doc = getSession().move(srcDoc, dstDoc, name);
+        // the inherited ACLs changed
+        getSecurityService().invalidatePermissionCache();
 
         // notify document moved
         DocumentModel docModel = readModel(doc);
@@ -578,6 +597,7 @@ public abstract class AbstractSession implements CoreSession, Serializable {
 
         notifyEvent(DocumentEventTypes.BEFORE_DOC_SECU_UPDATE, docModel, options, null, null, true, true);
         getSession().setACP(doc, newAcp, overwrite);
+        getSecurityService().invalidatePermissionCache();
         docModel = readModel(doc);
         options.put(CoreEventConstants.NEW_ACP, newAcp.clone());
         notifyEvent(DocumentEventTypes.DOCUMENT_SECURITY_UPDATED, docModel, options, null, null, true, false);
@@ -54,6 +54,12 @@ public class CheckInSecurityPolicy extends AbstractSecurityPolicy {
         return permission.equals(SecurityConstants.WRITE);
     }
 
+    @Override
+    public boolean isCacheable(String permission, String[] resolvedPermissions) {
+        // the check-in status only matters for WRITE_PROPERTIES
+        return !Arrays.asList(resolvedPermissions).contains(SecurityConstants.WRITE_PROPERTIES);
+    }
+
     @Override
     public boolean isExpressibleInQuery(String repositoryName) {
         return true;
@@ -61,6 +61,12 @@ public class LockSecurityPolicy extends AbstractSecurityPolicy {
         return false;
     }
 
+    @Override
+    public boolean isCacheable(String permission, String[] resolvedPermissions) {
+        // the lock only matters for WRITE
+        return resolvedPermissions != null && !Arrays.asList(resolvedPermissions).contains(SecurityConstants.WRITE);
+    }
+
     @Override
     public boolean isExpressibleInQuery(String repositoryName) {
         return true;
@@ -64,6 +64,23 @@ public interface SecurityPolicy {
      */
     boolean isRestrictingPermission(String permission);
 
+    /**
+     * Checks if the decisions of this policy for the given permission can be cached for the duration of a transaction,
+     * the cache being only keyed on the document, the principal and the permission, and only invalidated when the ACLs
+     * change.
+     * <p>
+     * A policy that never returns anything but UNKNOWN for the permission is cacheable. A policy depending on other
+     * document state (lock, check-in status, properties...) is not.
+     *
+     * @param permission the permission to check for
+     * @param resolvedPermissions permissions or groups of permissions containing permission
+     * @return {@code true} if the decisions can be cached, {@code false} by default
+     * @since 10.1
+     */
+    default boolean isCacheable(String permission, String[] resolvedPermissions) {
+        return false;
+    }
+
     /**
      * Checks if this policy can be expressed in a query for given repository.
      * <p>
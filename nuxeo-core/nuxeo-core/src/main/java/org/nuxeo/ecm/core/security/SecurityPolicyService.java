@@ -69,6 +69,15 @@ public interface SecurityPolicyService extends Serializable {
      */
     boolean arePoliciesRestrictingPermission(String permission);
 
+    /**
+     * Checks if the decisions of all the policies for the given permission can be cached.
+     *
+     * @return {@code true} if all the policies are cacheable for the permission
+     * @see SecurityPolicy#isCacheable
+     * @since 10.1
+     */
+    boolean arePoliciesCacheable(String permission, String[] resolvedPermissions);
+
     /**
      * Checks if the policies can be expressed in a query for a given repository.
      * <p>
@@ -109,6 +109,16 @@ public class SecurityPolicyServiceImpl implements SecurityPolicyService {
         return false;
     }
 
+    @Override
+    public boolean arePoliciesCacheable(String permission, String[] resolvedPermissions) {
+        for (SecurityPolicy policy : getPolicies()) {
+            if (!policy.isCacheable(permission, resolvedPermissions)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public boolean arePoliciesExpressibleInQuery(String repositoryName) {
         for (SecurityPolicy policy : getPolicies()) {
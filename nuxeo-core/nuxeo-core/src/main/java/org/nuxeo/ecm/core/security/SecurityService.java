@@ -24,7 +24,15 @@ package org.nuxeo.ecm.core.security;
 import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.transaction.Status;
+import javax.transaction.TransactionSynchronizationRegistry;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -36,11 +44,18 @@ import org.nuxeo.ecm.core.api.security.PermissionProvider;
 import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.core.model.Document;
 import org.nuxeo.ecm.core.query.sql.model.SQLQuery;
+import org.nuxeo.runtime.jtajca.NuxeoContainer;
+import org.nuxeo.runtime.metrics.MetricsService;
 import org.nuxeo.runtime.model.ComponentContext;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.ComponentName;
 import org.nuxeo.runtime.model.DefaultComponent;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.RatioGauge;
+import com.codahale.metrics.SharedMetricRegistries;
+
 /**
  * @author Bogdan Stefanescu
  * @author Olivier Grisel
@@ -61,10 +76,40 @@ public class SecurityService extends DefaultComponent {
 
     private static final Log log = LogFactory.getLog(SecurityService.class);
 
+    /**
+     * Key of the permission cache in the transaction resources.
+     *
+     * @since 10.1
+     */
+    protected static final String PERMISSION_CACHE_KEY = SecurityService.class.getName() + ".permissionCache";
+
+    /**
+     * Maximum number of decisions cached by a transaction, the cache is cleared beyond.
+     *
+     * @since 10.1
+     */
+    protected static final int PERMISSION_CACHE_MAX_SIZE = 10_000;
+
+    protected static final String HIT_RATIO_GAUGE_NAME = MetricRegistry.name("nuxeo", "security", "permission-cache",
+            "hit-ratio");
+
     private PermissionProviderLocal permissionProvider;
 
     private SecurityPolicyService securityPolicyService;
 
+    /**
+     * Incremented on any change of the ACLs or of the policies, to discard the cached permissions.
+     */
+    protected final AtomicLong generation = new AtomicLong();
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter cacheHits = registry.counter(
+            MetricRegistry.name("nuxeo", "security", "permission-cache", "hits"));
+
+    protected final Counter cacheMisses = registry.counter(
+            MetricRegistry.name("nuxeo", "security", "permission-cache", "misses"));
+
     // private SecurityManager securityManager;
 
     @Override
@@ -72,11 +117,19 @@ public class SecurityService extends DefaultComponent {
         super.activate(context);
         permissionProvider = new DefaultPermissionProvider();
         securityPolicyService = new SecurityPolicyServiceImpl();
+        registry.remove(HIT_RATIO_GAUGE_NAME);
+        registry.register(HIT_RATIO_GAUGE_NAME, new RatioGauge() {
+            @Override
+            protected Ratio getRatio() {
+                return Ratio.of(cacheHits.getCount(), cacheHits.getCount() + cacheMisses.getCount());
+            }
+        });
     }
 
     @Override
     public void deactivate(ComponentContext context) {
         super.deactivate(context);
+        registry.remove(HIT_RATIO_GAUGE_NAME);
         permissionProvider = null;
         securityPolicyService = null;
     }
@@ -91,6 +144,7 @@ public class SecurityService extends DefaultComponent {
         } else if (POLICIES_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof SecurityPolicyDescriptor) {
             securityPolicyService.registerDescriptor((SecurityPolicyDescriptor) contribution);
         }
+        invalidatePermissionCache();
     }
 
     @Override
@@ -103,6 +157,7 @@ public class SecurityService extends DefaultComponent {
         } else if (POLICIES_EXTENSION_POINT.equals(extensionPoint) && contribution instanceof SecurityPolicyDescriptor) {
             securityPolicyService.unregisterDescriptor((SecurityPolicyDescriptor) contribution);
         }
+        invalidatePermissionCache();
     }
 
     public PermissionProvider getPermissionProvider() {
@@ -134,13 +189,36 @@ public class SecurityService extends DefaultComponent {
             return true;
         }
 
-        // fully check each ACE in turn
-        String[] resolvedPermissions = getPermissionsToCheck(permission);
-        String[] additionalPrincipals = getPrincipalsToCheck(principal);
+        return checkPermission(doc, principal, permission, getPermissionCache());
+    }
 
-        // get the ordered list of ACE
-        ACP acp = doc.getSession().getMergedACP(doc);
+    protected boolean checkPermission(Document doc, Principal principal, String permission, PermissionCache cache) {
+        if (cache == null) {
+            return computePermission(doc, principal, permission, getPermissionsToCheck(permission),
+                    getPrincipalsToCheck(principal), doc.getSession().getMergedACP(doc));
+        }
+        String[] resolvedPermissions = cache.getPermissionsToCheck(permission);
+        String[] additionalPrincipals = cache.getPrincipalsToCheck(principal);
+        // a decision depending on more than the ACLs, through a policy, is never cached
+        if (!securityPolicyService.arePoliciesCacheable(permission, resolvedPermissions)) {
+            return computePermission(doc, principal, permission, resolvedPermissions, additionalPrincipals,
+                    cache.getMergedACP(doc));
+        }
+        String key = cache.getKey(doc, additionalPrincipals, permission);
+        Boolean granted = cache.decisions.get(key);
+        if (granted != null) {
+            cacheHits.inc();
+            return granted.booleanValue();
+        }
+        cacheMisses.inc();
+        granted = Boolean.valueOf(computePermission(doc, principal, permission, resolvedPermissions,
+                additionalPrincipals, cache.getMergedACP(doc)));
+        cache.putDecision(key, granted);
+        return granted.booleanValue();
+    }
 
+    protected boolean computePermission(Document doc, Principal principal, String permission,
+            String[] resolvedPermissions, String[] additionalPrincipals, ACP acp) {
         // check pluggable policies
         Access access = securityPolicyService.checkPermission(doc, acp, principal, permission, resolvedPermissions,
                 additionalPrincipals);
@@ -151,6 +229,7 @@ public class SecurityService extends DefaultComponent {
         if (acp == null) {
             return false; // no ACP on that doc - by default deny
         }
+        // fully check each ACE in turn
         access = acp.getAccess(additionalPrincipals, resolvedPermissions);
 
         return access.toBoolean();
@@ -172,24 +251,79 @@ public class SecurityService extends DefaultComponent {
             return permissions;
         }
 
-        String[] additionalPrincipals = getPrincipalsToCheck(principal);
-        ACP acp = doc.getSession().getMergedACP(doc);
-
+        PermissionCache cache = getPermissionCache();
         List<String> result = new ArrayList<>();
-        for(String permission : permissions) {
-            String[] resolvedPermissions = getPermissionsToCheck(permission);
-            Access access = securityPolicyService.checkPermission(doc, acp, principal, permission, resolvedPermissions,
-                additionalPrincipals);
-            if (access == null || Access.UNKNOWN.equals(access)) {
-                access = acp == null ? null : acp.getAccess(additionalPrincipals, resolvedPermissions);
-            }
-            if (access != null && access.toBoolean()) {
+        for (String permission : permissions) {
+            if (checkPermission(doc, principal, permission, cache)) {
                 result.add(permission);
             }
         }
         return result;
     }
 
+    /**
+     * Filters the supplied permissions based on whether they are granted to a given principal, for each of the given
+     * documents.
+     * <p>
+     * The principals and the permissions to check are resolved once for all the documents.
+     *
+     * @return the granted permissions for each document, in the order of the documents
+     * @since 10.1
+     */
+    public Map<Document, Collection<String>> filterGrantedPermissions(List<Document> docs, Principal principal,
+            Collection<String> permissions) {
+        Map<Document, Collection<String>> result = new LinkedHashMap<>();
+        String username = principal.getName();
+        if (SecurityConstants.SYSTEM_USERNAME.equals(username)
+                || principal instanceof NuxeoPrincipal && ((NuxeoPrincipal) principal).isAdministrator()) {
+            docs.forEach(doc -> result.put(doc, permissions));
+            return result;
+        }
+        PermissionCache cache = getPermissionCache();
+        if (cache == null) {
+            // share the resolved principals anyway
+            cache = new PermissionCache(generation.get(), this);
+        }
+        for (Document doc : docs) {
+            List<String> granted = new ArrayList<>();
+            for (String permission : permissions) {
+                if (checkPermission(doc, principal, permission, cache)) {
+                    granted.add(permission);
+                }
+            }
+            result.put(doc, granted);
+        }
+        return result;
+    }
+
+    /**
+     * Discards all the cached permissions, to be called when ACLs change.
+     *
+     * @since 10.1
+     */
+    public void invalidatePermissionCache() {
+        generation.incrementAndGet();
+    }
+
+    /**
+     * Gets the permission cache of the current transaction, or {@code null} if there is no active transaction.
+     *
+     * @since 10.1
+     */
+    protected PermissionCache getPermissionCache() {
+        TransactionSynchronizationRegistry synchronizations = NuxeoContainer.getTransactionSynchronizationRegistry();
+        if (synchronizations == null || synchronizations.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return null;
+        }
+        long current = generation.get();
+        PermissionCache cache = (PermissionCache) synchronizations.getResource(PERMISSION_CACHE_KEY);
+        if (cache == null || cache.generation != current) {
+            cache = new PermissionCache(current, this);
+            synchronizations.putResource(PERMISSION_CACHE_KEY, cache);
+        }
+        return cache;
+    }
+
     /**
      * Provides the full list of all permissions or groups of permissions that contain the given one (inclusive).
      * <p>
@@ -228,6 +362,70 @@ public class SecurityService extends DefaultComponent {
         }
     }
 
+    /**
+     * Permissions and merged ACPs computed in a transaction, for a given generation of the ACLs and of the
+     * registrations.
+     *
+     * @since 10.1
+     */
+    protected static class PermissionCache {
+
+        protected final long generation;
+
+        protected final Map<String, Boolean> decisions = new HashMap<>();
+
+        protected final Map<String, ACP> acps = new HashMap<>();
+
+        protected final Map<Principal, String[]> principals = new IdentityHashMap<>();
+
+        protected final Map<String, String[]> permissions = new HashMap<>();
+
+        protected final SecurityService securityService;
+
+        protected PermissionCache(long generation, SecurityService securityService) {
+            this.generation = generation;
+            this.securityService = securityService;
+        }
+
+        protected String[] getPermissionsToCheck(String permission) {
+            return permissions.computeIfAbsent(permission, securityService::getPermissionsToCheck);
+        }
+
+        protected String[] getPrincipalsToCheck(Principal principal) {
+            return principals.computeIfAbsent(principal, SecurityService::getPrincipalsToCheck);
+        }
+
+        protected ACP getMergedACP(Document doc) {
+            String key = doc.getRepositoryName() + ':' + doc.getUUID();
+            if (acps.containsKey(key)) {
+                return acps.get(key);
+            }
+            if (acps.size() >= PERMISSION_CACHE_MAX_SIZE) {
+                acps.clear();
+            }
+            ACP acp = doc.getSession().getMergedACP(doc);
+            acps.put(key, acp);
+            return acp;
+        }
+
+        protected String getKey(Document doc, String[] additionalPrincipals, String permission) {
+            StringBuilder key = new StringBuilder();
+            key.append(doc.getRepositoryName()).append(':').append(doc.getUUID()).append(':').append(permission);
+            for (String principal : additionalPrincipals) {
+                key.append(':').append(principal);
+            }
+            return key.toString();
+        }
+
+        protected void putDecision(String key, Boolean granted) {
+            if (decisions.size() >= PERMISSION_CACHE_MAX_SIZE) {
+                decisions.clear();
+            }
+            decisions.put(key, granted);
+        }
+
+    }
+
     @SuppressWarnings("unchecked")
     @Override
     public <T> T getAdapter(Class<T> adapter) {
@@ -35,6 +35,30 @@ public class AutomationScriptingConstants {
 
     public static final String DEFAULT_PRECOMPILE_STATUS = "true";
 
+    /**
+     * Number of script engines kept in the pool.
+     *
+     * @since 10.1
+     */
+    public static final String AUTOMATION_SCRIPTING_POOL_SIZE = "nuxeo.automation.scripting.pool.size";
+
+    /**
+     * @since 10.1
+     */
+    public static final String DEFAULT_POOL_SIZE = "4";
+
+    /**
+     * Maximum time in milliseconds to wait for an idle script engine, before creating a transient one.
+     *
+     * @since 10.1
+     */
+    public static final String AUTOMATION_SCRIPTING_POOL_TIMEOUT = "nuxeo.automation.scripting.pool.timeout";
+
+    /**
+     * @since 10.1
+     */
+    public static final String DEFAULT_POOL_TIMEOUT = "100";
+
     public static final String XP_OPERATION = "operation";
 
     public static final String NX_NASHORN = "nx-nashorn";
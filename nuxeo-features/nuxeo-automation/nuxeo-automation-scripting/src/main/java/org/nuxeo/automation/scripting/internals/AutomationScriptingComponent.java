@@ -53,6 +53,9 @@ public class AutomationScriptingComponent extends DefaultComponent {
                                           .isBooleanPropertyTrue("nuxeo.automation.scripting.inline-context-in-params");
 
         service.paramsInjector = AutomationScriptingParamsInjector.newInstance(inlinedContext);
+        // operations are registered, compile the mapper in all the engines before the first call
+        service.invalidate();
+        service.warmUp();
     }
 
     @Override
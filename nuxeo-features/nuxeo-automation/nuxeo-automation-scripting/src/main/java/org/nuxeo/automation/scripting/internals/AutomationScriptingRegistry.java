@@ -41,6 +41,7 @@ public class AutomationScriptingRegistry extends SimpleContributionRegistry<Scri
     @Override
     public void contributionRemoved(String id, ScriptingOperationDescriptor origContrib) {
         automation.removeOperation(registration.remove(id));
+        scripting.invalidate();
     }
 
     @Override
@@ -54,6 +55,7 @@ public class AutomationScriptingRegistry extends SimpleContributionRegistry<Scri
             throw new NuxeoException("Cannot update scripting operation " + id, cause);
         }
         registration.put(id, type);
+        scripting.invalidate();
     }
 
 
@@ -16,9 +16,13 @@
  */
 package org.nuxeo.automation.scripting.internals;
 
+import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.AUTOMATION_SCRIPTING_POOL_SIZE;
+import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.AUTOMATION_SCRIPTING_POOL_TIMEOUT;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.AUTOMATION_SCRIPTING_PRECOMPILE;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.COMPLIANT_JAVA_VERSION_CACHE;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.COMPLIANT_JAVA_VERSION_CLASS_FILTER;
+import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.DEFAULT_POOL_SIZE;
+import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.DEFAULT_POOL_TIMEOUT;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.DEFAULT_PRECOMPILE_STATUS;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.NASHORN_JAVA_VERSION;
 import static org.nuxeo.automation.scripting.api.AutomationScriptingConstants.NASHORN_WARN_CACHE;
@@ -53,8 +57,14 @@ public class AutomationScriptingServiceImpl implements AutomationScriptingServic
 
     private final Supplier<ScriptEngine> supplier = new Factory().supplier;
 
+    protected final ScriptEnginePool pool = new ScriptEnginePool(supplier,
+            Integer.parseInt(Framework.getProperty(AUTOMATION_SCRIPTING_POOL_SIZE, DEFAULT_POOL_SIZE)),
+            Long.parseLong(Framework.getProperty(AUTOMATION_SCRIPTING_POOL_TIMEOUT, DEFAULT_POOL_TIMEOUT)));
+
     protected AutomationScriptingParamsInjector paramsInjector;
 
+    protected volatile String mapperSource;
+
     @Override
     public Session get(CoreSession session) {
         return get(new OperationContext(session));
@@ -65,37 +75,93 @@ public class AutomationScriptingServiceImpl implements AutomationScriptingServic
         return new Bridge(context);
     }
 
+    /**
+     * Creates the pooled engines with the mapper script compiled.
+     *
+     * @since 10.1
+     */
+    public void warmUp() {
+        pool.warmUp(getMapperSource());
+    }
 
-    final ScriptEngine engine = supplier.get();
+    /**
+     * Invalidates the mapper script, to be called when the operations are changed.
+     *
+     * @since 10.1
+     */
+    public void invalidate() {
+        mapperSource = null;
+    }
+
+    protected String getMapperSource() {
+        String source = mapperSource;
+        if (source == null) {
+            source = mapperSource = new AutomationMapper.ScriptBuilder().source();
+        }
+        return source;
+    }
 
     class Bridge implements Session {
 
-        final CompiledScript mapperScript = AutomationMapper.compile((Compilable) engine);
+        final ScriptEnginePool.PooledEngine pooled;
 
-        final Compilable compilable = ((Compilable) engine);
+        final ScriptEngine engine;
 
-        final Invocable invocable = ((Invocable) engine);
+        final Compilable compilable;
 
-        final ScriptContext scriptContext = engine.getContext();
+        final Invocable invocable;
+
+        final ScriptContext scriptContext;
 
         final AutomationMapper mapper;
 
         final ScriptObjectMirror global;
 
+        boolean closed;
+
         Bridge(OperationContext operationContext) {
-            mapper = new AutomationMapper(operationContext);
+            pooled = pool.acquire(this);
             try {
-                mapperScript.eval(mapper);
-            } catch (ScriptException cause) {
-                throw new NuxeoException("Cannot execute mapper " + mapperScript, cause);
+                engine = pooled.engine;
+                compilable = (Compilable) engine;
+                invocable = (Invocable) engine;
+                scriptContext = engine.getContext();
+                mapper = new AutomationMapper(operationContext);
+                CompiledScript mapperScript = pooled.compile(null, getMapperSource());
+                try {
+                    mapperScript.eval(mapper);
+                } catch (ScriptException cause) {
+                    throw new NuxeoException("Cannot execute mapper " + mapperScript, cause);
+                }
+                global = (ScriptObjectMirror) mapper.get("nashorn.global");
+                scriptContext.setBindings(mapper, ScriptContext.ENGINE_SCOPE);
+            } catch (RuntimeException cause) {
+                pool.release(pooled);
+                throw cause;
             }
-            global = (ScriptObjectMirror) mapper.get("nashorn.global");
-            scriptContext.setBindings(mapper, ScriptContext.ENGINE_SCOPE);
         }
 
         @Override
         public <T> T handleof(InputStream input, Class<T> typeof) {
             run(input);
+            return handleof(typeof);
+        }
+
+        /**
+         * Evaluates a script compiled once per engine, the key identifying its source.
+         *
+         * @since 10.1
+         */
+        <T> T handleof(String key, String source, Class<T> typeof) {
+            try {
+                pooled.compile(key, source).eval(mapper);
+            } catch (ScriptException cause) {
+                throw new NuxeoException("Cannot evaluate automation script " + key, cause);
+            }
+            return handleof(typeof);
+        }
+
+        <T> T handleof(Class<T> typeof) {
             T handle = invocable.getInterface(global, typeof);
             if (handle == null) {
                 throw new NuxeoException("Script doesn't implements " + typeof.getName());
@@ -119,10 +185,6 @@ public class AutomationScriptingServiceImpl implements AutomationScriptingServic
             }
         }
 
-        <T> T handleof(Class<T> typeof) {
-            return invocable.getInterface(global, typeof);
-        }
-
         @Override
         public <T> T adapt(Class<T> typeof) {
             if (typeof.isAssignableFrom(engine.getClass())) {
@@ -139,7 +201,15 @@ public class AutomationScriptingServiceImpl implements AutomationScriptingServic
 
         @Override
         public void close() throws Exception {
-            mapper.flush();
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                mapper.flush();
+            } finally {
+                pool.release(pooled);
+            }
         }
     }
 
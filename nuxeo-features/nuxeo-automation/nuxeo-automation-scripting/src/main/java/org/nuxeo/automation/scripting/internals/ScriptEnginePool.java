@@ -0,0 +1,294 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.nuxeo.automation.scripting.internals;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * A bounded pool of script engines, each engine keeping its own compiled scripts.
+ * <p>
+ * An engine is leased to a single session at a time, whatever the thread releasing it. When all the engines are leased,
+ * a session waits for an idle one at most the configured timeout, then gets a transient engine discarded on release. A
+ * session opened while the current thread already leases an engine (a script calling a scripted operation) never waits
+ * for the pool, as waiting for an engine held by the outer sessions could dead lock.
+ * <p>
+ * The engine of a session garbage collected without having been closed is given back to the pool.
+ *
+ * @since 10.1
+ */
+public class ScriptEnginePool {
+
+    private static final Log log = LogFactory.getLog(ScriptEnginePool.class);
+
+    protected final Supplier<ScriptEngine> supplier;
+
+    protected final int size;
+
+    protected final long timeout;
+
+    protected final BlockingQueue<PooledEngine> idle;
+
+    protected final AtomicInteger created = new AtomicInteger();
+
+    /** The leased engines, by engine. */
+    protected final Map<PooledEngine, Lease> leases = new ConcurrentHashMap<>();
+
+    /** The leases whose session has been garbage collected. */
+    protected final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Timer waitTimer = registry.timer(
+            MetricRegistry.name("nuxeo", "automation", "scripting", "pool", "wait"));
+
+    protected final Counter transientCount = registry.counter(
+            MetricRegistry.name("nuxeo", "automation", "scripting", "pool", "transient"));
+
+    protected final Counter compileCount = registry.counter(
+            MetricRegistry.name("nuxeo", "automation", "scripting", "compile"));
+
+    /**
+     * @param supplier the engine factory
+     * @param size the maximum number of pooled engines
+     * @param timeout the maximum time in milliseconds to wait for an idle engine before creating a transient one
+     */
+    public ScriptEnginePool(Supplier<ScriptEngine> supplier, int size, long timeout) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid scripting engine pool size: " + size);
+        }
+        this.supplier = supplier;
+        this.size = size;
+        this.timeout = timeout;
+        idle = new ArrayBlockingQueue<>(size);
+    }
+
+    /**
+     * Creates all the engines of the pool, compiling the given script in each of them.
+     */
+    public void warmUp(String source) {
+        while (created.get() < size) {
+            PooledEngine engine = create();
+            if (engine == null) {
+                return;
+            }
+            engine.compile(null, source);
+            release(engine);
+        }
+    }
+
+    /**
+     * Gets an engine for a session, to be given back with {@link #release}.
+     *
+     * @param session the session using the engine, its engine is given back to the pool if it's garbage collected
+     *            without having been released
+     */
+    public PooledEngine acquire(Object session) {
+        reclaim();
+        PooledEngine engine = idle.poll();
+        if (engine == null) {
+            engine = create();
+        }
+        if (engine == null && !isLeasedByCurrentThread()) {
+            engine = poll();
+        }
+        if (engine == null) {
+            transientCount.inc();
+            engine = new PooledEngine(supplier.get(), false);
+        }
+        leases.put(engine, new Lease(session, engine));
+        return engine;
+    }
+
+    protected boolean isLeasedByCurrentThread() {
+        Thread thread = Thread.currentThread();
+        for (Lease lease : leases.values()) {
+            if (lease.thread == thread) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected PooledEngine poll() {
+        try (Timer.Context ignored = waitTimer.time()) {
+            return idle.poll(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException cause) {
+            Thread.currentThread().interrupt();
+            throw new NuxeoException("Interrupted while waiting for a scripting engine", cause);
+        }
+    }
+
+    protected PooledEngine create() {
+        int count;
+        do {
+            count = created.get();
+            if (count >= size) {
+                return null;
+            }
+        } while (!created.compareAndSet(count, count + 1));
+        try {
+            return new PooledEngine(supplier.get(), true);
+        } catch (RuntimeException cause) {
+            created.decrementAndGet();
+            throw cause;
+        }
+    }
+
+    public void release(PooledEngine engine) {
+        Lease lease = leases.remove(engine);
+        if (lease != null) {
+            lease.clear();
+        }
+        giveBack(engine);
+    }
+
+    protected void giveBack(PooledEngine engine) {
+        engine.reset();
+        if (engine.pooled) {
+            idle.offer(engine);
+        }
+    }
+
+    /**
+     * Gives back to the pool the engines of the sessions garbage collected without having been released.
+     */
+    protected void reclaim() {
+        Lease lease;
+        while ((lease = (Lease) collected.poll()) != null) {
+            if (leases.remove(lease.engine, lease)) {
+                log.warn("Scripting session not closed, reclaiming its engine");
+                giveBack(lease.engine);
+            }
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getIdle() {
+        return idle.size();
+    }
+
+    /**
+     * An engine of the pool with its compiled scripts.
+     */
+    public class PooledEngine {
+
+        public final ScriptEngine engine;
+
+        protected final boolean pooled;
+
+        protected final Bindings bindings;
+
+        protected final Map<String, Script> scripts = new HashMap<>();
+
+        protected PooledEngine(ScriptEngine engine, boolean pooled) {
+            this.engine = engine;
+            this.pooled = pooled;
+            bindings = engine.getBindings(ScriptContext.ENGINE_SCOPE);
+        }
+
+        /**
+         * Gets the script compiled for this engine, compiling it on first use or when its source changed.
+         *
+         * @param key the script key, {@code null} for the automation mapper
+         */
+        public CompiledScript compile(String key, String source) {
+            Script script = scripts.get(key);
+            if (script == null || !script.matches(source)) {
+                try {
+                    script = new Script(source, ((Compilable) engine).compile(source));
+                } catch (ScriptException cause) {
+                    throw new NuxeoException("Cannot compile script " + (key == null ? "mapper" : key), cause);
+                }
+                compileCount.inc();
+                scripts.put(key, script);
+            }
+            return script.compiled;
+        }
+
+        protected void reset() {
+            // don't keep a reference on the session bindings
+            engine.getContext().setBindings(bindings, ScriptContext.ENGINE_SCOPE);
+        }
+
+    }
+
+    /**
+     * The lease of an engine to a session, weakly referencing the session.
+     */
+    protected class Lease extends WeakReference<Object> {
+
+        protected final PooledEngine engine;
+
+        protected final Thread thread = Thread.currentThread();
+
+        protected Lease(Object session, PooledEngine engine) {
+            super(session, collected);
+            this.engine = engine;
+        }
+
+    }
+
+    protected static class Script {
+
+        protected final int hash;
+
+        protected final String source;
+
+        protected final CompiledScript compiled;
+
+        protected Script(String source, CompiledScript compiled) {
+            hash = source.hashCode();
+            this.source = source;
+            this.compiled = compiled;
+        }
+
+        protected boolean matches(String other) {
+            return other == source || other.hashCode() == hash && other.equals(source);
+        }
+
+    }
+
+}
@@ -18,30 +18,32 @@
  */
 package org.nuxeo.automation.scripting.internals;
 
-import java.io.ByteArrayInputStream;
-import java.nio.charset.Charset;
 import java.util.Map;
 
 import javax.script.ScriptException;
 
-import org.nuxeo.automation.scripting.api.AutomationScriptingService;
-import org.nuxeo.automation.scripting.api.AutomationScriptingService.Session;
 import org.nuxeo.ecm.automation.OperationContext;
 import org.nuxeo.ecm.automation.OperationException;
-import org.nuxeo.runtime.api.Framework;
 
 /**
  * @since 7.2
  */
 public class ScriptingOperationImpl {
 
+    protected final AutomationScriptingServiceImpl scripting;
+
+    protected final String id;
+
     protected final String script;
 
     protected final OperationContext ctx;
 
     protected final Map<String, Object> args;
 
-    protected ScriptingOperationImpl(String script, OperationContext ctx, Map<String, Object> args) {
+    protected ScriptingOperationImpl(AutomationScriptingServiceImpl scripting, String id, String script,
+            OperationContext ctx, Map<String, Object> args) {
+        this.scripting = scripting;
+        this.id = id;
         this.script = script;
         this.ctx = ctx;
         this.args = args;
@@ -61,9 +63,9 @@ public class ScriptingOperationImpl {
      * @since 9.3
      */
     public Object run(Object input) throws Exception {
-        try (Session session = Framework.getService(AutomationScriptingService.class).get(ctx)) {
-            return session.handleof(new ByteArrayInputStream(script.getBytes(Charset.forName("UTF-8"))), Runnable.class)
-                          .run(input, args);
+        try (AutomationScriptingServiceImpl.Bridge session = scripting.new Bridge(ctx)) {
+            // compiled once per engine
+            return session.handleof(id, script, Runnable.class).run(input, args);
         } catch (ScriptException e) {
             throw new OperationException(e);
         }
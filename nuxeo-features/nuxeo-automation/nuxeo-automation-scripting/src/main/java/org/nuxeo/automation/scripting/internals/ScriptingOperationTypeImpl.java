@@ -83,7 +83,7 @@ public class ScriptingOperationTypeImpl implements OperationType {
     public Object newInstance(OperationContext ctx, Map<String, Object> args) throws OperationException {
         Map<String, Object> params = new HashMap<>(args);
         scripting.paramsInjector.inject(params, ctx, desc);
-        return new ScriptingOperationImpl(desc.source, ctx, params);
+        return new ScriptingOperationImpl(scripting, desc.getId(), desc.source, ctx, params);
     }
 
     @Override
@@ -0,0 +1,181 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.nuxeo.automation.scripting.internals;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.script.CompiledScript;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestScriptEnginePool {
+
+    protected final AtomicInteger engines = new AtomicInteger();
+
+    protected ScriptEnginePool newPool(int size, long timeout) {
+        ScriptEngineManager manager = new ScriptEngineManager();
+        return new ScriptEnginePool(() -> {
+            engines.incrementAndGet();
+            return manager.getEngineByName("nashorn");
+        }, size, timeout);
+    }
+
+    @Test
+    public void testWarmUp() {
+        ScriptEnginePool pool = newPool(2, 1000);
+        pool.warmUp("var a = 1;");
+        assertEquals(2, engines.get());
+        assertEquals(2, pool.getIdle());
+        long compiled = pool.compileCount.getCount();
+        ScriptEnginePool.PooledEngine engine = pool.acquire(this);
+        try {
+            engine.compile(null, "var a = 1;");
+        } finally {
+            pool.release(engine);
+        }
+        // compiled during the warm up
+        assertEquals(compiled, pool.compileCount.getCount());
+        assertEquals(2, engines.get());
+    }
+
+    @Test
+    public void testCompiledScriptCache() throws Exception {
+        ScriptEnginePool pool = newPool(1, 1000);
+        ScriptEnginePool.PooledEngine engine = pool.acquire(this);
+        try {
+            CompiledScript script = engine.compile("op", "1 + 1");
+            assertSame(script, engine.compile("op", new String("1 + 1")));
+            assertEquals(2, ((Number) script.eval()).intValue());
+            // source changed
+            CompiledScript updated = engine.compile("op", "2 + 2");
+            assertNotSame(script, updated);
+            assertEquals(4, ((Number) updated.eval()).intValue());
+        } finally {
+            pool.release(engine);
+        }
+        // same engine and cache on next use
+        engine = pool.acquire(this);
+        try {
+            assertEquals(4, ((Number) engine.compile("op", "2 + 2").eval()).intValue());
+        } finally {
+            pool.release(engine);
+        }
+        assertEquals(1, engines.get());
+    }
+
+    @Test
+    public void testReuse() {
+        ScriptEnginePool pool = newPool(2, 1000);
+        ScriptEngine first;
+        ScriptEnginePool.PooledEngine engine = pool.acquire(this);
+        first = engine.engine;
+        pool.release(engine);
+        engine = pool.acquire(this);
+        assertSame(first, engine.engine);
+        pool.release(engine);
+        assertEquals(1, engines.get());
+    }
+
+    @Test
+    public void testNestedSessionsDontWait() {
+        ScriptEnginePool pool = newPool(1, 60000);
+        ScriptEnginePool.PooledEngine outer = pool.acquire(this);
+        long transients = pool.transientCount.getCount();
+        // a scripted operation called from a script
+        ScriptEnginePool.PooledEngine inner = pool.acquire(this);
+        assertNotSame(outer.engine, inner.engine);
+        assertEquals(transients + 1, pool.transientCount.getCount());
+        pool.release(inner);
+        // transient engine is not pooled
+        assertEquals(0, pool.getIdle());
+        pool.release(outer);
+        assertEquals(1, pool.getIdle());
+    }
+
+    @Test
+    public void testExhaustedPoolGivesTransientEngine() throws Exception {
+        ScriptEnginePool pool = newPool(1, 10);
+        AtomicReference<ScriptEnginePool.PooledEngine> other = new AtomicReference<>();
+        ScriptEnginePool.PooledEngine engine = pool.acquire(this);
+        long transients = pool.transientCount.getCount();
+        try {
+            // another request while all the engines are in use
+            Thread thread = new Thread(() -> {
+                ScriptEnginePool.PooledEngine transientEngine = pool.acquire(this);
+                other.set(transientEngine);
+                pool.release(transientEngine);
+            });
+            thread.start();
+            thread.join();
+        } finally {
+            pool.release(engine);
+        }
+        assertNotSame(engine, other.get());
+        assertFalse(other.get().pooled);
+        assertEquals(transients + 1, pool.transientCount.getCount());
+        assertEquals(2, engines.get());
+        assertEquals(1, pool.getIdle());
+    }
+
+    @Test
+    public void testReleaseFromAnotherThread() throws Exception {
+        ScriptEnginePool pool = newPool(1, 60000);
+        ScriptEnginePool.PooledEngine engine = pool.acquire(this);
+        Thread thread = new Thread(() -> pool.release(engine));
+        thread.start();
+        thread.join();
+        assertEquals(1, pool.getIdle());
+        // the current thread no longer holds an engine, it gets the pooled one
+        long transients = pool.transientCount.getCount();
+        assertSame(engine, pool.acquire(this));
+        assertEquals(transients, pool.transientCount.getCount());
+        pool.release(engine);
+    }
+
+    @Test
+    public void testUnclosedSessionEngineReclaimed() throws Exception {
+        ScriptEnginePool pool = newPool(1, 60000);
+        acquireAndForget(pool);
+        assertEquals(0, pool.getIdle());
+        long deadline = System.currentTimeMillis() + 10000;
+        while (pool.getIdle() == 0 && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+            pool.reclaim();
+        }
+        assertEquals(1, pool.getIdle());
+        assertTrue(pool.leases.isEmpty());
+        assertEquals(1, engines.get());
+    }
+
+    protected void acquireAndForget(ScriptEnginePool pool) {
+        pool.acquire(new Object());
+    }
+
+}
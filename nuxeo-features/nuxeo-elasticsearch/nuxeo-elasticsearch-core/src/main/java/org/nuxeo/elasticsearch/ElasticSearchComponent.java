@@ -22,6 +22,7 @@ package org.nuxeo.elasticsearch;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.ES_ENABLED_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEXING_QUEUE_ID;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_ON_STARTUP_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_PARTITIONS_PROPERTY;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -55,6 +56,7 @@ import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
 import org.nuxeo.elasticsearch.api.EsResult;
 import org.nuxeo.elasticsearch.api.EsScrollResult;
+import org.nuxeo.elasticsearch.api.ReindexingProgress;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.config.ElasticSearchClientConfig;
 import org.nuxeo.elasticsearch.config.ElasticSearchDocWriterDescriptor;
@@ -65,6 +67,8 @@ import org.nuxeo.elasticsearch.core.ElasticSearchIndexingImpl;
 import org.nuxeo.elasticsearch.core.ElasticSearchServiceImpl;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.elasticsearch.work.IndexingWorker;
+import org.nuxeo.elasticsearch.work.PartitionIndexingWorker;
+import org.nuxeo.elasticsearch.work.ReindexingJob;
 import org.nuxeo.elasticsearch.work.ScrollingIndexingWorker;
 import org.nuxeo.runtime.api.Framework;
 import org.nuxeo.runtime.model.ComponentContext;
@@ -183,6 +187,7 @@ public class ElasticSearchComponent extends DefaultComponent
             shutdownListenerThreadPool();
         } finally {
             try {
+                esi.shutdown();
                 esa.disconnect();
             } finally {
                 esa = null;
@@ -311,6 +316,12 @@ public class ElasticSearchComponent extends DefaultComponent
         return esa.getTotalCommandProcessed();
     }
 
+    @Override
+    public ReindexingProgress getReindexingProgress(String jobId) {
+        ReindexingJob job = ReindexingJob.load(jobId);
+        return job == null ? null : job.getProgress();
+    }
+
     @Override
     public boolean isEmbedded() {
         return esa.isEmbedded();
@@ -497,7 +508,42 @@ public class ElasticSearchComponent extends DefaultComponent
     @Override
     public void reindexRepository(String repositoryName) {
         esa.dropAndInitRepositoryIndex(repositoryName, false);
-        runReindexingWorker(repositoryName, "SELECT ecm:uuid FROM Document", true);
+        int partitions = Integer.parseInt(Framework.getProperty(REINDEX_PARTITIONS_PROPERTY, "0"));
+        if (partitions > 0) {
+            String jobId = runPartitionedReindexingWorker(repositoryName, "SELECT ecm:uuid FROM Document", partitions,
+                    true);
+            log.warn(String.format("Re-indexing repository: %s with job: %s in %d partitions", repositoryName, jobId,
+                    partitions));
+        } else {
+            runReindexingWorker(repositoryName, "SELECT ecm:uuid FROM Document", true);
+        }
+    }
+
+    @Override
+    public String runPartitionedReindexingWorker(String repositoryName, String nxql, int partitions,
+            boolean syncAlias) {
+        if (nxql == null || nxql.isEmpty()) {
+            throw new IllegalArgumentException("Expecting an NXQL query");
+        }
+        ReindexingJob job = ReindexingJob.create(repositoryName, nxql, partitions, syncAlias);
+        schedulePartitions(job);
+        return job.getId();
+    }
+
+    @Override
+    public void resumeReindexing(String jobId) {
+        ReindexingJob job = ReindexingJob.load(jobId);
+        if (job == null) {
+            throw new NuxeoException("Unknown reindexing job: " + jobId);
+        }
+        schedulePartitions(job);
+    }
+
+    protected void schedulePartitions(ReindexingJob job) {
+        WorkManager wm = Framework.getService(WorkManager.class);
+        for (PartitionIndexingWorker worker : job.getPendingWorkers()) {
+            wm.schedule(worker);
+        }
     }
 
     // ES Search ===============================================================
@@ -105,8 +105,30 @@ public final class ElasticSearchConstants {
 
     public static final String REINDEX_ON_STARTUP_PROPERTY = "elasticsearch.reindex.onStartup";
 
+    /**
+     * Number of partitions of a repository reindexing, 0 to reindex with a single scroll.
+     *
+     * @since 10.1
+     */
+    public static final String REINDEX_PARTITIONS_PROPERTY = "elasticsearch.reindex.partitions";
+
     public static final String INDEX_BULK_MAX_SIZE_PROPERTY = "elasticsearch.index.bulkMaxSize";
 
+    /** @since 10.1 */
+    public static final String INDEX_BULK_MAX_ACTIONS_PROPERTY = "elasticsearch.index.bulkMaxActions";
+
+    /** @since 10.1 */
+    public static final String INDEX_BULK_FLUSH_INTERVAL_PROPERTY = "elasticsearch.index.bulkFlushIntervalMs";
+
+    /** @since 10.1 */
+    public static final String INDEX_BULK_CONCURRENCY_PROPERTY = "elasticsearch.index.bulkConcurrency";
+
+    /** @since 10.1 */
+    public static final String INDEX_BULK_QUEUE_SIZE_PROPERTY = "elasticsearch.index.bulkQueueSize";
+
+    /** @since 10.1 */
+    public static final String INDEX_BULK_MAX_RETRIES_PROPERTY = "elasticsearch.index.bulkMaxRetries";
+
     public static final String DISABLE_AUTO_INDEXING = "disableAutoIndexing";
 
     public static final String ES_SYNC_INDEXING_FLAG = "ESSyncIndexing";
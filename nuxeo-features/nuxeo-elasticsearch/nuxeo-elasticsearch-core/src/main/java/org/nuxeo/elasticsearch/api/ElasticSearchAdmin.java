@@ -219,6 +219,13 @@ public interface ElasticSearchAdmin {
      */
     int getTotalCommandProcessed();
 
+    /**
+     * Returns the progress of a partitioned reindexing job, or {@code null} if the job is unknown.
+     *
+     * @since 10.1
+     */
+    ReindexingProgress getReindexingProgress(String jobId);
+
     /**
      * Returns true if the Elasticsearch is embedded with Nuxeo, sharing the same JVM.
      *
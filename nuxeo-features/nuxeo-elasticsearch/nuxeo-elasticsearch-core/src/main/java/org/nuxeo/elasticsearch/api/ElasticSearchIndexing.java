@@ -72,6 +72,25 @@ public interface ElasticSearchIndexing {
      */
     void reindexRepository(String repositoryName);
 
+    /**
+     * Reindex documents matching the NXQL query, splitting them into partitions of the document id space indexed
+     * concurrently by asynchronous jobs. When syncAlias is true a call is made to sync the search alias with write
+     * alias once all the partitions are indexed.
+     *
+     * @return the job id, to get its progress or resume it
+     * @see ElasticSearchAdmin#getReindexingProgress
+     * @since 10.1
+     */
+    String runPartitionedReindexingWorker(String repositoryName, String nxql, int partitions, boolean syncAlias);
+
+    /**
+     * Schedules again the partitions of a reindexing job that are not completed, for instance after a restart of the
+     * cluster.
+     *
+     * @since 10.1
+     */
+    void resumeReindexing(String jobId);
+
     /**
      * Process the {@link IndexingCommand}.
      * <p>
@@ -0,0 +1,114 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.api;
+
+/**
+ * Progress of a partitioned reindexing job.
+ *
+ * @since 10.1
+ */
+public class ReindexingProgress {
+
+    protected final String jobId;
+
+    protected final String repositoryName;
+
+    protected final int partitions;
+
+    protected final int completedPartitions;
+
+    protected final long documentCount;
+
+    protected final long startTime;
+
+    protected final long time;
+
+    public ReindexingProgress(String jobId, String repositoryName, int partitions, int completedPartitions,
+            long documentCount, long startTime, long time) {
+        this.jobId = jobId;
+        this.repositoryName = repositoryName;
+        this.partitions = partitions;
+        this.completedPartitions = completedPartitions;
+        this.documentCount = documentCount;
+        this.startTime = startTime;
+        this.time = time;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    /**
+     * Returns the number of partitions of the job.
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Returns the number of partitions fully indexed.
+     */
+    public int getCompletedPartitions() {
+        return completedPartitions;
+    }
+
+    /**
+     * Returns the number of documents indexed by the completed partitions.
+     */
+    public long getDocumentCount() {
+        return documentCount;
+    }
+
+    public boolean isCompleted() {
+        return completedPartitions >= partitions;
+    }
+
+    /**
+     * Returns the elapsed time since the job started, in milliseconds.
+     */
+    public long getElapsed() {
+        return time - startTime;
+    }
+
+    /**
+     * Returns the estimated time to complete the job in milliseconds, based on the time taken by the completed
+     * partitions, or -1 if no partition is completed yet.
+     */
+    public long getEta() {
+        if (isCompleted()) {
+            return 0;
+        }
+        if (completedPartitions == 0) {
+            return -1;
+        }
+        return getElapsed() * (partitions - completedPartitions) / completedPartitions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ReindexingProgress(%s, %s, partitions: %d/%d, docs: %d, elapsed: %ds, eta: %ds)", jobId,
+                repositoryName, completedPartitions, partitions, documentCount, getElapsed() / 1000,
+                getEta() < 0 ? -1 : getEta() / 1000);
+    }
+
+}
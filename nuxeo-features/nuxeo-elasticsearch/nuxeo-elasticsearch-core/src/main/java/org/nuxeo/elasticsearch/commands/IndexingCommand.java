@@ -19,6 +19,8 @@
  */
 package org.nuxeo.elasticsearch.commands;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Serializable;
@@ -36,6 +38,7 @@ import org.nuxeo.ecm.core.api.CoreSessionService;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentRef;
 import org.nuxeo.ecm.core.api.IdRef;
+import org.nuxeo.ecm.core.work.WorkSerializer;
 import org.nuxeo.runtime.api.Framework;
 
 import com.fasterxml.jackson.core.JsonFactory;
@@ -284,6 +287,42 @@ public class IndexingCommand implements Serializable {
         return cmd;
     }
 
+    /**
+     * Writes the command in a compact binary form.
+     *
+     * @since 10.1
+     */
+    public void write(DataOutput out) throws IOException {
+        WorkSerializer.writeString(out, id);
+        WorkSerializer.writeString(out, type.name());
+        out.writeBoolean(sync);
+        out.writeBoolean(recurse);
+        WorkSerializer.writeString(out, targetDocumentId);
+        WorkSerializer.writeString(out, path);
+        WorkSerializer.writeString(out, repositoryName);
+        WorkSerializer.writeStringList(out, schemas);
+        out.writeLong(order);
+    }
+
+    /**
+     * Reads a command written by {@link #write}.
+     *
+     * @since 10.1
+     */
+    public static IndexingCommand read(DataInput in) throws IOException {
+        IndexingCommand cmd = new IndexingCommand();
+        cmd.id = WorkSerializer.readString(in);
+        cmd.type = Type.valueOf(WorkSerializer.readString(in));
+        cmd.sync = in.readBoolean();
+        cmd.recurse = in.readBoolean();
+        cmd.targetDocumentId = WorkSerializer.readString(in);
+        cmd.path = WorkSerializer.readString(in);
+        cmd.repositoryName = WorkSerializer.readString(in);
+        cmd.schemas = WorkSerializer.readStringList(in);
+        cmd.order = in.readLong();
+        return cmd;
+    }
+
     public String getId() {
         return id;
     }
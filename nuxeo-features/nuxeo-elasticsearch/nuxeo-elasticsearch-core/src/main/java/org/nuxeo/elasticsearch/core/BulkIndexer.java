@@ -0,0 +1,421 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.elasticsearch.api.ESClient;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+import com.codahale.metrics.Timer.Context;
+
+/**
+ * Sends index requests to Elasticsearch in bulks, asynchronously.
+ * <p>
+ * The producer adds requests to a {@link Batch}, a bulk is submitted when its number of actions reaches a limit, or
+ * when the producer flushes it, for instance when its size in bytes is too large. A timer also submits the requests
+ * of open batches older than the flush interval, so that a slow producer does not delay them. Up to
+ * {@code concurrency} bulks are sent in parallel while the producer keeps on loading documents and generating JSON.
+ * When {@code queueSize} more bulks are waiting to be sent, the producer is blocked until a bulk completes.
+ * <p>
+ * Items rejected by Elasticsearch because its queues are full are retried with an exponential backoff. Conflicts on
+ * external versions are expected and ignored, other item failures are logged.
+ * <p>
+ * With a concurrency of 0, bulks are sent synchronously by the producer.
+ *
+ * @since 10.1
+ */
+public class BulkIndexer {
+
+    private static final Log log = LogFactory.getLog(BulkIndexer.class);
+
+    protected static final long RETRY_BACKOFF_MS = 100;
+
+    protected final int maxActions;
+
+    protected final long flushIntervalMs;
+
+    protected final int concurrency;
+
+    protected final int maxRetries;
+
+    protected final ThreadPoolExecutor executor;
+
+    protected final Semaphore permits;
+
+    protected final ScheduledExecutorService flusher;
+
+    protected final Set<Batch> batches = ConcurrentHashMap.newKeySet();
+
+    protected final AtomicInteger queued = new AtomicInteger();
+
+    protected final AtomicInteger inFlight = new AtomicInteger();
+
+    protected final Timer bulkTimer;
+
+    protected final Counter itemFailures;
+
+    protected final Counter itemRetries;
+
+    /**
+     * @param maxActions the maximum number of actions in a bulk
+     * @param flushIntervalMs the maximum age of a bulk before it is sent, in milliseconds
+     * @param concurrency the number of bulks sent in parallel, 0 to send them synchronously
+     * @param queueSize the number of bulks waiting to be sent before blocking the producer
+     * @param maxRetries the number of retries of rejected items
+     */
+    public BulkIndexer(int maxActions, long flushIntervalMs, int concurrency, int queueSize, int maxRetries) {
+        this.maxActions = maxActions;
+        this.flushIntervalMs = flushIntervalMs;
+        this.concurrency = concurrency;
+        this.maxRetries = maxRetries;
+        if (concurrency > 0) {
+            executor = new ThreadPoolExecutor(concurrency, concurrency, 60, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<>(), new NamedThreadFactory("esBulkIndexer-"));
+            executor.allowCoreThreadTimeOut(true);
+            permits = new Semaphore(concurrency + queueSize);
+        } else {
+            executor = null;
+            permits = null;
+        }
+        if (flushIntervalMs > 0 && flushIntervalMs < Long.MAX_VALUE) {
+            flusher = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("esBulkFlusher-"));
+            flusher.scheduleWithFixedDelay(this::flushStaleBatches, flushIntervalMs, flushIntervalMs,
+                    TimeUnit.MILLISECONDS);
+        } else {
+            flusher = null;
+        }
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        bulkTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "send"));
+        itemFailures = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "item-failures"));
+        itemRetries = registry.counter(MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "item-retries"));
+        registerGauge(registry, MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "queued"), queued);
+        registerGauge(registry, MetricRegistry.name("nuxeo", "elasticsearch", "bulk", "in-flight"), inFlight);
+    }
+
+    protected static void registerGauge(MetricRegistry registry, String name, AtomicInteger value) {
+        // a new indexer replaces the gauges of the previous one
+        registry.remove(name);
+        registry.register(name, (Gauge<Integer>) value::get);
+    }
+
+    /**
+     * Starts a new batch of requests sent with the given client.
+     */
+    public Batch newBatch(ESClient client) {
+        Batch batch = new Batch(client);
+        batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Submits the requests of the open batches older than the flush interval, without waiting for a send permit.
+     */
+    protected void flushStaleBatches() {
+        long now = System.currentTimeMillis();
+        for (Batch batch : batches) {
+            try {
+                batch.flushIfStale(now);
+            } catch (RuntimeException e) {
+                // the producer gets the error when closing its batch
+                log.error("Failed to flush bulk", e);
+            }
+        }
+    }
+
+    /**
+     * Number of bulks waiting to be sent.
+     */
+    public int getQueued() {
+        return queued.get();
+    }
+
+    /**
+     * Number of bulks being sent.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Releases the threads.
+     */
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+        }
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * The requests added by a producer. A batch is used by a single producer, it is synchronized against the timer
+     * flushing stale requests. The lock is only held to swap the pending requests, never while waiting for a send
+     * permit, so that a blocked producer does not block the timer.
+     */
+    public class Batch implements AutoCloseable {
+
+        protected final ESClient client;
+
+        protected final List<Future<?>> futures = new ArrayList<>();
+
+        protected List<IndexRequest> requests = new ArrayList<>();
+
+        protected int bytes;
+
+        protected long firstRequestTime;
+
+        protected Batch(ESClient client) {
+            this.client = client;
+        }
+
+        public void add(IndexRequest request) {
+            boolean full;
+            synchronized (this) {
+                if (requests.isEmpty()) {
+                    firstRequestTime = System.currentTimeMillis();
+                }
+                requests.add(request);
+                bytes += request.source().length();
+                full = requests.size() >= maxActions
+                        || System.currentTimeMillis() - firstRequestTime >= flushIntervalMs;
+            }
+            if (full) {
+                flush();
+            }
+        }
+
+        /**
+         * Returns the size in bytes of the requests not submitted yet.
+         */
+        public synchronized int getBytes() {
+            return bytes;
+        }
+
+        /**
+         * Submits the pending requests as a bulk, blocking if too many bulks are waiting.
+         */
+        public void flush() {
+            if (executor == null) {
+                submitPending();
+                return;
+            }
+            synchronized (this) {
+                if (requests.isEmpty()) {
+                    return;
+                }
+            }
+            try {
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NuxeoException("Interrupted while waiting to send a bulk", e);
+            }
+            if (!submitPending()) {
+                // submitted by the timer meanwhile
+                permits.release();
+            }
+        }
+
+        /**
+         * Submits the pending requests if they are older than the flush interval, unless too many bulks are waiting:
+         * the producer will submit them when it is unblocked.
+         */
+        protected synchronized void flushIfStale(long now) {
+            if (requests.isEmpty() || now - firstRequestTime < flushIntervalMs) {
+                return;
+            }
+            if (executor != null && !permits.tryAcquire()) {
+                return;
+            }
+            submit();
+        }
+
+        /**
+         * Submits the pending requests if any, a send permit must have been acquired when sending asynchronously.
+         *
+         * @return {@code false} if there was no pending request
+         */
+        protected synchronized boolean submitPending() {
+            if (requests.isEmpty()) {
+                return false;
+            }
+            submit();
+            return true;
+        }
+
+        /**
+         * Submits the pending requests, a send permit must have been acquired.
+         */
+        protected void submit() {
+            List<IndexRequest> bulk = requests;
+            int bulkBytes = bytes;
+            requests = new ArrayList<>();
+            bytes = 0;
+            if (executor == null) {
+                send(client, bulk, bulkBytes);
+                return;
+            }
+            queued.incrementAndGet();
+            try {
+                futures.add(executor.submit(() -> {
+                    queued.decrementAndGet();
+                    inFlight.incrementAndGet();
+                    try {
+                        send(client, bulk, bulkBytes);
+                    } finally {
+                        inFlight.decrementAndGet();
+                        permits.release();
+                    }
+                }));
+            } catch (RuntimeException e) {
+                queued.decrementAndGet();
+                permits.release();
+                throw e;
+            }
+        }
+
+        /**
+         * Flushes the pending requests and waits for all the bulks of this batch to be sent.
+         *
+         * @throws NuxeoException if a bulk could not be sent
+         */
+        @Override
+        public void close() {
+            batches.remove(this);
+            flush();
+            List<Future<?>> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(futures);
+                futures.clear();
+            }
+            RuntimeException error = null;
+            for (Future<?> future : pending) {
+                try {
+                    future.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new NuxeoException("Interrupted while waiting for bulks", e);
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        Throwable cause = e.getCause();
+                        error = cause instanceof RuntimeException ? (RuntimeException) cause
+                                : new NuxeoException(cause);
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    protected void send(ESClient client, List<IndexRequest> requests, int bytes) {
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Index %d docs (%d bytes) in bulk request", requests.size(), bytes));
+        }
+        for (int retry = 0;; retry++) {
+            BulkRequest bulkRequest = new BulkRequest();
+            requests.forEach(bulkRequest::add);
+            BulkResponse response;
+            try (Context ignored = bulkTimer.time()) {
+                response = client.bulk(bulkRequest);
+            }
+            if (!response.hasFailures()) {
+                return;
+            }
+            List<IndexRequest> rejected = new ArrayList<>();
+            for (BulkItemResponse item : response.getItems()) {
+                if (!item.isFailed()) {
+                    continue;
+                }
+                RestStatus status = item.getFailure().getStatus();
+                if (status == RestStatus.CONFLICT) {
+                    // a more recent version has already been indexed
+                    if (log.isDebugEnabled()) {
+                        log.debug("Ignore indexing of doc: " + item.getFailureMessage());
+                    }
+                } else if (status == RestStatus.TOO_MANY_REQUESTS && retry < maxRetries) {
+                    rejected.add(requests.get(item.getItemId()));
+                } else {
+                    itemFailures.inc();
+                    log.error("Fail to index doc: " + item.getId() + ": " + item.getFailureMessage());
+                }
+            }
+            if (rejected.isEmpty()) {
+                return;
+            }
+            itemRetries.inc(rejected.size());
+            log.warn(String.format("Retrying %d rejected items, retry: %d", rejected.size(), retry + 1));
+            try {
+                Thread.sleep(RETRY_BACKOFF_MS << retry);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NuxeoException("Interrupted while retrying a bulk", e);
+            }
+            requests = rejected;
+        }
+    }
+
+    protected static class NamedThreadFactory implements ThreadFactory {
+
+        protected final String prefix;
+
+        protected final AtomicInteger count = new AtomicInteger();
+
+        protected NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+}
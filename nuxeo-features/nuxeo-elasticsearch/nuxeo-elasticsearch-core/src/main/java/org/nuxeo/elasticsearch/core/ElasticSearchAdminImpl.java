@@ -41,6 +41,7 @@ import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.elasticsearch.api.ESClient;
 import org.nuxeo.elasticsearch.api.ESClientFactory;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ReindexingProgress;
 import org.nuxeo.elasticsearch.config.ElasticSearchClientConfig;
 import org.nuxeo.elasticsearch.config.ElasticSearchEmbeddedServerConfig;
 import org.nuxeo.elasticsearch.config.ElasticSearchIndexConfig;
@@ -488,6 +489,12 @@ public class ElasticSearchAdminImpl implements ElasticSearchAdmin {
         return totalCommandProcessed.get();
     }
 
+    @Override
+    public ReindexingProgress getReindexingProgress(String jobId) {
+        // impl of scheduling is left to the ESService
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
     @Override
     public boolean isEmbedded() {
         return embeddedServer != null;
@@ -23,7 +23,13 @@ package org.nuxeo.elasticsearch.core;
 import static org.elasticsearch.common.xcontent.XContentFactory.jsonBuilder;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.CHILDREN_FIELD;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.DOC_TYPE;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEXING_QUEUE_ID;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_CONCURRENCY_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_FLUSH_INTERVAL_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_ACTIONS_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_RETRIES_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_MAX_SIZE_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.INDEX_BULK_QUEUE_SIZE_PROPERTY;
 import static org.nuxeo.elasticsearch.ElasticSearchConstants.PATH_FIELD;
 
 import java.io.IOException;
@@ -34,9 +40,7 @@ import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.elasticsearch.action.bulk.BulkItemResponse;
 import org.elasticsearch.action.bulk.BulkRequest;
-import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.get.GetRequest;
 import org.elasticsearch.action.get.GetResponse;
@@ -50,7 +54,6 @@ import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryBuilders;
-import org.elasticsearch.rest.RestStatus;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
@@ -60,6 +63,8 @@ import org.nuxeo.ecm.core.api.ConcurrentUpdateException;
 import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentNotFoundException;
 import org.nuxeo.ecm.core.api.NuxeoException;
+import org.nuxeo.ecm.core.work.api.WorkManager;
+import org.nuxeo.ecm.core.work.api.WorkQueueDescriptor;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.elasticsearch.commands.IndexingCommand.Type;
@@ -85,6 +90,15 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     // send the bulk indexing command when this size is reached, optimal is 5-10m
     private static final int DEFAULT_MAX_BULK_SIZE = 5 * 1024 * 1024;
 
+    private static final int DEFAULT_MAX_BULK_ACTIONS = 1000;
+
+    private static final long DEFAULT_BULK_FLUSH_INTERVAL_MS = 2000;
+
+    // number of indexing threads used when the indexing queue is not configured
+    private static final int DEFAULT_INDEXING_THREADS = 4;
+
+    private static final int DEFAULT_BULK_MAX_RETRIES = 3;
+
     private final ElasticSearchAdminImpl esa;
 
     private final Timer deleteTimer;
@@ -95,6 +109,8 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
 
     private final boolean useExternalVersion;
 
+    private final BulkIndexer bulkIndexer;
+
     private JsonESDocumentWriter jsonESDocumentWriter;
 
     public ElasticSearchIndexingImpl(ElasticSearchAdminImpl esa) {
@@ -105,6 +121,38 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         bulkIndexTimer = registry.timer(MetricRegistry.name("nuxeo", "elasticsearch", "service", "bulkIndex"));
         this.jsonESDocumentWriter = new JsonESDocumentWriter();// default writer
         this.useExternalVersion = esa.useExternalVersion();
+        bulkIndexer = new BulkIndexer(getIntProperty(INDEX_BULK_MAX_ACTIONS_PROPERTY, DEFAULT_MAX_BULK_ACTIONS),
+                Long.parseLong(Framework.getProperty(INDEX_BULK_FLUSH_INTERVAL_PROPERTY,
+                        String.valueOf(DEFAULT_BULK_FLUSH_INTERVAL_MS))),
+                getIntProperty(INDEX_BULK_CONCURRENCY_PROPERTY, getIndexingThreads()),
+                getIntProperty(INDEX_BULK_QUEUE_SIZE_PROPERTY, getIndexingThreads()),
+                getIntProperty(INDEX_BULK_MAX_RETRIES_PROPERTY, DEFAULT_BULK_MAX_RETRIES));
+    }
+
+    protected static int getIntProperty(String name, int defaultValue) {
+        return Integer.parseInt(Framework.getProperty(name, String.valueOf(defaultValue)));
+    }
+
+    /**
+     * Gets the number of threads of the indexing queue. By default the bulk indexer, shared by all the indexing
+     * workers, can send a bulk and queue another one for each of them.
+     *
+     * @since 10.1
+     */
+    protected static int getIndexingThreads() {
+        WorkManager workManager = Framework.getService(WorkManager.class);
+        WorkQueueDescriptor descriptor = workManager == null ? null
+                : workManager.getWorkQueueDescriptor(INDEXING_QUEUE_ID);
+        return descriptor == null ? DEFAULT_INDEXING_THREADS : descriptor.getMaxThreads();
+    }
+
+    /**
+     * Releases the threads sending the bulk requests.
+     *
+     * @since 10.1
+     */
+    public void shutdown() {
+        bulkIndexer.shutdown();
     }
 
     /**
@@ -130,6 +178,17 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public String runPartitionedReindexingWorker(String repositoryName, String nxql, int partitions,
+            boolean syncAlias) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void resumeReindexing(String jobId) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
     @Override
     public void indexNonRecursive(List<IndexingCommand> cmds) {
         int nbCommands = cmds.size();
@@ -160,39 +219,36 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
     }
 
     void processBulkIndexCommands(List<IndexingCommand> cmds) {
-        BulkRequest bulkRequest = new BulkRequest();
         Set<String> docIds = new HashSet<>(cmds.size());
-        int bulkSize = 0;
         final int maxBulkSize = getMaxBulkSize();
-        for (IndexingCommand cmd : cmds) {
-            if (cmd.getType() == Type.DELETE || cmd.getType() == Type.UPDATE_DIRECT_CHILDREN) {
-                continue;
-            }
-            if (!docIds.add(cmd.getTargetDocumentId())) {
-                // do not submit the same doc 2 times
-                continue;
-            }
-            try {
-                IndexRequest idxRequest = buildEsIndexingRequest(cmd);
-                if (idxRequest != null) {
-                    bulkSize += idxRequest.source().length();
-                    bulkRequest.add(idxRequest);
+        // documents are loaded and converted to JSON while the previous bulks are sent
+        try (BulkIndexer.Batch batch = bulkIndexer.newBatch(esa.getClient())) {
+            for (IndexingCommand cmd : cmds) {
+                if (cmd.getType() == Type.DELETE || cmd.getType() == Type.UPDATE_DIRECT_CHILDREN) {
+                    continue;
+                }
+                if (!docIds.add(cmd.getTargetDocumentId())) {
+                    // do not submit the same doc 2 times
+                    continue;
+                }
+                try {
+                    IndexRequest idxRequest = buildEsIndexingRequest(cmd);
+                    if (idxRequest != null) {
+                        batch.add(idxRequest);
+                    }
+                } catch (ConcurrentUpdateException e) {
+                    throw e; // bubble up, usually until AbstractWork catches it and maybe retries
+                } catch (DocumentNotFoundException e) {
+                    log.info("Ignore indexing command in bulk, doc does not exists anymore: " + cmd);
+                } catch (IllegalArgumentException e) {
+                    log.error("Ignore indexing command in bulk, fail to create request: " + cmd, e);
+                }
+                if (batch.getBytes() > maxBulkSize) {
+                    log.warn("Max bulk size reached " + batch.getBytes() + ", sending bulk command");
+                    batch.flush();
                 }
-            } catch (ConcurrentUpdateException e) {
-                throw e; // bubble up, usually until AbstractWork catches it and maybe retries
-            } catch (DocumentNotFoundException e) {
-                log.info("Ignore indexing command in bulk, doc does not exists anymore: " + cmd);
-            } catch (IllegalArgumentException e) {
-                log.error("Ignore indexing command in bulk, fail to create request: " + cmd, e);
-            }
-            if (bulkSize > maxBulkSize) {
-                log.warn("Max bulk size reached " + bulkSize + ", sending bulk command");
-                sendBulkCommand(bulkRequest, bulkSize);
-                bulkRequest = new BulkRequest();
-                bulkSize = 0;
             }
         }
-        sendBulkCommand(bulkRequest, bulkSize);
     }
 
     int getMaxBulkSize() {
@@ -200,40 +256,6 @@ public class ElasticSearchIndexingImpl implements ElasticSearchIndexing {
         return Integer.parseInt(value);
     }
 
-    void sendBulkCommand(BulkRequest bulkRequest, int bulkSize) {
-        if (bulkRequest.numberOfActions() > 0) {
-            if (log.isDebugEnabled()) {
-                logDebugMessageTruncated(String.format(
-                        "Index %d docs (%d bytes) in bulk request: curl -XPOST 'http://localhost:9200/_bulk' -d '%s'",
-                        bulkRequest.numberOfActions(), bulkSize, bulkRequest.requests().toString()), MAX_CURL_LINE);
-            }
-            BulkResponse response = esa.getClient().bulk(bulkRequest);
-            if (response.hasFailures()) {
-                logBulkFailure(response);
-            }
-        }
-    }
-
-    void logBulkFailure(BulkResponse response) {
-        boolean isError = false;
-        StringBuilder sb = new StringBuilder();
-        sb.append("Ignore indexing of some docs more recent versions has already been indexed");
-        for (BulkItemResponse item : response.getItems()) {
-            if (item.isFailed()) {
-                if (item.getFailure().getStatus() == RestStatus.CONFLICT) {
-                    sb.append("\n  ").append(item.getFailureMessage());
-                } else {
-                    isError = true;
-                }
-            }
-        }
-        if (isError) {
-            log.error(response.buildFailureMessage());
-        } else {
-            log.debug(sb);
-        }
-    }
-
     void refreshIfNeeded(List<IndexingCommand> cmds) {
         for (IndexingCommand cmd : cmds) {
             if (refreshIfNeeded(cmd))
@@ -19,9 +19,15 @@
 
 package org.nuxeo.elasticsearch.work;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.nuxeo.ecm.core.work.WorkSerializer;
+import org.nuxeo.ecm.core.work.api.CompactWork;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.commands.IndexingCommand;
 import org.nuxeo.runtime.api.Framework;
@@ -31,11 +37,11 @@ import org.nuxeo.runtime.api.Framework;
  *
  * @author <a href="mailto:tdelprat@nuxeo.com">Tiry</a>
  */
-public abstract class AbstractIndexingWorker extends BaseIndexingWorker {
+public abstract class AbstractIndexingWorker extends BaseIndexingWorker implements CompactWork {
 
     private static final long serialVersionUID = 1L;
 
-    protected final List<IndexingCommand> cmds;
+    protected List<IndexingCommand> cmds;
 
     public AbstractIndexingWorker(IndexingCommand cmd) {
         this.cmds = Collections.singletonList(cmd);
@@ -51,6 +57,34 @@ public abstract class AbstractIndexingWorker extends BaseIndexingWorker {
         }
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected AbstractIndexingWorker() {
+        cmds = Collections.emptyList();
+    }
+
+    @Override
+    public void writeFields(DataOutput out) throws IOException {
+        writeWorkFields(out);
+        WorkSerializer.writeVarInt(out, cmds.size());
+        for (IndexingCommand cmd : cmds) {
+            cmd.write(out);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        readWorkFields(in);
+        int size = WorkSerializer.readVarInt(in);
+        cmds = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            cmds.add(IndexingCommand.read(in));
+        }
+    }
+
     @Override
     public void doWork() {
         openSystemSession();
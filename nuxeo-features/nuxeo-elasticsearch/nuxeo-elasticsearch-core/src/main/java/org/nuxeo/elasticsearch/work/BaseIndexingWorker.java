@@ -30,6 +30,17 @@ public abstract class BaseIndexingWorker extends AbstractWork {
 
     private static final long serialVersionUID = 1L;
 
+    public BaseIndexingWorker() {
+        super();
+    }
+
+    /**
+     * @since 10.1
+     */
+    public BaseIndexingWorker(String id) {
+        super(id);
+    }
+
     @Override
     public String getCategory() {
         return INDEXING_QUEUE_ID;
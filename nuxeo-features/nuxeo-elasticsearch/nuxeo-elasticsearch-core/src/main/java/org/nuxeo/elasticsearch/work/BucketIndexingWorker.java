@@ -92,7 +92,7 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
         }
     }
 
-    private List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids) {
+    protected static List<IndexingCommand> getIndexingCommands(CoreSession session, List<String> ids) {
         List<IndexingCommand> ret = new ArrayList<>(ids.size());
         long now = Timestamp.currentTimeMicros();
         for (DocumentModel doc : fetchDocuments(session, ids)) {
@@ -103,7 +103,7 @@ public class BucketIndexingWorker extends BaseIndexingWorker implements Work {
         return ret;
     }
 
-    private List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
+    protected static List<DocumentModel> fetchDocuments(CoreSession session, List<String> ids) {
         StringBuilder sb = new StringBuilder();
         sb.append("SELECT * FROM Document, Relation WHERE ecm:uuid IN (");
         for (int i = 0; i < ids.size(); i++) {
@@ -42,6 +42,15 @@ public class ChildrenIndexingWorker extends AbstractIndexingWorker implements Wo
         super(cmd);
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected ChildrenIndexingWorker() {
+        super();
+    }
+
     @Override
     public String getTitle() {
         return " ElasticSearch indexing children for cmd " + (cmds.isEmpty() ? "null" : cmds.get(0));
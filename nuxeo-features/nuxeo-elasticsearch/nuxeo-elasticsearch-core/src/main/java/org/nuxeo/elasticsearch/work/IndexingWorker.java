@@ -43,6 +43,15 @@ public class IndexingWorker extends AbstractIndexingWorker implements Work {
         super(repositoryName, cmds);
     }
 
+    /**
+     * Constructor used for compact deserialization.
+     *
+     * @since 10.1
+     */
+    protected IndexingWorker() {
+        super();
+    }
+
     @Override
     public String getTitle() {
         return " ElasticSearch indexing for docs: " + getCmdsDigest();
@@ -0,0 +1,119 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.work;
+
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_READ_PROPERTY;
+import static org.nuxeo.elasticsearch.ElasticSearchConstants.REINDEX_BUCKET_WRITE_PROPERTY;
+
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.core.api.ScrollResult;
+import org.nuxeo.ecm.core.work.api.Work;
+import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
+import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.transaction.TransactionHelper;
+
+/**
+ * Worker indexing a partition of a {@link ReindexingJob}. The partitions of a job are independent works that can run
+ * concurrently on all the nodes of the cluster.
+ *
+ * @since 10.1
+ */
+public class PartitionIndexingWorker extends BaseIndexingWorker implements Work {
+    private static final Log log = LogFactory.getLog(PartitionIndexingWorker.class);
+
+    private static final long serialVersionUID = 1L;
+
+    private static final String DEFAULT_READ_SIZE = "500";
+
+    private static final String DEFAULT_WRITE_SIZE = "50";
+
+    protected final String jobId;
+
+    protected final int partition;
+
+    protected final int partitions;
+
+    protected final String nxql;
+
+    protected long documentCount;
+
+    public PartitionIndexingWorker(ReindexingJob job, int partition) {
+        // same id for a given partition so that duplicate schedules are coalesced
+        super(job.getId() + "-" + partition);
+        this.repositoryName = job.getRepositoryName();
+        this.jobId = job.getId();
+        this.partition = partition;
+        this.partitions = job.getPartitions();
+        this.nxql = ReindexingJob.getPartitionQuery(job.getNxql(), partition, partitions);
+    }
+
+    @Override
+    public String getTitle() {
+        return String.format("Elasticsearch partition indexer: %d/%d of job %s, processed %d", partition + 1,
+                partitions, jobId, documentCount);
+    }
+
+    @Override
+    protected void doWork() {
+        ReindexingJob job = ReindexingJob.load(jobId);
+        if (job == null) {
+            log.warn("Re-indexing job: " + jobId + " not found, skipping partition: " + partition);
+            return;
+        }
+        if (job.isCompleted(partition)) {
+            // already done by a previous run of the job
+            return;
+        }
+        ElasticSearchIndexing esi = Framework.getService(ElasticSearchIndexing.class);
+        openSystemSession();
+        int writeSize = getIntProperty(REINDEX_BUCKET_WRITE_PROPERTY, DEFAULT_WRITE_SIZE);
+        ScrollResult<String> ret = session.scroll(nxql, getIntProperty(REINDEX_BUCKET_READ_PROPERTY,
+                DEFAULT_READ_SIZE), 60);
+        while (ret.hasResults()) {
+            List<String> ids = ret.getResults();
+            for (int i = 0; i < ids.size(); i += writeSize) {
+                List<String> bucket = ids.subList(i, Math.min(i + writeSize, ids.size()));
+                esi.indexNonRecursive(BucketIndexingWorker.getIndexingCommands(session, bucket));
+            }
+            documentCount += ids.size();
+            ret = session.scroll(ret.getScrollId());
+            TransactionHelper.commitOrRollbackTransaction();
+            TransactionHelper.startTransaction();
+        }
+        if (job.markCompleted(partition, documentCount)) {
+            log.warn(String.format("Re-indexing job: %s completed: %s", jobId, job.getProgress()));
+            if (job.isSyncAlias()) {
+                ElasticSearchAdmin esa = Framework.getService(ElasticSearchAdmin.class);
+                esa.syncSearchAndWriteAlias(esa.getIndexNameForRepository(repositoryName));
+            }
+        } else if (log.isDebugEnabled()) {
+            log.debug(String.format("Re-indexing job: %s partition: %d completed with %d documents", jobId, partition,
+                    documentCount));
+        }
+    }
+
+    protected static int getIntProperty(String name, String defaultValue) {
+        return Integer.parseInt(Framework.getProperty(name, defaultValue));
+    }
+
+}
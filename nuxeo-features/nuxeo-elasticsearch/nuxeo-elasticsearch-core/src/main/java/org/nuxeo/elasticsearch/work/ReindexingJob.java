@@ -0,0 +1,241 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.work;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.nuxeo.elasticsearch.api.ReindexingProgress;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.kv.KeyValueService;
+import org.nuxeo.runtime.kv.KeyValueStore;
+
+/**
+ * A reindexing job splitting the documents matching an NXQL query into partitions of the {@code ecm:uuid} space, each
+ * partition being indexed by its own {@link PartitionIndexingWorker}.
+ * <p>
+ * Partitions are ranges of the uuid hexadecimal prefixes, the first and last ones being unbounded so that all ids are
+ * covered whatever their format. The range conditions are evaluated by the repository, this requires ids stored as
+ * strings.
+ * <p>
+ * The job state is kept in a {@link KeyValueStore} shared by the cluster: the completed partitions with their number
+ * of documents, so that the progress can be reported and an interrupted job resumed from its pending partitions.
+ *
+ * @since 10.1
+ */
+public class ReindexingJob {
+
+    public static final String KV_STORE_NAME = "elasticsearch";
+
+    public static final int MAX_PARTITIONS = 256;
+
+    protected static final String KEY_PREFIX = "reindex:";
+
+    /** Job state is kept one week. */
+    protected static final long TTL = 7 * 24 * 3600;
+
+    protected static final Pattern WHERE = Pattern.compile("\\sWHERE\\s", Pattern.CASE_INSENSITIVE);
+
+    protected static final Pattern ORDER_BY = Pattern.compile("\\sORDER\\s+BY\\s", Pattern.CASE_INSENSITIVE);
+
+    protected final KeyValueStore kvStore;
+
+    protected final String jobId;
+
+    protected final String repositoryName;
+
+    protected final String nxql;
+
+    protected final int partitions;
+
+    protected final boolean syncAlias;
+
+    protected final long startTime;
+
+    protected ReindexingJob(KeyValueStore kvStore, String jobId, String repositoryName, String nxql, int partitions,
+            boolean syncAlias, long startTime) {
+        this.kvStore = kvStore;
+        this.jobId = jobId;
+        this.repositoryName = repositoryName;
+        this.nxql = nxql;
+        this.partitions = partitions;
+        this.syncAlias = syncAlias;
+        this.startTime = startTime;
+    }
+
+    protected static KeyValueStore getKeyValueStore() {
+        return Framework.getService(KeyValueService.class).getKeyValueStore(KV_STORE_NAME);
+    }
+
+    /**
+     * Creates and persists a new job.
+     */
+    public static ReindexingJob create(String repositoryName, String nxql, int partitions, boolean syncAlias) {
+        return create(getKeyValueStore(), repositoryName, nxql, partitions, syncAlias);
+    }
+
+    protected static ReindexingJob create(KeyValueStore kvStore, String repositoryName, String nxql, int partitions,
+            boolean syncAlias) {
+        if (partitions < 1 || partitions > MAX_PARTITIONS) {
+            throw new IllegalArgumentException("Invalid number of partitions: " + partitions);
+        }
+        // fail early on unsupported queries
+        getPartitionQuery(nxql, 0, partitions);
+        ReindexingJob job = new ReindexingJob(kvStore, UUID.randomUUID().toString(), repositoryName, nxql, partitions,
+                syncAlias, System.currentTimeMillis());
+        String prefix = job.getKeyPrefix();
+        kvStore.put(prefix + "repository", repositoryName, TTL);
+        kvStore.put(prefix + "nxql", nxql, TTL);
+        kvStore.put(prefix + "syncAlias", String.valueOf(syncAlias), TTL);
+        kvStore.put(prefix + "start", String.valueOf(job.startTime), TTL);
+        // written last, a job is loadable once fully persisted
+        kvStore.put(prefix + "partitions", String.valueOf(partitions), TTL);
+        return job;
+    }
+
+    /**
+     * Loads a job, or returns {@code null} if it is unknown or has expired.
+     */
+    public static ReindexingJob load(String jobId) {
+        return load(getKeyValueStore(), jobId);
+    }
+
+    protected static ReindexingJob load(KeyValueStore kvStore, String jobId) {
+        String prefix = KEY_PREFIX + jobId + ":";
+        String partitions = kvStore.getString(prefix + "partitions");
+        if (partitions == null) {
+            return null;
+        }
+        return new ReindexingJob(kvStore, jobId, kvStore.getString(prefix + "repository"),
+                kvStore.getString(prefix + "nxql"), Integer.parseInt(partitions),
+                Boolean.parseBoolean(kvStore.getString(prefix + "syncAlias")),
+                Long.parseLong(kvStore.getString(prefix + "start")));
+    }
+
+    /**
+     * Adds the range condition of a partition to an NXQL query.
+     */
+    public static String getPartitionQuery(String nxql, int partition, int partitions) {
+        if (ORDER_BY.matcher(nxql).find()) {
+            throw new IllegalArgumentException("ORDER BY is not supported in a partitioned reindexing: " + nxql);
+        }
+        StringBuilder range = new StringBuilder();
+        if (partition > 0) {
+            range.append("ecm:uuid >= '").append(getBoundary(partition, partitions)).append("'");
+        }
+        if (partition < partitions - 1) {
+            if (range.length() > 0) {
+                range.append(" AND ");
+            }
+            range.append("ecm:uuid < '").append(getBoundary(partition + 1, partitions)).append("'");
+        }
+        if (range.length() == 0) {
+            // single partition
+            return nxql;
+        }
+        Matcher m = WHERE.matcher(nxql);
+        if (!m.find()) {
+            return nxql + " WHERE " + range;
+        }
+        return nxql.substring(0, m.end()) + "(" + nxql.substring(m.end()) + ") AND " + range;
+    }
+
+    protected static String getBoundary(int partition, int partitions) {
+        return String.format("%02x", partition * MAX_PARTITIONS / partitions);
+    }
+
+    protected String getKeyPrefix() {
+        return KEY_PREFIX + jobId + ":";
+    }
+
+    protected String getPartitionKey(int partition) {
+        return getKeyPrefix() + "partition:" + partition;
+    }
+
+    public String getId() {
+        return jobId;
+    }
+
+    public String getRepositoryName() {
+        return repositoryName;
+    }
+
+    public String getNxql() {
+        return nxql;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public boolean isSyncAlias() {
+        return syncAlias;
+    }
+
+    public boolean isCompleted(int partition) {
+        return kvStore.getString(getPartitionKey(partition)) != null;
+    }
+
+    /**
+     * Records the completion of a partition.
+     *
+     * @return {@code true} if the whole job is completed and this call is the first one to notice it
+     */
+    public boolean markCompleted(int partition, long documentCount) {
+        kvStore.compareAndSet(getPartitionKey(partition), null, String.valueOf(documentCount), TTL);
+        if (!getProgress().isCompleted()) {
+            return false;
+        }
+        return kvStore.compareAndSet(getKeyPrefix() + "completed", null, "true", TTL);
+    }
+
+    /**
+     * Returns the workers of the partitions not completed yet.
+     */
+    public List<PartitionIndexingWorker> getPendingWorkers() {
+        Map<String, String> completed = getCompletedPartitions();
+        List<PartitionIndexingWorker> workers = new ArrayList<>();
+        for (int i = 0; i < partitions; i++) {
+            if (!completed.containsKey(getPartitionKey(i))) {
+                workers.add(new PartitionIndexingWorker(this, i));
+            }
+        }
+        return workers;
+    }
+
+    protected Map<String, String> getCompletedPartitions() {
+        List<String> keys = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            keys.add(getPartitionKey(i));
+        }
+        return kvStore.getStrings(keys);
+    }
+
+    public ReindexingProgress getProgress() {
+        Map<String, String> completed = getCompletedPartitions();
+        long documentCount = completed.values().stream().mapToLong(Long::parseLong).sum();
+        return new ReindexingProgress(jobId, repositoryName, partitions, completed.size(), documentCount, startTime,
+                System.currentTimeMillis());
+    }
+
+}
@@ -0,0 +1,276 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.elasticsearch.action.DocWriteRequest.OpType;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.shard.ShardId;
+import org.junit.Test;
+import org.nuxeo.elasticsearch.api.ESClient;
+import org.nuxeo.elasticsearch.core.BulkIndexer;
+
+/**
+ * @since 10.1
+ */
+public class TestBulkIndexer {
+
+    protected static final ShardId SHARD_ID = new ShardId("idx", "_na_", 0);
+
+    protected final List<BulkRequest> bulks = new CopyOnWriteArrayList<>();
+
+    protected ESClient newClient(Function<BulkRequest, BulkResponse> bulk) {
+        return (ESClient) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { ESClient.class },
+                (proxy, method, args) -> {
+                    if (!"bulk".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    BulkRequest request = (BulkRequest) args[0];
+                    bulks.add(request);
+                    return bulk.apply(request);
+                });
+    }
+
+    protected static IndexRequest newRequest(int i) {
+        return new IndexRequest("idx", "doc", "id" + i).source("{\"i\": " + i + "}", XContentType.JSON);
+    }
+
+    protected static BulkResponse success(BulkRequest request) {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            String id = ((IndexRequest) request.requests().get(i)).id();
+            items[i] = new BulkItemResponse(i, OpType.INDEX, new IndexResponse(SHARD_ID, "doc", id, 0, 1, true));
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    protected static BulkResponse rejected(BulkRequest request) {
+        BulkItemResponse[] items = new BulkItemResponse[request.numberOfActions()];
+        for (int i = 0; i < items.length; i++) {
+            String id = ((IndexRequest) request.requests().get(i)).id();
+            items[i] = new BulkItemResponse(i, OpType.INDEX, new BulkItemResponse.Failure("idx", "doc", id,
+                    new EsRejectedExecutionException("queue full")));
+        }
+        return new BulkResponse(items, 1);
+    }
+
+    protected int countActions() {
+        return bulks.stream().mapToInt(BulkRequest::numberOfActions).sum();
+    }
+
+    @Test
+    public void testFlushOnMaxActions() {
+        BulkIndexer indexer = new BulkIndexer(10, Long.MAX_VALUE, 2, 2, 0);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(TestBulkIndexer::success))) {
+            for (int i = 0; i < 35; i++) {
+                batch.add(newRequest(i));
+            }
+        } finally {
+            indexer.shutdown();
+        }
+        assertEquals(4, bulks.size());
+        assertEquals(35, countActions());
+        assertEquals(0, indexer.getQueued());
+        assertEquals(0, indexer.getInFlight());
+    }
+
+    @Test
+    public void testFlush() {
+        int size = newRequest(0).source().length();
+        BulkIndexer indexer = new BulkIndexer(1000, Long.MAX_VALUE, 2, 2, 0);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(TestBulkIndexer::success))) {
+            for (int i = 0; i < 9; i++) {
+                batch.add(newRequest(i));
+                if (batch.getBytes() >= 3 * size) {
+                    batch.flush();
+                    assertEquals(0, batch.getBytes());
+                }
+            }
+        } finally {
+            indexer.shutdown();
+        }
+        assertEquals(3, bulks.size());
+        assertEquals(9, countActions());
+    }
+
+    @Test
+    public void testSynchronous() {
+        Thread caller = Thread.currentThread();
+        BulkIndexer indexer = new BulkIndexer(2, Long.MAX_VALUE, 0, 0, 0);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(request -> {
+            assertEquals(caller, Thread.currentThread());
+            return success(request);
+        }))) {
+            batch.add(newRequest(0));
+            batch.add(newRequest(1));
+            // sent before the end of the batch
+            assertEquals(1, bulks.size());
+            batch.add(newRequest(2));
+        }
+        assertEquals(2, bulks.size());
+        assertEquals(3, countActions());
+    }
+
+    @Test
+    public void testAsynchronous() {
+        Thread caller = Thread.currentThread();
+        BulkIndexer indexer = new BulkIndexer(1, Long.MAX_VALUE, 1, 1, 0);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(request -> {
+            assertNotEquals(caller, Thread.currentThread());
+            return success(request);
+        }))) {
+            for (int i = 0; i < 5; i++) {
+                batch.add(newRequest(i));
+            }
+        } finally {
+            indexer.shutdown();
+        }
+        assertEquals(5, bulks.size());
+    }
+
+    @Test
+    public void testBackpressure() {
+        int concurrency = 2;
+        int queueSize = 1;
+        AtomicInteger maxPending = new AtomicInteger();
+        BulkIndexer[] indexer = new BulkIndexer[1];
+        indexer[0] = new BulkIndexer(1, Long.MAX_VALUE, concurrency, queueSize, 0);
+        try (BulkIndexer.Batch batch = indexer[0].newBatch(newClient(request -> {
+            maxPending.accumulateAndGet(indexer[0].getQueued() + indexer[0].getInFlight(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return success(request);
+        }))) {
+            for (int i = 0; i < 20; i++) {
+                batch.add(newRequest(i));
+                // the producer never gets ahead of the bounded queue
+                assertTrue(indexer[0].getQueued() + indexer[0].getInFlight() <= concurrency + queueSize);
+            }
+        } finally {
+            indexer[0].shutdown();
+        }
+        assertEquals(20, bulks.size());
+        assertTrue(String.valueOf(maxPending.get()), maxPending.get() <= concurrency + queueSize);
+    }
+
+    @Test
+    public void testBlockedProducerDoesNotHoldLock() throws Exception {
+        CountDownLatch sending = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        BulkIndexer indexer = new BulkIndexer(1, Long.MAX_VALUE, 1, 0, 0);
+        BulkIndexer.Batch batch = indexer.newBatch(newClient(request -> {
+            sending.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return success(request);
+        }));
+        try {
+            // takes the only send permit
+            batch.add(newRequest(0));
+            assertTrue(sending.await(5, TimeUnit.SECONDS));
+            // waits for the permit
+            Thread producer = new Thread(() -> batch.add(newRequest(1)));
+            producer.start();
+            for (int i = 0; i < 500 && producer.getState() != Thread.State.WAITING; i++) {
+                Thread.sleep(10);
+            }
+            assertEquals(Thread.State.WAITING, producer.getState());
+            // the batch can still be used by the timer
+            int bytes = CompletableFuture.supplyAsync(batch::getBytes).get(5, TimeUnit.SECONDS).intValue();
+            assertEquals(newRequest(1).source().length(), bytes);
+            release.countDown();
+            producer.join();
+            batch.close();
+        } finally {
+            release.countDown();
+            indexer.shutdown();
+        }
+        assertEquals(2, bulks.size());
+    }
+
+    @Test
+    public void testRetryRejectedItems() {
+        AtomicInteger calls = new AtomicInteger();
+        BulkIndexer indexer = new BulkIndexer(10, Long.MAX_VALUE, 1, 1, 3);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(request -> {
+            // the first two attempts are rejected
+            return calls.incrementAndGet() <= 2 ? rejected(request) : success(request);
+        }))) {
+            for (int i = 0; i < 5; i++) {
+                batch.add(newRequest(i));
+            }
+        } finally {
+            indexer.shutdown();
+        }
+        assertEquals(3, calls.get());
+        assertEquals(15, countActions());
+    }
+
+    @Test
+    public void testRetryLimit() {
+        BulkIndexer indexer = new BulkIndexer(10, Long.MAX_VALUE, 0, 0, 2);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(TestBulkIndexer::rejected))) {
+            batch.add(newRequest(0));
+        }
+        // initial attempt and 2 retries
+        assertEquals(3, bulks.size());
+    }
+
+    @Test
+    public void testScheduledFlush() throws Exception {
+        BulkIndexer indexer = new BulkIndexer(1000, 100, 1, 1, 0);
+        try (BulkIndexer.Batch batch = indexer.newBatch(newClient(TestBulkIndexer::success))) {
+            batch.add(newRequest(0));
+            // the producer is idle, the timer sends the pending request
+            for (int i = 0; i < 50 && bulks.isEmpty(); i++) {
+                Thread.sleep(100);
+            }
+            assertEquals(1, bulks.size());
+            assertEquals(0, batch.getBytes());
+        } finally {
+            indexer.shutdown();
+        }
+        assertEquals(1, bulks.size());
+    }
+
+}
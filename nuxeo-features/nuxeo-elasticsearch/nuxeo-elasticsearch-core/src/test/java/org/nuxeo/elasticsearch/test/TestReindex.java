@@ -46,6 +46,7 @@ import org.nuxeo.ecm.platform.tag.TagService;
 import org.nuxeo.elasticsearch.api.ElasticSearchAdmin;
 import org.nuxeo.elasticsearch.api.ElasticSearchIndexing;
 import org.nuxeo.elasticsearch.api.ElasticSearchService;
+import org.nuxeo.elasticsearch.api.ReindexingProgress;
 import org.nuxeo.elasticsearch.listener.ElasticSearchInlineListener;
 import org.nuxeo.elasticsearch.query.NxQueryBuilder;
 import org.nuxeo.runtime.api.Framework;
@@ -170,6 +171,33 @@ public class TestReindex {
 
     }
 
+    @Test
+    public void shouldReindexDocumentWithPartitions() throws Exception {
+        buildDocs();
+        startTransaction();
+
+        String nxql = "SELECT * FROM Document, Relation order by ecm:uuid";
+        DocumentModelList coreDocs = session.query(nxql);
+        esa.initIndexes(true);
+        esa.refresh();
+        String jobId = esi.runPartitionedReindexingWorker(session.getRepositoryName(),
+                "SELECT * FROM Document, Relation", 4, false);
+        waitForCompletion();
+        DocumentModelList docs = ess.query(new NxQueryBuilder(session).nxql(nxql).limit(100));
+        Assert.assertEquals(getDigest(coreDocs), getDigest(docs));
+
+        ReindexingProgress progress = esa.getReindexingProgress(jobId);
+        Assert.assertNotNull(progress);
+        Assert.assertTrue(progress.toString(), progress.isCompleted());
+        Assert.assertEquals(4, progress.getCompletedPartitions());
+        Assert.assertEquals(coreDocs.size(), progress.getDocumentCount());
+        Assert.assertEquals(0, progress.getEta());
+
+        // resuming a completed job does nothing
+        esi.resumeReindexing(jobId);
+        Assert.assertEquals(0, esa.getPendingWorkerCount());
+    }
+
     private void buildDocs() throws Exception {
         startTransaction();
 
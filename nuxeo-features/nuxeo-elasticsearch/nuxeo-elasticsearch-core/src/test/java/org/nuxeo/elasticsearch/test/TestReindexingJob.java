@@ -0,0 +1,84 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.nuxeo.elasticsearch.api.ReindexingProgress;
+import org.nuxeo.elasticsearch.work.ReindexingJob;
+
+/**
+ * @since 10.1
+ */
+public class TestReindexingJob {
+
+    @Test
+    public void testPartitionQuery() {
+        String nxql = "SELECT ecm:uuid FROM Document";
+        assertEquals(nxql, ReindexingJob.getPartitionQuery(nxql, 0, 1));
+        assertEquals(nxql + " WHERE ecm:uuid < '40'", ReindexingJob.getPartitionQuery(nxql, 0, 4));
+        assertEquals(nxql + " WHERE ecm:uuid >= '40' AND ecm:uuid < '80'",
+                ReindexingJob.getPartitionQuery(nxql, 1, 4));
+        assertEquals(nxql + " WHERE ecm:uuid >= 'c0'", ReindexingJob.getPartitionQuery(nxql, 3, 4));
+        assertEquals(nxql + " WHERE ecm:uuid >= 'ff'", ReindexingJob.getPartitionQuery(nxql, 255, 256));
+    }
+
+    @Test
+    public void testPartitionQueryWithWhereClause() {
+        String nxql = "SELECT * FROM Document where ecm:isProxy = 0 OR ecm:isVersion = 1";
+        assertEquals("SELECT * FROM Document where (ecm:isProxy = 0 OR ecm:isVersion = 1) AND ecm:uuid >= '55'"
+                + " AND ecm:uuid < 'aa'", ReindexingJob.getPartitionQuery(nxql, 1, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPartitionQueryWithOrderBy() {
+        ReindexingJob.getPartitionQuery("SELECT * FROM Document ORDER BY dc:title", 0, 2);
+    }
+
+    @Test
+    public void testPartitionsCoverAllIds() {
+        int partitions = 7;
+        for (int i = 1; i < partitions; i++) {
+            String upper = ReindexingJob.getPartitionQuery("SELECT * FROM Document", i - 1, partitions);
+            String lower = ReindexingJob.getPartitionQuery("SELECT * FROM Document", i, partitions);
+            // the upper bound of a partition is the lower bound of the next one
+            String boundary = upper.substring(upper.lastIndexOf("< '") + 3, upper.length() - 1);
+            assertTrue(lower, lower.contains("ecm:uuid >= '" + boundary + "'"));
+        }
+    }
+
+    @Test
+    public void testProgress() {
+        ReindexingProgress progress = new ReindexingProgress("job", "test", 10, 0, 0, 1000, 3000);
+        assertFalse(progress.isCompleted());
+        assertEquals(2000, progress.getElapsed());
+        assertEquals(-1, progress.getEta());
+
+        progress = new ReindexingProgress("job", "test", 10, 4, 400, 1000, 9000);
+        assertEquals(12000, progress.getEta());
+
+        progress = new ReindexingProgress("job", "test", 10, 10, 1000, 1000, 21000);
+        assertTrue(progress.isCompleted());
+        assertEquals(0, progress.getEta());
+    }
+
+}
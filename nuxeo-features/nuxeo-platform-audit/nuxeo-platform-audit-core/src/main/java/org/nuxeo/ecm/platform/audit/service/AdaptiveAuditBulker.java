@@ -0,0 +1,496 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.ecm.platform.audit.api.ExtendedInfo;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.service.extension.AuditBulkerDescriptor;
+import org.nuxeo.ecm.platform.audit.service.management.AuditBulkerMBean;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.management.ResourcePublisher;
+import org.nuxeo.runtime.metrics.MetricsService;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
+/**
+ * Audit bulker buffering the entries in a bounded lock-free ring buffer drained by several flusher threads.
+ * <p>
+ * A flush is triggered when the buffered entries reach the bulk size or the bulk bytes, or when the bulk timeout is
+ * elapsed since the last flush. Each flusher drains at most one bulk, so that bulks are written concurrently under
+ * load.
+ * <p>
+ * When the buffer is full, the producer (the thread running the {@code AuditEventLogger}) is blocked until the
+ * flushers catch up. After the offer timeout, the entry is written synchronously by the producer.
+ * <p>
+ * The entries of a bulk that cannot be written are put back in the buffer, after the entries offered meanwhile, and
+ * the flusher waits for the bulk timeout before trying again. Entries that don't fit in the buffer anymore are lost.
+ *
+ * @since 10.1
+ */
+public class AdaptiveAuditBulker implements AuditBulkerMBean, AuditBulker {
+
+    private static final Log log = LogFactory.getLog(AdaptiveAuditBulker.class);
+
+    /** Estimated memory used by an entry, in addition to its strings. */
+    protected static final int ENTRY_OVERHEAD = 256;
+
+    protected static final int EXTENDED_INFO_OVERHEAD = 64;
+
+    protected static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+    protected final MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+
+    protected final Counter queuedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "queued"));
+
+    protected final Counter drainedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "drained"));
+
+    protected final Counter blockedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "blocked"));
+
+    protected final Timer flushTimer = registry.timer(MetricRegistry.name("nuxeo", "audit", "flush"));
+
+    protected final Gauge<Integer> sizeGauge = this::getQueueSize;
+
+    protected final AuditBackend backend;
+
+    protected final RingBuffer<LogEntry> buffer;
+
+    protected final AtomicLong bufferedBytes = new AtomicLong();
+
+    protected final AtomicInteger flushing = new AtomicInteger();
+
+    protected final ReentrantLock lock = new ReentrantLock();
+
+    protected final Condition isEmpty = lock.newCondition();
+
+    protected final int nbFlushers;
+
+    protected final long offerTimeout;
+
+    protected volatile int timeout;
+
+    protected volatile int bulksize;
+
+    protected volatile long bulkbytes;
+
+    protected volatile long lastFlush = System.currentTimeMillis();
+
+    protected volatile boolean stopped;
+
+    protected volatile Thread[] flushers;
+
+    AdaptiveAuditBulker(AuditBackend backend, AuditBulkerDescriptor config) {
+        this.backend = backend;
+        checkTimeout(config.timeout);
+        timeout = config.timeout;
+        bulksize = config.size;
+        bulkbytes = config.bytes;
+        nbFlushers = config.flushers;
+        offerTimeout = config.offerTimeout;
+        buffer = new RingBuffer<>(config.capacity);
+    }
+
+    @Override
+    public void onApplicationStarted() {
+        startFlushers();
+        ResourcePublisher publisher = Framework.getService(ResourcePublisher.class);
+        if (publisher != null) {
+            publisher.registerResource("audit-bulker", "audit-bulker", AuditBulkerMBean.class, this);
+        }
+        registry.register(MetricRegistry.name("nuxeo", "audit", "size"), sizeGauge);
+    }
+
+    @Override
+    public void onApplicationStopped() {
+        registry.remove(MetricRegistry.name("nuxeo", "audit", "size"));
+        ResourcePublisher publisher = Framework.getService(ResourcePublisher.class);
+        if (publisher != null) {
+            publisher.unregisterResource("audit-bulker", "audit-bulker");
+        }
+        stopFlushers();
+    }
+
+    protected void startFlushers() {
+        Thread[] threads = new Thread[nbFlushers];
+        for (int i = 0; i < nbFlushers; i++) {
+            threads[i] = new Thread(new Flusher(), "Nuxeo-Audit-Bulker-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+        flushers = threads;
+    }
+
+    protected void stopFlushers() {
+        stopped = true;
+        if (flushers == null) {
+            return;
+        }
+        try {
+            for (Thread flusher : flushers) {
+                LockSupport.unpark(flusher);
+            }
+            for (Thread flusher : flushers) {
+                flusher.join(TimeUnit.SECONDS.toMillis(10));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            flushers = null;
+        }
+        // entries offered concurrently with the stop
+        try {
+            while (flush() > 0) {
+                // drain
+            }
+        } catch (RuntimeException e) {
+            log.error("Cannot write " + buffer.size() + " audit entries at shutdown", e);
+        }
+    }
+
+    @Override
+    public void offer(LogEntry entry) {
+        if (log.isDebugEnabled()) {
+            log.debug("offered " + entry);
+        }
+        long deadline = 0;
+        while (!buffer.offer(entry)) {
+            long now = System.currentTimeMillis();
+            if (deadline == 0) {
+                blockedCount.inc();
+                deadline = now + offerTimeout;
+                wakeUpFlushers();
+            } else if (now >= deadline || stopped) {
+                log.warn("Audit bulker is saturated, writing entry synchronously");
+                queuedCount.inc();
+                write(Collections.singletonList(entry));
+                return;
+            }
+            LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+        }
+        queuedCount.inc();
+        long size = estimateSize(entry);
+        long bytes = bufferedBytes.addAndGet(size);
+        int count = buffer.size();
+        if ((count >= bulksize && count % bulksize == 0) || (bytes >= bulkbytes && bytes - size < bulkbytes)) {
+            wakeUpFlushers();
+        }
+    }
+
+    protected void wakeUpFlushers() {
+        Thread[] threads = flushers;
+        if (threads != null) {
+            for (Thread flusher : threads) {
+                LockSupport.unpark(flusher);
+            }
+        }
+    }
+
+    @Override
+    public boolean await(long time, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(time);
+        lock.lock();
+        try {
+            while (!isIdle()) {
+                // force the flush of an incomplete bulk
+                lastFlush = 0;
+                wakeUpFlushers();
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                isEmpty.awaitNanos(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(timeout)));
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean isIdle() {
+        return buffer.size() == 0 && flushing.get() == 0;
+    }
+
+    protected boolean shouldFlush(long now) {
+        int count = buffer.size();
+        return count > 0 && (count >= bulksize || bufferedBytes.get() >= bulkbytes || now - lastFlush >= timeout);
+    }
+
+    /**
+     * Drains and writes at most one bulk. If the bulk cannot be written, its entries are put back in the buffer.
+     *
+     * @return the number of written entries
+     */
+    protected int flush() {
+        flushing.incrementAndGet();
+        try {
+            int max = bulksize;
+            long maxBytes = bulkbytes;
+            List<LogEntry> entries = new ArrayList<>(Math.min(max, buffer.size()));
+            long bytes = 0;
+            LogEntry entry;
+            while (entries.size() < max && bytes < maxBytes && (entry = buffer.poll()) != null) {
+                entries.add(entry);
+                bytes += estimateSize(entry);
+            }
+            bufferedBytes.addAndGet(-bytes);
+            lastFlush = System.currentTimeMillis();
+            if (!entries.isEmpty()) {
+                try {
+                    write(entries);
+                } catch (RuntimeException e) {
+                    requeue(entries);
+                    throw e;
+                }
+            }
+            return entries.size();
+        } finally {
+            flushing.decrementAndGet();
+            if (isIdle()) {
+                lock.lock();
+                try {
+                    isEmpty.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Puts back in the buffer the entries of a bulk that could not be written.
+     */
+    protected void requeue(List<LogEntry> entries) {
+        int lost = 0;
+        for (LogEntry entry : entries) {
+            if (buffer.offer(entry)) {
+                bufferedBytes.addAndGet(estimateSize(entry));
+            } else {
+                lost++;
+            }
+        }
+        if (lost > 0) {
+            log.error("Audit bulker is saturated, " + lost + " audit entries lost");
+        }
+    }
+
+    protected void write(List<LogEntry> entries) {
+        try (Timer.Context ignored = flushTimer.time()) {
+            backend.addLogEntries(entries);
+        }
+        drainedCount.inc(entries.size());
+        if (log.isDebugEnabled()) {
+            log.debug("flushed " + entries.size() + " events");
+        }
+    }
+
+    protected static long estimateSize(LogEntry entry) {
+        long size = ENTRY_OVERHEAD + length(entry.getPrincipalName()) + length(entry.getEventId())
+                + length(entry.getDocUUID()) + length(entry.getDocPath()) + length(entry.getDocType())
+                + length(entry.getCategory()) + length(entry.getComment()) + length(entry.getDocLifeCycle())
+                + length(entry.getRepositoryId());
+        Map<String, ExtendedInfo> infos = entry.getExtendedInfos();
+        if (infos != null) {
+            size += (long) infos.size() * EXTENDED_INFO_OVERHEAD;
+        }
+        return size;
+    }
+
+    protected static int length(String s) {
+        return s == null ? 0 : 2 * s.length();
+    }
+
+    protected class Flusher implements Runnable {
+
+        @Override
+        public void run() {
+            log.info("bulk audit logger started");
+            while (!stopped) {
+                long now = System.currentTimeMillis();
+                if (shouldFlush(now)) {
+                    try {
+                        flush();
+                    } catch (RuntimeException e) {
+                        log.error("Cannot write audit entries, retrying in " + timeout + " ms", e);
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(timeout));
+                    }
+                } else {
+                    long wait = Math.max(1, lastFlush + timeout - now);
+                    LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(Math.min(wait, timeout)));
+                }
+            }
+            log.info("bulk audit logger stopped");
+        }
+
+    }
+
+    @Override
+    public int getBulkTimeout() {
+        return timeout;
+    }
+
+    @Override
+    public void setBulkTimeout(int value) {
+        checkTimeout(value);
+        timeout = value;
+    }
+
+    /**
+     * The flushers wait for the timeout between two checks, it must be positive.
+     */
+    protected static void checkTimeout(int value) {
+        if (value <= 0) {
+            throw new IllegalArgumentException("Invalid audit bulker timeout: " + value + " ms");
+        }
+    }
+
+    @Override
+    public int getBulkSize() {
+        return bulksize;
+    }
+
+    @Override
+    public void setBulkSize(int value) {
+        bulksize = value;
+    }
+
+    @Override
+    public int getQueueSize() {
+        return buffer.size();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushTimer.getCount();
+    }
+
+    @Override
+    public double getFlushMeanTime() {
+        return flushTimer.getSnapshot().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public void resetMetrics() {
+        queuedCount.dec(queuedCount.getCount());
+        drainedCount.dec(drainedCount.getCount());
+        blockedCount.dec(blockedCount.getCount());
+    }
+
+    /**
+     * Bounded multi-producer multi-consumer queue, each slot carrying a sequence number telling whether it is ready to
+     * be written or read at a given position.
+     */
+    protected static class RingBuffer<E> {
+
+        protected final int capacity;
+
+        protected final int mask;
+
+        protected final AtomicReferenceArray<E> elements;
+
+        protected final AtomicLongArray sequences;
+
+        protected final AtomicLong head = new AtomicLong();
+
+        protected final AtomicLong tail = new AtomicLong();
+
+        protected RingBuffer(int minCapacity) {
+            int cap = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+            capacity = cap;
+            mask = cap - 1;
+            elements = new AtomicReferenceArray<>(cap);
+            sequences = new AtomicLongArray(cap);
+            for (int i = 0; i < cap; i++) {
+                sequences.set(i, i);
+            }
+        }
+
+        /**
+         * @return {@code false} if the buffer is full
+         */
+        protected boolean offer(E element) {
+            long pos = tail.get();
+            for (;;) {
+                int index = (int) pos & mask;
+                long delta = sequences.get(index) - pos;
+                if (delta == 0) {
+                    if (tail.compareAndSet(pos, pos + 1)) {
+                        elements.set(index, element);
+                        // publish the element to the consumers
+                        sequences.set(index, pos + 1);
+                        return true;
+                    }
+                    pos = tail.get();
+                } else if (delta < 0) {
+                    return false;
+                } else {
+                    pos = tail.get();
+                }
+            }
+        }
+
+        /**
+         * @return the next element or {@code null} if the buffer is empty
+         */
+        protected E poll() {
+            long pos = head.get();
+            for (;;) {
+                int index = (int) pos & mask;
+                long delta = sequences.get(index) - (pos + 1);
+                if (delta == 0) {
+                    if (head.compareAndSet(pos, pos + 1)) {
+                        E element = elements.get(index);
+                        elements.set(index, null);
+                        // release the slot to the producers of the next lap
+                        sequences.set(index, pos + capacity);
+                        return element;
+                    }
+                    pos = head.get();
+                } else if (delta < 0) {
+                    return null;
+                } else {
+                    pos = head.get();
+                }
+            }
+        }
+
+        protected int size() {
+            long size = tail.get() - head.get();
+            return (int) Math.max(0, Math.min(size, capacity));
+        }
+    }
+
+}
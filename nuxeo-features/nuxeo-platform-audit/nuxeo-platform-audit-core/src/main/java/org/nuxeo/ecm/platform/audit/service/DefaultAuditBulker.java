@@ -40,6 +40,7 @@ import com.codahale.metrics.Counter;
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
 
 public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
 
@@ -62,6 +63,8 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
 
     final Counter drainedCount = registry.counter(MetricRegistry.name("nuxeo", "audit", "drained"));
 
+    final Timer flushTimer = registry.timer(MetricRegistry.name("nuxeo", "audit", "flush"));
+
     int timeout;
 
     int bulksize;
@@ -146,7 +149,9 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
         while (!queue.isEmpty()) {
             entries.add(queue.remove());
         }
-        backend.addLogEntries(entries);
+        try (Timer.Context ignored = flushTimer.time()) {
+            backend.addLogEntries(entries);
+        }
         int delta = entries.size();
         size.addAndGet(-delta);
         drainedCount.inc(delta);
@@ -205,6 +210,21 @@ public class DefaultAuditBulker implements AuditBulkerMBean, AuditBulker {
         bulksize = value;
     }
 
+    @Override
+    public int getQueueSize() {
+        return size.get();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return flushTimer.getCount();
+    }
+
+    @Override
+    public double getFlushMeanTime() {
+        return flushTimer.getSnapshot().getMean() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
     @Override
     public void resetMetrics() {
         queuedCount.dec(queuedCount.getCount());
@@ -23,6 +23,7 @@ import java.lang.reflect.Constructor;
 
 import org.nuxeo.common.xmap.annotation.XNode;
 import org.nuxeo.common.xmap.annotation.XObject;
+import org.nuxeo.ecm.platform.audit.service.AdaptiveAuditBulker;
 import org.nuxeo.ecm.platform.audit.service.AuditBackend;
 import org.nuxeo.ecm.platform.audit.service.AuditBulker;
 import org.nuxeo.ecm.platform.audit.service.DefaultAuditBulker;
@@ -41,6 +42,39 @@ public class AuditBulkerDescriptor implements Serializable {
     @XNode("size")
     public int size = 1000;
 
+    /**
+     * Maximum estimated size in bytes of a bulk, used by the {@link AdaptiveAuditBulker}.
+     *
+     * @since 10.1
+     */
+    @XNode("bytes")
+    public long bytes = 1024 * 1024;
+
+    /**
+     * Number of buffered entries before blocking the producers, used by the {@link AdaptiveAuditBulker}.
+     *
+     * @since 10.1
+     */
+    @XNode("capacity")
+    public int capacity = 10000;
+
+    /**
+     * Number of threads flushing the bulks, used by the {@link AdaptiveAuditBulker}.
+     *
+     * @since 10.1
+     */
+    @XNode("flushers")
+    public int flushers = 2;
+
+    /**
+     * Maximum time in milliseconds a producer is blocked when the buffer is full, before writing its entry
+     * synchronously, used by the {@link AdaptiveAuditBulker}.
+     *
+     * @since 10.1
+     */
+    @XNode("offerTimeout")
+    public int offerTimeout = 1000;
+
     public AuditBulker newInstance(AuditBackend backend) {
         try {
             Constructor<? extends AuditBulker> declaredConstructor = klass.getDeclaredConstructor(AuditBackend.class, AuditBulkerDescriptor.class);
@@ -23,5 +23,26 @@ public interface AuditBulkerMBean {
 
     void setBulkSize(int value);
 
+    /**
+     * Returns the number of entries waiting to be flushed.
+     *
+     * @since 10.1
+     */
+    int getQueueSize();
+
+    /**
+     * Returns the number of flushes.
+     *
+     * @since 10.1
+     */
+    long getFlushCount();
+
+    /**
+     * Returns the mean time of a flush, in milliseconds.
+     *
+     * @since 10.1
+     */
+    double getFlushMeanTime();
+
     void resetMetrics();
 }
@@ -0,0 +1,259 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.platform.audit.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+import org.nuxeo.ecm.platform.audit.api.LogEntry;
+import org.nuxeo.ecm.platform.audit.impl.LogEntryImpl;
+import org.nuxeo.ecm.platform.audit.service.extension.AuditBulkerDescriptor;
+
+/**
+ * @since 10.1
+ */
+public class TestAdaptiveAuditBulker {
+
+    protected final List<List<LogEntry>> bulks = new CopyOnWriteArrayList<>();
+
+    protected volatile CountDownLatch writeLatch;
+
+    /** Number of next writes failing. */
+    protected final AtomicInteger writeFailures = new AtomicInteger();
+
+    protected AdaptiveAuditBulker bulker;
+
+    @After
+    public void stop() {
+        if (bulker != null) {
+            bulker.stopFlushers();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected AuditBackend newBackend() {
+        return (AuditBackend) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AuditBackend.class },
+                (proxy, method, args) -> {
+                    if (!"addLogEntries".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    CountDownLatch latch = writeLatch;
+                    if (latch != null) {
+                        latch.await(10, TimeUnit.SECONDS);
+                    }
+                    if (writeFailures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                        throw new IllegalStateException("write failure");
+                    }
+                    bulks.add(new ArrayList<>((List<LogEntry>) args[0]));
+                    return null;
+                });
+    }
+
+    protected AdaptiveAuditBulker newBulker(int size, int timeout, int capacity, int flushers) {
+        AuditBulkerDescriptor config = new AuditBulkerDescriptor();
+        config.size = size;
+        config.timeout = timeout;
+        config.capacity = capacity;
+        config.flushers = flushers;
+        config.offerTimeout = 10000;
+        bulker = new AdaptiveAuditBulker(newBackend(), config);
+        return bulker;
+    }
+
+    protected static LogEntry newEntry(int i) {
+        LogEntryImpl entry = new LogEntryImpl();
+        entry.setEventId("event" + i);
+        return entry;
+    }
+
+    protected int countEntries() {
+        return bulks.stream().mapToInt(List::size).sum();
+    }
+
+    @Test
+    public void testRingBuffer() {
+        AdaptiveAuditBulker.RingBuffer<Integer> buffer = new AdaptiveAuditBulker.RingBuffer<>(3);
+        // rounded to a power of 2
+        assertEquals(4, buffer.capacity);
+        for (int lap = 0; lap < 3; lap++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(buffer.offer(Integer.valueOf(i)));
+            }
+            assertFalse(buffer.offer(Integer.valueOf(4)));
+            assertEquals(4, buffer.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(i), buffer.poll());
+            }
+            assertNull(buffer.poll());
+            assertEquals(0, buffer.size());
+        }
+    }
+
+    @Test
+    public void testRingBufferConcurrency() throws Exception {
+        AdaptiveAuditBulker.RingBuffer<Integer> buffer = new AdaptiveAuditBulker.RingBuffer<>(16);
+        int producers = 4;
+        int count = 10000;
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int base = p * count;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < count; i++) {
+                    while (!buffer.offer(Integer.valueOf(base + i))) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        Set<Integer> consumed = Collections.synchronizedSet(new HashSet<>());
+        for (int c = 0; c < 2; c++) {
+            threads.add(new Thread(() -> {
+                while (consumed.size() < producers * count) {
+                    Integer value = buffer.poll();
+                    if (value == null) {
+                        Thread.yield();
+                    } else {
+                        assertTrue(consumed.add(value));
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertEquals(producers * count, consumed.size());
+    }
+
+    @Test
+    public void testFlushOnSize() throws Exception {
+        newBulker(10, 60000, 1000, 2).startFlushers();
+        for (int i = 0; i < 30; i++) {
+            bulker.offer(newEntry(i));
+        }
+        assertTrue(bulker.await(10, TimeUnit.SECONDS));
+        assertEquals(30, countEntries());
+        for (List<LogEntry> bulk : bulks) {
+            assertTrue(bulk.size() <= 10);
+        }
+        assertEquals(0, bulker.getQueueSize());
+    }
+
+    @Test
+    public void testFlushOnTimeout() throws Exception {
+        newBulker(1000, 50, 1000, 1).startFlushers();
+        bulker.offer(newEntry(0));
+        long deadline = System.currentTimeMillis() + 10000;
+        while (bulks.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, countEntries());
+    }
+
+    @Test
+    public void testFlushOnBytes() throws Exception {
+        newBulker(1000, 60000, 1000, 1);
+        // two entries per bulk
+        bulker.bulkbytes = 2 * AdaptiveAuditBulker.estimateSize(newEntry(0));
+        bulker.startFlushers();
+        for (int i = 0; i < 6; i++) {
+            bulker.offer(newEntry(i));
+        }
+        assertTrue(bulker.await(10, TimeUnit.SECONDS));
+        assertEquals(6, countEntries());
+        for (List<LogEntry> bulk : bulks) {
+            assertTrue(bulk.size() <= 2);
+        }
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        writeLatch = new CountDownLatch(1);
+        newBulker(2, 60000, 4, 1).startFlushers();
+        // the flusher is blocked on its first bulk, the buffer fills up
+        for (int i = 0; i < 6; i++) {
+            bulker.offer(newEntry(i));
+        }
+        long blocked = bulker.blockedCount.getCount();
+        CountDownLatch offered = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            bulker.offer(newEntry(6));
+            offered.countDown();
+        });
+        producer.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (bulker.blockedCount.getCount() == blocked && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        // blocked until the flusher catches up
+        assertTrue(bulker.blockedCount.getCount() > blocked);
+        assertEquals(1, offered.getCount());
+        writeLatch.countDown();
+        assertTrue(offered.await(10, TimeUnit.SECONDS));
+        producer.join();
+        writeLatch = null;
+        assertTrue(bulker.await(10, TimeUnit.SECONDS));
+        assertEquals(7, countEntries());
+    }
+
+    @Test
+    public void testFailedWriteIsRetried() throws Exception {
+        writeFailures.set(2);
+        newBulker(10, 50, 1000, 1).startFlushers();
+        for (int i = 0; i < 5; i++) {
+            bulker.offer(newEntry(i));
+        }
+        // the entries are put back in the buffer until they are written
+        assertTrue(bulker.await(10, TimeUnit.SECONDS));
+        assertEquals(0, writeFailures.get());
+        assertEquals(5, countEntries());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidTimeout() {
+        newBulker(10, 0, 1000, 1);
+    }
+
+    @Test
+    public void testStopDrainsEntries() {
+        newBulker(1000, 60000, 1000, 2).startFlushers();
+        for (int i = 0; i < 5; i++) {
+            bulker.offer(newEntry(i));
+        }
+        bulker.stopFlushers();
+        bulker = null;
+        assertEquals(5, countEntries());
+    }
+
+}
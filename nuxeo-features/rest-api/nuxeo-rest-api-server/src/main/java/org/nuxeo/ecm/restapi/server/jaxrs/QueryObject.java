@@ -43,9 +43,11 @@ import org.nuxeo.ecm.automation.core.util.Properties;
 import org.nuxeo.ecm.automation.jaxrs.io.documents.PaginableDocumentModelListImpl;
 import org.nuxeo.ecm.core.api.CoreSession;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelIterator;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.NuxeoException;
 import org.nuxeo.ecm.core.api.SortInfo;
+import org.nuxeo.ecm.core.api.impl.DocumentModelQueryIterator;
 import org.nuxeo.ecm.core.api.impl.SimpleDocumentModel;
 import org.nuxeo.ecm.core.api.model.PropertyNotFoundException;
 import org.nuxeo.ecm.platform.query.api.PageProvider;
@@ -53,6 +55,7 @@ import org.nuxeo.ecm.platform.query.api.PageProviderDefinition;
 import org.nuxeo.ecm.platform.query.api.PageProviderService;
 import org.nuxeo.ecm.platform.query.api.QuickFilter;
 import org.nuxeo.ecm.platform.query.nxql.CoreQueryDocumentPageProvider;
+import org.nuxeo.ecm.platform.query.nxql.NXQLQueryBuilder;
 import org.nuxeo.ecm.restapi.server.jaxrs.adapters.SearchAdapter;
 import org.nuxeo.ecm.webengine.model.WebObject;
 import org.nuxeo.ecm.webengine.model.impl.AbstractResource;
@@ -92,6 +95,13 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
      */
     public static final String QUICK_FILTERS = "quickFilters";
 
+    /**
+     * Streams all the results of a NXQL query instead of returning a page.
+     *
+     * @since 10.1
+     */
+    public static final String STREAM = "stream";
+
     private static final Log log = LogFactory.getLog(QueryObject.class);
 
     protected EnumMap<QueryParams, String> queryParametersMap;
@@ -113,11 +123,65 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         queryParametersMap.put(QueryParams.QUERY, QUERY);
         queryParametersMap.put(QueryParams.ORDERED_PARAMS, ORDERED_PARAMS);
         queryParametersMap.put(QueryParams.QUICK_FILTERS, QUICK_FILTERS);
+        queryParametersMap.put(QueryParams.STREAM, STREAM);
         // Lang Path Enum Map
         langPathMap = new EnumMap<>(LangParams.class);
         langPathMap.put(LangParams.NXQL, NXQL);
     }
 
+    /**
+     * Gets an iterator over all the documents matching the NXQL query, the documents being loaded and written batch by
+     * batch. The pagination parameters are ignored.
+     *
+     * @since 10.1
+     */
+    protected DocumentModelIterator getStreamedQuery(UriInfo uriInfo) {
+        MultivaluedMap<String, String> queryParams = uriInfo.getQueryParameters();
+        String query = queryParams.getFirst(QUERY);
+        if (query == null) {
+            query = "SELECT * FROM Document";
+        }
+        Object[] parameters = null;
+        List<String> orderedParams = queryParams.get(ORDERED_PARAMS);
+        if (orderedParams != null && !orderedParams.isEmpty()) {
+            parameters = orderedParams.stream().map(this::expandParameter).toArray(String[]::new);
+        }
+        SortInfo[] sortInfos = getSortInfos(queryParams.getFirst(SORT_BY), queryParams.getFirst(SORT_ORDER)).toArray(
+                new SortInfo[0]);
+        query = NXQLQueryBuilder.getQuery(query, parameters, true, true, null, sortInfos);
+        try {
+            return new DocumentModelQueryIterator(ctx.getCoreSession(), query);
+        } catch (IllegalArgumentException e) {
+            throw new NuxeoException(e.getMessage(), SC_BAD_REQUEST);
+        }
+    }
+
+    protected String expandParameter(String value) {
+        if (value.equals(CURRENT_USERID_PATTERN)) {
+            return ctx.getCoreSession().getPrincipal().getName();
+        } else if (value.equals(CURRENT_REPO_PATTERN)) {
+            return ctx.getCoreSession().getRepositoryName();
+        }
+        return value;
+    }
+
+    protected List<SortInfo> getSortInfos(String sortBy, String sortOrder) {
+        List<SortInfo> sortInfoList = new ArrayList<>();
+        if (!StringUtils.isBlank(sortBy)) {
+            String[] sorts = sortBy.split(",");
+            String[] orders = null;
+            if (!StringUtils.isBlank(sortOrder)) {
+                orders = sortOrder.split(",");
+            }
+            for (int i = 0; i < sorts.length; i++) {
+                String sort = sorts[i];
+                boolean sortAscending = (orders != null && orders.length > i && "asc".equals(orders[i].toLowerCase()));
+                sortInfoList.add(new SortInfo(sort, sortAscending));
+            }
+        }
+        return sortInfoList;
+    }
+
     @SuppressWarnings("unchecked")
     protected DocumentModelList getQuery(UriInfo uriInfo, String langOrProviderName) {
         // Fetching all parameters
@@ -175,16 +239,8 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         // Ordered Parameters
         Object[] parameters = null;
         if (orderedParams != null && !orderedParams.isEmpty()) {
-            parameters = orderedParams.toArray(new String[orderedParams.size()]);
             // expand specific parameters
-            for (int idx = 0; idx < parameters.length; idx++) {
-                String value = (String) parameters[idx];
-                if (value.equals(CURRENT_USERID_PATTERN)) {
-                    parameters[idx] = ctx.getCoreSession().getPrincipal().getName();
-                } else if (value.equals(CURRENT_REPO_PATTERN)) {
-                    parameters[idx] = ctx.getCoreSession().getRepositoryName();
-                }
-            }
+            parameters = orderedParams.stream().map(this::expandParameter).toArray(String[]::new);
         }
 
         Map<String, Serializable> props = new HashMap<>();
@@ -196,17 +252,7 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
         // Sort Info Management
         List<SortInfo> sortInfoList = null;
         if (!StringUtils.isBlank(sortBy)) {
-            sortInfoList = new ArrayList<>();
-            String[] sorts = sortBy.split(",");
-            String[] orders = null;
-            if (!StringUtils.isBlank(sortOrder)) {
-                orders = sortOrder.split(",");
-            }
-            for (int i = 0; i < sorts.length; i++) {
-                String sort = sorts[i];
-                boolean sortAscending = (orders != null && orders.length > i && "asc".equals(orders[i].toLowerCase()));
-                sortInfoList.add(new SortInfo(sort, sortAscending));
-            }
+            sortInfoList = getSortInfos(sortBy, sortOrder);
         }
 
         PaginableDocumentModelListImpl res;
@@ -301,6 +347,9 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
      */
     @GET
     public Object doQuery(@Context UriInfo uriInfo) {
+        if (Boolean.parseBoolean(uriInfo.getQueryParameters().getFirst(STREAM))) {
+            return getStreamedQuery(uriInfo);
+        }
         return getQuery(uriInfo, NXQL);
     }
 
@@ -315,11 +364,14 @@ public class QueryObject extends AbstractResource<ResourceTypeImpl> {
     @Path("{langOrProviderName}")
     public Object doSpecificQuery(@Context UriInfo uriInfo,
             @PathParam("langOrProviderName") String langOrProviderName) {
+        if (NXQL.equals(langOrProviderName) && Boolean.parseBoolean(uriInfo.getQueryParameters().getFirst(STREAM))) {
+            return getStreamedQuery(uriInfo);
+        }
         return getQuery(uriInfo, langOrProviderName);
     }
 
     public enum QueryParams {
-        PAGE_SIZE, CURRENT_PAGE_INDEX, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY, QUICK_FILTERS
+        PAGE_SIZE, CURRENT_PAGE_INDEX, MAX_RESULTS, SORT_BY, SORT_ORDER, ORDERED_PARAMS, QUERY, QUICK_FILTERS, STREAM
     }
 
     public enum LangParams {
@@ -20,6 +20,7 @@ package org.nuxeo.ecm.restapi.test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
 import java.util.Arrays;
@@ -32,7 +33,9 @@ import javax.ws.rs.core.Response;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.event.EventService;
+import org.nuxeo.ecm.core.query.sql.NXQL;
 import org.nuxeo.ecm.core.test.CoreFeature;
 import org.nuxeo.ecm.core.test.annotations.Granularity;
 import org.nuxeo.ecm.core.test.annotations.RepositoryConfig;
@@ -151,6 +154,37 @@ public class DocumentListTest extends BaseTest {
         }
     }
 
+    @Test
+    public void iCanStreamQueriesOnRepository() throws IOException {
+        // Given a query streamed with pagination parameters
+        MultivaluedMap<String, String> queryParams = new MultivaluedMapImpl();
+        queryParams.add("stream", "true");
+        queryParams.add("pageSize", "2");
+        queryParams.add("queryParams", "$currentUser");
+        queryParams.add("query", "select * from Document where dc:creator = ?");
+        queryParams.add("sortBy", "dc:title");
+        queryParams.add("sortOrder", "asc");
+        DocumentModelList expected = session.query("SELECT * FROM Document WHERE dc:creator = "
+                + NXQL.escapeString(session.getPrincipal().getName()) + " ORDER BY dc:title");
+        assertTrue(expected.size() > 2);
+
+        // When I perform it in NXQL on the repository
+        try (CloseableClientResponse response = getResponse(RequestType.GET, QueryObject.PATH + "/" + QueryObject.NXQL,
+                queryParams)) {
+
+            // Then I get all the documents, sorted, without pagination
+            assertEquals(Response.Status.OK.getStatusCode(), response.getStatus());
+            JsonNode node = mapper.readTree(response.getEntityInputStream());
+            assertFalse(node.has("resultsCount"));
+            List<JsonNode> entries = getLogEntries(node);
+            assertEquals(expected.size(), entries.size());
+            for (int i = 0; i < entries.size(); i++) {
+                assertEquals("document", entries.get(i).get("entity-type").asText());
+                assertEquals(expected.get(i).getTitle(), entries.get(i).get("title").asText());
+            }
+        }
+    }
+
     @Test
     public void iCanPerformQueriesWithNamedParametersOnRepository() throws IOException {
         // Given a repository and named parameters, when I perform a query in
@@ -70,6 +70,22 @@ public abstract class AbstractKeyValueStoreProvider implements KeyValueStoreProv
         put(key, stringToBytes(value), ttl);
     }
 
+    @Override
+    public void put(Map<String, byte[]> values) {
+        put(values, 0);
+    }
+
+    /*
+     * This default implementation is uninteresting. It is expected that underlying storage implementations
+     * will leverage bulk writes to deliver significant optimizations over this simple loop.
+     */
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        for (Map.Entry<String, byte[]> en : values.entrySet()) {
+            put(en.getKey(), en.getValue(), ttl);
+        }
+    }
+
     @Override
     public String getString(String key) {
         byte[] bytes = get(key);
@@ -69,6 +69,27 @@ public interface KeyValueStore {
      */
     void put(String key, String value, long ttl);
 
+    /**
+     * Sets the values associated to the keys.
+     * <p>
+     * A {@code null} value removes the key.
+     *
+     * @param values the key/value map
+     * @since 10.1
+     */
+    void put(Map<String, byte[]> values);
+
+    /**
+     * Sets the values associated to the keys, and a TTL.
+     * <p>
+     * A {@code null} value removes the key.
+     *
+     * @param values the key/value map
+     * @param ttl the TTL, in seconds (0 for infinite)
+     * @since 10.1
+     */
+    void put(Map<String, byte[]> values, long ttl);
+
     /**
      * Sets the TTL for an existing key.
      *
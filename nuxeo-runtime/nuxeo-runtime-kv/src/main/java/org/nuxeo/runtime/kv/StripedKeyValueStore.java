@@ -0,0 +1,401 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.kv;
+
+import java.nio.charset.CharacterCodingException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Memory-based implementation of a Key/Value store, scaling with the number of concurrent accesses and of keys with a
+ * TTL.
+ * <p>
+ * The keys are spread over lock-striped segments. Each segment expires its keys using a {@link TimingWheel} advanced
+ * during the operations on the segment, so expired keys are reclaimed even if never accessed again, without a
+ * dedicated thread nor a scan of all the keys.
+ * <p>
+ * The store can be bounded in memory, the least recently used keys of a segment being evicted when its share of the
+ * budget is exceeded.
+ * <p>
+ * Properties:
+ * <ul>
+ * <li>{@value #STRIPES_PROP}: the number of segments, default {@value #DEFAULT_STRIPES}</li>
+ * <li>{@value #MAX_BYTES_PROP}: the approximate memory budget in bytes, 0 for unbounded (the default)</li>
+ * </ul>
+ *
+ * @since 10.1
+ */
+public class StripedKeyValueStore extends AbstractKeyValueStoreProvider {
+
+    public static final String STRIPES_PROP = "stripes";
+
+    public static final int DEFAULT_STRIPES = 16;
+
+    public static final String MAX_BYTES_PROP = "maxBytes";
+
+    /** Expiration precision. */
+    protected static final long TICK_MILLIS = 1000;
+
+    /** Approximate memory used by an entry in addition to its key and value. */
+    protected static final int ENTRY_OVERHEAD = 96;
+
+    protected String name;
+
+    protected Stripe[] stripes;
+
+    public StripedKeyValueStore() {
+        stripes = newStripes(DEFAULT_STRIPES, 0);
+    }
+
+    @Override
+    public void initialize(KeyValueStoreDescriptor descriptor) {
+        name = descriptor.name;
+        Map<String, String> properties = descriptor.getProperties();
+        String value = properties.get(STRIPES_PROP);
+        int nbStripes = value == null ? DEFAULT_STRIPES : Integer.parseInt(value);
+        value = properties.get(MAX_BYTES_PROP);
+        long maxBytes = value == null ? 0 : Long.parseLong(value);
+        if (nbStripes <= 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Invalid properties for store: " + name + ": " + properties);
+        }
+        stripes = newStripes(nbStripes, maxBytes);
+    }
+
+    protected static Stripe[] newStripes(int nbStripes, long maxBytes) {
+        long now = System.currentTimeMillis();
+        Stripe[] stripes = new Stripe[nbStripes];
+        for (int i = 0; i < nbStripes; i++) {
+            stripes[i] = new Stripe(maxBytes / nbStripes, now);
+        }
+        return stripes;
+    }
+
+    protected int stripeIndex(String key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    protected Stripe getStripe(String key) {
+        return stripes[stripeIndex(key)];
+    }
+
+    protected static long expiration(long ttl, long now) {
+        return ttl == 0 ? 0 : now + TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    protected static byte[] clone(byte[] value) {
+        return value == null ? null : value.clone();
+    }
+
+    @Override
+    public Stream<String> keyStream() {
+        long now = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>();
+        for (Stripe stripe : stripes) {
+            stripe.collectKeys(keys, now);
+        }
+        return keys.stream();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public void put(String key, byte[] value, long ttl) {
+        Objects.requireNonNull(key);
+        value = clone(value);
+        long now = System.currentTimeMillis();
+        getStripe(key).put(key, value, expiration(ttl, now), now);
+    }
+
+    @Override
+    public void put(Map<String, byte[]> values, long ttl) {
+        long now = System.currentTimeMillis();
+        long expiration = expiration(ttl, now);
+        for (Map.Entry<Integer, Map<String, byte[]>> en : groupByStripe(values.keySet(), values).entrySet()) {
+            stripes[en.getKey().intValue()].putAll(en.getValue(), expiration, now);
+        }
+    }
+
+    @Override
+    public byte[] get(String key) {
+        Objects.requireNonNull(key);
+        return clone(getStripe(key).get(key, System.currentTimeMillis()));
+    }
+
+    @Override
+    public Map<String, byte[]> get(Collection<String> keys) {
+        long now = System.currentTimeMillis();
+        Map<String, byte[]> map = new HashMap<>(keys.size());
+        for (Map.Entry<Integer, Map<String, byte[]>> en : groupByStripe(keys, null).entrySet()) {
+            stripes[en.getKey().intValue()].getAll(en.getValue().keySet(), map, now);
+        }
+        map.replaceAll((k, v) -> clone(v));
+        return map;
+    }
+
+    @Override
+    public Map<String, String> getStrings(Collection<String> keys) {
+        Map<String, byte[]> values = get(keys);
+        Map<String, String> map = new HashMap<>(values.size());
+        for (Map.Entry<String, byte[]> en : values.entrySet()) {
+            map.put(en.getKey(), valueToString(en.getKey(), en.getValue()));
+        }
+        return map;
+    }
+
+    protected static String valueToString(String key, byte[] bytes) {
+        try {
+            return bytesToString(bytes);
+        } catch (CharacterCodingException e) {
+            throw new IllegalArgumentException("Value is not a String for key: " + key);
+        }
+    }
+
+    /**
+     * Groups the keys by stripe index, with the associated values if provided.
+     */
+    protected Map<Integer, Map<String, byte[]>> groupByStripe(Collection<String> keys, Map<String, byte[]> values) {
+        Map<Integer, Map<String, byte[]>> groups = new HashMap<>();
+        for (String key : keys) {
+            Objects.requireNonNull(key);
+            byte[] value = values == null ? null : clone(values.get(key));
+            groups.computeIfAbsent(Integer.valueOf(stripeIndex(key)), k -> new HashMap<>()).put(key, value);
+        }
+        return groups;
+    }
+
+    @Override
+    public boolean setTTL(String key, long ttl) {
+        Objects.requireNonNull(key);
+        long now = System.currentTimeMillis();
+        return getStripe(key).setTTL(key, expiration(ttl, now), now);
+    }
+
+    @Override
+    public boolean compareAndSet(String key, byte[] expected, byte[] value, long ttl) {
+        Objects.requireNonNull(key);
+        // clone outside the lock
+        value = clone(value);
+        long now = System.currentTimeMillis();
+        return getStripe(key).compareAndSet(key, expected, value, expiration(ttl, now), now);
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "(" + name + ")";
+    }
+
+    /**
+     * A value with its expiration. An entry is never modified, except to be marked dead when it is removed from its
+     * stripe, so that the timing wheel can drop it.
+     */
+    protected static class Entry implements TimingWheel.Timer {
+
+        protected final String key;
+
+        protected volatile byte[] value;
+
+        /** Expiration time in milliseconds, or 0 for none. */
+        protected final long expiration;
+
+        protected Entry(String key, byte[] value, long expiration) {
+            this.key = key;
+            this.value = value;
+            this.expiration = expiration;
+        }
+
+        @Override
+        public long getExpiration() {
+            return expiration;
+        }
+
+        @Override
+        public boolean isActive() {
+            return value != null;
+        }
+
+        protected boolean isExpired(long now) {
+            return expiration != 0 && expiration <= now;
+        }
+
+        protected long weight() {
+            return ENTRY_OVERHEAD + 2L * key.length() + value.length;
+        }
+    }
+
+    /**
+     * A segment of the store. All accesses are synchronized on the stripe.
+     */
+    protected static class Stripe {
+
+        protected final long maxBytes;
+
+        /** In access order, for LRU eviction. */
+        protected final LinkedHashMap<String, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+
+        protected final TimingWheel<Entry> wheel;
+
+        protected long bytes;
+
+        protected Stripe(long maxBytes, long now) {
+            this.maxBytes = maxBytes;
+            wheel = new TimingWheel<>(TICK_MILLIS, now);
+        }
+
+        protected void expire(long now) {
+            // only active entries are passed, which are the current ones for their key
+            wheel.advance(now, entry -> remove(entry.key));
+        }
+
+        protected Entry getEntry(String key, long now) {
+            Entry entry = map.get(key);
+            if (entry != null && entry.isExpired(now)) {
+                remove(entry.key);
+                return null;
+            }
+            return entry;
+        }
+
+        protected void set(String key, byte[] value, long expiration) {
+            remove(key);
+            if (value == null) {
+                return;
+            }
+            Entry entry = new Entry(key, value, expiration);
+            map.put(key, entry);
+            bytes += entry.weight();
+            if (expiration != 0) {
+                wheel.schedule(entry);
+            }
+            if (maxBytes > 0) {
+                Iterator<Entry> it = map.values().iterator();
+                while (bytes > maxBytes && it.hasNext()) {
+                    Entry eldest = it.next();
+                    if (eldest == entry) {
+                        // keep at least the new entry
+                        break;
+                    }
+                    it.remove();
+                    release(eldest);
+                }
+            }
+        }
+
+        protected void remove(String key) {
+            Entry entry = map.remove(key);
+            if (entry != null) {
+                release(entry);
+            }
+        }
+
+        protected void release(Entry entry) {
+            bytes -= entry.weight();
+            entry.value = null;
+        }
+
+        protected synchronized byte[] get(String key, long now) {
+            expire(now);
+            Entry entry = getEntry(key, now);
+            return entry == null ? null : entry.value;
+        }
+
+        protected synchronized void getAll(Collection<String> keys, Map<String, byte[]> result, long now) {
+            expire(now);
+            for (String key : keys) {
+                Entry entry = getEntry(key, now);
+                if (entry != null) {
+                    result.put(key, entry.value);
+                }
+            }
+        }
+
+        protected synchronized void put(String key, byte[] value, long expiration, long now) {
+            expire(now);
+            set(key, value, expiration);
+        }
+
+        protected synchronized void putAll(Map<String, byte[]> values, long expiration, long now) {
+            expire(now);
+            for (Map.Entry<String, byte[]> en : values.entrySet()) {
+                set(en.getKey(), en.getValue(), expiration);
+            }
+        }
+
+        protected synchronized boolean setTTL(String key, long expiration, long now) {
+            expire(now);
+            Entry entry = getEntry(key, now);
+            if (entry == null) {
+                return false;
+            }
+            // replace the entry, the old one is dropped by the wheel
+            set(key, entry.value, expiration);
+            return true;
+        }
+
+        protected synchronized boolean compareAndSet(String key, byte[] expected, byte[] value, long expiration,
+                long now) {
+            expire(now);
+            Entry entry = getEntry(key, now);
+            byte[] current = entry == null ? null : entry.value;
+            if (!Arrays.equals(expected, current)) {
+                return false;
+            }
+            set(key, value, expiration);
+            return true;
+        }
+
+        protected synchronized void collectKeys(List<String> keys, long now) {
+            expire(now);
+            for (Entry entry : map.values()) {
+                if (!entry.isExpired(now)) {
+                    keys.add(entry.key);
+                }
+            }
+        }
+
+        protected synchronized void clear() {
+            for (Entry entry : map.values()) {
+                entry.value = null;
+            }
+            map.clear();
+            wheel.clear();
+            bytes = 0;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.kv;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel, used to expire timers in constant time per timer regardless of the number of pending
+ * timers.
+ * <p>
+ * Each level has {@value #SLOTS} slots, a slot of level {@code n} spans {@code SLOTS^n} ticks. Timers are put in the
+ * lowest level able to hold them and are cascaded to lower levels as time advances. Timers further away than the
+ * highest level are parked in its last slot and rescheduled when it is cascaded.
+ * <p>
+ * The wheel is driven by calls to {@link #advance}, it has no thread of its own. It is not thread-safe.
+ *
+ * @param <T> the timer type
+ * @since 10.1
+ */
+public class TimingWheel<T extends TimingWheel.Timer> {
+
+    /**
+     * A timer in the wheel.
+     */
+    public interface Timer {
+
+        /**
+         * The expiration time, in milliseconds.
+         */
+        long getExpiration();
+
+        /**
+         * Whether this timer is still active. Inactive timers are dropped without being expired.
+         */
+        boolean isActive();
+    }
+
+    protected static final int BITS = 6;
+
+    protected static final int SLOTS = 1 << BITS;
+
+    protected static final int MASK = SLOTS - 1;
+
+    protected static final int LEVELS = 4;
+
+    protected final long tickMillis;
+
+    protected final List<List<T>[]> levels;
+
+    protected long currentTick;
+
+    protected int size;
+
+    /**
+     * @param tickMillis the tick duration in milliseconds, which is the expiration precision
+     * @param now the current time in milliseconds
+     */
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        currentTick = now / tickMillis;
+        levels = new ArrayList<>(LEVELS);
+        for (int i = 0; i < LEVELS; i++) {
+            levels.add(new List[SLOTS]);
+        }
+    }
+
+    /**
+     * Gets the number of timers in the wheel, including inactive ones not dropped yet.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a timer to the wheel.
+     */
+    public void schedule(T timer) {
+        schedule(timer, currentTick + 1);
+    }
+
+    protected void schedule(T timer, long minTick) {
+        // round up so that a timer never fires before its expiration
+        long tick = Math.max((timer.getExpiration() + tickMillis - 1) / tickMillis, minTick);
+        long delta = tick - currentTick;
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << (BITS * (level + 1))) {
+            level++;
+        }
+        int slot;
+        if (delta >= 1L << (BITS * LEVELS)) {
+            // too far away, park in the slot that will be cascaded last
+            slot = (int) (currentTick >>> (BITS * level)) & MASK;
+        } else {
+            slot = (int) (tick >>> (BITS * level)) & MASK;
+        }
+        List<T>[] slots = levels.get(level);
+        if (slots[slot] == null) {
+            slots[slot] = new ArrayList<>();
+        }
+        slots[slot].add(timer);
+        size++;
+    }
+
+    /**
+     * Advances the wheel up to the given time, calling the consumer for each expired active timer.
+     */
+    public void advance(long now, Consumer<T> expired) {
+        long targetTick = now / tickMillis;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            for (int level = LEVELS - 1; level > 0; level--) {
+                if ((currentTick & ((1L << (BITS * level)) - 1)) == 0) {
+                    cascade(level, (int) (currentTick >>> (BITS * level)) & MASK);
+                }
+            }
+            List<T> timers = take(0, (int) currentTick & MASK);
+            if (timers != null) {
+                for (T timer : timers) {
+                    if (timer.isActive()) {
+                        expired.accept(timer);
+                    }
+                }
+            }
+        }
+    }
+
+    protected void cascade(int level, int slot) {
+        List<T> timers = take(level, slot);
+        if (timers != null) {
+            for (T timer : timers) {
+                if (timer.isActive()) {
+                    // timers due now go to the level 0 slot processed right after the cascade
+                    schedule(timer, currentTick);
+                }
+            }
+        }
+    }
+
+    protected List<T> take(int level, int slot) {
+        List<T>[] slots = levels.get(level);
+        List<T> timers = slots[slot];
+        if (timers != null) {
+            slots[slot] = null;
+            size -= timers.size();
+        }
+        return timers;
+    }
+
+    /**
+     * Removes all the timers.
+     */
+    public void clear() {
+        for (List<T>[] slots : levels) {
+            for (int i = 0; i < SLOTS; i++) {
+                slots[i] = null;
+            }
+        }
+        size = 0;
+    }
+
+}
@@ -150,6 +150,33 @@ public abstract class AbstractKeyValueStoreTest {
         assertEquals(3, storeBMap.entrySet().size());
     }
 
+    @Test
+    public void testPutMany() {
+        String key1 = "foo1";
+        String key2 = "foo2";
+        String key3 = "foo3";
+        Set<String> keys = new HashSet<>(Arrays.asList(key1, key2, key3));
+
+        Map<String, byte[]> values = new HashMap<>();
+        values.put(key1, BAR_B);
+        values.put(key2, GEE_B);
+        store.put(values);
+        assertEquals(new HashSet<>(Arrays.asList(key1, key2)), storeKeys());
+        Map<String, byte[]> storeBMap = store.get(keys);
+        assertArrayEquals(BAR_B, storeBMap.get(key1));
+        assertArrayEquals(GEE_B, storeBMap.get(key2));
+        assertEquals(2, storeBMap.size());
+
+        // null values remove keys
+        values.clear();
+        values.put(key1, null);
+        values.put(key3, MOO_B);
+        store.put(values, 0);
+        assertEquals(new HashSet<>(Arrays.asList(key2, key3)), storeKeys());
+        assertNull(store.get(key1));
+        assertArrayEquals(MOO_B, store.get(key3));
+    }
+
     @Test
     public void testCompareAndSet() {
         String key = "foo";
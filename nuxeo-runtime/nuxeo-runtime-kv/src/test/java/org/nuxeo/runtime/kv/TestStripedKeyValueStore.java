@@ -0,0 +1,71 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.kv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestStripedKeyValueStore extends AbstractKeyValueStoreTest {
+
+    @Override
+    protected KeyValueStoreProvider newKeyValueStore() {
+        store = new StripedKeyValueStore();
+        KeyValueStoreDescriptor descriptor = new KeyValueStoreDescriptor();
+        descriptor.name = "striped";
+        store.initialize(descriptor);
+        return store;
+    }
+
+    @Test
+    public void testMaxBytes() {
+        StripedKeyValueStore store = new StripedKeyValueStore();
+        KeyValueStoreDescriptor descriptor = new KeyValueStoreDescriptor();
+        descriptor.name = "bounded";
+        descriptor.properties.put(StripedKeyValueStore.STRIPES_PROP, "1");
+        descriptor.properties.put(StripedKeyValueStore.MAX_BYTES_PROP, "1000");
+        store.initialize(descriptor);
+
+        // each entry weighs a bit more than 300 bytes, only 3 fit
+        byte[] value = new byte[200];
+        store.put("key1", value);
+        store.put("key2", value);
+        store.put("key3", value);
+        assertEquals(3, store.keyStream().count());
+        // access key1 so that key2 is the least recently used
+        assertNotNull(store.get("key1"));
+        store.put("key4", value);
+        assertEquals(3, store.keyStream().count());
+        assertNull(store.get("key2"));
+        assertNotNull(store.get("key1"));
+        assertNotNull(store.get("key3"));
+        assertNotNull(store.get("key4"));
+
+        // an entry larger than the budget is still kept alone
+        store.put("key5", new byte[2000]);
+        assertEquals(1, store.keyStream().count());
+        assertNotNull(store.get("key5"));
+    }
+
+}
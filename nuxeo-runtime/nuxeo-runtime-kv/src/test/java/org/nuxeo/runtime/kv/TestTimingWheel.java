@@ -0,0 +1,109 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.kv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @since 10.1
+ */
+public class TestTimingWheel {
+
+    protected static class TestTimer implements TimingWheel.Timer {
+
+        protected final long expiration;
+
+        protected boolean active = true;
+
+        protected TestTimer(long expiration) {
+            this.expiration = expiration;
+        }
+
+        @Override
+        public long getExpiration() {
+            return expiration;
+        }
+
+        @Override
+        public boolean isActive() {
+            return active;
+        }
+    }
+
+    @Test
+    public void testExpiration() {
+        long now = 1_000_000;
+        TimingWheel<TestTimer> wheel = new TimingWheel<>(1000, now);
+        TestTimer t1 = new TestTimer(now + 1500);
+        TestTimer t2 = new TestTimer(now + 5000);
+        TestTimer t3 = new TestTimer(now + 5000);
+        wheel.schedule(t1);
+        wheel.schedule(t2);
+        wheel.schedule(t3);
+        t3.active = false;
+        List<TestTimer> expired = new ArrayList<>();
+
+        wheel.advance(now + 1000, expired::add);
+        assertEquals(0, expired.size());
+        wheel.advance(now + 2000, expired::add);
+        assertEquals(1, expired.size());
+        assertTrue(expired.contains(t1));
+        wheel.advance(now + 10000, expired::add);
+        assertEquals(2, expired.size());
+        assertTrue(expired.contains(t2));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    public void testCascading() {
+        long now = 0;
+        TimingWheel<TestTimer> wheel = new TimingWheel<>(1, now);
+        Random random = new Random(1234);
+        List<TestTimer> timers = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            // up to beyond the wheel capacity
+            TestTimer timer = new TestTimer(1 + (long) random.nextInt(1 << 25));
+            timers.add(timer);
+            wheel.schedule(timer);
+        }
+        List<TestTimer> expired = new ArrayList<>();
+        long previous = 0;
+        for (long t = 0; t < (1 << 25) + 1; t += 1 + random.nextInt(5000)) {
+            int before = expired.size();
+            wheel.advance(t, expired::add);
+            for (TestTimer timer : expired.subList(before, expired.size())) {
+                // never expired early, nor later than the first advance past the expiration
+                assertTrue(timer.expiration <= t);
+                assertTrue(timer.expiration > previous);
+            }
+            previous = t;
+        }
+        wheel.advance(1 << 26, expired::add);
+        assertEquals(timers.size(), expired.size());
+        assertEquals(0, wheel.size());
+    }
+
+}
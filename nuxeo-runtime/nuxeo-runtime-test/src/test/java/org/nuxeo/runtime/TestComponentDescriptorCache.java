@@ -0,0 +1,128 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.Extension;
+import org.nuxeo.runtime.model.ExtensionPoint;
+import org.nuxeo.runtime.model.RegistrationInfo;
+import org.nuxeo.runtime.model.impl.ComponentDescriptorCache;
+import org.nuxeo.runtime.model.impl.DefaultRuntimeContext;
+import org.nuxeo.runtime.model.impl.RegistrationInfoImpl;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+/**
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestComponentDescriptorCache {
+
+    protected static final String XML = "<?xml version=\"1.0\"?>\n" //
+            + "<component name=\"my.cached\" version=\"1.2.3\">\n" //
+            + "  <documentation>Some doc</documentation>\n" //
+            + "  <require>my.comp2</require>\n" //
+            + "  <alias>my.alias</alias>\n" //
+            + "  <implementation class=\"org.nuxeo.runtime.ComponentWithXPoint\"/>\n" //
+            + "  <service><provide interface=\"org.nuxeo.runtime.ComponentWithXPoint\"/></service>\n" //
+            + "  <extension-point name=\"xp\">\n" //
+            + "    <object class=\"org.nuxeo.runtime.DummyContribution\"/>\n" //
+            + "  </extension-point>\n" //
+            + "  <extension target=\"my.comp2\" point=\"xp1\">\n" //
+            + "    <printer><message>Hello World!</message></printer>\n" //
+            + "  </extension>\n" //
+            + "</component>\n";
+
+    protected int parsed;
+
+    protected RegistrationInfoImpl get(ComponentDescriptorCache cache, DefaultRuntimeContext ctx, String xml)
+            throws Exception {
+        return cache.get(ctx, "test:cached.xml", xml, () -> {
+            parsed++;
+            return ctx.createRegistrationInfo(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        });
+    }
+
+    @Test
+    public void testCache() throws Exception {
+        File file = Framework.createTempFile("descriptors", ".bin");
+        file.delete();
+        DefaultRuntimeContext ctx = new DefaultRuntimeContext(Framework.getRuntime());
+        ComponentDescriptorCache cache = new ComponentDescriptorCache(file);
+
+        RegistrationInfo parsedRi = get(cache, ctx, XML);
+        assertEquals(1, parsed);
+        RegistrationInfo cachedRi = get(cache, ctx, XML);
+        assertEquals(1, parsed);
+        assertEquals(1, cache.getHits());
+        assertSameDescriptor(parsedRi, cachedRi);
+
+        // persisted for the next start
+        cache.save();
+        assertTrue(file.isFile());
+        cache = new ComponentDescriptorCache(file);
+        cachedRi = get(cache, ctx, XML);
+        assertEquals(1, parsed);
+        assertSameDescriptor(parsedRi, cachedRi);
+
+        // parsed again when changed
+        get(cache, ctx, XML.replace("Hello World!", "Bye"));
+        assertEquals(2, parsed);
+        file.delete();
+    }
+
+    protected void assertSameDescriptor(RegistrationInfo expected, RegistrationInfo actual) {
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(expected.getDocumentation(), actual.getDocumentation());
+        assertEquals(expected.getRequiredComponents(), actual.getRequiredComponents());
+        assertEquals(Collections.singleton(new ComponentName("my.alias")), actual.getAliases());
+        assertEquals(expected.getImplementation(), actual.getImplementation());
+        assertArrayEquals(expected.getProvidedServiceNames(), actual.getProvidedServiceNames());
+
+        ExtensionPoint[] xps = actual.getExtensionPoints();
+        assertEquals(1, xps.length);
+        assertEquals("xp", xps[0].getName());
+        assertArrayEquals(new Class<?>[] { DummyContribution.class }, xps[0].getContributions());
+
+        Extension[] xts = actual.getExtensions();
+        assertEquals(1, xts.length);
+        Extension expectedXt = expected.getExtensions()[0];
+        assertEquals(expectedXt.getTargetComponent(), xts[0].getTargetComponent());
+        assertEquals(expectedXt.getExtensionPoint(), xts[0].getExtensionPoint());
+        assertNotNull(xts[0].getElement());
+        assertEquals(expectedXt.toXML(), xts[0].toXML());
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.runtime.api.Framework;
+import org.nuxeo.runtime.model.ComponentManager;
+import org.nuxeo.runtime.model.impl.ComponentManagerImpl;
+import org.nuxeo.runtime.model.impl.StartupTimeline;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.RuntimeFeature;
+
+/**
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features(RuntimeFeature.class)
+public class TestParallelStart {
+
+    @After
+    public void tearDown() {
+        Framework.getProperties().remove(ComponentManagerImpl.PARALLEL_START_PROPERTY);
+    }
+
+    protected Object getTimelineAttribute(String attribute) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        return server.getAttribute(new ObjectName(StartupTimeline.OBJECT_NAME), attribute);
+    }
+
+    @Test
+    public void testParallelStart() throws Exception {
+        ComponentManager mgr = Framework.getRuntime().getComponentManager();
+        int resolved = mgr.getResolvedRegistrations().size();
+
+        mgr.restart(false);
+        assertFalse((Boolean) getTimelineAttribute("ParallelStart"));
+
+        Framework.getProperties().setProperty(ComponentManagerImpl.PARALLEL_START_PROPERTY, "true");
+        mgr.restart(false);
+        assertTrue(mgr.isStarted());
+        assertTrue(mgr.getStartFailureRegistrations().isEmpty());
+        assertEquals(resolved, mgr.getResolvedRegistrations().size());
+        assertTrue((Boolean) getTimelineAttribute("ParallelStart"));
+        // every started component is timed
+        String[] durations = (String[]) getTimelineAttribute("StartDurations");
+        assertEquals(resolved, durations.length);
+    }
+
+}
@@ -0,0 +1,381 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.model.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.common.xmap.DOMSerializer;
+import org.nuxeo.runtime.Version;
+import org.nuxeo.runtime.model.ComponentName;
+import org.nuxeo.runtime.model.RuntimeContext;
+
+/**
+ * Persistent cache of the parsed component descriptors.
+ * <p>
+ * The registration info parsed from a component XML file is kept in a binary file, keyed on the file location and on
+ * the checksum of its content after variable expansion. On the next starts an unchanged component is rebuilt from
+ * the binary form without DOM parsing nor XMap mapping of the component descriptor; the XML of its extensions is only
+ * parsed when their contributions are loaded.
+ * <p>
+ * Components declaring properties or a configuration are not cached, as their values are decoded at parse time.
+ *
+ * @since 10.1
+ */
+public class ComponentDescriptorCache {
+
+    private static final Log log = LogFactory.getLog(ComponentDescriptorCache.class);
+
+    /**
+     * Property enabling the cache of the component descriptors.
+     */
+    public static final String ENABLED_PROPERTY = "org.nuxeo.runtime.component.descriptorCache";
+
+    public static final String FILE_NAME = "component-descriptors.bin";
+
+    // to be changed when the format changes
+    protected static final int MAGIC = 0x4e584301;
+
+    @FunctionalInterface
+    public interface Parser {
+        RegistrationInfoImpl parse() throws IOException;
+    }
+
+    protected static class Entry {
+
+        protected final byte[] checksum;
+
+        protected final byte[] data;
+
+        protected Entry(byte[] checksum, byte[] data) {
+            this.checksum = checksum;
+            this.data = data;
+        }
+    }
+
+    protected final File file;
+
+    // loaded entries, by source id
+    protected Map<String, Entry> entries;
+
+    // source ids seen since the last save, the others are dropped on save
+    protected final Set<String> used = new HashSet<>();
+
+    protected boolean dirty;
+
+    protected final AtomicInteger hits = new AtomicInteger();
+
+    protected final AtomicInteger misses = new AtomicInteger();
+
+    public ComponentDescriptorCache(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getHits() {
+        return hits.get();
+    }
+
+    public int getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the registration info for the given component XML, from the cache if its content didn't change, otherwise
+     * from the given parser.
+     *
+     * @param ctx the context used to load the extension point contribution classes
+     * @param sourceId the location of the component
+     * @param xml the component XML, after variable expansion
+     * @param parser the parser used on cache miss
+     */
+    public synchronized RegistrationInfoImpl get(RuntimeContext ctx, String sourceId, String xml, Parser parser)
+            throws IOException {
+        if (entries == null) {
+            entries = load();
+        }
+        used.add(sourceId);
+        byte[] checksum = checksum(xml);
+        Entry entry = entries.get(sourceId);
+        if (entry != null && Arrays.equals(entry.checksum, checksum)) {
+            try {
+                RegistrationInfoImpl ri = read(ctx, entry.data);
+                hits.incrementAndGet();
+                return ri;
+            } catch (IOException | ClassNotFoundException e) {
+                // may be a class that moved, parse it again
+                log.debug("Cannot read cached descriptor of: " + sourceId, e);
+            }
+        }
+        misses.incrementAndGet();
+        RegistrationInfoImpl ri = parser.parse();
+        if (ri != null && ri.name != null && ri.properties.isEmpty() && ri.config == null) {
+            entries.put(sourceId, new Entry(checksum, write(ri)));
+            dirty = true;
+        } else if (entries.remove(sourceId) != null) {
+            dirty = true;
+        }
+        return ri;
+    }
+
+    /**
+     * Saves the cache if it changed since it was loaded. The entries of the components not deployed since the last
+     * save are dropped.
+     */
+    public synchronized void save() {
+        if (entries == null) {
+            return;
+        }
+        if (entries.keySet().retainAll(used)) {
+            dirty = true;
+        }
+        used.clear();
+        if (!dirty) {
+            return;
+        }
+        try {
+            File tmp = new File(file.getPath() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tmp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(entries.size());
+                for (Map.Entry<String, Entry> es : entries.entrySet()) {
+                    writeString(out, es.getKey());
+                    writeBytes(out, es.getValue().checksum);
+                    writeBytes(out, es.getValue().data);
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            dirty = false;
+        } catch (IOException e) {
+            log.warn("Cannot save component descriptors cache: " + file, e);
+        }
+    }
+
+    protected Map<String, Entry> load() {
+        Map<String, Entry> map = new HashMap<>();
+        if (!file.isFile()) {
+            return map;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                log.info("Ignoring component descriptors cache of another version: " + file);
+                return map;
+            }
+            int size = in.readInt();
+            for (int i = 0; i < size; i++) {
+                String sourceId = readString(in);
+                byte[] checksum = readBytes(in);
+                byte[] data = readBytes(in);
+                map.put(sourceId, new Entry(checksum, data));
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring corrupted component descriptors cache: " + file, e);
+            map.clear();
+        }
+        return map;
+    }
+
+    protected static byte[] checksum(String xml) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(xml.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    protected static byte[] write(RegistrationInfoImpl ri) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(baos);
+        writeString(out, ri.name.getRawName());
+        out.writeBoolean(ri.disabled);
+        writeNames(out, ri.aliases);
+        writeNames(out, ri.requires);
+        writeString(out, ri.implementation);
+        out.writeBoolean(ri.serviceDescriptor != null);
+        if (ri.serviceDescriptor != null) {
+            out.writeBoolean(ri.serviceDescriptor.isFactory);
+            writeStrings(out, ri.serviceDescriptor.services);
+        }
+        writeString(out, ri.version == null ? null : ri.version.toString());
+        writeString(out, ri.bundle);
+        writeString(out, ri.documentation);
+        out.writeInt(ri.extensionPoints.length);
+        for (ExtensionPointImpl xp : ri.extensionPoints) {
+            writeString(out, xp.name);
+            writeString(out, xp.superComponent);
+            writeString(out, xp.documentation);
+            String[] classes = null;
+            if (xp.contributions != null) {
+                classes = Arrays.stream(xp.contributions).map(Class::getName).toArray(String[]::new);
+            }
+            writeStrings(out, classes);
+        }
+        out.writeInt(ri.extensions.length);
+        for (ExtensionImpl xt : ri.extensions) {
+            writeString(out, xt.target == null ? null : xt.target.getRawName());
+            writeString(out, xt.extensionPoint);
+            writeString(out, xt.id);
+            writeString(out, xt.documentation);
+            writeString(out, xt.element == null ? null : DOMSerializer.toStringOmitXml(xt.element));
+        }
+        out.flush();
+        return baos.toByteArray();
+    }
+
+    protected static RegistrationInfoImpl read(RuntimeContext ctx, byte[] data)
+            throws IOException, ClassNotFoundException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        RegistrationInfoImpl ri = new RegistrationInfoImpl(new ComponentName(readString(in)));
+        ri.disabled = in.readBoolean();
+        ri.aliases = readNames(in);
+        ri.requires = readNames(in);
+        ri.implementation = readString(in);
+        if (in.readBoolean()) {
+            ri.serviceDescriptor = new ServiceDescriptor();
+            ri.serviceDescriptor.isFactory = in.readBoolean();
+            ri.serviceDescriptor.services = readStrings(in);
+        }
+        String version = readString(in);
+        ri.version = version == null ? null : Version.parseString(version);
+        ri.bundle = readString(in);
+        ri.documentation = readString(in);
+        ri.extensionPoints = new ExtensionPointImpl[in.readInt()];
+        for (int i = 0; i < ri.extensionPoints.length; i++) {
+            ExtensionPointImpl xp = new ExtensionPointImpl();
+            xp.name = readString(in);
+            xp.superComponent = readString(in);
+            xp.documentation = readString(in);
+            String[] classes = readStrings(in);
+            if (classes != null) {
+                xp.contributions = new Class<?>[classes.length];
+                for (int j = 0; j < classes.length; j++) {
+                    xp.contributions[j] = ctx.loadClass(classes[j]);
+                }
+            }
+            xp.ri = ri;
+            ri.extensionPoints[i] = xp;
+        }
+        ri.extensions = new ExtensionImpl[in.readInt()];
+        for (int i = 0; i < ri.extensions.length; i++) {
+            ExtensionImpl xt = new ExtensionImpl();
+            String target = readString(in);
+            xt.target = target == null ? null : new ComponentName(target);
+            xt.extensionPoint = readString(in);
+            xt.id = readString(in);
+            xt.documentation = readString(in);
+            xt.xml = readString(in);
+            ri.extensions[i] = xt;
+        }
+        return ri;
+    }
+
+    protected static void writeNames(DataOutputStream out, Set<ComponentName> names) throws IOException {
+        out.writeInt(names.size());
+        for (ComponentName name : names) {
+            writeString(out, name.getRawName());
+        }
+    }
+
+    protected static Set<ComponentName> readNames(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        Set<ComponentName> names = new HashSet<>();
+        for (int i = 0; i < size; i++) {
+            names.add(new ComponentName(readString(in)));
+        }
+        return names;
+    }
+
+    protected static void writeStrings(DataOutputStream out, String[] strings) throws IOException {
+        if (strings == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(strings.length);
+        for (String string : strings) {
+            writeString(out, string);
+        }
+    }
+
+    protected static String[] readStrings(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        String[] strings = new String[size];
+        for (int i = 0; i < size; i++) {
+            strings[i] = readString(in);
+        }
+        return strings;
+    }
+
+    // not writeUTF, limited to 64KB
+    protected static void writeString(DataOutputStream out, String string) throws IOException {
+        writeBytes(out, string == null ? null : string.getBytes(StandardCharsets.UTF_8));
+    }
+
+    protected static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = readBytes(in);
+        return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    protected static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    protected static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+}
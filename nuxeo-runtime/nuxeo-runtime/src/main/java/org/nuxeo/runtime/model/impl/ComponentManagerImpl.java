@@ -34,11 +34,16 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
@@ -68,6 +73,28 @@ public class ComponentManagerImpl implements ComponentManager {
 
     private static final Log infoLog = LogFactory.getLog(ComponentManager.class);
 
+    /**
+     * Property enabling the parallel start of the components.
+     *
+     * @since 10.1
+     */
+    public static final String PARALLEL_START_PROPERTY = "org.nuxeo.runtime.component.parallelStart";
+
+    /**
+     * Property defining the number of threads starting the components in parallel, defaults to the number of
+     * processors.
+     *
+     * @since 10.1
+     */
+    public static final String PARALLEL_START_THREADS_PROPERTY = "org.nuxeo.runtime.component.parallelStart.threads";
+
+    /**
+     * Number of components listed per phase in the startup timeline logged at the end of the start.
+     *
+     * @since 10.1
+     */
+    protected static final int TIMELINE_LOG_SIZE = 20;
+
     // must use an ordered Set to avoid loosing the order of the pending
     // extensions
     protected final ConcurrentMap<ComponentName, Set<Extension>> pendingExtensions;
@@ -130,6 +157,22 @@ public class ComponentManagerImpl implements ComponentManager {
      */
     protected volatile boolean changed = false;
 
+    /**
+     * The durations of the last activation and start.
+     *
+     * @since 10.1
+     */
+    protected final StartupTimeline timeline = new StartupTimeline();
+
+    /**
+     * The cache of the parsed component descriptors, initialized on first use.
+     *
+     * @since 10.1
+     */
+    protected ComponentDescriptorCache descriptorCache;
+
+    protected boolean descriptorCacheInitialized;
+
     public ComponentManagerImpl(RuntimeService runtime) {
         registry = new ComponentRegistry();
         pendingExtensions = new ConcurrentHashMap<>();
@@ -140,6 +183,25 @@ public class ComponentManagerImpl implements ComponentManager {
         stash = new Stash();
     }
 
+    /**
+     * Gets the cache of the parsed component descriptors, or {@code null} if it is not enabled through
+     * {@link ComponentDescriptorCache#ENABLED_PROPERTY}.
+     *
+     * @since 10.1
+     */
+    public synchronized ComponentDescriptorCache getDescriptorCache() {
+        if (!descriptorCacheInitialized) {
+            descriptorCacheInitialized = true;
+            Environment env = Environment.getDefault();
+            if (env != null && Framework.isBooleanPropertyTrue(ComponentDescriptorCache.ENABLED_PROPERTY)) {
+                File dir = new File(env.getData(), "runtime");
+                dir.mkdirs();
+                descriptorCache = new ComponentDescriptorCache(new File(dir, ComponentDescriptorCache.FILE_NAME));
+            }
+        }
+        return descriptorCache;
+    }
+
     /**
      * @since 9.2
      */
@@ -219,6 +281,7 @@ public class ComponentManagerImpl implements ComponentManager {
     @Override
     public synchronized void shutdown() {
         stop();
+        timeline.unregister();
         compListeners = null;
         registry.destroy();
         registry = null;
@@ -531,6 +594,7 @@ public class ComponentManagerImpl implements ComponentManager {
             infoLog.info("Components activated in " + watch.total.formatSeconds() + " sec.");
         }
         writeDevMetrics(watch, "activate");
+        timeline.setActivation(watch);
 
         return ris;
     }
@@ -681,13 +745,18 @@ public class ComponentManagerImpl implements ComponentManager {
      * @since 9.2
      */
     protected void startComponents(List<RegistrationInfo> ris, boolean isResume) {
-        Watch watch = new Watch();
+        boolean parallel = Framework.isBooleanPropertyTrue(PARALLEL_START_PROPERTY);
+        Watch watch = new Watch(new ConcurrentHashMap<>());
         watch.start();
         listeners.beforeStart(isResume);
-        for (RegistrationInfo ri : ris) {
-            watch.start(ri.getName().getName());
-            startComponent(ri);
-            watch.stop(ri.getName().getName());
+        if (parallel) {
+            startComponentsInParallel(ris, watch);
+        } else {
+            for (RegistrationInfo ri : ris) {
+                watch.start(ri.getName().getName());
+                startComponent(ri);
+                watch.stop(ri.getName().getName());
+            }
         }
         this.started = ris;
         listeners.afterStart(isResume);
@@ -697,6 +766,81 @@ public class ComponentManagerImpl implements ComponentManager {
             infoLog.info("Components started in " + watch.total.formatSeconds() + " sec.");
         }
         writeDevMetrics(watch, "start");
+        timeline.setStart(watch, parallel);
+    }
+
+    /**
+     * Starts the given components concurrently.
+     * <p>
+     * The components are started by waves of same {@link RegistrationInfo#getApplicationStartedOrder}, in the order of
+     * the sequential start. In a wave, a component is started once the components of the wave it requires are started.
+     *
+     * @since 10.1
+     */
+    protected void startComponentsInParallel(List<RegistrationInfo> ris, Watch watch) {
+        ClassLoader loader = Thread.currentThread().getContextClassLoader();
+        ForkJoinWorkerThreadFactory factory = pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Nuxeo-Start-" + thread.getPoolIndex());
+            // components may load their resources through the context class loader
+            thread.setContextClassLoader(loader);
+            return thread;
+        };
+        int threads = Integer.parseInt(Framework.getProperty(PARALLEL_START_THREADS_PROPERTY,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        ForkJoinPool pool = new ForkJoinPool(threads, factory, null, false);
+        try {
+            int i = 0;
+            while (i < ris.size()) {
+                int order = ris.get(i).getApplicationStartedOrder();
+                int j = i;
+                while (j < ris.size() && ris.get(j).getApplicationStartedOrder() == order) {
+                    j++;
+                }
+                startWave(ris.subList(i, j), watch, pool);
+                i = j;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    protected void startWave(List<RegistrationInfo> wave, Watch watch, ForkJoinPool pool) {
+        Map<RegistrationInfo, CompletableFuture<Void>> futures = new HashMap<>();
+        // the resolution order guarantees the required components are seen first
+        for (RegistrationInfo ri : registry.getResolvedRegistrationInfo()) {
+            if (!wave.contains(ri)) {
+                continue;
+            }
+            List<CompletableFuture<Void>> requirements = new ArrayList<>();
+            Set<ComponentName> required = ri.getRequiredComponents();
+            if (required != null) {
+                for (ComponentName name : required) {
+                    CompletableFuture<Void> requirement = futures.get(registry.getComponent(name));
+                    if (requirement != null) {
+                        requirements.add(requirement);
+                    }
+                }
+            }
+            String name = ri.getName().getName();
+            futures.put(ri, CompletableFuture.allOf(requirements.toArray(new CompletableFuture[0]))
+                                             .thenRunAsync(() -> {
+                                                 watch.start(name);
+                                                 startComponent(ri);
+                                                 watch.stop(name);
+                                             }, pool));
+        }
+        try {
+            CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
     }
 
     /**
@@ -791,6 +935,19 @@ public class ComponentManagerImpl implements ComponentManager {
         // then start activated components
         startComponents(ris, false);
 
+        if (infoLog.isInfoEnabled()) {
+            infoLog.info(timeline.getReport(TIMELINE_LOG_SIZE));
+        }
+        timeline.register();
+
+        if (descriptorCache != null) {
+            if (infoLog.isInfoEnabled()) {
+                infoLog.info("Component descriptors cache: " + descriptorCache.getHits() + " hits, "
+                        + descriptorCache.getMisses() + " misses");
+            }
+            descriptorCache.save();
+        }
+
         return true;
     }
 
@@ -220,11 +220,27 @@ public class DefaultRuntimeContext implements RuntimeContext {
     public RegistrationInfoImpl createRegistrationInfo(StreamRef ref) throws IOException {
         String source = IOUtils.toString(ref.getStream(), Charsets.UTF_8);
         String expanded = Framework.expandVars(source);
-        try (InputStream in = new ByteArrayInputStream(expanded.getBytes())) {
+        ComponentDescriptorCache cache = getDescriptorCache();
+        if (cache != null) {
+            return cache.get(this, ref.getId(), expanded, () -> createRegistrationInfo(expanded));
+        }
+        return createRegistrationInfo(expanded);
+    }
+
+    protected RegistrationInfoImpl createRegistrationInfo(String xml) throws IOException {
+        try (InputStream in = new ByteArrayInputStream(xml.getBytes())) {
             return createRegistrationInfo(in);
         }
     }
 
+    protected ComponentDescriptorCache getDescriptorCache() {
+        if (runtime == null) {
+            return null;
+        }
+        ComponentManager mgr = runtime.getComponentManager();
+        return mgr instanceof ComponentManagerImpl ? ((ComponentManagerImpl) mgr).getDescriptorCache() : null;
+    }
+
     public RegistrationInfoImpl createRegistrationInfo(InputStream in) throws IOException {
         return reader.read(this, in);
     }
@@ -23,16 +23,23 @@ package org.nuxeo.runtime.model.impl;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.StringReader;
+
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.nuxeo.common.xmap.DOMSerializer;
+import org.nuxeo.common.xmap.XMap;
 import org.nuxeo.common.xmap.annotation.XContent;
 import org.nuxeo.common.xmap.annotation.XNode;
 import org.nuxeo.common.xmap.annotation.XObject;
+import org.nuxeo.runtime.RuntimeServiceException;
 import org.nuxeo.runtime.model.ComponentInstance;
 import org.nuxeo.runtime.model.ComponentName;
 import org.nuxeo.runtime.model.Extension;
 import org.nuxeo.runtime.model.RuntimeContext;
 import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
 
 /**
  * @author <a href="mailto:bs@nuxeo.com">Bogdan Stefanescu</a>
@@ -54,7 +61,7 @@ public class ExtensionImpl implements Extension {
     String extensionPoint;
 
     @XNode("@id")
-    private String id;
+    String id;
 
     @XContent("documentation")
     String documentation;
@@ -62,6 +69,13 @@ public class ExtensionImpl implements Extension {
     @XNode("")
     transient Element element;
 
+    /**
+     * The XML of the element when not parsed yet, for an extension read from the {@link ComponentDescriptorCache}.
+     *
+     * @since 10.1
+     */
+    transient String xml;
+
     transient Object[] contributions;
 
     // declaring component
@@ -70,17 +84,30 @@ public class ExtensionImpl implements Extension {
     @Override
     public void dispose() {
         element = null;
+        xml = null;
         contributions = null;
     }
 
     @Override
     public Element getElement() {
+        if (element == null && xml != null) {
+            try {
+                element = XMap.getFactory()
+                              .newDocumentBuilder()
+                              .parse(new InputSource(new StringReader(xml)))
+                              .getDocumentElement();
+            } catch (ParserConfigurationException | SAXException | IOException e) {
+                throw new RuntimeServiceException("Cannot parse extension: " + xml, e);
+            }
+            xml = null;
+        }
         return element;
     }
 
     @Override
     public void setElement(Element element) {
         this.element = element;
+        xml = null;
     }
 
     @Override
@@ -156,7 +183,7 @@ public class ExtensionImpl implements Extension {
     @Override
     public String toXML() {
         try {
-            return DOMSerializer.toStringOmitXml(element);
+            return DOMSerializer.toStringOmitXml(getElement());
         } catch (IOException e) {
             System.err.println("Failed to serialize extension " + e);
             return null;
@@ -0,0 +1,145 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.model.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.nuxeo.runtime.util.Watch;
+import org.nuxeo.runtime.util.Watch.TimeInterval;
+
+/**
+ * Keeps the per component durations of the last activation and start, exposed through JMX.
+ *
+ * @since 10.1
+ */
+public class StartupTimeline implements StartupTimelineMBean {
+
+    private static final Log log = LogFactory.getLog(StartupTimeline.class);
+
+    public static final String OBJECT_NAME = "org.nuxeo:type=ComponentManager,name=startupTimeline";
+
+    protected volatile Watch activation;
+
+    protected volatile Watch start;
+
+    protected volatile boolean parallelStart;
+
+    public void setActivation(Watch activation) {
+        this.activation = activation;
+    }
+
+    public void setStart(Watch start, boolean parallelStart) {
+        this.start = start;
+        this.parallelStart = parallelStart;
+    }
+
+    @Override
+    public boolean isParallelStart() {
+        return parallelStart;
+    }
+
+    @Override
+    public long getActivationTime() {
+        return activation == null ? 0 : activation.elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getStartTime() {
+        return start == null ? 0 : start.elapsed(TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String[] getActivationDurations() {
+        return getDurations(activation, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public String[] getStartDurations() {
+        return getDurations(start, Integer.MAX_VALUE);
+    }
+
+    protected static String[] getDurations(Watch watch, int max) {
+        if (watch == null) {
+            return new String[0];
+        }
+        return Arrays.stream(watch.getIntervals())
+                     .sorted(Comparator.reverseOrder())
+                     .limit(max)
+                     .map(TimeInterval::toString)
+                     .toArray(String[]::new);
+    }
+
+    /**
+     * Gets a report of the longest activations and starts.
+     *
+     * @param max the maximum number of components listed per phase
+     */
+    public String getReport(int max) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Components activated in ").append(getActivationTime()).append(" ms, longest:");
+        for (String duration : getDurations(activation, max)) {
+            sb.append("\n  ").append(duration);
+        }
+        sb.append("\nComponents started");
+        if (parallelStart) {
+            sb.append(" in parallel");
+        }
+        sb.append(" in ").append(getStartTime()).append(" ms, longest:");
+        for (String duration : getDurations(start, max)) {
+            sb.append("\n  ").append(duration);
+        }
+        return sb.toString();
+    }
+
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                // from a previous runtime
+                server.unregisterMBean(name);
+            }
+            server.registerMBean(this, name);
+        } catch (JMException e) {
+            log.warn("Cannot register startup timeline MBean", e);
+        }
+    }
+
+    public void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            log.warn("Cannot unregister startup timeline MBean", e);
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+/*
+ * (C) Copyright 2018 Nuxeo (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.runtime.model.impl;
+
+/**
+ * JMX view of the durations of the last activation and start of the components.
+ *
+ * @since 10.1
+ */
+public interface StartupTimelineMBean {
+
+    /**
+     * Whether the components were started in parallel.
+     */
+    boolean isParallelStart();
+
+    /**
+     * Total activation time in milliseconds.
+     */
+    long getActivationTime();
+
+    /**
+     * Total start time in milliseconds.
+     */
+    long getStartTime();
+
+    /**
+     * Activation durations of the components, the longest first.
+     */
+    String[] getActivationDurations();
+
+    /**
+     * Start durations of the components, the longest first.
+     */
+    String[] getStartDurations();
+
+}
@@ -0,0 +1,79 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.lib.stream.computation;
+
+import java.time.Duration;
+
+/**
+ * Describes how records are grouped before being submitted to
+ * {@link Computation#processRecords(ComputationContext, String, java.util.List)}.
+ * <p>
+ * A batch is submitted when it reaches its capacity or when the time threshold is reached, whichever comes first.
+ *
+ * @since 10.1
+ */
+public class BatchPolicy {
+
+    /** Records are processed one by one. */
+    public static final BatchPolicy NO_BATCH = new BatchPolicy(1, Duration.ofMillis(1));
+
+    public static final BatchPolicy DEFAULT = NO_BATCH;
+
+    protected final int capacity;
+
+    protected final Duration threshold;
+
+    public BatchPolicy(int capacity, Duration threshold) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid batch capacity: " + capacity);
+        }
+        if (threshold.isNegative() || threshold.isZero()) {
+            throw new IllegalArgumentException("Invalid batch threshold: " + threshold);
+        }
+        this.capacity = capacity;
+        this.threshold = threshold;
+    }
+
+    public static BatchPolicy of(int capacity, Duration threshold) {
+        return new BatchPolicy(capacity, threshold);
+    }
+
+    /**
+     * The maximum number of records in a batch.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * The maximum time to wait for a batch to be filled.
+     */
+    public Duration getThreshold() {
+        return threshold;
+    }
+
+    public boolean isBatch() {
+        return capacity > 1;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchPolicy{" + "capacity=" + capacity + ", threshold=" + threshold + '}';
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.nuxeo.lib.stream.computation;
 
+import java.util.List;
+
 /**
  * Computation receives records from input streams one at a time, it can produce record on its output streams. A timer
  * processing can be used for windowing computation.
@@ -53,6 +55,27 @@ public interface Computation {
      */
     void processRecord(ComputationContext context, String inputStreamName, Record record);
 
+    /**
+     * Process a batch of incoming records from one of the computation's input streams, this is used when a
+     * {@link BatchPolicy} is defined for the computation.
+     * <p>
+     * A batch read from several input streams is submitted in arrival order, through one call for each run of
+     * consecutive records coming from the same input stream. Records are never reordered across streams, but a batch
+     * may be split in several calls.
+     * <p>
+     * The default implementation calls {@link #processRecord(ComputationContext, String, Record)} for each record.
+     *
+     * @param context The computation context object provided by the system.
+     * @param inputStreamName Name of the input stream that provides the records.
+     * @param records The records in the order they have been read.
+     * @since 10.1
+     */
+    default void processRecords(ComputationContext context, String inputStreamName, List<Record> records) {
+        for (Record record : records) {
+            processRecord(context, inputStreamName, record);
+        }
+    }
+
     /**
      * Process a timer callback previously set via {@link ComputationContext#setTimer(String, long)}.
      *
@@ -22,11 +22,18 @@ import java.util.HashMap;
 import java.util.Map;
 
 /**
- * Settings defines stream's partitions and computation's concurrency.
+ * Settings defines stream's partitions and computation's concurrency and batch policy.
  *
  * @since 9.3
  */
 public class Settings {
+    /**
+     * Default name of the shared metric registry where computation metrics are registered.
+     *
+     * @since 10.1
+     */
+    public static final String DEFAULT_METRICS_REGISTRY = "org.nuxeo.lib.stream";
+
     protected final int defaultConcurrency;
 
     protected final int defaultPartitions;
@@ -35,12 +42,28 @@ public class Settings {
 
     protected final Map<String, Integer> partitions = new HashMap<>();
 
+    protected final BatchPolicy defaultBatchPolicy;
+
+    protected final Map<String, BatchPolicy> batchPolicies = new HashMap<>();
+
+    protected String metricsRegistryName = DEFAULT_METRICS_REGISTRY;
+
     /**
      * Default concurrency and partition to use if not specified explicitly
      */
     public Settings(int defaultConcurrency, int defaultPartitions) {
+        this(defaultConcurrency, defaultPartitions, BatchPolicy.DEFAULT);
+    }
+
+    /**
+     * Default concurrency, partition and batch policy to use if not specified explicitly
+     *
+     * @since 10.1
+     */
+    public Settings(int defaultConcurrency, int defaultPartitions, BatchPolicy defaultBatchPolicy) {
         this.defaultConcurrency = defaultConcurrency;
         this.defaultPartitions = defaultPartitions;
+        this.defaultBatchPolicy = defaultBatchPolicy;
     }
 
     /**
@@ -67,4 +90,38 @@ public class Settings {
         return partitions.getOrDefault(streamName, defaultPartitions);
     }
 
+    /**
+     * Set the batch policy of a computation.
+     *
+     * @since 10.1
+     */
+    public Settings setBatchPolicy(String computationName, BatchPolicy policy) {
+        batchPolicies.put(computationName, policy);
+        return this;
+    }
+
+    /**
+     * @since 10.1
+     */
+    public BatchPolicy getBatchPolicy(String computationName) {
+        return batchPolicies.getOrDefault(computationName, defaultBatchPolicy);
+    }
+
+    /**
+     * Set the name of the shared metric registry where computation metrics are registered.
+     *
+     * @since 10.1
+     */
+    public Settings setMetricsRegistryName(String metricsRegistryName) {
+        this.metricsRegistryName = metricsRegistryName;
+        return this;
+    }
+
+    /**
+     * @since 10.1
+     */
+    public String getMetricsRegistryName() {
+        return metricsRegistryName;
+    }
+
 }
@@ -33,8 +33,10 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.computation.BatchPolicy;
 import org.nuxeo.lib.stream.computation.Computation;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
+import org.nuxeo.lib.stream.computation.Settings;
 import org.nuxeo.lib.stream.computation.Watermark;
 import org.nuxeo.lib.stream.log.LogManager;
 import org.nuxeo.lib.stream.log.LogPartition;
@@ -55,6 +57,10 @@ public class ComputationPool {
 
     protected final Supplier<Computation> supplier;
 
+    protected final BatchPolicy batchPolicy;
+
+    protected final String metricsRegistryName;
+
     protected final List<List<LogPartition>> defaultAssignments;
 
     protected final List<ComputationRunner> runners;
@@ -63,7 +69,19 @@ public class ComputationPool {
 
     public ComputationPool(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
             List<List<LogPartition>> defaultAssignments, LogManager manager) {
+        this(supplier, metadata, defaultAssignments, manager, BatchPolicy.NO_BATCH, Settings.DEFAULT_METRICS_REGISTRY);
+    }
+
+    /**
+     * @param metricsRegistryName the name of the shared metric registry where batch metrics are registered
+     * @since 10.1
+     */
+    public ComputationPool(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
+            List<List<LogPartition>> defaultAssignments, LogManager manager, BatchPolicy batchPolicy,
+            String metricsRegistryName) {
         this.supplier = supplier;
+        this.batchPolicy = batchPolicy;
+        this.metricsRegistryName = metricsRegistryName;
         this.manager = manager;
         this.metadata = metadata;
         this.threads = defaultAssignments.size();
@@ -80,7 +98,8 @@ public class ComputationPool {
         log.info(metadata.name() + ": Starting pool");
         threadPool = newFixedThreadPool(threads, new NamedThreadFactory(metadata.name() + "Pool"));
         defaultAssignments.forEach(assignments -> {
-            ComputationRunner runner = new ComputationRunner(supplier, metadata, assignments, manager);
+            ComputationRunner runner = new ComputationRunner(supplier, metadata, assignments, manager,
+                    batchPolicy, metricsRegistryName);
             threadPool.submit(runner);
             runners.add(runner);
         });
@@ -19,6 +19,7 @@
 package org.nuxeo.lib.stream.computation.log;
 
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -30,9 +31,11 @@ import java.util.stream.Collectors;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.nuxeo.lib.stream.computation.BatchPolicy;
 import org.nuxeo.lib.stream.computation.Computation;
 import org.nuxeo.lib.stream.computation.ComputationMetadataMapping;
 import org.nuxeo.lib.stream.computation.Record;
+import org.nuxeo.lib.stream.computation.Settings;
 import org.nuxeo.lib.stream.computation.Watermark;
 import org.nuxeo.lib.stream.computation.internals.ComputationContextImpl;
 import org.nuxeo.lib.stream.computation.internals.WatermarkMonotonicInterval;
@@ -44,6 +47,11 @@ import org.nuxeo.lib.stream.log.LogTailer;
 import org.nuxeo.lib.stream.log.RebalanceException;
 import org.nuxeo.lib.stream.log.RebalanceListener;
 
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
 /**
  * Thread driving a Computation
  *
@@ -65,6 +73,8 @@ public class ComputationRunner implements Runnable, RebalanceListener {
 
     protected final Supplier<Computation> supplier;
 
+    protected final BatchPolicy batchPolicy;
+
     protected final CountDownLatch assignmentLatch = new CountDownLatch(1);
 
     protected final WatermarkMonotonicInterval lowWatermark = new WatermarkMonotonicInterval();
@@ -91,13 +101,46 @@ public class ComputationRunner implements Runnable, RebalanceListener {
 
     protected String threadName;
 
-    @SuppressWarnings("unchecked")
+    protected long batchCount;
+
+    protected long batchRecords;
+
+    protected long lastBatchSize;
+
+    protected long batchProcessingTimeMs;
+
+    protected long lastBatchProcessingTimeMs;
+
+    protected Histogram batchSizeHistogram;
+
+    protected Timer batchTimer;
+
     public ComputationRunner(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
             List<LogPartition> defaultAssignment, LogManager logManager) {
+        this(supplier, metadata, defaultAssignment, logManager, BatchPolicy.NO_BATCH,
+                Settings.DEFAULT_METRICS_REGISTRY);
+    }
+
+    /**
+     * @param metricsRegistryName the name of the shared metric registry where batch metrics are registered
+     * @since 10.1
+     */
+    @SuppressWarnings("unchecked")
+    public ComputationRunner(Supplier<Computation> supplier, ComputationMetadataMapping metadata,
+            List<LogPartition> defaultAssignment, LogManager logManager, BatchPolicy batchPolicy,
+            String metricsRegistryName) {
         this.supplier = supplier;
+        this.batchPolicy = batchPolicy;
         this.metadata = metadata;
         this.logManager = logManager;
         this.context = new ComputationContextImpl(metadata);
+        if (batchPolicy.isBatch()) {
+            // shared by the runners of the computation
+            MetricRegistry registry = SharedMetricRegistries.getOrCreate(metricsRegistryName);
+            String prefix = MetricRegistry.name("nuxeo", "streams", "computation", metadata.name());
+            batchSizeHistogram = registry.histogram(MetricRegistry.name(prefix, "batch-size"));
+            batchTimer = registry.timer(MetricRegistry.name(prefix, "batch"));
+        }
         if (metadata.inputStreams().isEmpty()) {
             this.tailer = null;
             assignmentLatch.countDown();
@@ -176,7 +219,11 @@ public class ComputationRunner implements Runnable, RebalanceListener {
     protected void processLoop() throws InterruptedException {
         while (continueLoop()) {
             processTimer();
-            processRecord();
+            if (batchPolicy.isBatch()) {
+                processRecords();
+            } else {
+                processRecord();
+            }
             counter++;
             // TODO: add pause for computation without inputs or without timer to prevent CPU hogs
         }
@@ -260,6 +307,86 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         }
     }
 
+    /**
+     * Reads up to the batch capacity records or until the batch threshold is reached and submits them to the
+     * computation in the order they have been read, each run of consecutive records from the same input stream being
+     * submitted as a sub-batch. A single checkpoint is done for the whole batch.
+     *
+     * @since 10.1
+     */
+    protected void processRecords() throws InterruptedException {
+        if (tailer == null) {
+            return;
+        }
+        // runs of consecutive records from the same input stream
+        List<String> batchStreams = new ArrayList<>();
+        List<List<Record>> batch = new ArrayList<>();
+        int size = 0;
+        long start = System.currentTimeMillis();
+        long end = start + batchPolicy.getThreshold().toMillis();
+        Duration timeoutRead = getTimeoutDuration();
+        while (size < batchPolicy.getCapacity()) {
+            LogRecord<Record> logRecord = null;
+            try {
+                logRecord = tailer.read(timeoutRead);
+            } catch (RebalanceException e) {
+                // the revoke does not checkpoint and the assignment has reset the context, records of the current
+                // batch will be read again from the last committed offsets, discard them to avoid duplicates
+                inRecords -= size;
+                return;
+            }
+            if (logRecord == null) {
+                // no more records available
+                break;
+            }
+            Record record = logRecord.message();
+            lastReadTime = System.currentTimeMillis();
+            inRecords++;
+            size++;
+            lowWatermark.mark(record.watermark);
+            String from = metadata.reverseMap(logRecord.offset().partition().name());
+            int last = batchStreams.size() - 1;
+            if (last < 0 || !batchStreams.get(last).equals(from)) {
+                batchStreams.add(from);
+                batch.add(new ArrayList<>());
+                last++;
+            }
+            batch.get(last).add(record);
+            if (record.flags.contains(Record.Flag.POISON_PILL) || record.flags.contains(Record.Flag.COMMIT)) {
+                // submit the batch right away
+                break;
+            }
+            long remaining = end - lastReadTime;
+            if (remaining <= 0) {
+                break;
+            }
+            timeoutRead = Duration.ofMillis(Math.min(READ_TIMEOUT.toMillis(), remaining));
+        }
+        if (size == 0) {
+            return;
+        }
+        long processStart = System.currentTimeMillis();
+        for (int i = 0; i < batch.size(); i++) {
+            computation.processRecords(context, batchStreams.get(i), batch.get(i));
+        }
+        batch.forEach(records -> records.forEach(this::checkRecordFlags));
+        long now = System.currentTimeMillis();
+        batchCount++;
+        batchRecords += size;
+        lastBatchSize = size;
+        lastBatchProcessingTimeMs = now - processStart;
+        batchProcessingTimeMs += lastBatchProcessingTimeMs;
+        batchSizeHistogram.update(size);
+        batchTimer.update(lastBatchProcessingTimeMs, TimeUnit.MILLISECONDS);
+        if (log.isTraceEnabled()) {
+            log.trace(metadata.name() + ": Batch of " + size + " records read in " + (processStart - start)
+                    + " ms, processed in " + lastBatchProcessingTimeMs + " ms");
+        }
+        checkSourceLowWatermark();
+        setThreadName("batch");
+        checkpointIfNecessary();
+    }
+
     protected Duration getTimeoutDuration() {
         // Adapt the duration so we are not throttling when one of the input stream is empty
         return Duration.ofMillis(Math.min(READ_TIMEOUT.toMillis(), System.currentTimeMillis() - lastReadTime));
@@ -352,10 +479,41 @@ public class ComputationRunner implements Runnable, RebalanceListener {
         return lowWatermark.getLow();
     }
 
+    /**
+     * Returns the number of batches processed.
+     *
+     * @since 10.1
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    /**
+     * Returns the average number of records per batch.
+     *
+     * @since 10.1
+     */
+    public double getBatchAverageSize() {
+        return batchCount == 0 ? 0 : (double) batchRecords / batchCount;
+    }
+
+    /**
+     * Returns the average time in milliseconds spent by the computation to process a batch.
+     *
+     * @since 10.1
+     */
+    public double getBatchAverageLatencyMs() {
+        return batchCount == 0 ? 0 : (double) batchProcessingTimeMs / batchCount;
+    }
+
     protected void setThreadName(String message) {
         String name = threadName + ",in:" + inRecords + ",inCheckpoint:" + inCheckpointRecords + ",out:" + outRecords
                 + ",lastRead:" + lastReadTime + ",lastTimer:" + lastTimerExecution + ",wm:"
                 + lowWatermark.getLow().getValue() + ",loop:" + counter;
+        if (batchPolicy.isBatch()) {
+            name += ",batch:" + batchCount + ",lastBatchSize:" + lastBatchSize + ",lastBatchMs:"
+                    + lastBatchProcessingTimeMs;
+        }
         if (message != null) {
             name += "," + message;
         }
@@ -163,7 +163,8 @@ public class LogStreamProcessor implements StreamProcessor {
         return topology.metadataList()
                        .stream()
                        .map(meta -> new ComputationPool(topology.getSupplier(meta.name()), meta,
-                               getDefaultAssignments(meta), manager))
+                               getDefaultAssignments(meta), manager, settings.getBatchPolicy(meta.name()),
+                               settings.getMetricsRegistryName()))
                        .collect(Collectors.toList());
     }
 
@@ -28,6 +28,7 @@ import java.util.Collections;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.junit.Test;
+import org.nuxeo.lib.stream.computation.BatchPolicy;
 import org.nuxeo.lib.stream.computation.Record;
 import org.nuxeo.lib.stream.computation.Settings;
 import org.nuxeo.lib.stream.computation.StreamProcessor;
@@ -38,6 +39,10 @@ import org.nuxeo.lib.stream.log.LogPartition;
 import org.nuxeo.lib.stream.log.LogRecord;
 import org.nuxeo.lib.stream.log.LogTailer;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+import com.codahale.metrics.Timer;
+
 /**
  * @since 9.3
  */
@@ -137,6 +142,11 @@ public abstract class TestStreamProcessor {
     }
 
     public void testComplexTopo(int nbRecords, int concurrency, int partitions) throws Exception {
+        testComplexTopo(nbRecords, concurrency, partitions, BatchPolicy.NO_BATCH);
+    }
+
+    public void testComplexTopo(int nbRecords, int concurrency, int partitions, BatchPolicy batchPolicy)
+            throws Exception {
         final long targetTimestamp = System.currentTimeMillis();
         final long targetWatermark = Watermark.ofTimestamp(targetTimestamp).getValue();
         Topology topology = Topology.builder()
@@ -158,7 +168,7 @@ public abstract class TestStreamProcessor {
                                             Arrays.asList("i1:s5", "o1:output"))
                                     .build();
 
-        Settings settings = new Settings(concurrency, partitions).setPartitions("output", 1);
+        Settings settings = new Settings(concurrency, partitions, batchPolicy).setPartitions("output", 1);
         settings.setConcurrency("C4", 16).setPartitions("s3", 16).setConcurrency("COUNTER", 4).setPartitions("s5", 4);
         // uncomment to get the plantuml diagram
         // System.out.println(topology.toPlantuml(settings));
@@ -226,6 +236,20 @@ public abstract class TestStreamProcessor {
         testComplexTopo(100, 12, 13);
     }
 
+    @Test
+    public void testComplexTopoManyRecordsWithBatch() throws Exception {
+        testComplexTopo(1003, 12, 32, BatchPolicy.of(20, Duration.ofMillis(50)));
+    }
+
+    @Test
+    public void testComplexTopoManyRecordsOneThreadWithBatch() throws Exception {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(Settings.DEFAULT_METRICS_REGISTRY);
+        Timer batchTimer = registry.timer(MetricRegistry.name("nuxeo", "streams", "computation", "C1", "batch"));
+        long batches = batchTimer.getCount();
+        testComplexTopo(1003, 1, 1, BatchPolicy.of(100, Duration.ofMillis(20)));
+        assertTrue(batchTimer.getCount() > batches);
+    }
+
     @Test
     public void testStopAndResume() throws Exception {
         final long targetTimestamp = System.currentTimeMillis();
@@ -152,6 +152,15 @@ public class BaseDirectoryDescriptor implements Cloneable {
     @XNode("negativeCaching")
     public Boolean negativeCaching;
 
+    /**
+     * The cache holding the ids of missing entries when negative caching is enabled, so that they can be kept for less
+     * time than the existing entries. If not set, missing entries are cached in the entry caches.
+     *
+     * @since 10.1
+     */
+    @XNode("negativeCacheName")
+    public String negativeCacheName;
+
     @XNode("substringMatchType")
     public String substringMatchType;
 
@@ -326,6 +335,9 @@ public class BaseDirectoryDescriptor implements Cloneable {
         if (other.negativeCaching != null) {
             negativeCaching = other.negativeCaching;
         }
+        if (other.negativeCacheName != null) {
+            negativeCacheName = other.negativeCacheName;
+        }
         if (other.substringMatchType != null) {
             substringMatchType = other.substringMatchType;
         }
@@ -22,12 +22,15 @@ package org.nuxeo.ecm.directory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -331,6 +334,24 @@ public abstract class BaseSession implements Session, EntrySource {
         return directory.getCache().getEntry(id, this, fetchReferences);
     }
 
+    @Override
+    public Map<String, DocumentModel> getEntries(Collection<String> ids) throws DirectoryException {
+        return getEntries(ids, true);
+    }
+
+    @Override
+    public Map<String, DocumentModel> getEntries(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        if (!hasPermission(SecurityConstants.READ)) {
+            return Collections.emptyMap();
+        }
+        if (readAllColumns) {
+            // bypass cache when reading all columns
+            return getEntriesFromSource(ids, fetchReferences);
+        }
+        return directory.getCache().getEntries(ids, this, fetchReferences);
+    }
+
     @Override
     public DocumentModelList getEntries() throws DirectoryException {
         if (!hasPermission(SecurityConstants.READ)) {
@@ -347,6 +368,43 @@ public abstract class BaseSession implements Session, EntrySource {
         return result.isEmpty() ? null : result.get(0);
     }
 
+    /**
+     * Gets several entries by calling {@link #getEntry(String, boolean)} for each of them, as {@link Session} does by
+     * default, for sessions that don't read their entries through {@link #getEntryFromSource}.
+     *
+     * @since 10.1
+     */
+    protected Map<String, DocumentModel> getEntriesOneByOne(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        return Session.super.getEntries(ids, fetchReferences);
+    }
+
+    /**
+     * Maps the entries read from a backend to the requested ids, in the order of the ids. Entries whose id differs from
+     * the requested one only by case, as returned by case-insensitive backends, are matched too.
+     *
+     * @since 10.1
+     */
+    protected static Map<String, DocumentModel> mapEntriesToIds(Collection<String> ids, List<DocumentModel> entries) {
+        Map<String, DocumentModel> exact = new HashMap<>();
+        Map<String, DocumentModel> ignoringCase = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+        for (DocumentModel entry : entries) {
+            exact.put(entry.getId(), entry);
+            ignoringCase.putIfAbsent(entry.getId(), entry);
+        }
+        Map<String, DocumentModel> result = new LinkedHashMap<>();
+        for (String id : ids) {
+            DocumentModel entry = exact.get(id);
+            if (entry == null) {
+                entry = ignoringCase.get(id);
+            }
+            if (entry != null) {
+                result.put(id, entry);
+            }
+        }
+        return result;
+    }
+
     @Override
     public DocumentModel createEntry(DocumentModel documentModel) {
         return createEntry(documentModel.getProperties(schemaName));
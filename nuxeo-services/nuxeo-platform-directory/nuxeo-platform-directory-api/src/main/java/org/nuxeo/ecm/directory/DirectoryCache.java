@@ -20,8 +20,12 @@
 package org.nuxeo.ecm.directory;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -57,6 +61,10 @@ public class DirectoryCache {
 
     protected boolean negativeCaching;
 
+    protected Cache negativeCache;
+
+    protected String negativeCacheName;
+
     protected final MetricRegistry metrics = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
 
     protected final Counter hitsCounter;
@@ -110,7 +118,7 @@ public class DirectoryCache {
         }
 
         Cache cache = fetchReferences ? getEntryCache() : getEntryCacheWithoutReferences();
-        Serializable entry = cache.get(entryId);
+        Serializable entry = getCachedEntry(cache, entryId);
         if (CACHE_MISS.equals(entry)) {
             negativeHitsCounter.inc();
             return null;
@@ -119,27 +127,98 @@ public class DirectoryCache {
         if (dm == null) {
             // fetch the entry from the backend and cache it for later reuse
             dm = source.getEntryFromSource(entryId, fetchReferences);
-            if (dm != null) {
-                // DocumentModelImpl is not thread-safe and when we fetch and clone it when returning
-                // a value from the cache there may be concurrency.
-                // So we avoid thread-safety issues by exercising once the code paths that may do
-                // concurrent accesses to ComplexProperty (NXP-23458).
-                try {
-                    dm.clone();
-                } catch (CloneNotSupportedException e) {
-                    // ignore, no concurrency issues if not a DocumentModelImpl
-                }
-                cache.put(entryId, dm);
-                if (fetchReferences) {
-                    sizeCounter.inc();
-                }
-            } else if (negativeCaching) {
-                cache.put(entryId, CACHE_MISS);
-            }
+            putEntry(cache, entryId, dm, fetchReferences);
             missesCounter.inc();
         } else {
             hitsCounter.inc();
         }
+        return cloneEntry(dm);
+    }
+
+    /**
+     * Gets several entries, fetching those not in the cache from the source in one call.
+     *
+     * @return the existing entries, keyed by id, in the order of the given ids
+     * @since 10.1
+     */
+    public Map<String, DocumentModel> getEntries(Collection<String> entryIds, EntrySource source,
+            boolean fetchReferences) throws DirectoryException {
+        if (!isCacheEnabled() || getEntryCache() == null || getEntryCacheWithoutReferences() == null) {
+            return source.getEntriesFromSource(entryIds, fetchReferences);
+        }
+        Cache cache = fetchReferences ? getEntryCache() : getEntryCacheWithoutReferences();
+        Map<String, DocumentModel> entries = new LinkedHashMap<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String entryId : entryIds) {
+            if (entries.containsKey(entryId)) {
+                continue;
+            }
+            Serializable entry = getCachedEntry(cache, entryId);
+            if (CACHE_MISS.equals(entry)) {
+                negativeHitsCounter.inc();
+            } else if (entry == null) {
+                missingIds.add(entryId);
+                // keep the order of the ids
+                entries.put(entryId, null);
+            } else {
+                hitsCounter.inc();
+                entries.put(entryId, (DocumentModel) entry);
+            }
+        }
+        if (!missingIds.isEmpty()) {
+            Map<String, DocumentModel> fetched = source.getEntriesFromSource(missingIds, fetchReferences);
+            for (String entryId : missingIds) {
+                DocumentModel dm = fetched.get(entryId);
+                putEntry(cache, entryId, dm, fetchReferences);
+                missesCounter.inc();
+                entries.put(entryId, dm);
+            }
+        }
+        Map<String, DocumentModel> result = new LinkedHashMap<>();
+        entries.forEach((entryId, dm) -> {
+            if (dm != null) {
+                result.put(entryId, cloneEntry(dm));
+            }
+        });
+        return result;
+    }
+
+    protected Serializable getCachedEntry(Cache cache, String entryId) {
+        if (negativeCaching) {
+            Cache negCache = getNegativeCache();
+            if (negCache != null && negCache.get(entryId) != null) {
+                return CACHE_MISS;
+            }
+        }
+        return cache.get(entryId);
+    }
+
+    protected void putEntry(Cache cache, String entryId, DocumentModel dm, boolean fetchReferences) {
+        if (dm != null) {
+            // DocumentModelImpl is not thread-safe and when we fetch and clone it when returning
+            // a value from the cache there may be concurrency.
+            // So we avoid thread-safety issues by exercising once the code paths that may do
+            // concurrent accesses to ComplexProperty (NXP-23458).
+            try {
+                dm.clone();
+            } catch (CloneNotSupportedException e) {
+                // ignore, no concurrency issues if not a DocumentModelImpl
+            }
+            cache.put(entryId, dm);
+            if (fetchReferences) {
+                sizeCounter.inc();
+            }
+        } else if (negativeCaching) {
+            Cache negCache = getNegativeCache();
+            if (negCache != null) {
+                negCache.put(entryId, CACHE_MISS);
+            } else {
+                cache.put(entryId, CACHE_MISS);
+            }
+        }
+    }
+
+    protected DocumentModel cloneEntry(DocumentModel dm) {
         try {
             if (dm == null) {
                 return null;
@@ -173,6 +252,10 @@ public class DirectoryCache {
                     if (cache != null) {
                         cache.invalidate(entryId);
                     }
+                    cache = getNegativeCache();
+                    if (cache != null) {
+                        cache.invalidate(entryId);
+                    }
                 }
             }
         }
@@ -197,6 +280,10 @@ public class DirectoryCache {
                 if (cache != null) {
                     cache.invalidateAll();
                 }
+                cache = getNegativeCache();
+                if (cache != null) {
+                    cache.invalidateAll();
+                }
             }
         }
     }
@@ -213,6 +300,14 @@ public class DirectoryCache {
         this.negativeCaching = Boolean.TRUE.equals(negativeCaching);
     }
 
+    /**
+     * @since 10.1
+     */
+    public void setNegativeCacheName(String negativeCacheName) {
+        this.negativeCacheName = negativeCacheName;
+        negativeCache = null;
+    }
+
     public Cache getEntryCache() {
         if (entryCache == null) {
             entryCache = getCacheService().getCache(entryCacheName);
@@ -229,6 +324,18 @@ public class DirectoryCache {
         return entryCacheWithoutReferences;
     }
 
+    /**
+     * Gets the cache dedicated to missing entries, or {@code null} if they are cached in the entry caches.
+     *
+     * @since 10.1
+     */
+    public Cache getNegativeCache() {
+        if (negativeCache == null && negativeCacheName != null) {
+            negativeCache = getCacheService().getCache(negativeCacheName);
+        }
+        return negativeCache;
+    }
+
     protected CacheService getCacheService() {
         CacheService cacheService = Framework.getService(CacheService.class);
         if (cacheService == null) {
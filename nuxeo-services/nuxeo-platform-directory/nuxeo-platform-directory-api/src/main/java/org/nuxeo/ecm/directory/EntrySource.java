@@ -20,6 +20,10 @@
 
 package org.nuxeo.ecm.directory;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import org.nuxeo.ecm.core.api.DocumentModel;
 
 /**
@@ -31,4 +35,23 @@ public interface EntrySource {
 
     DocumentModel getEntryFromSource(String entryId, boolean fetchReferences) throws DirectoryException;
 
+    /**
+     * Gets several entries from the source, by default one at a time. Sources able to read several entries at once
+     * override this.
+     *
+     * @return the existing entries, keyed by the given ids
+     * @since 10.1
+     */
+    default Map<String, DocumentModel> getEntriesFromSource(Collection<String> entryIds, boolean fetchReferences)
+            throws DirectoryException {
+        Map<String, DocumentModel> entries = new LinkedHashMap<>();
+        for (String id : entryIds) {
+            DocumentModel entry = getEntryFromSource(id, fetchReferences);
+            if (entry != null) {
+                entries.put(id, entry);
+            }
+        }
+        return entries;
+    }
+
 }
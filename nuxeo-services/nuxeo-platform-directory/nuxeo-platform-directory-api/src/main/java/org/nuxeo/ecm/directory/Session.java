@@ -21,6 +21,8 @@
 package org.nuxeo.ecm.directory;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -61,6 +63,39 @@ public interface Session extends AutoCloseable {
      */
     DocumentModel getEntry(String id, boolean fetchReferences) throws DirectoryException;
 
+    /**
+     * Retrieves several directory entries using their ids, in as few calls to the backend as possible.
+     *
+     * @param ids the entry ids
+     * @return the existing entries, keyed by id, in the order of the given ids
+     * @since 10.1
+     */
+    default Map<String, DocumentModel> getEntries(Collection<String> ids) throws DirectoryException {
+        return getEntries(ids, true);
+    }
+
+    /**
+     * Retrieves several directory entries using their ids, in as few calls to the backend as possible.
+     * <p>
+     * By default the entries are retrieved one at a time.
+     *
+     * @param ids the entry ids
+     * @param fetchReferences boolean stating if references have to be fetched
+     * @return the existing entries, keyed by id, in the order of the given ids
+     * @since 10.1
+     */
+    default Map<String, DocumentModel> getEntries(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        Map<String, DocumentModel> entries = new LinkedHashMap<>();
+        for (String id : ids) {
+            DocumentModel entry = getEntry(id, fetchReferences);
+            if (entry != null) {
+                entries.put(id, entry);
+            }
+        }
+        return entries;
+    }
+
     /**
      * Retrieves all the entries in the directory. If the remote server issues a size limit exceeded error while sending
      * partial results up to that limit, the method {@code DocumentModelList#totalsize} on the returned list will return
@@ -96,6 +96,7 @@ public abstract class AbstractDirectory implements Directory {
         cache.setEntryCacheName(descriptor.cacheEntryName);
         cache.setEntryCacheWithoutReferencesName(descriptor.cacheEntryWithoutReferencesName);
         cache.setNegativeCaching(descriptor.negativeCaching);
+        cache.setNegativeCacheName(descriptor.negativeCacheName);
 
     }
 
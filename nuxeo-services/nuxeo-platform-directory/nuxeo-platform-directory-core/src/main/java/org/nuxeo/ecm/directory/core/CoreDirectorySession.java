@@ -122,6 +122,12 @@ public class CoreDirectorySession extends BaseSession {
         return null;
     }
 
+    @Override
+    public Map<String, DocumentModel> getEntries(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        return getEntriesOneByOne(ids, fetchReferences);
+    }
+
     @Override
     public DocumentModelList getEntries() throws DirectoryException {
         throw new UnsupportedOperationException();
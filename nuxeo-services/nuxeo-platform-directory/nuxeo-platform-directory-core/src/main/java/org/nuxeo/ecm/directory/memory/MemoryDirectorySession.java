@@ -23,6 +23,7 @@ package org.nuxeo.ecm.directory.memory;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -173,6 +174,12 @@ public class MemoryDirectorySession extends BaseSession {
         }
     }
 
+    @Override
+    public Map<String, DocumentModel> getEntries(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        return getEntriesOneByOne(ids, fetchReferences);
+    }
+
     @Override
     public DocumentModelList getEntries() throws DirectoryException {
         DocumentModelList list = new DocumentModelListImpl();
@@ -31,6 +31,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -82,6 +83,13 @@ import org.nuxeo.ecm.directory.Reference;
  */
 public class LDAPSession extends BaseSession {
 
+    /**
+     * Maximum number of ids read by a single search in {@link #getEntriesFromSource}.
+     *
+     * @since 10.1
+     */
+    protected static final int GET_ENTRIES_BATCH_SIZE = 50;
+
     protected static final String MISSING_ID_LOWER_CASE = "lower";
 
     protected static final String MISSING_ID_UPPER_CASE = "upper";
@@ -433,6 +441,70 @@ public class LDAPSession extends BaseSession {
         }
     }
 
+    /**
+     * Reads several entries with searches on an OR filter of their ids, {@value #GET_ENTRIES_BATCH_SIZE} at a time.
+     *
+     * @since 10.1
+     */
+    @Override
+    public Map<String, DocumentModel> getEntriesFromSource(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        distinctIds.removeIf(StringUtils::isEmpty);
+        List<DocumentModel> entries = new ArrayList<>(distinctIds.size());
+        try {
+            for (int i = 0; i < distinctIds.size(); i += GET_ENTRIES_BATCH_SIZE) {
+                List<String> batch = distinctIds.subList(i, Math.min(i + GET_ENTRIES_BATCH_SIZE, distinctIds.size()));
+                entries.addAll(getLdapEntries(batch, fetchReferences));
+            }
+        } catch (NamingException e) {
+            throw new DirectoryException("getEntries failed: " + e.getMessage(), e);
+        }
+        // ignore entries that are ambiguous, like getLdapEntry does
+        Map<String, Integer> counts = new HashMap<>();
+        entries.forEach(entry -> counts.merge(entry.getId().toLowerCase(), Integer.valueOf(1), Integer::sum));
+        entries.removeIf(entry -> {
+            if (counts.get(entry.getId().toLowerCase()).intValue() > 1) {
+                log.error(String.format("Unable to fetch entry for '%s': found more than one match", entry.getId()));
+                return true;
+            }
+            return false;
+        });
+        return mapEntriesToIds(ids, entries);
+    }
+
+    protected List<DocumentModel> getLdapEntries(List<String> ids, boolean fetchReferences)
+            throws NamingException {
+        StringBuilder idsFilter = new StringBuilder("(|");
+        for (int i = 0; i < ids.size(); i++) {
+            idsFilter.append('(').append(idAttribute).append("={").append(i).append("})");
+        }
+        idsFilter.append(')');
+        String filterExpr;
+        String baseFilter = getDirectory().getBaseFilter();
+        if (baseFilter.startsWith("(")) {
+            filterExpr = String.format("(&%s%s)", idsFilter, baseFilter);
+        } else {
+            filterExpr = String.format("(&%s(%s))", idsFilter, baseFilter);
+        }
+        Object[] filterArgs = ids.toArray();
+        SearchControls scts = getDirectory().getSearchControls(false);
+
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("LDAPSession.getLdapEntries(%s): LDAP search base='%s' filter='%s' scope='%s' [%s]",
+                    ids, searchBaseDn, filterExpr, scts.getSearchScope(), this));
+        }
+        NamingEnumeration<SearchResult> results;
+        try {
+            results = getContext().search(searchBaseDn, filterExpr, filterArgs, scts);
+        } catch (NameNotFoundException nnfe) {
+            // same as in getLdapEntry
+            log.error("Unexpected response from server while performing query: " + nnfe.getMessage(), nnfe);
+            return Collections.emptyList();
+        }
+        return ldapResultsToDocumentModels(results, fetchReferences);
+    }
+
     @Override
     public DocumentModelList query(Map<String, Serializable> filter, Set<String> fulltext, Map<String, String> orderBy,
             boolean fetchReferences) throws DirectoryException {
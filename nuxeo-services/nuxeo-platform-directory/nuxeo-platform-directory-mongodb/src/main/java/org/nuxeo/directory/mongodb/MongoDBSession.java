@@ -26,6 +26,7 @@ import static org.nuxeo.directory.mongodb.MongoDBSerializationHelper.MONGODB_SEQ
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -62,6 +63,7 @@ import com.mongodb.MongoWriteException;
 import com.mongodb.client.FindIterable;
 import com.mongodb.client.MongoCollection;
 import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
 import com.mongodb.client.model.FindOneAndUpdateOptions;
 import com.mongodb.client.model.ReturnDocument;
 import com.mongodb.client.model.Updates;
@@ -258,12 +260,40 @@ public class MongoDBSession extends BaseSession {
         filter.remove(getPasswordField());
         Document bson = buildQuery(filter, fulltext);
 
-        DocumentModelList entries = new DocumentModelListImpl();
-
         FindIterable<Document> results = getCollection().find(bson).skip(offset);
         if (limit > 0) {
             results.limit(limit);
         }
+        DocumentModelList entries = readEntries(results, fetchReferences);
+
+        if (orderBy != null && !orderBy.isEmpty()) {
+            getDirectory().orderEntries(entries, orderBy);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Reads several entries with a single {@code $in} query on their ids.
+     *
+     * @since 10.1
+     */
+    @Override
+    public Map<String, DocumentModel> getEntriesFromSource(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        Type idType = directory.getSchemaFieldMap().get(getIdField()).getType();
+        List<Object> values = ids.stream()
+                                 .map(id -> MongoDBSerializationHelper.valueToBson(id, idType))
+                                 .collect(Collectors.toList());
+        FindIterable<Document> results = getCollection().find(Filters.in(getIdField(), values));
+        return mapEntriesToIds(ids, readEntries(results, fetchReferences));
+    }
+
+    /**
+     * @since 10.1
+     */
+    protected DocumentModelList readEntries(FindIterable<Document> results, boolean fetchReferences) {
+        DocumentModelList entries = new DocumentModelListImpl();
         for (Document resultDoc : results) {
 
             // Cast object to document model
@@ -301,11 +331,6 @@ public class MongoDBSession extends BaseSession {
             }
             entries.add(doc);
         }
-
-        if (orderBy != null && !orderBy.isEmpty()) {
-            getDirectory().orderEntries(entries, orderBy);
-        }
-
         return entries;
     }
 
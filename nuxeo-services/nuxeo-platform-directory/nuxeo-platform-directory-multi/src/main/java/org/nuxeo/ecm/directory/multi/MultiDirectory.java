@@ -23,6 +23,11 @@ package org.nuxeo.ecm.directory.multi;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.nuxeo.ecm.directory.AbstractDirectory;
 import org.nuxeo.ecm.directory.Directory;
@@ -32,6 +37,9 @@ import org.nuxeo.ecm.directory.Session;
 import org.nuxeo.ecm.directory.api.DirectoryService;
 import org.nuxeo.runtime.api.Framework;
 
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
 /**
  * @author Florent Guillaume
  */
@@ -40,6 +48,17 @@ public class MultiDirectory extends AbstractDirectory {
     // used in double-checked locking for lazy init
     protected volatile boolean initialized;
 
+    /**
+     * Number of calls that can wait for an executor thread, per thread. When the queue is full, the calls are run by
+     * the caller thread.
+     *
+     * @since 10.1
+     */
+    protected static final int PARALLEL_QUEUE_SIZE_PER_THREAD = 10;
+
+    // executor for the parallel mode, created lazily
+    protected volatile ExecutorService executor;
+
     public MultiDirectory(MultiDirectoryDescriptor descriptor) {
         super(descriptor, MultiReference.class);
     }
@@ -68,6 +87,52 @@ public class MultiDirectory extends AbstractDirectory {
         }
     }
 
+    /**
+     * Gets the executor used to call the subdirectories in parallel mode.
+     *
+     * @since 10.1
+     */
+    protected ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    AtomicInteger threadNumber = new AtomicInteger();
+                    String prefix = "Nuxeo-Directory-Multi-" + getName() + "-";
+                    int threads = getDescriptor().getParallelThreads();
+                    ThreadPoolExecutor tpe = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<>(threads * PARALLEL_QUEUE_SIZE_PER_THREAD), r -> {
+                                Thread thread = new Thread(r, prefix + threadNumber.incrementAndGet());
+                                thread.setDaemon(true);
+                                return thread;
+                            }, new ThreadPoolExecutor.CallerRunsPolicy());
+                    tpe.allowCoreThreadTimeOut(true);
+                    executor = tpe;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Gets the timer recording the calls to a subdirectory.
+     *
+     * @since 10.1
+     */
+    protected Timer getSubDirectoryTimer(String dirName) {
+        return registry.timer(MetricRegistry.name("nuxeo", "directories", getName(), "subdirectories", dirName));
+    }
+
+    @Override
+    public void shutdown() {
+        super.shutdown();
+        synchronized (this) {
+            if (executor != null) {
+                executor.shutdownNow();
+                executor = null;
+            }
+        }
+    }
+
     @Override
     public List<Reference> getReferences(String referenceFieldName) {
         Reference reference = new MultiReference(this, referenceFieldName);
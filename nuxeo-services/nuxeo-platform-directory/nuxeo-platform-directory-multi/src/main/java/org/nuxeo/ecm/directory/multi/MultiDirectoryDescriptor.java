@@ -33,9 +33,36 @@ import org.nuxeo.ecm.directory.BaseDirectoryDescriptor;
 @XObject(value = "directory")
 public class MultiDirectoryDescriptor extends BaseDirectoryDescriptor {
 
+    /**
+     * @since 10.1
+     */
+    public static final int DEFAULT_PARALLEL_THREADS = 8;
+
     @XNode("querySizeLimit")
     public Integer querySizeLimit;
 
+    /**
+     * Whether the subdirectories are called in parallel for reads ({@code getEntry}, {@code query},
+     * {@code authenticate}).
+     * <p>
+     * In parallel mode each concurrent call uses its own subdirectory session, called from an executor thread on behalf
+     * of the current user but outside of the current transaction, so this is only fit for subdirectories whose entries
+     * are not written in the same transaction, like LDAP ones. These sessions are reused until the multi-directory
+     * session is closed.
+     *
+     * @since 10.1
+     */
+    @XNode("parallel")
+    public Boolean parallel;
+
+    /**
+     * The maximum number of threads used for the parallel calls to the subdirectories.
+     *
+     * @since 10.1
+     */
+    @XNode("parallelThreads")
+    public Integer parallelThreads;
+
     @XNodeList(value = "source", type = SourceDescriptor[].class, componentType = SourceDescriptor.class)
     protected SourceDescriptor[] sources;
 
@@ -51,6 +78,12 @@ public class MultiDirectoryDescriptor extends BaseDirectoryDescriptor {
         if (other.querySizeLimit != null) {
             querySizeLimit = other.querySizeLimit;
         }
+        if (other.parallel != null) {
+            parallel = other.parallel;
+        }
+        if (other.parallelThreads != null) {
+            parallelThreads = other.parallelThreads;
+        }
         if (other.sources != null) {
             if (sources == null) {
                 sources = other.sources;
@@ -63,6 +96,20 @@ public class MultiDirectoryDescriptor extends BaseDirectoryDescriptor {
         }
     }
 
+    /**
+     * @since 10.1
+     */
+    public boolean isParallel() {
+        return Boolean.TRUE.equals(parallel);
+    }
+
+    /**
+     * @since 10.1
+     */
+    public int getParallelThreads() {
+        return parallelThreads == null ? DEFAULT_PARALLEL_THREADS : parallelThreads.intValue();
+    }
+
     /**
      * @since 5.6
      */
@@ -22,14 +22,27 @@
 package org.nuxeo.ecm.directory.multi;
 
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.logging.Log;
@@ -38,6 +51,8 @@ import org.nuxeo.ecm.core.api.DocumentModel;
 import org.nuxeo.ecm.core.api.DocumentModelList;
 import org.nuxeo.ecm.core.api.PropertyException;
 import org.nuxeo.ecm.core.api.impl.DocumentModelListImpl;
+import org.nuxeo.ecm.core.api.local.ClientLoginModule;
+import org.nuxeo.ecm.core.api.local.LoginStack;
 import org.nuxeo.ecm.core.api.security.SecurityConstants;
 import org.nuxeo.ecm.core.schema.SchemaManager;
 import org.nuxeo.ecm.core.schema.types.Field;
@@ -48,6 +63,8 @@ import org.nuxeo.ecm.directory.Session;
 import org.nuxeo.ecm.directory.api.DirectoryService;
 import org.nuxeo.runtime.api.Framework;
 
+import com.codahale.metrics.Timer;
+
 /**
  * Directory session aggregating entries from different sources.
  * <p>
@@ -96,11 +113,18 @@ public class MultiDirectorySession extends BaseSession {
 
         final boolean isOptional;
 
+        final Timer timer;
+
         Session session;
 
+        /** Idle sessions of the parallel calls, reused until this session is closed. */
+        final Deque<Session> parallelSessions = new ArrayDeque<>();
+
+        boolean parallelSessionsClosed;
+
         SubDirectoryInfo(String dirName, String dirSchemaName, String idField, boolean isAuthenticating,
                 Map<String, String> fromSource, Map<String, String> toSource, Map<String, Serializable> defaultEntry,
-                boolean isOptional) {
+                boolean isOptional, Timer timer) {
             this.dirName = dirName;
             this.dirSchemaName = dirSchemaName;
             this.idField = idField;
@@ -109,6 +133,7 @@ public class MultiDirectorySession extends BaseSession {
             this.toSource = toSource;
             this.defaultEntry = defaultEntry;
             this.isOptional = isOptional;
+            this.timer = timer;
         }
 
         Session getSession() throws DirectoryException {
@@ -118,6 +143,54 @@ public class MultiDirectorySession extends BaseSession {
             return session;
         }
 
+        /**
+         * Gets an idle session for a parallel call, opening one if needed.
+         */
+        Session acquireParallelSession() throws DirectoryException {
+            synchronized (parallelSessions) {
+                Session parallelSession = parallelSessions.pollFirst();
+                if (parallelSession != null) {
+                    return parallelSession;
+                }
+            }
+            return directoryService.open(dirName);
+        }
+
+        /**
+         * Gives back the session of a parallel call, closing it if it can't be reused.
+         */
+        void releaseParallelSession(Session parallelSession, boolean reusable) throws DirectoryException {
+            if (reusable) {
+                synchronized (parallelSessions) {
+                    if (!parallelSessionsClosed) {
+                        parallelSessions.addFirst(parallelSession);
+                        return;
+                    }
+                }
+            }
+            parallelSession.close();
+        }
+
+        /**
+         * Gets the idle sessions of the parallel calls to close them, the sessions of running calls being closed at
+         * their end.
+         */
+        List<Session> closeParallelSessions() {
+            synchronized (parallelSessions) {
+                parallelSessionsClosed = true;
+                List<Session> sessions = new ArrayList<>(parallelSessions);
+                parallelSessions.clear();
+                return sessions;
+            }
+        }
+
+        /**
+         * Checks if the subdirectory is read-only, without opening a session.
+         */
+        boolean isReadOnly() {
+            return session != null ? session.isReadOnly() : directoryService.getDirectory(dirName).isReadOnly();
+        }
+
         @Override
         public String toString() {
             return String.format("{directory=%s fromSource=%s toSource=%s}", dirName, fromSource, toSource);
@@ -157,6 +230,93 @@ public class MultiDirectorySession extends BaseSession {
         }
     }
 
+    /**
+     * Calls made to subdirectories in parallel mode, each one with the timeout of its source.
+     *
+     * @since 10.1
+     */
+    protected class ParallelCalls<R> {
+
+        final Map<SubDirectoryInfo, CompletableFuture<R>> futures = new LinkedHashMap<>();
+
+        final List<Future<?>> tasks = new ArrayList<>();
+
+        final Map<SubDirectoryInfo, Long> deadlines = new HashMap<>();
+
+        /**
+         * Submits the call for all the subdirectories matching the predicate, in all the sources.
+         */
+        ParallelCalls(Predicate<SubDirectoryInfo> predicate, BiFunction<SubDirectoryInfo, Session, R> call) {
+            LoginStack.Entry login = ClientLoginModule.getCurrentLogin();
+            for (SourceInfo sourceInfo : sourceInfos) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sourceInfo.source.timeout);
+                for (SubDirectoryInfo dirInfo : sourceInfo.subDirectoryInfos) {
+                    if (predicate.test(dirInfo)) {
+                        CompletableFuture<R> future = new CompletableFuture<>();
+                        futures.put(dirInfo, future);
+                        deadlines.put(dirInfo, Long.valueOf(deadline));
+                        // not supplyAsync, whose cancellation doesn't interrupt the running call
+                        tasks.add(getDirectory().getExecutor().submit(() -> {
+                            try {
+                                future.complete(callAs(login, dirInfo, call));
+                            } catch (RuntimeException | Error e) {
+                                future.completeExceptionally(e);
+                            }
+                        }));
+                    }
+                }
+            }
+        }
+
+        /**
+         * Waits until the call to the subdirectory or the other future is done.
+         *
+         * @throws DirectoryException if the timeout of the source is reached first
+         */
+        void await(SubDirectoryInfo dirInfo, CompletableFuture<?> other) {
+            long remaining = deadlines.get(dirInfo).longValue() - System.nanoTime();
+            try {
+                CompletableFuture.anyOf(futures.get(dirInfo), other).get(Math.max(remaining, 0),
+                        TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DirectoryException(e);
+            } catch (ExecutionException e) {
+                // failures are reported by get
+            } catch (TimeoutException e) {
+                throw new DirectoryException(String.format("Directory '%s' subdirectory '%s' did not answer in time",
+                        getName(), dirInfo.dirName));
+            }
+        }
+
+        /**
+         * Waits for the result of the call to the subdirectory.
+         */
+        R get(SubDirectoryInfo dirInfo) {
+            CompletableFuture<R> future = futures.get(dirInfo);
+            await(dirInfo, future);
+            try {
+                return future.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new DirectoryException(cause);
+            }
+        }
+
+        /**
+         * Cancels the calls not yet started and interrupts the running ones, so that they don't hold an executor thread
+         * after a timeout or once the result is known.
+         */
+        void cancel() {
+            tasks.forEach(task -> task.cancel(true));
+        }
+    }
+
     private void init() throws DirectoryException {
         if (sourceInfos == null) {
             recomputeSourceInfos();
@@ -242,8 +402,9 @@ public class MultiDirectorySession extends BaseSession {
                     fromSource.put(sourceFieldName, fieldName);
                     toSource.put(fieldName, sourceFieldName);
                 }
+                final Timer timer = getDirectory().getSubDirectoryTimer(dirName);
                 SubDirectoryInfo subDirectoryInfo = new SubDirectoryInfo(dirName, dirSchemaName, dirIdField, dirIsAuth,
-                        fromSource, toSource, defaultEntry, dirIsOptional);
+                        fromSource, toSource, defaultEntry, dirIsOptional, timer);
                 subDirectoryInfos.add(subDirectoryInfo);
 
                 if (dirIsAuth) {
@@ -281,9 +442,12 @@ public class MultiDirectorySession extends BaseSession {
             DirectoryException exc = null;
             for (SourceInfo sourceInfo : sourceInfos) {
                 for (SubDirectoryInfo subDirectoryInfo : sourceInfo.subDirectoryInfos) {
-                    Session session = subDirectoryInfo.session;
+                    List<Session> sessions = subDirectoryInfo.closeParallelSessions();
+                    if (subDirectoryInfo.session != null) {
+                        sessions.add(subDirectoryInfo.session);
+                    }
                     subDirectoryInfo.session = null;
-                    if (session != null) {
+                    for (Session session : sessions) {
                         try {
                             session.close();
                         } catch (DirectoryException e) {
@@ -311,26 +475,112 @@ public class MultiDirectorySession extends BaseSession {
         return directory.getName();
     }
 
+    protected boolean isParallel() {
+        return getDirectory().getDescriptor().isParallel();
+    }
+
+    /**
+     * Calls a subdirectory session, recording the time taken by the subdirectory.
+     *
+     * @since 10.1
+     */
+    protected <R> R call(SubDirectoryInfo dirInfo, Session session, BiFunction<SubDirectoryInfo, Session, R> call) {
+        final Timer.Context timerContext = dirInfo.timer.time();
+        try {
+            return call.apply(dirInfo, session);
+        } finally {
+            timerContext.stop();
+        }
+    }
+
+    /**
+     * Calls a subdirectory from an executor thread on behalf of the given login. As sessions are not thread-safe, the
+     * call uses a session of its own, reused by the following calls once done unless the call failed or was
+     * interrupted.
+     *
+     * @since 10.1
+     */
+    protected <R> R callAs(LoginStack.Entry login, SubDirectoryInfo dirInfo,
+            BiFunction<SubDirectoryInfo, Session, R> call) {
+        LoginStack loginStack = ClientLoginModule.getThreadLocalLogin();
+        if (login != null) {
+            loginStack.push(login.getPrincipal(), login.getCredential(), login.getSubject());
+        }
+        try {
+            Session session = dirInfo.acquireParallelSession();
+            boolean reusable = false;
+            try {
+                R result = call(dirInfo, session, call);
+                reusable = !Thread.currentThread().isInterrupted();
+                return result;
+            } finally {
+                dirInfo.releaseParallelSession(session, reusable);
+            }
+        } finally {
+            if (login != null) {
+                loginStack.pop();
+            }
+        }
+    }
+
     @Override
     public boolean authenticate(String username, String password) {
         init();
+        if (isParallel()) {
+            return authenticateParallel(username, password);
+        }
         for (SourceInfo sourceInfo : sourceInfos) {
             for (SubDirectoryInfo dirInfo : sourceInfo.subDirectoryInfos) {
                 if (!dirInfo.isAuthenticating) {
                     continue;
                 }
-                if (dirInfo.getSession().authenticate(username, password)) {
+                if (call(dirInfo, dirInfo.getSession(), (d, session) -> authenticate(d, session, username, password))) {
                     return true;
                 }
-                if (dirInfo.isOptional && dirInfo.getSession().getEntry(username) == null) {
-                    // check if given password equals to default value
-                    String passwordField = dirInfo.getSession().getPasswordField();
-                    String defaultPassword = (String) dirInfo.defaultEntry.get(passwordField);
-                    if (defaultPassword != null && defaultPassword.equals(password)) {
-                        return true;
-                    }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Authenticates against all the authenticating subdirectories at once, returning as soon as one of them accepts the
+     * password.
+     *
+     * @since 10.1
+     */
+    protected boolean authenticateParallel(String username, String password) {
+        ParallelCalls<Boolean> calls = new ParallelCalls<>(dirInfo -> dirInfo.isAuthenticating,
+                (dirInfo, session) -> Boolean.valueOf(authenticate(dirInfo, session, username, password)));
+        CompletableFuture<Boolean> authenticated = new CompletableFuture<>();
+        calls.futures.values().forEach(future -> future.thenAccept(ok -> {
+            if (ok.booleanValue()) {
+                authenticated.complete(ok);
+            }
+        }));
+        try {
+            for (SubDirectoryInfo dirInfo : calls.futures.keySet()) {
+                calls.await(dirInfo, authenticated);
+                if (authenticated.isDone() || calls.get(dirInfo).booleanValue()) {
+                    return true;
                 }
             }
+            return false;
+        } finally {
+            calls.cancel();
+        }
+    }
+
+    protected boolean authenticate(SubDirectoryInfo dirInfo, Session session, String username, String password) {
+        if (session.authenticate(username, password)) {
+            return true;
+        }
+        if (dirInfo.isOptional && session.getEntry(username) == null) {
+            // check if given password equals to default value
+            String passwordField = session.getPasswordField();
+            String defaultPassword = (String) dirInfo.defaultEntry.get(passwordField);
+            if (defaultPassword != null && defaultPassword.equals(password)) {
+                return true;
+            }
         }
         return false;
     }
@@ -341,56 +591,102 @@ public class MultiDirectorySession extends BaseSession {
             return null;
         }
         init();
-        String entryId = id;
-        source_loop: for (SourceInfo sourceInfo : sourceInfos) {
-            boolean isReadOnlyEntry = true;
-            final Map<String, Object> map = new HashMap<>();
+        if (isParallel()) {
+            return getEntryParallel(id, fetchReferences);
+        }
+        for (SourceInfo sourceInfo : sourceInfos) {
+            DocumentModel entry = getEntry(sourceInfo, id, dirInfo -> call(dirInfo, dirInfo.getSession(),
+                    (d, session) -> session.getEntry(id, fetchReferences)));
+            if (entry != null) {
+                return entry;
+            }
+        }
+        return null;
+    }
 
-            for (SubDirectoryInfo dirInfo : sourceInfo.subDirectoryInfos) {
-                final DocumentModel entry = dirInfo.getSession().getEntry(id, fetchReferences);
-                boolean isOptional = dirInfo.isOptional;
-                if (entry == null && !isOptional) {
-                    // not in this source
-                    continue source_loop;
-                }
-                if (entry != null && !isReadOnlyEntry(entry)) {
-                    // set readonly to false if at least one source is writable
-                    isReadOnlyEntry = false;
-                }
-                if (entry == null && isOptional && !dirInfo.getSession().isReadOnly()) {
-                    // set readonly to false if null entry is from optional and writable directory
-                    isReadOnlyEntry = false;
-                }
-                if (entry != null && StringUtils.isNotBlank(entry.getId())) {
-                    entryId = entry.getId();
-                }
-                for (Entry<String, String> e : dirInfo.toSource.entrySet()) {
-                    if (entry != null) {
-                        try {
-                            map.put(e.getValue(), entry.getProperty(dirInfo.dirSchemaName, e.getKey()));
-                        } catch (PropertyException e1) {
-                            throw new DirectoryException(e1);
-                        }
-                    } else {
-                        // fill with default values for this directory
-                        if (!map.containsKey(e.getValue())) {
-                            map.put(e.getValue(), dirInfo.defaultEntry.get(e.getKey()));
-                        }
-                    }
+    @Override
+    public Map<String, DocumentModel> getEntries(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        return getEntriesOneByOne(ids, fetchReferences);
+    }
+
+    /**
+     * Gets the entry from all the subdirectories of all the sources at once. The first source having the entry
+     * provides it without waiting for the following sources.
+     *
+     * @since 10.1
+     */
+    protected DocumentModel getEntryParallel(String id, boolean fetchReferences) {
+        ParallelCalls<DocumentModel> calls = new ParallelCalls<>(dirInfo -> true,
+                (dirInfo, session) -> session.getEntry(id, fetchReferences));
+        try {
+            for (SourceInfo sourceInfo : sourceInfos) {
+                DocumentModel entry = getEntry(sourceInfo, id, calls::get);
+                if (entry != null) {
+                    return entry;
                 }
             }
-            // force the entry in readonly if it's defined on the multidirectory
-            if (isReadOnly()) {
-                isReadOnlyEntry = true;
+            return null;
+        } finally {
+            calls.cancel();
+        }
+    }
+
+    /**
+     * Builds the entry of a source from the entries of its subdirectories.
+     *
+     * @param subEntries the function providing the entry of each subdirectory
+     * @return the entry, or {@code null} if not in this source
+     * @since 10.1
+     */
+    protected DocumentModel getEntry(SourceInfo sourceInfo, String id,
+            Function<SubDirectoryInfo, DocumentModel> subEntries) {
+        String entryId = id;
+        boolean isReadOnlyEntry = true;
+        final Map<String, Object> map = new HashMap<>();
+        for (SubDirectoryInfo dirInfo : sourceInfo.subDirectoryInfos) {
+            final DocumentModel entry = subEntries.apply(dirInfo);
+            boolean isOptional = dirInfo.isOptional;
+            if (entry == null && !isOptional) {
+                // not in this source
+                return null;
             }
-            // ok we have the data
-            try {
-                return BaseSession.createEntryModel(null, schemaName, entryId, map, isReadOnlyEntry);
-            } catch (PropertyException e) {
-                throw new DirectoryException(e);
+            if (entry != null && !isReadOnlyEntry(entry)) {
+                // set readonly to false if at least one source is writable
+                isReadOnlyEntry = false;
+            }
+            if (entry == null && isOptional && !dirInfo.isReadOnly()) {
+                // set readonly to false if null entry is from optional and writable directory
+                isReadOnlyEntry = false;
+            }
+            if (entry != null && StringUtils.isNotBlank(entry.getId())) {
+                entryId = entry.getId();
+            }
+            for (Entry<String, String> e : dirInfo.toSource.entrySet()) {
+                if (entry != null) {
+                    try {
+                        map.put(e.getValue(), entry.getProperty(dirInfo.dirSchemaName, e.getKey()));
+                    } catch (PropertyException e1) {
+                        throw new DirectoryException(e1);
+                    }
+                } else {
+                    // fill with default values for this directory
+                    if (!map.containsKey(e.getValue())) {
+                        map.put(e.getValue(), dirInfo.defaultEntry.get(e.getKey()));
+                    }
+                }
             }
         }
-        return null;
+        // force the entry in readonly if it's defined on the multidirectory
+        if (isReadOnly()) {
+            isReadOnlyEntry = true;
+        }
+        // ok we have the data
+        try {
+            return BaseSession.createEntryModel(null, schemaName, entryId, map, isReadOnlyEntry);
+        } catch (PropertyException e) {
+            throw new DirectoryException(e);
+        }
     }
 
     @Override
@@ -618,7 +914,6 @@ public class MultiDirectorySession extends BaseSession {
     }
 
     @Override
-    @SuppressWarnings("boxing")
     public DocumentModelList query(Map<String, Serializable> filter, Set<String> fulltext, Map<String, String> orderBy,
             boolean fetchReferences) {
         if (!hasPermission(SecurityConstants.READ)) {
@@ -626,11 +921,43 @@ public class MultiDirectorySession extends BaseSession {
         }
         init();
 
+        Set<String> ft = fulltext == null ? Collections.emptySet() : fulltext;
+        BiFunction<SubDirectoryInfo, Session, DocumentModelList> query = (dirInfo,
+                session) -> session.query(getDirectoryFilter(dirInfo, filter), getDirectoryFulltext(dirInfo, ft), null,
+                        fetchReferences);
+        BiFunction<SubDirectoryInfo, Session, List<String>> projection = (dirInfo,
+                session) -> session.getProjection(Collections.emptyMap(), dirInfo.idField);
+        if (!isParallel()) {
+            return query(filter, orderBy, dirInfo -> call(dirInfo, dirInfo.getSession(), query),
+                    dirInfo -> call(dirInfo, dirInfo.getSession(), projection));
+        }
+        // query all the subdirectories of all the sources at once
+        ParallelCalls<DocumentModelList> queries = new ParallelCalls<>(dirInfo -> true, query);
+        ParallelCalls<List<String>> projections = new ParallelCalls<>(
+                dirInfo -> dirInfo.isOptional && matchesDefaultEntry(dirInfo, getDirectoryFilter(dirInfo, filter)),
+                projection);
+        try {
+            return query(filter, orderBy, queries::get, projections::get);
+        } finally {
+            queries.cancel();
+            projections.cancel();
+        }
+    }
+
+    /**
+     * Merges the entries returned by the subdirectories.
+     *
+     * @param queries the function providing the entries of each subdirectory matching the filter
+     * @param projections the function providing the ids of each optional subdirectory whose default values match the
+     *            filter
+     * @since 10.1
+     */
+    @SuppressWarnings("boxing")
+    protected DocumentModelList query(Map<String, Serializable> filter, Map<String, String> orderBy,
+            Function<SubDirectoryInfo, DocumentModelList> queries,
+            Function<SubDirectoryInfo, List<String>> projections) {
         // entry ids already seen (mapped to the source name)
         final Map<String, String> seen = new HashMap<>();
-        if (fulltext == null) {
-            fulltext = Collections.emptySet();
-        }
         Set<String> readOnlyEntries = new HashSet<>();
 
         DocumentModelList results = new DocumentModelListImpl();
@@ -644,41 +971,11 @@ public class MultiDirectorySession extends BaseSession {
             // list of optional dirs where filter matches default values
             List<SubDirectoryInfo> optionalDirsMatching = new ArrayList<>();
             for (SubDirectoryInfo dirInfo : sourceInfo.subDirectoryInfos) {
-                // compute filter
-                final Map<String, Serializable> dirFilter = new HashMap<>();
-                for (Entry<String, Serializable> e : filter.entrySet()) {
-                    final String fieldName = dirInfo.fromSource.get(e.getKey());
-                    if (fieldName == null) {
-                        continue;
-                    }
-                    dirFilter.put(fieldName, e.getValue());
-                }
-                if (dirInfo.isOptional) {
-                    // check if filter matches directory default values
-                    boolean matches = true;
-                    for (Map.Entry<String, Serializable> dirFilterEntry : dirFilter.entrySet()) {
-                        Object defaultValue = dirInfo.defaultEntry.get(dirFilterEntry.getKey());
-                        Object filterValue = dirFilterEntry.getValue();
-                        if (defaultValue == null && filterValue != null) {
-                            matches = false;
-                        } else if (defaultValue != null && !defaultValue.equals(filterValue)) {
-                            matches = false;
-                        }
-                    }
-                    if (matches) {
-                        optionalDirsMatching.add(dirInfo);
-                    }
-                }
-                // compute fulltext
-                Set<String> dirFulltext = new HashSet<>();
-                for (String sourceFieldName : fulltext) {
-                    final String fieldName = dirInfo.fromSource.get(sourceFieldName);
-                    if (fieldName != null) {
-                        dirFulltext.add(fieldName);
-                    }
+                if (dirInfo.isOptional && matchesDefaultEntry(dirInfo, getDirectoryFilter(dirInfo, filter))) {
+                    optionalDirsMatching.add(dirInfo);
                 }
                 // make query to subdirectory
-                DocumentModelList l = dirInfo.getSession().query(dirFilter, dirFulltext, null, fetchReferences);
+                DocumentModelList l = queries.apply(dirInfo);
                 for (DocumentModel entry : l) {
                     final String id = entry.getId();
                     Map<String, Object> map = maps.get(id);
@@ -700,8 +997,7 @@ public class MultiDirectorySession extends BaseSession {
             // add default entry values for optional dirs
             for (SubDirectoryInfo dirInfo : optionalDirsMatching) {
                 // add entry for every data found in other dirs
-                Set<String> existingIds = new HashSet<>(
-                        dirInfo.getSession().getProjection(Collections.emptyMap(), dirInfo.idField));
+                Set<String> existingIds = new HashSet<>(projections.apply(dirInfo));
                 for (Entry<String, Map<String, Object>> result : maps.entrySet()) {
                     final String id = result.getKey();
                     if (!existingIds.contains(id)) {
@@ -741,6 +1037,51 @@ public class MultiDirectorySession extends BaseSession {
         return results;
     }
 
+    /**
+     * Computes the filter for a subdirectory from the filter on the multi-directory fields.
+     */
+    protected Map<String, Serializable> getDirectoryFilter(SubDirectoryInfo dirInfo, Map<String, Serializable> filter) {
+        final Map<String, Serializable> dirFilter = new HashMap<>();
+        for (Entry<String, Serializable> e : filter.entrySet()) {
+            final String fieldName = dirInfo.fromSource.get(e.getKey());
+            if (fieldName == null) {
+                continue;
+            }
+            dirFilter.put(fieldName, e.getValue());
+        }
+        return dirFilter;
+    }
+
+    /**
+     * Computes the fulltext fields for a subdirectory from the multi-directory fulltext fields.
+     */
+    protected Set<String> getDirectoryFulltext(SubDirectoryInfo dirInfo, Set<String> fulltext) {
+        Set<String> dirFulltext = new HashSet<>();
+        for (String sourceFieldName : fulltext) {
+            final String fieldName = dirInfo.fromSource.get(sourceFieldName);
+            if (fieldName != null) {
+                dirFulltext.add(fieldName);
+            }
+        }
+        return dirFulltext;
+    }
+
+    /**
+     * Checks if a subdirectory filter matches the subdirectory default values.
+     */
+    protected boolean matchesDefaultEntry(SubDirectoryInfo dirInfo, Map<String, Serializable> dirFilter) {
+        for (Map.Entry<String, Serializable> dirFilterEntry : dirFilter.entrySet()) {
+            Object defaultValue = dirInfo.defaultEntry.get(dirFilterEntry.getKey());
+            Object filterValue = dirFilterEntry.getValue();
+            if (defaultValue == null && filterValue != null) {
+                return false;
+            } else if (defaultValue != null && !defaultValue.equals(filterValue)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public List<String> getProjection(Map<String, Serializable> filter, Set<String> fulltext, String columnName)
             {
@@ -33,12 +33,26 @@ import org.nuxeo.common.xmap.annotation.XObject;
 @XObject("source")
 public class SourceDescriptor implements Cloneable {
 
+    /**
+     * @since 10.1
+     */
+    public static final long DEFAULT_TIMEOUT = 10_000;
+
     @XNode("@name")
     public String name;
 
     @XNode("@creation")
     public boolean creation;
 
+    /**
+     * The time in milliseconds after which the subdirectories of this source are considered unavailable, in parallel
+     * mode.
+     *
+     * @since 10.1
+     */
+    @XNode("@timeout")
+    public long timeout = DEFAULT_TIMEOUT;
+
     @XNodeList(value = "subDirectory", type = SubDirectoryDescriptor[].class, componentType = SubDirectoryDescriptor.class)
     public SubDirectoryDescriptor[] subDirectories;
 
@@ -0,0 +1,345 @@
+/*
+ * (C) Copyright 2018 Nuxeo SA (http://nuxeo.com/) and others.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * Contributors:
+ *     Nuxeo - initial API and implementation
+ */
+package org.nuxeo.ecm.directory.multi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.Serializable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.inject.Inject;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.nuxeo.ecm.core.api.DocumentModel;
+import org.nuxeo.ecm.core.api.DocumentModelList;
+import org.nuxeo.ecm.directory.Directory;
+import org.nuxeo.ecm.directory.DirectoryException;
+import org.nuxeo.ecm.directory.Session;
+import org.nuxeo.ecm.directory.api.DirectoryService;
+import org.nuxeo.ecm.directory.memory.MemoryDirectory;
+import org.nuxeo.ecm.directory.memory.MemoryDirectoryDescriptor;
+import org.nuxeo.runtime.metrics.MetricsService;
+import org.nuxeo.runtime.test.runner.Features;
+import org.nuxeo.runtime.test.runner.FeaturesRunner;
+import org.nuxeo.runtime.test.runner.LocalDeploy;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.SharedMetricRegistries;
+
+/**
+ * @since 10.1
+ */
+@RunWith(FeaturesRunner.class)
+@Features({ MultiDirectoryFeature.class })
+@LocalDeploy("org.nuxeo.ecm.directory.multi.tests:directories-parallel-config.xml")
+public class TestMultiDirectoryParallel {
+
+    /**
+     * Memory directory counting its opened sessions, whose reads can be made to block or fail.
+     */
+    public static class ProbeDirectoryDescriptor extends MemoryDirectoryDescriptor {
+
+        // shared with the clones made at registration
+        protected final AtomicInteger opened = new AtomicInteger();
+
+        protected final AtomicReference<Runnable> onRead = new AtomicReference<>();
+
+        @Override
+        public Directory newDirectory() {
+            return new MemoryDirectory(this) {
+                @Override
+                public Session getSession() {
+                    Session session = super.getSession();
+                    opened.incrementAndGet();
+                    return (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                            new Class<?>[] { Session.class }, (proxy, method, args) -> {
+                                String name = method.getName();
+                                if (name.equals("getEntry") || name.equals("query") || name.equals("authenticate")) {
+                                    Runnable hook = onRead.get();
+                                    if (hook != null) {
+                                        hook.run();
+                                    }
+                                }
+                                try {
+                                    return method.invoke(session, args);
+                                } catch (InvocationTargetException e) {
+                                    throw e.getCause();
+                                }
+                            });
+                }
+            };
+        }
+    }
+
+    /**
+     * Blocks a read until released, recording its interruption.
+     */
+    protected static class Blocker implements Runnable {
+
+        protected final CountDownLatch started = new CountDownLatch(1);
+
+        protected final CountDownLatch release = new CountDownLatch(1);
+
+        protected final CountDownLatch interrupted = new CountDownLatch(1);
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+                throw new DirectoryException("interrupted", e);
+            }
+        }
+    }
+
+    @Inject
+    protected DirectoryService directoryService;
+
+    protected ProbeDirectoryDescriptor desc1;
+
+    protected ProbeDirectoryDescriptor desc2;
+
+    protected ProbeDirectoryDescriptor desc3;
+
+    protected Session dir;
+
+    @Before
+    public void setUp() throws Exception {
+        desc1 = registerDirectory("dir1", "schema1", "uid", "foo", "uid", "foo");
+        createEntry("dir1", "uid", "1", "foo", "foo1");
+        createEntry("dir1", "uid", "2", "foo", "foo2");
+
+        desc2 = registerDirectory("dir2", "schema2", "id", null, "id", "bar");
+        createEntry("dir2", "id", "1", "bar", "bar1");
+        createEntry("dir2", "id", "2", "bar", "bar2");
+
+        desc3 = registerDirectory("dir3", "schema3", "uid", "thefoo", "uid", "thefoo", "thebar");
+        createEntry("dir3", "uid", "3", "thefoo", "foo3", "thebar", "bar3");
+
+        dir = directoryService.open("parallelmulti");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (dir != null) {
+            dir.close();
+        }
+        directoryService.unregisterDirectoryDescriptor(desc1);
+        directoryService.unregisterDirectoryDescriptor(desc2);
+        directoryService.unregisterDirectoryDescriptor(desc3);
+    }
+
+    protected ProbeDirectoryDescriptor registerDirectory(String name, String schemaName, String idField,
+            String passwordField, String... fields) {
+        ProbeDirectoryDescriptor desc = new ProbeDirectoryDescriptor();
+        desc.name = name;
+        desc.schemaName = schemaName;
+        desc.schemaSet = new HashSet<>(Arrays.asList(fields));
+        desc.idField = idField;
+        desc.passwordField = passwordField;
+        directoryService.registerDirectoryDescriptor(desc);
+        return desc;
+    }
+
+    protected void createEntry(String dirName, String... keyValues) {
+        Map<String, Object> map = new HashMap<>();
+        for (int i = 0; i < keyValues.length; i += 2) {
+            map.put(keyValues[i], keyValues[i + 1]);
+        }
+        try (Session session = directoryService.open(dirName)) {
+            session.createEntry(map);
+        }
+    }
+
+    @Test
+    public void testGetEntry() throws Exception {
+        DocumentModel entry = dir.getEntry("1");
+        assertEquals("1", entry.getProperty("schema3", "uid"));
+        assertEquals("foo1", entry.getProperty("schema3", "thefoo"));
+        assertEquals("bar1", entry.getProperty("schema3", "thebar"));
+        entry = dir.getEntry("3");
+        assertEquals("3", entry.getProperty("schema3", "uid"));
+        assertEquals("foo3", entry.getProperty("schema3", "thefoo"));
+        assertEquals("bar3", entry.getProperty("schema3", "thebar"));
+        assertNull(dir.getEntry("no-such-entry"));
+    }
+
+    @Test
+    public void testAuthenticate() throws Exception {
+        assertTrue(dir.authenticate("1", "foo1"));
+        assertFalse(dir.authenticate("1", "haha"));
+        assertTrue(dir.authenticate("3", "foo3"));
+        assertFalse(dir.authenticate("3", "haha"));
+        assertFalse(dir.authenticate("no-such-entry", "foo1"));
+    }
+
+    @Test
+    public void testQuery() throws Exception {
+        Map<String, Serializable> filter = new HashMap<>();
+        DocumentModelList entries = dir.query(filter);
+        assertEquals(3, entries.size());
+
+        filter.put("thebar", "bar3");
+        entries = dir.query(filter);
+        assertEquals(1, entries.size());
+        assertEquals("3", entries.get(0).getId());
+
+        filter.put("thebar", "bar2");
+        entries = dir.query(filter, Collections.emptySet(), Collections.singletonMap("uid", "asc"));
+        assertEquals(1, entries.size());
+        assertEquals("2", entries.get(0).getId());
+    }
+
+    @Test
+    public void testSubDirectoryTimers() throws Exception {
+        MetricRegistry registry = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        String name = MetricRegistry.name("nuxeo", "directories", "parallelmulti", "subdirectories", "dir3");
+        long count = registry.timer(name).getCount();
+        dir.getEntry("3");
+        assertEquals(count + 1, registry.timer(name).getCount());
+    }
+
+    @Test
+    public void testSubDirectorySessionsReused() throws Exception {
+        int opened1 = desc1.opened.get();
+        int opened2 = desc2.opened.get();
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(dir.getEntry("1"));
+            assertEquals(3, dir.query(Collections.emptyMap()).size());
+        }
+        // a single session per subdirectory, the caller's ones are not opened by the reads
+        assertEquals(opened1 + 1, desc1.opened.get());
+        assertEquals(opened2 + 1, desc2.opened.get());
+    }
+
+    @Test
+    public void testTimeoutInterruptsCall() throws Exception {
+        Blocker blocker = new Blocker();
+        desc3.onRead.set(blocker);
+        try {
+            // not in source1, waits for source2
+            dir.getEntry("3");
+            fail("should have timed out");
+        } catch (DirectoryException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("did not answer in time"));
+        } finally {
+            desc3.onRead.set(null);
+        }
+        // the executor thread is freed
+        assertTrue(blocker.interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testShortCircuit() throws Exception {
+        Blocker blocker = new Blocker();
+        desc3.onRead.set(blocker);
+        try {
+            // found in source1, the blocked source2 is not awaited
+            long start = System.currentTimeMillis();
+            DocumentModel entry = dir.getEntry("1");
+            assertEquals("foo1", entry.getProperty("schema3", "thefoo"));
+            // accepted by dir1 while dir3 is blocked
+            assertTrue(dir.authenticate("1", "foo1"));
+            assertTrue(System.currentTimeMillis() - start < 1000);
+            assertTrue(blocker.interrupted.await(10, TimeUnit.SECONDS));
+        } finally {
+            desc3.onRead.set(null);
+            blocker.release.countDown();
+        }
+    }
+
+    @Test
+    public void testFailingSubDirectory() throws Exception {
+        desc3.onRead.set(() -> {
+            throw new DirectoryException("dir3 is down");
+        });
+        try {
+            // source1 provides the entry, the failure of source2 doesn't matter
+            assertEquals("foo1", dir.getEntry("1").getProperty("schema3", "thefoo"));
+            try {
+                dir.getEntry("3");
+                fail("should have failed");
+            } catch (DirectoryException e) {
+                assertEquals("dir3 is down", e.getMessage());
+            }
+            try {
+                dir.query(Collections.emptyMap());
+                fail("should have failed");
+            } catch (DirectoryException e) {
+                assertEquals("dir3 is down", e.getMessage());
+            }
+        } finally {
+            desc3.onRead.set(null);
+        }
+        // the session of the failed calls is not reused but the multi-directory session still works
+        assertEquals("foo3", dir.getEntry("3").getProperty("schema3", "thefoo"));
+    }
+
+    @Test
+    public void testConcurrentSessions() throws Exception {
+        // more concurrent calls than the 2 executor threads can take
+        int threads = 10;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads * 5; i++) {
+                futures.add(executor.submit(() -> {
+                    try (Session session = directoryService.open("parallelmulti")) {
+                        assertEquals("bar1", session.getEntry("1").getProperty("schema3", "thebar"));
+                        assertEquals("bar3", session.getEntry("3").getProperty("schema3", "thebar"));
+                        assertTrue(session.authenticate("2", "foo2"));
+                        assertEquals(3, session.query(Collections.emptyMap()).size());
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+}
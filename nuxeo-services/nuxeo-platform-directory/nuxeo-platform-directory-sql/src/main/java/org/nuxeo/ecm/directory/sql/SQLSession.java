@@ -28,10 +28,12 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -79,6 +81,13 @@ public class SQLSession extends BaseSession {
     // set to false for debugging
     private static final boolean HIDE_PASSWORD_IN_LOGS = true;
 
+    /**
+     * Maximum number of ids read by a single query in {@link #getEntriesFromSource}.
+     *
+     * @since 10.1
+     */
+    protected static final int GET_ENTRIES_BATCH_SIZE = 100;
+
     final Table table;
 
     private final boolean computeMultiTenantId;
@@ -110,90 +119,128 @@ public class SQLSession extends BaseSession {
 
     @Override
     public DocumentModel getEntryFromSource(String id, boolean fetchReferences) throws DirectoryException {
+        List<DocumentModel> entries = readEntries(Collections.singletonList(id), fetchReferences);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    /**
+     * Reads several entries with {@code IN} queries on their ids, {@value #GET_ENTRIES_BATCH_SIZE} at a time.
+     *
+     * @since 10.1
+     */
+    @Override
+    public Map<String, DocumentModel> getEntriesFromSource(Collection<String> ids, boolean fetchReferences)
+            throws DirectoryException {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<DocumentModel> entries = new ArrayList<>(distinctIds.size());
+        for (int i = 0; i < distinctIds.size(); i += GET_ENTRIES_BATCH_SIZE) {
+            List<String> batch = distinctIds.subList(i, Math.min(i + GET_ENTRIES_BATCH_SIZE, distinctIds.size()));
+            entries.addAll(readEntries(batch, fetchReferences));
+        }
+        return mapEntriesToIds(ids, entries);
+    }
+
+    protected List<DocumentModel> readEntries(List<String> ids, boolean fetchReferences) throws DirectoryException {
         acquireConnection();
-        // String sql = String.format("SELECT * FROM %s WHERE %s = ?",
+        // String sql = String.format("SELECT * FROM %s WHERE %s IN (?, ...)",
         // tableName, idField);
         Select select = new Select(table);
         select.setFrom(table.getQuotedName());
         select.setWhat(getReadColumnsSQL());
 
-        String whereClause = table.getPrimaryColumn().getQuotedName() + " = ?";
+        String whereClause = table.getPrimaryColumn().getQuotedName();
+        if (ids.size() == 1) {
+            whereClause += " = ?";
+        } else {
+            whereClause += " IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+        }
         whereClause = addFilterWhereClause(whereClause);
 
         select.setWhere(whereClause);
         String sql = select.getStatement();
 
         if (logger.isLogEnabled()) {
-            List<Serializable> values = new ArrayList<>();
-            values.add(id);
+            List<Serializable> values = new ArrayList<>(ids);
             addFilterValuesForLog(values);
             logger.logSQL(sql, values);
         }
 
         try (PreparedStatement ps = sqlConnection.prepareStatement(sql)) {
-            setFieldValue(ps, 1, table.getPrimaryColumn(), id);
-            addFilterValues(ps, 2);
+            int index = 1;
+            for (String id : ids) {
+                setFieldValue(ps, index++, table.getPrimaryColumn(), id);
+            }
+            addFilterValues(ps, index);
 
-            Map<String, Object> fieldMap = new HashMap<>();
+            List<Map<String, Object>> fieldMaps = new ArrayList<>(ids.size());
             try (ResultSet rs = ps.executeQuery()) {
-                if (!rs.next()) {
-                    return null;
-                }
-                for (Column column : getReadColumns()) {
-                    Object value = getFieldValue(rs, column);
-                    fieldMap.put(column.getKey(), value);
-                }
-                if (logger.isLogEnabled()) {
-                    logger.logResultSet(rs, getReadColumns());
+                while (rs.next()) {
+                    Map<String, Object> fieldMap = new HashMap<>();
+                    for (Column column : getReadColumns()) {
+                        Object value = getFieldValue(rs, column);
+                        fieldMap.put(column.getKey(), value);
+                    }
+                    if (logger.isLogEnabled()) {
+                        logger.logResultSet(rs, getReadColumns());
+                    }
+                    fieldMaps.add(fieldMap);
                 }
             }
 
-            if (isMultiTenant()) {
-                // check that the entry is from the current tenant, or no tenant
-                // at all
-                String tenantId = getCurrentTenantId();
-                if (!StringUtils.isBlank(tenantId)) {
-                    String entryTenantId = (String) fieldMap.get(TENANT_ID_FIELD);
-                    if (!StringUtils.isBlank(entryTenantId)) {
-                        if (!entryTenantId.equals(tenantId)) {
-                            return null;
+            List<DocumentModel> entries = new ArrayList<>(fieldMaps.size());
+            for (Map<String, Object> fieldMap : fieldMaps) {
+                if (isMultiTenant()) {
+                    // check that the entry is from the current tenant, or no tenant
+                    // at all
+                    String tenantId = getCurrentTenantId();
+                    if (!StringUtils.isBlank(tenantId)) {
+                        String entryTenantId = (String) fieldMap.get(TENANT_ID_FIELD);
+                        if (!StringUtils.isBlank(entryTenantId)) {
+                            if (!entryTenantId.equals(tenantId)) {
+                                continue;
+                            }
                         }
                     }
                 }
-            }
 
-            DocumentModel entry = fieldMapToDocumentModel(fieldMap);
-
-            // fetch the reference fields
-            if (fetchReferences) {
-                Map<String, List<String>> targetIdsMap = new HashMap<>();
-                for (Reference reference : directory.getReferences()) {
-                    List<String> targetIds = reference.getTargetIdsForSource(entry.getId());
-                    targetIds = new ArrayList<>(targetIds);
-                    Collections.sort(targetIds);
-                    String fieldName = reference.getFieldName();
-                    if (targetIdsMap.containsKey(fieldName)) {
-                        targetIdsMap.get(fieldName).addAll(targetIds);
-                    } else {
-                        targetIdsMap.put(fieldName, targetIds);
-                    }
-                }
-                for (Entry<String, List<String>> en : targetIdsMap.entrySet()) {
-                    String fieldName = en.getKey();
-                    List<String> targetIds = en.getValue();
-                    try {
-                        entry.setProperty(schemaName, fieldName, targetIds);
-                    } catch (PropertyException e) {
-                        throw new DirectoryException(e);
-                    }
+                DocumentModel entry = fieldMapToDocumentModel(fieldMap);
+
+                // fetch the reference fields
+                if (fetchReferences) {
+                    fetchReferenceFields(entry);
                 }
+                entries.add(entry);
             }
-            return entry;
+            return entries;
         } catch (SQLException e) {
             throw new DirectoryException("getEntry failed", e);
         }
     }
 
+    protected void fetchReferenceFields(DocumentModel entry) throws DirectoryException {
+        Map<String, List<String>> targetIdsMap = new HashMap<>();
+        for (Reference reference : directory.getReferences()) {
+            List<String> targetIds = reference.getTargetIdsForSource(entry.getId());
+            targetIds = new ArrayList<>(targetIds);
+            Collections.sort(targetIds);
+            String fieldName = reference.getFieldName();
+            if (targetIdsMap.containsKey(fieldName)) {
+                targetIdsMap.get(fieldName).addAll(targetIds);
+            } else {
+                targetIdsMap.put(fieldName, targetIds);
+            }
+        }
+        for (Entry<String, List<String>> en : targetIdsMap.entrySet()) {
+            String fieldName = en.getKey();
+            List<String> targetIds = en.getValue();
+            try {
+                entry.setProperty(schemaName, fieldName, targetIds);
+            } catch (PropertyException e) {
+                throw new DirectoryException(e);
+            }
+        }
+    }
+
     protected List<Column> getReadColumns() {
         return readAllColumns ? getDirectory().readColumnsAll : getDirectory().readColumns;
     }
@@ -322,6 +322,23 @@ public abstract class AbstractDirectoryTest {
         }
     }
 
+    @Test
+    public void testGetEntriesByIds() throws Exception {
+        try (Session session = getSession()) {
+            Map<String, DocumentModel> entries = session.getEntries(
+                    Arrays.asList("user_3", "NO_SUCH_USER", "Administrator", "user_3"));
+            assertEquals(Arrays.asList("user_3", "Administrator"), Arrays.asList(entries.keySet().toArray()));
+            DocumentModel dm = entries.get("Administrator");
+            assertEquals("Administrator", dm.getProperty(SCHEMA, "username"));
+            assertEquals(10L, dm.getProperty(SCHEMA, "intField"));
+            dm = entries.get("user_3");
+            assertEquals("user_3", dm.getProperty(SCHEMA, "username"));
+            assertFalse((Boolean) dm.getProperty(SCHEMA, "booleanField"));
+
+            assertTrue(session.getEntries(Collections.emptyList()).isEmpty());
+        }
+    }
+
     @SuppressWarnings("unchecked")
     @Test
     public void testUpdateEntry() throws Exception {
@@ -24,6 +24,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+import java.util.Map;
+
 import javax.inject.Inject;
 
 import org.junit.Before;
@@ -62,6 +65,8 @@ public class TestCachedDirectory extends AbstractDirectoryTest {
 
     protected final static String ENTRY_CACHE_WITHOUT_REFERENCES_NAME = "entry-cache-without-references";
 
+    protected final static String NEGATIVE_CACHE_NAME = "negative-entry-cache";
+
     @Inject
     protected RuntimeHarness harness;
 
@@ -161,4 +166,51 @@ public class TestCachedDirectory extends AbstractDirectoryTest {
         assertEquals(baseNegativeHitsCount + 2, negativeHitsCounter.getCount());
         assertEquals(baseMissesCount + 1, missesCounter.getCount());
     }
+
+    @Test
+    public void testNegativeCachingInDedicatedCache() throws Exception {
+        DirectoryCache cache = getDirectory().getCache();
+        cache.setNegativeCaching(Boolean.TRUE);
+        cache.setNegativeCacheName(NEGATIVE_CACHE_NAME);
+        try {
+            doTestNegativeCaching();
+            assertNotNull(cache.getNegativeCache().get("NO_SUCH_USER"));
+            assertNull(cache.getEntryCache().get("NO_SUCH_USER"));
+            // invalidated along with the entries
+            cache.invalidateAll();
+            assertNull(cache.getNegativeCache().get("NO_SUCH_USER"));
+        } finally {
+            cache.setNegativeCaching(null);
+            cache.setNegativeCacheName(null);
+        }
+    }
+
+    @Test
+    public void testGetEntriesFromCache() throws Exception {
+        Session session = getDirectory().getSession();
+        MetricRegistry metrics = SharedMetricRegistries.getOrCreate(MetricsService.class.getName());
+        Counter hitsCounter = metrics.counter(
+                MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "hits"));
+        Counter missesCounter = metrics.counter(
+                MetricRegistry.name("nuxeo", "directories", "userDirectory", "cache", "misses"));
+        long baseHitsCount = hitsCounter.getCount();
+        long baseMissesCount = missesCounter.getCount();
+
+        // user_1 is cached by a single read
+        assertNotNull(session.getEntry("user_1"));
+        assertEquals(baseMissesCount + 1, missesCounter.getCount());
+
+        // the others are fetched together
+        Map<String, DocumentModel> entries = session.getEntries(Arrays.asList("user_3", "user_1", "NO_SUCH_USER"));
+        assertEquals(Arrays.asList("user_3", "user_1"), Arrays.asList(entries.keySet().toArray()));
+        assertEquals(baseHitsCount + 1, hitsCounter.getCount());
+        assertEquals(baseMissesCount + 3, missesCounter.getCount());
+
+        // all from the cache now
+        entries = session.getEntries(Arrays.asList("user_1", "user_3"));
+        assertEquals(2, entries.size());
+        assertEquals("user_3", entries.get("user_3").getProperty(SCHEMA, "username"));
+        assertEquals(baseHitsCount + 3, hitsCounter.getCount());
+        assertEquals(baseMissesCount + 3, missesCounter.getCount());
+    }
 }
@@ -19,6 +19,8 @@
 package org.nuxeo.ecm.platform.usermanager;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -58,6 +60,26 @@ public interface UserManager extends Authenticator, EventListener, Serializable
      */
     NuxeoPrincipal getPrincipal(String username);
 
+    /**
+     * Retrieves the principals with the given usernames.
+     * <p>
+     * Implementations resolve the principals together, so this should be preferred to successive calls to
+     * {@link #getPrincipal(String)} when many principals are needed.
+     *
+     * @return the principals by username, in the order of the given usernames, without the users that do not exist
+     * @since 10.1
+     */
+    default Map<String, NuxeoPrincipal> getPrincipals(Collection<String> usernames) {
+        Map<String, NuxeoPrincipal> principals = new LinkedHashMap<>();
+        for (String username : usernames) {
+            NuxeoPrincipal principal = getPrincipal(username);
+            if (principal != null) {
+                principals.put(username, principal);
+            }
+        }
+        return principals;
+    }
+
     /**
      * Returns the nuxeo group with given name or null if it does not exist.
      */
@@ -171,6 +171,14 @@ public class UserManagerDescriptor implements Serializable {
     @XNode("userCacheName")
     public String userCacheName;
 
+    /**
+     * The cache holding the transitive closure of the parent groups of each group.
+     *
+     * @since 10.1
+     */
+    @XNode("groupCacheName")
+    public String groupCacheName;
+
     /**
      * Merge with data from another descriptor.
      */
@@ -181,6 +189,9 @@ public class UserManagerDescriptor implements Serializable {
         if (other.userCacheName != null) {
             userCacheName = other.userCacheName;
         }
+        if (other.groupCacheName != null) {
+            groupCacheName = other.groupCacheName;
+        }
         if (other.userListingMode != null) {
             userListingMode = other.userListingMode;
         }
@@ -89,12 +89,11 @@ public class UserManagerWithComputedGroups extends UserManagerImpl {
             // MERGE!
             origVGroups.addAll(vGroups);
 
-            nuxPrincipal.setVirtualGroups(origVGroups);
+            nuxPrincipal.setVirtualGroups(origVGroups, false);
+            updateAllGroups(nuxPrincipal);
 
             // This a hack to work around the problem of running tests
-            if (!Framework.isTestModeSet()) {
-                nuxPrincipal.updateAllGroups();
-            } else {
+            if (Framework.isTestModeSet()) {
                 List<String> allGroups = nuxPrincipal.getGroups();
                 for (String vGroup : vGroups) {
                     if (!allGroups.contains(vGroup)) {
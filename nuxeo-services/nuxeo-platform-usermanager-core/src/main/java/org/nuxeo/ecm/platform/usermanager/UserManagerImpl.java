@@ -23,11 +23,16 @@ package org.nuxeo.ecm.platform.usermanager;
 
 import java.io.Serializable;
 import java.security.Principal;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -139,6 +144,14 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
 
     protected Cache principalCache = null;
 
+    /**
+     * Cache of the group closures: for a group name, the group name as stored followed by all its ancestor groups, or
+     * an empty list if the group does not exist.
+     *
+     * @since 10.1
+     */
+    protected Cache groupCache = null;
+
     public UserMultiTenantManagement multiTenantManagement = new DefaultUserMultiTenantManagement();
 
     /**
@@ -268,6 +281,10 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
             principalCache = cacheService.getCache(descriptor.userCacheName);
             invalidateAllPrincipals();
         }
+        if (cacheService != null && descriptor.groupCacheName != null) {
+            groupCache = cacheService.getCache(descriptor.groupCacheName);
+            groupCache.invalidateAll();
+        }
 
     }
 
@@ -564,7 +581,8 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
         principal.setConfig(userConfig);
 
         principal.setModel(userEntry, false);
-        principal.setVirtualGroups(virtualGroups, true);
+        principal.setVirtualGroups(virtualGroups, false);
+        updateAllGroups(principal);
 
         // TODO: reenable roles initialization once we have a use case for
         // a role directory. In the mean time we only set the JBOSS role
@@ -587,6 +605,67 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
         return getPrincipal(username, null);
     }
 
+    @Override
+    public Map<String, NuxeoPrincipal> getPrincipals(Collection<String> usernames) {
+        Map<String, NuxeoPrincipal> principals = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String username : usernames) {
+            if (username == null || principals.containsKey(username)) {
+                continue;
+            }
+            NuxeoPrincipal principal = useCache() ? (NuxeoPrincipal) principalCache.get(username) : null;
+            if (principal != null) {
+                principals.put(username, ((NuxeoPrincipalImpl) principal).cloneTransferable());
+            } else if (isDirectoryUser(username)) {
+                missing.add(username);
+            } else {
+                principal = getPrincipal(username, null);
+                if (principal != null) {
+                    principals.put(username, principal);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            // a single directory read for all the users not in cache
+            try (Session userDir = dirService.open(userDirectoryName, null)) {
+                List<String> ids = new ArrayList<>(missing.size());
+                missing.forEach(username -> ids.add(username.trim()));
+                Map<String, DocumentModel> userModels = userDir.getEntries(ids);
+                for (String username : missing) {
+                    DocumentModel userModel = userModels.get(username.trim());
+                    if (userModel == null) {
+                        continue;
+                    }
+                    NuxeoPrincipal principal = makePrincipal(userModel);
+                    if (useCache()) {
+                        principalCache.put(username, principal);
+                        principal = ((NuxeoPrincipalImpl) principal).cloneTransferable();
+                    }
+                    principals.put(username, principal);
+                }
+            }
+        }
+        Map<String, NuxeoPrincipal> ordered = new LinkedHashMap<>();
+        for (String username : usernames) {
+            NuxeoPrincipal principal = principals.get(username);
+            if (principal != null) {
+                ordered.put(username, principal);
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Checks whether the principal of the given user is built from the users directory.
+     *
+     * @since 10.1
+     */
+    protected boolean isDirectoryUser(String username) {
+        String trimmed = username.trim();
+        return !trimmed.equals(getAnonymousUserId()) && !virtualUsers.containsKey(username)
+                && !NuxeoPrincipal.isTransientUsername(username);
+    }
+
     protected NuxeoPrincipal getPrincipalUsingCache(String username) {
         NuxeoPrincipal ret = (NuxeoPrincipal) principalCache.get(username);
         if (ret == null) {
@@ -799,6 +878,97 @@ public class UserManagerImpl implements UserManager, MultiTenantUserManager, Adm
         if (useCache()) {
             principalCache.invalidateAll();
         }
+        if (groupCache != null) {
+            groupCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Computes all the groups of the principal from its direct groups, using the group closures cache if configured.
+     *
+     * @since 10.1
+     */
+    protected void updateAllGroups(NuxeoPrincipalImpl principal) {
+        if (groupCache == null) {
+            principal.updateAllGroups();
+            return;
+        }
+        List<String> virtualGroups = principal.getVirtualGroups();
+        Set<String> allGroups = new LinkedHashSet<>();
+        for (String groupName : principal.getGroups()) {
+            List<String> closure;
+            try {
+                closure = getGroupClosure(groupName);
+            } catch (DirectoryException e) {
+                if (!virtualGroups.contains(groupName)) {
+                    throw e;
+                }
+                // do not fail while retrieving a virtual group
+                log.warn("Failed to get group '" + groupName + "' due to '" + e.getMessage()
+                        + "': permission resolution involving groups may not be correct");
+                closure = Collections.emptyList();
+            }
+            if (!closure.isEmpty()) {
+                allGroups.addAll(closure);
+            } else if (virtualGroups.contains(groupName)) {
+                // just add the virtual group as is
+                allGroups.add(groupName);
+            } else {
+                log.error("User " + principal.getName() + " references the " + groupName
+                        + " group that does not exists");
+            }
+        }
+        principal.allGroups = new ArrayList<>(allGroups);
+        if (!principal.isAdministrator()) {
+            for (String adminGroup : getAdministratorsGroups()) {
+                if (allGroups.contains(adminGroup)) {
+                    principal.isAdministrator = true;
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the closure of a group from the cache, computing it if needed: the group name as stored followed by all its
+     * ancestor groups, or an empty list if the group does not exist.
+     *
+     * @since 10.1
+     */
+    @SuppressWarnings("unchecked")
+    protected List<String> getGroupClosure(String groupName) {
+        List<String> closure = (List<String>) groupCache.get(groupName);
+        if (closure == null) {
+            closure = computeGroupClosure(groupName);
+            groupCache.put(groupName, (Serializable) closure);
+        }
+        return closure;
+    }
+
+    protected List<String> computeGroupClosure(String groupName) {
+        ArrayList<String> closure = new ArrayList<>();
+        NuxeoGroup group = getGroup(groupName);
+        if (group == null) {
+            return closure;
+        }
+        closure.add(group.getName());
+        Set<String> checked = new HashSet<>();
+        checked.add(groupName);
+        Deque<String> toProcess = new ArrayDeque<>(group.getParentGroups());
+        while (!toProcess.isEmpty()) {
+            String parentName = toProcess.poll();
+            if (!checked.add(parentName)) {
+                continue;
+            }
+            NuxeoGroup parent = getGroup(parentName);
+            if (parent == null) {
+                log.error("Group " + groupName + " has the " + parentName + " ancestor group that does not exists");
+                continue;
+            }
+            closure.add(parent.getName());
+            toProcess.addAll(parent.getParentGroups());
+        }
+        return closure;
     }
 
     @Override
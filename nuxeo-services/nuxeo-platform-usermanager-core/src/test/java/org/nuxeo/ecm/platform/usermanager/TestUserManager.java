@@ -1212,4 +1212,51 @@ public class TestUserManager extends UserManagerTestCase {
         }
     }
 
+    @Test
+    public void testGetPrincipals() throws Exception {
+        userManager.createUser(getUser("bulk1"));
+        userManager.createUser(getUser("bulk2"));
+        // one of them in cache
+        assertNotNull(userManager.getPrincipal("bulk2"));
+
+        Map<String, NuxeoPrincipal> principals = userManager.getPrincipals(
+                Arrays.asList("bulk2", "unknown", "Guest", "bulk1", "tehroot", "bulk2"));
+        assertEquals(Arrays.asList("bulk2", "Guest", "bulk1", "tehroot"), new ArrayList<>(principals.keySet()));
+        assertEquals("bulk1", principals.get("bulk1").getName());
+        assertTrue(principals.get("Guest").isAnonymous());
+        assertEquals("The", principals.get("tehroot").getFirstName());
+        // not the cached instances
+        assertTrue(principals.get("bulk1") != userManager.getPrincipal("bulk1"));
+    }
+
+    @Test
+    public void testGroupClosureCacheInvalidation() throws Exception {
+        userManager.createGroup(getGroup("closureChild"));
+        DocumentModel parent = getGroup("closureParent");
+        parent.setPropertyValue("group:subGroups", (Serializable) Collections.singletonList("closureChild"));
+        userManager.createGroup(parent);
+        DocumentModel user = getUser("closureUser");
+        user.setPropertyValue("user:groups", (Serializable) Collections.singletonList("closureChild"));
+        userManager.createUser(user);
+
+        NuxeoPrincipal principal = userManager.getPrincipal("closureUser");
+        assertTrue(principal.isMemberOf("closureChild"));
+        assertTrue(principal.isMemberOf("closureParent"));
+        assertFalse(principal.isMemberOf("closureGrandParent"));
+
+        // a new ancestor group is seen by the principals
+        DocumentModel grandParent = getGroup("closureGrandParent");
+        grandParent.setPropertyValue("group:subGroups", (Serializable) Collections.singletonList("closureParent"));
+        userManager.createGroup(grandParent);
+        principal = userManager.getPrincipal("closureUser");
+        assertTrue(principal.isMemberOf("closureGrandParent"));
+
+        // as well as a removed one
+        userManager.deleteGroup("closureParent");
+        principal = userManager.getPrincipal("closureUser");
+        assertTrue(principal.isMemberOf("closureChild"));
+        assertFalse(principal.isMemberOf("closureParent"));
+        assertFalse(principal.isMemberOf("closureGrandParent"));
+    }
+
 }